@@ -0,0 +1,95 @@
+package de.entwicklertraining.openrouter4j.benchmarks;
+
+import org.json.JSONObject;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Parameters of a benchmark run, parsed from {@code --name=value} command line arguments.
+ *
+ * @param concurrency     number of streams in flight at the same time
+ * @param requests        number of measured requests
+ * @param warmupRequests  requests sent before measuring (JIT warm-up, connection setup)
+ * @param tokens          tokens per streamed reply
+ * @param tokensPerSecond pacing of the mock server per stream, 0 for unpaced
+ * @param latencyMillis   median time to first token of the mock server
+ * @param tools           whether the requests declare a tool, so every request is a two-turn tool loop
+ * @param directStreaming whether the client streams over its own HTTP client (direct streaming) or
+ *                        through api-base; null runs both paths one after the other
+ * @param baseUrl         an external server to run against instead of the in-process mock server, or null
+ * @param report          file the JSON report is written to
+ * @param baseline        an earlier report to compare against, or null
+ */
+record BenchmarkConfig(
+        int concurrency,
+        int requests,
+        int warmupRequests,
+        int tokens,
+        double tokensPerSecond,
+        long latencyMillis,
+        boolean tools,
+        Boolean directStreaming,
+        String baseUrl,
+        Path report,
+        Path baseline
+) {
+
+    static BenchmarkConfig parse(String[] args) {
+        int concurrency = 1000;
+        int requests = 10_000;
+        int warmupRequests = 1000;
+        int tokens = 200;
+        double tokensPerSecond = 100;
+        long latencyMillis = 200;
+        boolean tools = false;
+        Boolean directStreaming = null;
+        String baseUrl = null;
+        Path report = Path.of("target", "streaming-benchmark.json");
+        Path baseline = null;
+
+        for (String arg : args) {
+            String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+            String value = arg.contains("=") ? arg.substring(arg.indexOf('=') + 1) : "true";
+            switch (name) {
+                case "--concurrency" -> concurrency = Integer.parseInt(value);
+                case "--requests" -> requests = Integer.parseInt(value);
+                case "--warmup" -> warmupRequests = Integer.parseInt(value);
+                case "--tokens" -> tokens = Integer.parseInt(value);
+                case "--tokens-per-second" -> tokensPerSecond = Double.parseDouble(value);
+                case "--latency-ms" -> latencyMillis = Long.parseLong(value);
+                case "--tools" -> tools = Boolean.parseBoolean(value);
+                case "--direct-streaming" -> directStreaming = "both".equals(value) ? null : Boolean.parseBoolean(value);
+                case "--base-url" -> baseUrl = value;
+                case "--report" -> report = Path.of(value);
+                case "--baseline" -> baseline = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (concurrency < 1 || requests < 1) {
+            throw new IllegalArgumentException("concurrency and requests must be positive");
+        }
+        return new BenchmarkConfig(concurrency, requests, warmupRequests, tokens, tokensPerSecond,
+                latencyMillis, tools, directStreaming, baseUrl, report, baseline);
+    }
+
+    /**
+     * The streaming paths to measure: {@code false} for api-base, {@code true} for direct streaming.
+     */
+    List<Boolean> streamingPaths() {
+        return directStreaming != null ? List.of(directStreaming) : List.of(false, true);
+    }
+
+    JSONObject toJson() {
+        return new JSONObject()
+                .put("concurrency", concurrency)
+                .put("requests", requests)
+                .put("warmupRequests", warmupRequests)
+                .put("tokens", tokens)
+                .put("tokensPerSecond", tokensPerSecond)
+                .put("latencyMillis", latencyMillis)
+                .put("tools", tools)
+                .put("directStreaming", directStreaming != null ? directStreaming.toString() : "both")
+                .put("server", baseUrl != null ? baseUrl : "in-process");
+    }
+}
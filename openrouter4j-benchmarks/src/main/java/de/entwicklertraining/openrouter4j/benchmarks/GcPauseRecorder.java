@@ -0,0 +1,74 @@
+package de.entwicklertraining.openrouter4j.benchmarks;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.json.JSONObject;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records every garbage collection reported by the JVM while it is active, per collector.
+ *
+ * <p>For stop-the-world collectors (Serial, Parallel, G1) the reported duration is the pause.
+ * Concurrent collectors report pauses and cycles as separate collectors (e.g. "ZGC Pauses" and
+ * "ZGC Cycles"); only the former are pauses.
+ */
+final class GcPauseRecorder implements NotificationListener, AutoCloseable {
+
+    private final Map<String, long[]> collectors = new TreeMap<>(); // name -> {count, totalMillis, maxMillis}
+
+    GcPauseRecorder() {
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long duration = info.getGcInfo().getDuration();
+        synchronized (collectors) {
+            long[] stats = collectors.computeIfAbsent(info.getGcName(), k -> new long[3]);
+            stats[0]++;
+            stats[1] += duration;
+            stats[2] = Math.max(stats[2], duration);
+        }
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        synchronized (collectors) {
+            collectors.forEach((name, stats) -> json.put(name, new JSONObject()
+                    .put("collections", stats[0])
+                    .put("totalMillis", stats[1])
+                    .put("maxMillis", stats[2])));
+        }
+        return json;
+    }
+
+    @Override
+    public void close() {
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter emitter) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    // not registered on this collector
+                }
+            }
+        }
+    }
+}
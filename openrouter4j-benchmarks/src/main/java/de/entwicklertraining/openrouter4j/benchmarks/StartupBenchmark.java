@@ -0,0 +1,186 @@
+package de.entwicklertraining.openrouter4j.benchmarks;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cold start benchmark: starts a short-lived job in a fresh process again and again and reports
+ * how long the process takes until the job is done, for a plain JVM, a JVM with an AppCDS archive
+ * and, if given, a native image:
+ *
+ * <pre>
+ * java ... StartupBenchmark --runs=20 --native=target/openrouter4j-startup --report=target/startup.json
+ * </pre>
+ *
+ * The job is {@code OpenRouterStartupExample} from {@code openrouter4j-examples} (HTTP against an
+ * in-process mock server, no network, no API key). Unless {@code --archive} names an existing
+ * archive, the benchmark creates one with a training run first; as AppCDS only archives classes
+ * from JAR files, the classpath must consist of JARs (run it from the packaged module, not from an
+ * IDE). Every run reports the time until the job
+ * printed its result (its first line on standard output) and until the process exited.
+ */
+public final class StartupBenchmark {
+
+    private static final String DEFAULT_MAIN = "de.entwicklertraining.openrouter4j.examples.OpenRouterStartupExample";
+
+    private final int runs;
+    private final int warmupRuns;
+    private final String classpath;
+    private final String mainClass;
+    private final Path archive;
+    private final Path nativeImage;
+    private final Path report;
+    private final String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+    private StartupBenchmark(String[] args) {
+        int runs = 20;
+        int warmupRuns = 2;
+        String classpath = System.getProperty("java.class.path");
+        String mainClass = DEFAULT_MAIN;
+        Path archive = Path.of("target", "startup-benchmark.jsa");
+        Path nativeImage = null;
+        Path report = Path.of("target", "startup-benchmark.json");
+
+        for (String arg : args) {
+            String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+            String value = arg.contains("=") ? arg.substring(arg.indexOf('=') + 1) : "true";
+            switch (name) {
+                case "--runs" -> runs = Integer.parseInt(value);
+                case "--warmup" -> warmupRuns = Integer.parseInt(value);
+                case "--classpath" -> classpath = value;
+                case "--main" -> mainClass = value;
+                case "--archive" -> archive = Path.of(value);
+                case "--native" -> nativeImage = Path.of(value);
+                case "--report" -> report = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (runs < 1) {
+            throw new IllegalArgumentException("runs must be positive");
+        }
+        this.runs = runs;
+        this.warmupRuns = warmupRuns;
+        this.classpath = classpath;
+        this.mainClass = mainClass;
+        this.archive = archive;
+        this.nativeImage = nativeImage;
+        this.report = report;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new StartupBenchmark(args).run();
+    }
+
+    private void run() throws IOException, InterruptedException {
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (Files.isDirectory(Path.of(entry))) {
+                throw new IllegalArgumentException("AppCDS only archives classes from JAR files, but the classpath contains "
+                        + "the directory " + entry + "; pass --classpath with the packaged JARs");
+            }
+        }
+        if (!Files.exists(archive)) {
+            Files.createDirectories(archive.toAbsolutePath().getParent());
+            launch(List.of(java, "-XX:ArchiveClassesAtExit=" + archive, "-cp", classpath, mainClass), new long[2], 0);
+        }
+
+        JSONObject variants = new JSONObject()
+                .put("jvm", measure(List.of(java, "-cp", classpath, mainClass)))
+                .put("appcds", measure(List.of(java, "-XX:SharedArchiveFile=" + archive, "-Xshare:on",
+                        "-cp", classpath, mainClass)));
+        if (nativeImage != null) {
+            variants.put("native", measure(List.of(nativeImage.toAbsolutePath().toString())));
+        }
+
+        JSONObject json = new JSONObject()
+                .put("benchmark", "startup")
+                .put("timestamp", Instant.now().toString())
+                .put("environment", new JSONObject()
+                        .put("javaVersion", System.getProperty("java.version"))
+                        .put("javaVm", System.getProperty("java.vm.name"))
+                        .put("availableProcessors", Runtime.getRuntime().availableProcessors()))
+                .put("config", new JSONObject()
+                        .put("runs", runs)
+                        .put("warmupRuns", warmupRuns)
+                        .put("mainClass", mainClass)
+                        .put("archive", archive.toString())
+                        .put("native", nativeImage != null ? nativeImage.toString() : JSONObject.NULL))
+                .put("results", variants);
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        Files.writeString(report, json.toString(2));
+
+        for (String variant : variants.keySet()) {
+            JSONObject result = variants.getJSONObject(variant);
+            System.out.printf("%-8s result after p50 %6.1f ms, p90 %6.1f ms | exit after p50 %6.1f ms%n", variant + ":",
+                    result.getJSONObject("resultMillis").getDouble("p50"),
+                    result.getJSONObject("resultMillis").getDouble("p90"),
+                    result.getJSONObject("exitMillis").getDouble("p50"));
+        }
+        System.out.println("Report written to " + report.toAbsolutePath());
+    }
+
+    private JSONObject measure(List<String> command) throws IOException, InterruptedException {
+        for (int i = 0; i < warmupRuns; i++) {
+            launch(command, new long[2], 0);
+        }
+        long[] resultNanos = new long[runs];
+        long[] exitNanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long[] times = new long[2];
+            launch(command, times, System.nanoTime());
+            resultNanos[i] = times[0];
+            exitNanos[i] = times[1];
+        }
+        return new JSONObject()
+                .put("resultMillis", percentiles(resultNanos))
+                .put("exitMillis", percentiles(exitNanos));
+    }
+
+    /**
+     * Runs the command to completion and stores the nanoseconds since {@code start} until the
+     * first line of output in {@code times[0]} and until the exit in {@code times[1]}.
+     */
+    private static void launch(List<String> command, long[] times, long start) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (output.isEmpty()) {
+                    times[0] = System.nanoTime() - start;
+                }
+                output.append(line).append('\n');
+            }
+        }
+        int exitCode = process.waitFor();
+        times[1] = System.nanoTime() - start;
+        if (exitCode != 0) {
+            throw new IllegalStateException("Command " + command + " failed with exit code " + exitCode + ":\n" + output);
+        }
+    }
+
+    private static JSONObject percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return new JSONObject()
+                .put("p50", percentile(sorted, 0.50) / 1e6)
+                .put("p90", percentile(sorted, 0.90) / 1e6)
+                .put("min", sorted[0] / 1e6)
+                .put("max", sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+}
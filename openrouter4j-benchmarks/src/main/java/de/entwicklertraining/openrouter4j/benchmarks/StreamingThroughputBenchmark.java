@@ -0,0 +1,301 @@
+package de.entwicklertraining.openrouter4j.benchmarks;
+
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.api.base.ApiHttpConfiguration;
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterConnectionSettings;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionCallHandler;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import de.entwicklertraining.openrouter4j.mockserver.LatencyDistribution;
+import de.entwicklertraining.openrouter4j.mockserver.MockScript;
+import de.entwicklertraining.openrouter4j.mockserver.OpenRouterMockServer;
+import org.json.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end benchmark of the streaming path: N concurrent streaming chat completions through
+ * {@link OpenRouterClient} against an in-process {@link OpenRouterMockServer} (or an external server).
+ *
+ * <p>Unlike a microbenchmark this includes socket reads, SSE parsing in api-base, the
+ * {@code StreamingToolCallAccumulator}, handler dispatch and the thread scheduling of
+ * {@link OpenRouterChatCompletionCallHandler#handleStreamingRequest}. It reports aggregate tokens per
+ * second, allocated bytes per delivered token, time-to-first-token percentiles, thread counts and
+ * GC pauses, prints a summary and writes a JSON report that can be compared with an earlier one:
+ *
+ * <pre>
+ * java ... StreamingThroughputBenchmark --concurrency=10000 --requests=50000 --tokens=200 \
+ *     --tokens-per-second=50 --report=target/run-2.json --baseline=target/run-1.json
+ * </pre>
+ *
+ * By default both streaming paths are measured one after the other, each against a fresh mock
+ * server: through api-base ({@code "api-base"} in the report) and with
+ * {@link OpenRouterConnectionSettings#directStreaming()} ({@code "direct"});
+ * {@code --direct-streaming=false} or {@code =true} measures only one of them.
+ *
+ * Allocation is measured JVM-wide; with the in-process server it includes the server's share.
+ * Use {@code --base-url} with a mock server in a separate JVM to measure the client alone.
+ */
+public final class StreamingThroughputBenchmark {
+
+    private final BenchmarkConfig config;
+    private final OpenRouterClient client;
+    private final LongAdder deliveredTokens = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private StreamingThroughputBenchmark(BenchmarkConfig config, String baseUrl, boolean directStreaming) {
+        this.config = config;
+        this.client = new OpenRouterClient(
+                ApiClientSettings.builder().build(),
+                ApiHttpConfiguration.builder().header("Authorization", "Bearer benchmark").build(),
+                baseUrl,
+                OpenRouterConnectionSettings.builder().directStreaming(directStreaming).build()
+        );
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkConfig config = BenchmarkConfig.parse(args);
+
+        JSONObject results = new JSONObject();
+        for (boolean directStreaming : config.streamingPaths()) {
+            OpenRouterMockServer server = null;
+            String baseUrl = config.baseUrl();
+            if (baseUrl == null) {
+                server = OpenRouterMockServer.builder()
+                        .latency(LatencyDistribution.logNormal(Duration.ofMillis(config.latencyMillis()), 0.25))
+                        .tokensPerSecond(config.tokensPerSecond())
+                        .script(MockScript.echo(config.tokens()))
+                        .backlog(Math.max(4096, config.concurrency()))
+                        .start();
+                baseUrl = server.baseUrl();
+            }
+            try {
+                results.put(pathName(directStreaming),
+                        new StreamingThroughputBenchmark(config, baseUrl, directStreaming).run(server));
+            } finally {
+                if (server != null) {
+                    server.close();
+                }
+            }
+        }
+
+        JSONObject report = new JSONObject()
+                .put("benchmark", "streaming-throughput")
+                .put("timestamp", Instant.now().toString())
+                .put("environment", new JSONObject()
+                        .put("javaVersion", System.getProperty("java.version"))
+                        .put("javaVm", System.getProperty("java.vm.name"))
+                        .put("availableProcessors", Runtime.getRuntime().availableProcessors())
+                        .put("maxHeapBytes", Runtime.getRuntime().maxMemory()))
+                .put("config", config.toJson())
+                .put("results", results);
+        Files.createDirectories(config.report().toAbsolutePath().getParent());
+        Files.writeString(config.report(), report.toString(2));
+        for (String path : results.keySet()) {
+            System.out.println("Streaming path " + path + ":");
+            printSummary(results.getJSONObject(path));
+        }
+        if (config.baseline() != null) {
+            printComparison(new JSONObject(Files.readString(config.baseline())), report);
+        }
+        System.out.println("Report written to " + config.report().toAbsolutePath());
+    }
+
+    private static String pathName(boolean directStreaming) {
+        return directStreaming ? "direct" : "api-base";
+    }
+
+    private JSONObject run(OpenRouterMockServer server) throws InterruptedException {
+        if (config.warmupRequests() > 0) {
+            runRequests(config.warmupRequests(), new long[config.warmupRequests()]);
+            deliveredTokens.reset();
+            failures.reset();
+        }
+
+        var threads = ManagementFactory.getThreadMXBean();
+        var allocation = (com.sun.management.ThreadMXBean) threads;
+        threads.resetPeakThreadCount();
+        int liveThreadsAtStart = threads.getThreadCount();
+        long[] ttftNanos = new long[config.requests()];
+
+        long allocatedBefore = allocation.getTotalThreadAllocatedBytes();
+        long start = System.nanoTime();
+        JSONObject gc;
+        try (GcPauseRecorder gcRecorder = new GcPauseRecorder()) {
+            runRequests(config.requests(), ttftNanos);
+            gc = gcRecorder.toJson();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long allocatedBytes = allocation.getTotalThreadAllocatedBytes() - allocatedBefore;
+
+        long tokens = deliveredTokens.sum();
+        JSONObject results = new JSONObject()
+                .put("completedRequests", config.requests() - failures.sum())
+                .put("failedRequests", failures.sum())
+                .put("durationMillis", elapsedNanos / 1_000_000)
+                .put("deliveredTokens", tokens)
+                .put("tokensPerSecond", tokens / (elapsedNanos / 1e9))
+                .put("allocatedBytes", allocatedBytes)
+                .put("allocatedBytesPerToken", tokens > 0 ? (double) allocatedBytes / tokens : 0)
+                .put("ttftMillis", percentiles(ttftNanos))
+                .put("threads", new JSONObject()
+                        .put("liveAtStart", liveThreadsAtStart)
+                        .put("peak", threads.getPeakThreadCount())
+                        .put("liveAtEnd", threads.getThreadCount()))
+                .put("gc", gc);
+        if (server != null) {
+            // Streams the server actually served at once; lower than the configured concurrency
+            // means the client did not manage to keep that many streams in flight
+            results.put("peakActiveStreams", server.peakActiveStreams());
+        }
+        return results;
+    }
+
+    private void runRequests(int count, long[] ttftNanos) throws InterruptedException {
+        OpenRouterChatCompletionCallHandler callHandler = new OpenRouterChatCompletionCallHandler(client);
+        Semaphore inFlight = new Semaphore(config.concurrency());
+        AtomicInteger next = new AtomicInteger();
+        Arrays.fill(ttftNanos, -1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < count; i++) {
+                inFlight.acquire();
+                executor.submit(() -> {
+                    try {
+                        runOne(callHandler, ttftNanos, next.getAndIncrement());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private void runOne(OpenRouterChatCompletionCallHandler callHandler, long[] ttftNanos, int slot) {
+        long start = System.nanoTime();
+        AtomicLong firstToken = new AtomicLong();
+        StreamingResponseHandler<String> handler = new StreamingResponseHandler<>() {
+            @Override
+            public void onData(String data) {
+                firstToken.compareAndSet(0, System.nanoTime());
+                deliveredTokens.increment();
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+        };
+
+        var builder = OpenRouterChatCompletionRequest.builder(client)
+                .model("mock/benchmark")
+                .addMessage("user", "Benchmark request " + slot)
+                .stream(handler);
+        if (config.tools()) {
+            builder.addTool(OpenRouterToolDefinition.builder("lookup")
+                    .description("Benchmark tool")
+                    .callback(context -> OpenRouterToolResult.of(new JSONObject().put("ok", true)))
+                    .build());
+        }
+
+        try {
+            callHandler.handleStreamingRequest(builder.build(), handler, false).join();
+            if (firstToken.get() != 0) {
+                ttftNanos[slot] = firstToken.get() - start;
+            }
+        } catch (RuntimeException e) {
+            failures.increment();
+        }
+    }
+
+    private static JSONObject percentiles(long[] nanos) {
+        long[] sorted = Arrays.stream(nanos).filter(n -> n >= 0).sorted().toArray();
+        JSONObject json = new JSONObject();
+        if (sorted.length == 0) {
+            return json;
+        }
+        json.put("p50", percentile(sorted, 0.50))
+                .put("p90", percentile(sorted, 0.90))
+                .put("p99", percentile(sorted, 0.99))
+                .put("p999", percentile(sorted, 0.999))
+                .put("max", sorted[sorted.length - 1] / 1e6)
+                .put("mean", Arrays.stream(sorted).average().orElse(0) / 1e6);
+        return json;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))] / 1e6;
+    }
+
+    private static void printSummary(JSONObject results) {
+        JSONObject ttft = results.getJSONObject("ttftMillis");
+        JSONObject threads = results.getJSONObject("threads");
+        System.out.printf("Requests:        %d completed, %d failed in %d ms%n",
+                results.getLong("completedRequests"), results.getLong("failedRequests"), results.getLong("durationMillis"));
+        System.out.printf("Throughput:      %.0f tokens/s (%d tokens)%n",
+                results.getDouble("tokensPerSecond"), results.getLong("deliveredTokens"));
+        System.out.printf("Allocation:      %.0f bytes/token%n", results.getDouble("allocatedBytesPerToken"));
+        if (!ttft.isEmpty()) {
+            System.out.printf("TTFT:            p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    ttft.getDouble("p50"), ttft.getDouble("p90"), ttft.getDouble("p99"), ttft.getDouble("max"));
+        }
+        System.out.printf("Threads:         peak %d, live at end %d%n", threads.getInt("peak"), threads.getInt("liveAtEnd"));
+        if (results.has("peakActiveStreams")) {
+            System.out.printf("Peak streams:    %d%n", results.getInt("peakActiveStreams"));
+        }
+        JSONObject gc = results.getJSONObject("gc");
+        for (String collector : gc.keySet()) {
+            JSONObject stats = gc.getJSONObject(collector);
+            System.out.printf("GC %-12s  %d collections, %d ms total, %d ms max%n",
+                    collector + ":", stats.getLong("collections"), stats.getLong("totalMillis"), stats.getLong("maxMillis"));
+        }
+    }
+
+    /**
+     * Compares every streaming path that both reports measured.
+     */
+    private static void printComparison(JSONObject baseline, JSONObject report) {
+        JSONObject before = baseline.getJSONObject("results");
+        JSONObject after = report.getJSONObject("results");
+        for (String path : after.keySet()) {
+            if (before.has(path)) {
+                System.out.println("Streaming path " + path + " compared with "
+                        + baseline.optString("timestamp", "baseline") + ":");
+                comparePath(before.getJSONObject(path), after.getJSONObject(path));
+            }
+        }
+    }
+
+    private static void comparePath(JSONObject before, JSONObject after) {
+        compare("tokens/s", before.optDouble("tokensPerSecond"), after.optDouble("tokensPerSecond"));
+        compare("bytes/token", before.optDouble("allocatedBytesPerToken"), after.optDouble("allocatedBytesPerToken"));
+        JSONObject ttftBefore = before.optJSONObject("ttftMillis", new JSONObject());
+        JSONObject ttftAfter = after.optJSONObject("ttftMillis", new JSONObject());
+        compare("TTFT p50 ms", ttftBefore.optDouble("p50"), ttftAfter.optDouble("p50"));
+        compare("TTFT p99 ms", ttftBefore.optDouble("p99"), ttftAfter.optDouble("p99"));
+    }
+
+    private static void compare(String metric, double before, double after) {
+        if (Double.isNaN(before) || Double.isNaN(after) || before == 0) {
+            return;
+        }
+        System.out.printf("  %-12s %12.1f -> %12.1f (%+.1f%%)%n", metric, before, after, (after - before) / before * 100);
+    }
+}
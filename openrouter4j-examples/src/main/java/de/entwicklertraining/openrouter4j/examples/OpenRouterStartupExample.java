@@ -0,0 +1,95 @@
+package de.entwicklertraining.openrouter4j.examples;
+
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.api.base.ApiHttpConfiguration;
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterJsonSchema;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionResponse;
+import de.entwicklertraining.openrouter4j.mockserver.MockReply;
+import de.entwicklertraining.openrouter4j.mockserver.OpenRouterMockServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Runs a typical short-lived job against an in-process {@link OpenRouterMockServer}: a
+ * structured-output completion with a tool round trip, converted with Jackson, and a streamed
+ * completion with a tool round trip. It needs neither an API key nor the network, but goes over
+ * real HTTP, so the HTTP client and the SSE parsing are loaded like in a real run.
+ *
+ * It is the training run of the {@code appcds} profile of this module and the default workload of
+ * the startup benchmark in {@code openrouter4j-benchmarks}.
+ */
+public class OpenRouterStartupExample {
+
+    public record MyRecipe(String name, int servings) {}
+
+    public static void main(String[] args) {
+        try (OpenRouterMockServer server = OpenRouterMockServer.builder().script(OpenRouterStartupExample::reply).start()) {
+            OpenRouterClient client = new OpenRouterClient(
+                    ApiClientSettings.builder().build(),
+                    ApiHttpConfiguration.builder().header("Authorization", "Bearer startup-example").build(),
+                    server.baseUrl()
+            );
+
+            OpenRouterJsonSchema recipeSchema = OpenRouterJsonSchema.objectSchema()
+                    .property("name", OpenRouterJsonSchema.stringSchema("Name of the recipe"), true)
+                    .property("servings", OpenRouterJsonSchema.integerSchema("Number of servings"), true)
+                    .additionalProperties(false);
+
+            OpenRouterChatCompletionResponse response = client.chat().completion()
+                    .model("google/gemini-2.5-flash")
+                    .responseSchema(recipeSchema)
+                    .responseMimeType("application/json")
+                    .addTool(lookupRecipe())
+                    .addMessage("user", "I want to eat 3 portions of smashed potatoes.")
+                    .execute();
+
+            MyRecipe recipe = response.convertTo(MyRecipe.class);
+            System.out.println("Recipe => name: " + recipe.name() + ", servings: " + recipe.servings());
+
+            OpenRouterChatCompletionResponse streamed = client.chat().completion()
+                    .model("google/gemini-2.5-flash")
+                    .addTool(lookupRecipe())
+                    .addMessage("user", "How do I smash the potatoes?")
+                    .stream(new StreamingResponseHandler<String>() {
+                        @Override
+                        public void onData(String data) {
+                        }
+
+                        @Override
+                        public void onComplete() {
+                        }
+
+                        @Override
+                        public void onError(Throwable throwable) {
+                        }
+                    })
+                    .execute();
+            System.out.println("Streamed => " + streamed.assistantMessage());
+        }
+    }
+
+    private static OpenRouterToolDefinition lookupRecipe() {
+        return OpenRouterToolDefinition.builder("lookup_recipe")
+                .description("Looks up a recipe")
+                .callback(context -> OpenRouterToolResult.of(new JSONObject().put("found", true)))
+                .build();
+    }
+
+    /**
+     * Calls the tool first, then answers with the recipe or, without a response format, with text.
+     */
+    private static MockReply reply(JSONObject request) {
+        JSONArray messages = request.getJSONArray("messages");
+        if (!"tool".equals(messages.getJSONObject(messages.length() - 1).optString("role"))) {
+            return MockReply.toolCall("lookup_recipe", new JSONObject());
+        }
+        if (request.has("response_format")) {
+            return MockReply.text("{\"name\":\"Smashed Potatoes\",\"servings\":3}");
+        }
+        return MockReply.text("Boil them, press them flat and roast them until crisp.");
+    }
+}
@@ -0,0 +1,152 @@
+package de.entwicklertraining.openrouter4j.mockserver;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * Failures the mock server injects into otherwise successful chat completion requests.
+ *
+ * <p>Each request independently fails with HTTP 429, 500 or 503 at the configured rates, or - for
+ * streamed responses - loses its connection after a random number of chunks. Additionally, a fixed
+ * window rate limit answers requests beyond the configured budget with HTTP 429. 429 responses
+ * carry {@code Retry-After} and {@code X-RateLimit-*} headers.
+ */
+public final class FaultInjection {
+
+    enum Fault { NONE, RATE_LIMITED, SERVER_ERROR, UNAVAILABLE, DISCONNECT }
+
+    private final double rateLimitedRate;
+    private final double serverErrorRate;
+    private final double unavailableRate;
+    private final double disconnectRate;
+    private final int rateLimitRequests;
+    private final Duration rateLimitWindow;
+    private final Duration retryAfter;
+
+    private FaultInjection(Builder builder) {
+        this.rateLimitedRate = builder.rateLimitedRate;
+        this.serverErrorRate = builder.serverErrorRate;
+        this.unavailableRate = builder.unavailableRate;
+        this.disconnectRate = builder.disconnectRate;
+        this.rateLimitRequests = builder.rateLimitRequests;
+        this.rateLimitWindow = builder.rateLimitWindow;
+        this.retryAfter = builder.retryAfter;
+    }
+
+    public static FaultInjection none() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    Fault sample(RandomGenerator random) {
+        double r = random.nextDouble();
+        if ((r -= rateLimitedRate) < 0) {
+            return Fault.RATE_LIMITED;
+        }
+        if ((r -= serverErrorRate) < 0) {
+            return Fault.SERVER_ERROR;
+        }
+        if ((r -= unavailableRate) < 0) {
+            return Fault.UNAVAILABLE;
+        }
+        if (r - disconnectRate < 0) {
+            return Fault.DISCONNECT;
+        }
+        return Fault.NONE;
+    }
+
+    int rateLimitRequests() {
+        return rateLimitRequests;
+    }
+
+    Duration rateLimitWindow() {
+        return rateLimitWindow;
+    }
+
+    Duration retryAfter() {
+        return retryAfter;
+    }
+
+    public static final class Builder {
+        private double rateLimitedRate;
+        private double serverErrorRate;
+        private double unavailableRate;
+        private double disconnectRate;
+        private int rateLimitRequests;
+        private Duration rateLimitWindow = Duration.ofMinutes(1);
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        private Builder() {
+        }
+
+        /**
+         * Fraction of requests (0..1) answered with HTTP 429.
+         */
+        public Builder rateLimited(double rate) {
+            this.rateLimitedRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * Fraction of requests (0..1) answered with HTTP 500.
+         */
+        public Builder serverErrors(double rate) {
+            this.serverErrorRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * Fraction of requests (0..1) answered with HTTP 503.
+         */
+        public Builder unavailable(double rate) {
+            this.unavailableRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * Fraction of streamed responses (0..1) whose connection is dropped mid-stream.
+         */
+        public Builder disconnects(double rate) {
+            this.disconnectRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * Allows at most {@code requests} chat completion requests per {@code window};
+         * further requests are answered with HTTP 429 until the window ends. 0 disables the limit.
+         */
+        public Builder rateLimit(int requests, Duration window) {
+            if (requests < 0) {
+                throw new IllegalArgumentException("requests must not be negative");
+            }
+            this.rateLimitRequests = requests;
+            this.rateLimitWindow = window;
+            return this;
+        }
+
+        /**
+         * Value of the {@code Retry-After} header of injected 429 responses. Default: 1 second.
+         */
+        public Builder retryAfter(Duration retryAfter) {
+            this.retryAfter = retryAfter;
+            return this;
+        }
+
+        public FaultInjection build() {
+            if (rateLimitedRate + serverErrorRate + unavailableRate + disconnectRate > 1.0) {
+                throw new IllegalArgumentException("The sum of all fault rates must not exceed 1");
+            }
+            return new FaultInjection(this);
+        }
+
+        private static double checkRate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("rate must be between 0 and 1");
+            }
+            return rate;
+        }
+    }
+}
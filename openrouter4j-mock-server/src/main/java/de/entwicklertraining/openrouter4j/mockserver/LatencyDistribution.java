@@ -0,0 +1,53 @@
+package de.entwicklertraining.openrouter4j.mockserver;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * Time the mock server waits before it sends the first byte of a response
+ * (time to first token for streamed responses).
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * Draws the next latency in nanoseconds.
+     */
+    long sampleNanos(RandomGenerator random);
+
+    static LatencyDistribution none() {
+        return random -> 0;
+    }
+
+    static LatencyDistribution fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return random -> nanos;
+    }
+
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long maxNanos = max.toNanos();
+        if (maxNanos < minNanos) {
+            throw new IllegalArgumentException("max must not be smaller than min");
+        }
+        return random -> maxNanos == minNanos ? minNanos : random.nextLong(minNanos, maxNanos + 1);
+    }
+
+    /**
+     * Normal distribution, truncated at zero.
+     */
+    static LatencyDistribution normal(Duration mean, Duration standardDeviation) {
+        double meanNanos = mean.toNanos();
+        double sdNanos = standardDeviation.toNanos();
+        return random -> Math.max(0, Math.round(random.nextGaussian(meanNanos, sdNanos)));
+    }
+
+    /**
+     * Log-normal distribution: most requests are close to the median, with a long tail of slow ones.
+     * A {@code sigma} of 0.5 gives a p99 of roughly 3.2 times the median.
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+        double mu = Math.log(Math.max(1, median.toNanos()));
+        return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+}
@@ -0,0 +1,101 @@
+package de.entwicklertraining.openrouter4j.mockserver;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * What the mock server answers to a single chat completion request: either assistant text,
+ * one or more tool calls, or an HTTP error.
+ */
+public final class MockReply {
+
+    /**
+     * A tool call the mock model requests.
+     *
+     * @param name      function name
+     * @param arguments JSON arguments
+     */
+    public record ToolCall(String name, JSONObject arguments) {
+    }
+
+    private final String content;
+    private final List<ToolCall> toolCalls;
+    private final int status;
+    private final String errorMessage;
+
+    private MockReply(String content, List<ToolCall> toolCalls, int status, String errorMessage) {
+        this.content = content;
+        this.toolCalls = toolCalls;
+        this.status = status;
+        this.errorMessage = errorMessage;
+    }
+
+    public static MockReply text(String content) {
+        return new MockReply(Objects.requireNonNull(content, "content must not be null"), List.of(), 200, null);
+    }
+
+    public static MockReply toolCall(String name, JSONObject arguments) {
+        return toolCalls(List.of(new ToolCall(name, arguments)));
+    }
+
+    public static MockReply toolCalls(List<ToolCall> toolCalls) {
+        if (toolCalls.isEmpty()) {
+            throw new IllegalArgumentException("At least one tool call is required");
+        }
+        return new MockReply(null, List.copyOf(toolCalls), 200, null);
+    }
+
+    /**
+     * An OpenRouter style error response ({@code {"error": {"code": ..., "message": ...}}}).
+     */
+    public static MockReply error(int status, String message) {
+        return new MockReply(null, List.of(), status, message);
+    }
+
+    public boolean isError() {
+        return status != 200;
+    }
+
+    public boolean hasToolCalls() {
+        return !toolCalls.isEmpty();
+    }
+
+    public String content() {
+        return content;
+    }
+
+    public List<ToolCall> toolCalls() {
+        return toolCalls;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public String errorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Splits the content into the pieces sent as individual stream chunks,
+     * roughly one token (word or whitespace-prefixed word) each.
+     */
+    List<String> tokens() {
+        List<String> tokens = new ArrayList<>();
+        if (content == null || content.isEmpty()) {
+            return tokens;
+        }
+        int start = 0;
+        for (int i = 1; i < content.length(); i++) {
+            if (Character.isWhitespace(content.charAt(i)) && !Character.isWhitespace(content.charAt(i - 1))) {
+                tokens.add(content.substring(start, i));
+                start = i;
+            }
+        }
+        tokens.add(content.substring(start));
+        return tokens;
+    }
+}
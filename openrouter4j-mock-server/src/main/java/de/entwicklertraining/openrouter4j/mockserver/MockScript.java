@@ -0,0 +1,53 @@
+package de.entwicklertraining.openrouter4j.mockserver;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides what the mock server answers to a chat completion request.
+ * Implementations are called concurrently.
+ */
+@FunctionalInterface
+public interface MockScript {
+
+    /**
+     * @param request the parsed request body
+     */
+    MockReply reply(JSONObject request);
+
+    /**
+     * The default script. Without tools it answers with {@code words} words of filler text. If the
+     * request declares tools and the last message is not a tool result, it calls the first tool with
+     * empty arguments, so the client goes through a complete tool-call round trip.
+     */
+    static MockScript echo(int words) {
+        return request -> {
+            JSONArray tools = request.optJSONArray("tools");
+            JSONArray messages = request.optJSONArray("messages");
+            JSONObject last = messages != null && !messages.isEmpty() ? messages.optJSONObject(messages.length() - 1) : null;
+            boolean afterToolResult = last != null && "tool".equals(last.optString("role"));
+
+            if (tools != null && !tools.isEmpty() && !afterToolResult) {
+                String name = tools.getJSONObject(0).getJSONObject("function").getString("name");
+                return MockReply.toolCall(name, new JSONObject());
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < words; i++) {
+                sb.append(i == 0 ? "" : " ").append(i % 10 == 9 ? "token." : "token");
+            }
+            return MockReply.text(sb.toString());
+        };
+    }
+
+    /**
+     * Answers the requests with the given replies in order, repeating the last one.
+     */
+    static MockScript sequence(MockReply... replies) {
+        List<MockReply> list = List.of(replies);
+        AtomicInteger next = new AtomicInteger();
+        return request -> list.get(Math.min(next.getAndIncrement(), list.size() - 1));
+    }
+}
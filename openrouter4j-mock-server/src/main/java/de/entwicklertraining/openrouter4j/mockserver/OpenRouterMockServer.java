@@ -0,0 +1,606 @@
+package de.entwicklertraining.openrouter4j.mockserver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+
+/**
+ * A local stand-in for the OpenRouter API, for load tests and integration tests.
+ *
+ * <p>Implements {@code POST /chat/completions} (JSON and SSE streaming, including tool calls and
+ * {@code stream_options.include_usage} and {@code n} choices) and {@code GET /key}. Every request is handled on its own
+ * virtual thread, so thousands of concurrent streams are cheap. Response timing and failures are
+ * scriptable:
+ * <ul>
+ *   <li>{@link Builder#latency(LatencyDistribution)}: time until the first byte / token</li>
+ *   <li>{@link Builder#tokensPerSecond(double)}: pacing of the generated tokens</li>
+ *   <li>{@link Builder#faults(FaultInjection)}: 429/500/503 responses, rate limits and mid-stream disconnects</li>
+ *   <li>{@link Builder#script(MockScript)}: the replies themselves</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * try (OpenRouterMockServer server = OpenRouterMockServer.builder()
+ *         .latency(LatencyDistribution.logNormal(Duration.ofMillis(300), 0.5))
+ *         .tokensPerSecond(80)
+ *         .faults(FaultInjection.builder().rateLimited(0.02).disconnects(0.01).build())
+ *         .start()) {
+ *     OpenRouterClient client = new OpenRouterClient(settings, httpConfig, server.baseUrl());
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class OpenRouterMockServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenRouterMockServer.class);
+
+    private static final int ARGUMENT_CHUNK_CHARS = 8;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyDistribution latency;
+    private final double tokensPerSecond;
+    private final MockScript script;
+    private final FaultInjection faults;
+    private final boolean multipleChoices;
+    private final long seed;
+    private final AtomicLong requestNumbers = new AtomicLong();
+
+    private final AtomicLong ids = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicInteger peakActiveStreams = new AtomicInteger();
+    private final Object rateLimitLock = new Object();
+    private long rateLimitWindowStart;
+    private int rateLimitUsed;
+
+    private OpenRouterMockServer(Builder builder) throws IOException {
+        this.latency = builder.latency;
+        this.tokensPerSecond = builder.tokensPerSecond;
+        this.script = builder.script;
+        this.faults = builder.faults;
+        this.multipleChoices = builder.multipleChoices;
+        this.seed = builder.seed != null ? builder.seed : new SplittableRandom().nextLong();
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), builder.backlog);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.rateLimitWindowStart = System.nanoTime();
+        this.server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Base URL to pass to {@code OpenRouterClient}, e.g. {@code http://127.0.0.1:54321/api/v1}.
+     */
+    public String baseUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + port() + "/api/v1";
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Number of chat completion requests received.
+     */
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Number of responses sent with the given HTTP status.
+     */
+    public long statusCount(int status) {
+        LongAdder count = statusCounts.get(status);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * Number of streams that were cut off on purpose.
+     */
+    public long disconnectCount() {
+        return disconnects.sum();
+    }
+
+    public int activeStreams() {
+        return activeStreams.get();
+    }
+
+    public int peakActiveStreams() {
+        return peakActiveStreams.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // --- Request handling ---
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.endsWith("/chat/completions") && method.equals("POST")) {
+                handleChatCompletion(exchange);
+            } else if (path.endsWith("/key") && method.equals("GET")) {
+                sendJson(exchange, 200, new JSONObject().put("data", new JSONObject()
+                        .put("label", "openrouter4j-mock-server")
+                        .put("usage", 0)
+                        .put("limit", JSONObject.NULL)
+                        .put("limit_remaining", JSONObject.NULL)
+                        .put("is_free_tier", false)));
+            } else {
+                sendError(exchange, 404, "Not found: " + method + " " + path);
+            }
+        } catch (IOException e) {
+            // The client went away; nothing left to answer
+            logger.debug("Mock server connection closed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleChatCompletion(HttpExchange exchange) throws IOException, InterruptedException {
+        requests.increment();
+        RandomGenerator random = requestRandom();
+        JSONObject request;
+        try {
+            request = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            sendError(exchange, 400, "Invalid JSON: " + e.getMessage());
+            return;
+        }
+
+        if (!acquireRateLimit()) {
+            sendRateLimited(exchange, "Rate limit exceeded");
+            return;
+        }
+        FaultInjection.Fault fault = faults.sample(random);
+        switch (fault) {
+            case RATE_LIMITED -> {
+                sendRateLimited(exchange, "Rate limit exceeded (injected)");
+                return;
+            }
+            case SERVER_ERROR -> {
+                sendError(exchange, 500, "Internal server error (injected)");
+                return;
+            }
+            case UNAVAILABLE -> {
+                sendError(exchange, 503, "Service unavailable (injected)");
+                return;
+            }
+            default -> {
+                // NONE or DISCONNECT, handled below
+            }
+        }
+
+        // One script call per choice; an error reply fails the whole request
+        int choices = multipleChoices ? Math.max(1, request.optInt("n", 1)) : 1;
+        List<MockReply> replies = new ArrayList<>(choices);
+        for (int i = 0; i < choices; i++) {
+            MockReply reply = script.reply(request);
+            if (reply.isError()) {
+                sendError(exchange, reply.status(), reply.errorMessage());
+                return;
+            }
+            replies.add(reply);
+        }
+
+        long start = System.nanoTime();
+        sleepUntil(start + latency.sampleNanos(random));
+
+        String model = request.optString("model", "mock/model");
+        if (request.optBoolean("stream", false)) {
+            JSONObject streamOptions = request.optJSONObject("stream_options");
+            boolean includeUsage = streamOptions != null && streamOptions.optBoolean("include_usage", false);
+            stream(exchange, request, replies, model, includeUsage,
+                    fault == FaultInjection.Fault.DISCONNECT ? random : null);
+        } else {
+            int tokens = replies.stream().mapToInt(r -> r.tokens().size()).max().orElse(0);
+            sleepUntil(System.nanoTime() + tokenIntervalNanos() * tokens);
+            sendJson(exchange, 200, completion(request, replies, model));
+        }
+    }
+
+    private void stream(
+            HttpExchange exchange,
+            JSONObject request,
+            List<MockReply> replies,
+            String model,
+            boolean includeUsage,
+            RandomGenerator disconnectRandom
+    ) throws IOException, InterruptedException {
+        boolean disconnect = disconnectRandom != null;
+        String id = nextId();
+        long created = System.currentTimeMillis() / 1000;
+
+        // The chunks of several choices are interleaved like the real API does it
+        List<List<byte[]>> perChoice = new ArrayList<>(replies.size());
+        for (int c = 0; c < replies.size(); c++) {
+            perChoice.add(choiceEvents(id, created, model, c, replies.get(c)));
+        }
+        List<byte[]> events = new ArrayList<>();
+        for (int i = 0; events.size() < perChoice.stream().mapToInt(List::size).sum(); i++) {
+            for (List<byte[]> choiceEvents : perChoice) {
+                if (i < choiceEvents.size()) {
+                    events.add(choiceEvents.get(i));
+                }
+            }
+        }
+        if (includeUsage) {
+            events.add(event(new JSONObject()
+                    .put("id", id).put("object", "chat.completion.chunk").put("created", created).put("model", model)
+                    .put("choices", new JSONArray())
+                    .put("usage", usage(request, replies))));
+        }
+        events.add("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        addRateLimitHeaders(exchange);
+
+        // A disconnect announces the full length but stops early, which makes the server drop the connection
+        int cutoff = disconnect ? 1 + disconnectRandom.nextInt(Math.max(1, events.size() - 2)) : events.size();
+        long length = 0;
+        for (byte[] event : events) {
+            length += event.length;
+        }
+        exchange.sendResponseHeaders(200, disconnect ? length : 0);
+        countStatus(200);
+
+        int active = activeStreams.incrementAndGet();
+        peakActiveStreams.accumulateAndGet(active, Math::max);
+        try {
+            OutputStream out = exchange.getResponseBody();
+            long interval = tokenIntervalNanos();
+            long next = System.nanoTime();
+            for (int i = 0; i < cutoff; i++) {
+                if (i > 0 && i < events.size() - 1) {
+                    next += interval;
+                    sleepUntil(next);
+                }
+                out.write(events.get(i));
+                out.flush();
+            }
+            if (disconnect) {
+                disconnects.increment();
+            }
+        } finally {
+            activeStreams.decrementAndGet();
+        }
+    }
+
+    /**
+     * A generator of its own for each request, derived from the seed and the request number, so
+     * concurrent handlers do not share one sequence and a seeded run samples the same values for
+     * the n-th request every time.
+     */
+    private RandomGenerator requestRandom() {
+        long z = seed + requestNumbers.getAndIncrement() * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    private static List<byte[]> choiceEvents(String id, long created, String model, int choice, MockReply reply) {
+        List<byte[]> events = new ArrayList<>();
+        events.add(event(chunk(id, created, model, choice, new JSONObject().put("role", "assistant").put("content", ""), null)));
+
+        if (reply.hasToolCalls()) {
+            for (int i = 0; i < reply.toolCalls().size(); i++) {
+                MockReply.ToolCall call = reply.toolCalls().get(i);
+                JSONObject start = toolCallDelta(i, new JSONObject().put("name", call.name()).put("arguments", ""));
+                start.getJSONArray("tool_calls").getJSONObject(0)
+                        .put("id", toolCallId(id, choice, i))
+                        .put("type", "function");
+                events.add(event(chunk(id, created, model, choice, start, null)));
+                String arguments = call.arguments().toString();
+                for (int pos = 0; pos < arguments.length(); pos += ARGUMENT_CHUNK_CHARS) {
+                    String piece = arguments.substring(pos, Math.min(arguments.length(), pos + ARGUMENT_CHUNK_CHARS));
+                    events.add(event(chunk(id, created, model, choice,
+                            toolCallDelta(i, new JSONObject().put("arguments", piece)), null)));
+                }
+            }
+        } else {
+            for (String token : reply.tokens()) {
+                events.add(event(chunk(id, created, model, choice, new JSONObject().put("content", token), null)));
+            }
+        }
+        events.add(event(chunk(id, created, model, choice, new JSONObject(),
+                reply.hasToolCalls() ? "tool_calls" : "stop")));
+        return events;
+    }
+
+    // --- Rate limiting ---
+
+    private boolean acquireRateLimit() {
+        if (faults.rateLimitRequests() <= 0) {
+            return true;
+        }
+        synchronized (rateLimitLock) {
+            long now = System.nanoTime();
+            if (now - rateLimitWindowStart >= faults.rateLimitWindow().toNanos()) {
+                rateLimitWindowStart = now;
+                rateLimitUsed = 0;
+            }
+            if (rateLimitUsed >= faults.rateLimitRequests()) {
+                return false;
+            }
+            rateLimitUsed++;
+            return true;
+        }
+    }
+
+    private void addRateLimitHeaders(HttpExchange exchange) {
+        if (faults.rateLimitRequests() <= 0) {
+            return;
+        }
+        int remaining;
+        long resetMillis;
+        synchronized (rateLimitLock) {
+            remaining = Math.max(0, faults.rateLimitRequests() - rateLimitUsed);
+            long elapsed = System.nanoTime() - rateLimitWindowStart;
+            resetMillis = System.currentTimeMillis() + Duration.ofNanos(Math.max(0, faults.rateLimitWindow().toNanos() - elapsed)).toMillis();
+        }
+        exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(faults.rateLimitRequests()));
+        exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining));
+        exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(resetMillis));
+    }
+
+    private void sendRateLimited(HttpExchange exchange, String message) throws IOException {
+        long retryAfterSeconds = Math.max(1, (faults.retryAfter().toMillis() + 999) / 1000);
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        if (faults.rateLimitRequests() <= 0) {
+            exchange.getResponseHeaders().set("X-RateLimit-Limit", "0");
+            exchange.getResponseHeaders().set("X-RateLimit-Remaining", "0");
+            exchange.getResponseHeaders().set("X-RateLimit-Reset",
+                    String.valueOf(System.currentTimeMillis() + faults.retryAfter().toMillis()));
+        }
+        sendError(exchange, 429, message);
+    }
+
+    // --- Response building ---
+
+    private JSONObject completion(JSONObject request, List<MockReply> replies, String model) {
+        String id = nextId();
+        JSONArray choices = new JSONArray();
+        for (int c = 0; c < replies.size(); c++) {
+            MockReply reply = replies.get(c);
+            JSONObject message = new JSONObject().put("role", "assistant");
+            if (reply.hasToolCalls()) {
+                JSONArray toolCalls = new JSONArray();
+                for (int i = 0; i < reply.toolCalls().size(); i++) {
+                    MockReply.ToolCall call = reply.toolCalls().get(i);
+                    toolCalls.put(new JSONObject()
+                            .put("id", toolCallId(id, c, i))
+                            .put("type", "function")
+                            .put("function", new JSONObject()
+                                    .put("name", call.name())
+                                    .put("arguments", call.arguments().toString())));
+                }
+                message.put("content", JSONObject.NULL).put("tool_calls", toolCalls);
+            } else {
+                message.put("content", reply.content());
+            }
+            choices.put(new JSONObject()
+                    .put("index", c)
+                    .put("message", message)
+                    .put("finish_reason", reply.hasToolCalls() ? "tool_calls" : "stop"));
+        }
+        return new JSONObject()
+                .put("id", id)
+                .put("object", "chat.completion")
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", model)
+                .put("choices", choices)
+                .put("usage", usage(request, replies));
+    }
+
+    private static String toolCallId(String id, int choice, int index) {
+        return "call_" + id + "_" + (choice > 0 ? choice + "_" : "") + index;
+    }
+
+    private static JSONObject chunk(String id, long created, String model, int choice, JSONObject delta, String finishReason) {
+        return new JSONObject()
+                .put("id", id)
+                .put("object", "chat.completion.chunk")
+                .put("created", created)
+                .put("model", model)
+                .put("choices", new JSONArray().put(new JSONObject()
+                        .put("index", choice)
+                        .put("delta", delta)
+                        .put("finish_reason", finishReason != null ? finishReason : JSONObject.NULL)));
+    }
+
+    private static JSONObject toolCallDelta(int index, JSONObject function) {
+        return new JSONObject().put("tool_calls", new JSONArray().put(new JSONObject()
+                .put("index", index)
+                .put("function", function)));
+    }
+
+    private static JSONObject usage(JSONObject request, List<MockReply> replies) {
+        int promptTokens = Math.max(1, String.valueOf(request.opt("messages")).length() / 4);
+        int completionTokens = 0;
+        for (MockReply reply : replies) {
+            completionTokens += reply.hasToolCalls()
+                    ? reply.toolCalls().stream().mapToInt(c -> c.arguments().toString().length() / 4 + 1).sum()
+                    : reply.tokens().size();
+        }
+        return new JSONObject()
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+    }
+
+    private static byte[] event(JSONObject data) {
+        return ("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        addRateLimitHeaders(exchange);
+        exchange.sendResponseHeaders(status, bytes.length);
+        countStatus(status);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, new JSONObject().put("error", new JSONObject()
+                .put("code", status)
+                .put("message", message)));
+    }
+
+    private void countStatus(int status) {
+        statusCounts.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    private String nextId() {
+        return "gen-mock-" + ids.incrementAndGet();
+    }
+
+    private long tokenIntervalNanos() {
+        return tokensPerSecond > 0 ? Math.round(1_000_000_000d / tokensPerSecond) : 0;
+    }
+
+    private static void sleepUntil(long deadlineNanos) throws InterruptedException {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining > 0) {
+            Thread.sleep(Duration.ofNanos(remaining));
+        }
+    }
+
+    /**
+     * Starts a mock server from the command line: {@code [port] [tokensPerSecond] [latencyMillis]}.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Builder builder = builder().port(args.length > 0 ? Integer.parseInt(args[0]) : 8089);
+        if (args.length > 1) {
+            builder.tokensPerSecond(Double.parseDouble(args[1]));
+        }
+        if (args.length > 2) {
+            builder.latency(LatencyDistribution.fixed(Duration.ofMillis(Long.parseLong(args[2]))));
+        }
+        OpenRouterMockServer server = builder.start();
+        System.out.println("OpenRouter mock server listening on " + server.baseUrl());
+        Thread.currentThread().join();
+    }
+
+    public static final class Builder {
+        private int port;
+        private int backlog = 4096;
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private double tokensPerSecond;
+        private MockScript script = MockScript.echo(50);
+        private FaultInjection faults = FaultInjection.none();
+        private boolean multipleChoices = true;
+        private Long seed;
+
+        private Builder() {
+        }
+
+        /**
+         * Port to listen on (loopback only). Default: 0, a free port is chosen.
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Size of the TCP accept queue. Default: 4096.
+         */
+        public Builder backlog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * Time until the first byte (streaming: first token). Default: none.
+         */
+        public Builder latency(LatencyDistribution latency) {
+            this.latency = Objects.requireNonNull(latency, "latency must not be null");
+            return this;
+        }
+
+        /**
+         * Pace of the generated tokens; 0 sends all tokens at once. Default: 0.
+         */
+        public Builder tokensPerSecond(double tokensPerSecond) {
+            if (tokensPerSecond < 0) {
+                throw new IllegalArgumentException("tokensPerSecond must not be negative");
+            }
+            this.tokensPerSecond = tokensPerSecond;
+            return this;
+        }
+
+        /**
+         * The replies. Default: {@link MockScript#echo(int)} with 50 words.
+         */
+        public Builder script(MockScript script) {
+            this.script = Objects.requireNonNull(script, "script must not be null");
+            return this;
+        }
+
+        public Builder faults(FaultInjection faults) {
+            this.faults = Objects.requireNonNull(faults, "faults must not be null");
+            return this;
+        }
+
+        /**
+         * Whether the {@code n} request parameter is honored. False mimics models that ignore it
+         * and always answer with a single choice. Default: true.
+         */
+        public Builder multipleChoices(boolean multipleChoices) {
+            this.multipleChoices = multipleChoices;
+            return this;
+        }
+
+        /**
+         * Seed for latency and fault sampling, for reproducible runs. Each request samples from a
+         * generator derived from the seed and its request number.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public OpenRouterMockServer start() {
+            try {
+                return new OpenRouterMockServer(this);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to start OpenRouter mock server: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package de.entwicklertraining.openrouter4j.mockserver;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterMockServerTest {
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void answersJsonRequests() throws Exception {
+        try (OpenRouterMockServer server = OpenRouterMockServer.builder()
+                .script(MockScript.sequence(MockReply.text("Hello from the mock")))
+                .start()) {
+            HttpResponse<String> response = post(server, request(false));
+
+            assertThat(response.statusCode()).isEqualTo(200);
+            JSONObject json = new JSONObject(response.body());
+            assertThat(json.getJSONArray("choices").getJSONObject(0).getJSONObject("message").getString("content"))
+                    .isEqualTo("Hello from the mock");
+            assertThat(json.getJSONObject("usage").getInt("completion_tokens")).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void streamsTokensWithPacingAndUsage() throws Exception {
+        try (OpenRouterMockServer server = OpenRouterMockServer.builder()
+                .script(MockScript.sequence(MockReply.text("one two three four five")))
+                .tokensPerSecond(100)
+                .start()) {
+            long start = System.nanoTime();
+            List<String> events = stream(server, request(true).put("stream_options", new JSONObject().put("include_usage", true)));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertThat(events.getLast()).isEqualTo("[DONE]");
+            StringBuilder content = new StringBuilder();
+            for (String event : events.subList(0, events.size() - 1)) {
+                JSONArray choices = new JSONObject(event).getJSONArray("choices");
+                if (!choices.isEmpty()) {
+                    content.append(choices.getJSONObject(0).getJSONObject("delta").optString("content", ""));
+                }
+            }
+            assertThat(content.toString()).isEqualTo("one two three four five");
+            assertThat(new JSONObject(events.get(events.size() - 2)).getJSONObject("usage").getInt("completion_tokens")).isEqualTo(5);
+            assertThat(elapsedMillis).isGreaterThanOrEqualTo(40);
+        }
+    }
+
+    @Test
+    void streamsToolCallsUntilAToolResultArrives() throws Exception {
+        try (OpenRouterMockServer server = OpenRouterMockServer.builder().script(MockScript.echo(3)).start()) {
+            JSONObject request = request(true).put("tools", new JSONArray().put(new JSONObject()
+                    .put("type", "function")
+                    .put("function", new JSONObject().put("name", "get_weather"))));
+
+            List<String> events = stream(server, request);
+            JSONObject first = new JSONObject(events.get(1)).getJSONArray("choices").getJSONObject(0);
+            assertThat(first.getJSONObject("delta").getJSONArray("tool_calls").getJSONObject(0)
+                    .getJSONObject("function").getString("name")).isEqualTo("get_weather");
+            assertThat(new JSONObject(events.get(events.size() - 2)).getJSONArray("choices").getJSONObject(0)
+                    .getString("finish_reason")).isEqualTo("tool_calls");
+
+            request.getJSONArray("messages").put(new JSONObject().put("role", "tool").put("content", "sunny"));
+            List<String> followUp = stream(server, request);
+            assertThat(new JSONObject(followUp.get(followUp.size() - 2)).getJSONArray("choices").getJSONObject(0)
+                    .getString("finish_reason")).isEqualTo("stop");
+        }
+    }
+
+    @Test
+    void streamedToolCallsCarryIdAndTypeInsideTheToolCall() throws Exception {
+        JSONObject arguments = new JSONObject().put("city", "Berlin").put("unit", "celsius");
+        try (OpenRouterMockServer server = OpenRouterMockServer.builder()
+                .script(MockScript.sequence(MockReply.toolCall("get_weather", arguments)))
+                .start()) {
+            List<String> events = stream(server, request(true));
+
+            // Accumulate the deltas the way a client does: by tool call index
+            String id = null;
+            String type = null;
+            String name = null;
+            StringBuilder args = new StringBuilder();
+            for (String event : events.subList(0, events.size() - 1)) {
+                JSONObject delta = new JSONObject(event).getJSONArray("choices").getJSONObject(0).getJSONObject("delta");
+                assertThat(delta.has("id")).isFalse();
+                assertThat(delta.has("type")).isFalse();
+                JSONArray toolCalls = delta.optJSONArray("tool_calls");
+                if (toolCalls == null) {
+                    continue;
+                }
+                JSONObject call = toolCalls.getJSONObject(0);
+                assertThat(call.getInt("index")).isZero();
+                id = call.has("id") ? call.getString("id") : id;
+                type = call.has("type") ? call.getString("type") : type;
+                JSONObject function = call.getJSONObject("function");
+                name = function.has("name") ? function.getString("name") : name;
+                args.append(function.optString("arguments", ""));
+            }
+
+            assertThat(id).startsWith("call_");
+            assertThat(type).isEqualTo("function");
+            assertThat(name).isEqualTo("get_weather");
+            assertThat(new JSONObject(args.toString()).similar(arguments)).isTrue();
+        }
+    }
+
+    @Test
+    void injectsRateLimitsWithHeaders() throws Exception {
+        try (OpenRouterMockServer server = OpenRouterMockServer.builder()
+                .faults(FaultInjection.builder().rateLimit(2, Duration.ofMinutes(1)).retryAfter(Duration.ofSeconds(7)).build())
+                .start()) {
+            assertThat(post(server, request(false)).statusCode()).isEqualTo(200);
+            assertThat(post(server, request(false)).statusCode()).isEqualTo(200);
+            HttpResponse<String> limited = post(server, request(false));
+
+            assertThat(limited.statusCode()).isEqualTo(429);
+            assertThat(limited.headers().firstValue("Retry-After")).contains("7");
+            assertThat(limited.headers().firstValue("X-RateLimit-Remaining")).contains("0");
+            assertThat(server.statusCount(429)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void dropsConnectionsMidStream() throws Exception {
+        try (OpenRouterMockServer server = OpenRouterMockServer.builder()
+                .faults(FaultInjection.builder().disconnects(1.0).build())
+                .seed(42)
+                .start()) {
+            boolean completed;
+            try {
+                completed = stream(server, request(true)).contains("[DONE]");
+            } catch (IOException e) {
+                completed = false;
+            }
+
+            assertThat(completed).isFalse();
+            assertThat(server.disconnectCount()).isEqualTo(1);
+        }
+    }
+
+    // --- Helpers ---
+
+    private static JSONObject request(boolean stream) {
+        return new JSONObject()
+                .put("model", "mock/model")
+                .put("stream", stream)
+                .put("messages", new JSONArray().put(new JSONObject().put("role", "user").put("content", "Hi")));
+    }
+
+    private HttpResponse<String> post(OpenRouterMockServer server, JSONObject body) throws Exception {
+        return http.send(httpRequest(server, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<String> stream(OpenRouterMockServer server, JSONObject body) throws Exception {
+        HttpResponse<java.io.InputStream> response = http.send(httpRequest(server, body), HttpResponse.BodyHandlers.ofInputStream());
+        List<String> events = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("data: ")) {
+                    events.add(line.substring(6));
+                }
+            }
+        }
+        return events;
+    }
+
+    private static HttpRequest httpRequest(OpenRouterMockServer server, JSONObject body) {
+        return HttpRequest.newBuilder(URI.create(server.baseUrl() + "/chat/completions"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+}
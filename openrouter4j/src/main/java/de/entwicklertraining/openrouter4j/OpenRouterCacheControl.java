@@ -0,0 +1,56 @@
+package de.entwicklertraining.openrouter4j;
+
+import org.json.JSONObject;
+
+/**
+ * A prompt caching breakpoint ({@code "cache_control"}). Providers that support explicit caching
+ * (Anthropic, Gemini) cache the prompt up to and including the marked content block or tool, so
+ * later requests that start with the same prefix skip its processing. Other providers ignore it.
+ *
+ * <p>Anthropic accepts at most {@value #MAX_BREAKPOINTS} breakpoints per request.
+ */
+public final class OpenRouterCacheControl {
+
+    public static final int MAX_BREAKPOINTS = 4;
+
+    private static final OpenRouterCacheControl EPHEMERAL = new OpenRouterCacheControl(null);
+    private static final OpenRouterCacheControl ONE_HOUR = new OpenRouterCacheControl("1h");
+
+    private final String ttl;
+
+    private OpenRouterCacheControl(String ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * The default breakpoint; the provider keeps the entry for about five minutes after its last use.
+     */
+    public static OpenRouterCacheControl ephemeral() {
+        return EPHEMERAL;
+    }
+
+    /**
+     * A breakpoint with a one hour lifetime (Anthropic only, billed at a higher cache write price).
+     */
+    public static OpenRouterCacheControl oneHour() {
+        return ONE_HOUR;
+    }
+
+    /**
+     * Lifetime sent with the breakpoint, or null for the provider default.
+     */
+    public String ttl() {
+        return ttl;
+    }
+
+    /**
+     * Returns {@code {"type": "ephemeral"}}, plus {@code "ttl"} if set.
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject().put("type", "ephemeral");
+        if (ttl != null) {
+            json.put("ttl", ttl);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,132 @@
+package de.entwicklertraining.openrouter4j;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Turns a polled cancel supplier ({@code setCancelSupplier(...)}) into a prompt action.
+ *
+ * <p>A supplier is normally only consulted between two stream chunks, so a request that waits for
+ * the next chunk or for a slow tool would not notice a cancellation for a long time. {@link #watch}
+ * registers the supplier with one of a few sweepers, which poll all their suppliers every
+ * {@value #POLL_INTERVAL_MILLIS} ms on a small pool of daemon threads and run the given action
+ * (closing the response body, interrupting the worker) as soon as one returns true. Watches are
+ * spread over the sweepers, so a supplier that blocks only delays the watches of its own sweeper.
+ * Suppliers should still be cheap: with many concurrent requests, each is called every interval.
+ */
+public final class OpenRouterCancellation {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenRouterCancellation.class);
+
+    static final long POLL_INTERVAL_MILLIS = 20;
+
+    private OpenRouterCancellation() {
+    }
+
+    /**
+     * A running watch; closing it stops the polling.
+     */
+    public interface Watch extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Watch NONE = () -> {
+    };
+
+    /**
+     * Runs {@code onCancel} once, on a watchdog thread, when {@code canceled} returns true.
+     * Returns a no-op watch if {@code canceled} is null.
+     */
+    public static Watch watch(Supplier<Boolean> canceled, Runnable onCancel) {
+        if (canceled == null) {
+            return NONE;
+        }
+        Objects.requireNonNull(onCancel, "onCancel must not be null");
+        Polled polled = new Polled(canceled, onCancel);
+        Sweeper sweeper = Watchdog.nextSweeper();
+        sweeper.watches.add(polled);
+        return () -> sweeper.watches.remove(polled);
+    }
+
+    /**
+     * Runs {@code action} once, on a watchdog thread, at {@code deadlineNanos} (in terms of
+     * {@link System#nanoTime()}). Returns a no-op watch for {@link Long#MAX_VALUE}.
+     */
+    static Watch at(long deadlineNanos, Runnable action) {
+        if (deadlineNanos == Long.MAX_VALUE) {
+            return NONE;
+        }
+        Objects.requireNonNull(action, "action must not be null");
+        ScheduledFuture<?> task = Watchdog.EXECUTOR.schedule(action,
+                Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        return () -> task.cancel(false);
+    }
+
+    /**
+     * One watched supplier; compared by identity, as the same supplier may be watched twice.
+     */
+    private static final class Polled {
+        final Supplier<Boolean> canceled;
+        final Runnable onCancel;
+
+        Polled(Supplier<Boolean> canceled, Runnable onCancel) {
+            this.canceled = canceled;
+            this.onCancel = onCancel;
+        }
+    }
+
+    /**
+     * Polls a set of watches; a watch is removed before its action runs, so it fires once.
+     */
+    private static final class Sweeper implements Runnable {
+        final Set<Polled> watches = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void run() {
+            for (Polled polled : watches) {
+                try {
+                    if (Boolean.TRUE.equals(polled.canceled.get()) && watches.remove(polled)) {
+                        polled.onCancel.run();
+                    }
+                } catch (RuntimeException e) {
+                    // A failing supplier or action must not end the sweep for the other watches
+                    logger.debug("Cancellation check failed: {}", e.toString());
+                }
+            }
+        }
+    }
+
+    private static final class Watchdog {
+        static final int THREADS = 4;
+        static final AtomicInteger THREAD_NUMBERS = new AtomicInteger();
+        static final AtomicInteger NEXT = new AtomicInteger();
+        static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(THREADS, r -> {
+            Thread thread = new Thread(r, "openrouter4j-cancellation-" + THREAD_NUMBERS.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        static final Sweeper[] SWEEPERS = new Sweeper[THREADS];
+
+        static {
+            for (int i = 0; i < THREADS; i++) {
+                SWEEPERS[i] = new Sweeper();
+                EXECUTOR.scheduleWithFixedDelay(SWEEPERS[i], POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        static Sweeper nextSweeper() {
+            return SWEEPERS[Math.floorMod(NEXT.getAndIncrement(), THREADS)];
+        }
+    }
+}
@@ -4,6 +4,23 @@ import de.entwicklertraining.api.base.ApiClient;
 import de.entwicklertraining.api.base.ApiClientSettings;
 import de.entwicklertraining.api.base.ApiHttpConfiguration;
 import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import de.entwicklertraining.openrouter4j.embeddings.OpenRouterEmbeddingsRequest;
+import de.entwicklertraining.openrouter4j.key.OpenRouterKeyRequest;
+import de.entwicklertraining.openrouter4j.models.OpenRouterModelCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 // Import exception classes
 import static de.entwicklertraining.api.base.ApiClient.HTTP_400_RequestRejectedException;
@@ -23,8 +40,31 @@ import static de.entwicklertraining.api.base.ApiClient.HTTP_504_ServerTimeoutExc
  */
 public final class OpenRouterClient extends ApiClient {
 
+    private static final Logger logger = LoggerFactory.getLogger(OpenRouterClient.class);
+
     private static final String DEFAULT_BASE_URL = "https://openrouter.ai/api/v1";
 
+    private final ApiClientSettings clientSettings;
+    private final Map<String, String> globalHeaders;
+    private final Map<Integer, StatusMapping> statusMappings = new ConcurrentHashMap<>();
+    private final OpenRouterConnectionSettings connectionSettings;
+    private final Semaphore streamPermits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    // Idle time for keep-alive counts from construction; connection use for the reuse estimate from the first request
+    private final AtomicLong lastActivityNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastConnectionUseNanos = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder estimatedWarmRequests = new LongAdder();
+    private final LongAdder queuedRequests = new LongAdder();
+    private final LongAdder warmUps = new LongAdder();
+    private final LongAdder keepAlivePings = new LongAdder();
+    private volatile ScheduledExecutorService keepAliveScheduler;
+    private final OpenRouterStreamingHttp streamingHttp;
+    private final OpenRouterTransport liveTransport = new LiveTransport();
+    private volatile OpenRouterTransport transport = liveTransport;
+    private final OpenRouterModelCatalog models;
+
     /**
      * Creates a new OpenRouterClient with default settings.
      * The API key is read from the OPENROUTER_API_KEY environment variable.
@@ -61,18 +101,98 @@ public final class OpenRouterClient extends ApiClient {
      * @param customBaseUrl Custom base URL for the API
      */
     public OpenRouterClient(ApiClientSettings settings, ApiHttpConfiguration httpConfig, String customBaseUrl) {
+        this(settings, httpConfig, customBaseUrl, OpenRouterConnectionSettings.defaults());
+    }
+
+    /**
+     * Creates a new OpenRouterClient with custom settings, HTTP configuration, base URL and connection settings.
+     *
+     * @param settings Client settings for retry behavior and timeouts
+     * @param httpConfig HTTP configuration including authentication headers (can be null)
+     * @param customBaseUrl Custom base URL for the API
+     * @param connectionSettings Warm-up, keep-alive and concurrency settings
+     */
+    public OpenRouterClient(
+            ApiClientSettings settings,
+            ApiHttpConfiguration httpConfig,
+            String customBaseUrl,
+            OpenRouterConnectionSettings connectionSettings
+    ) {
         super(settings, buildHttpConfig(httpConfig));
 
         setBaseUrl(customBaseUrl);
+        this.clientSettings = settings != null ? settings : ApiClientSettings.builder().build();
+        this.globalHeaders = buildHttpConfig(httpConfig).getGlobalHeaders();
+        this.streamingHttp = new OpenRouterStreamingHttp(this);
+        this.connectionSettings = connectionSettings != null ? connectionSettings : OpenRouterConnectionSettings.defaults();
+        int maxStreams = this.connectionSettings.maxConcurrentStreams();
+        this.streamPermits = maxStreams > 0 ? new Semaphore(maxStreams, true) : null;
+        this.models = new OpenRouterModelCatalog(
+                this, this.connectionSettings.modelCatalogFile(), this.connectionSettings.modelCatalogRefresh());
 
         // Register OpenRouter-specific HTTP status code exceptions
-        registerStatusCodeException(400, HTTP_400_RequestRejectedException.class, "HTTP 400 (Bad Request)", false);
-        registerStatusCodeException(403, HTTP_403_PermissionDeniedException.class, "HTTP 403 (Forbidden)", false);
-        registerStatusCodeException(404, HTTP_404_NotFoundException.class, "HTTP 404 (Not Found)", false);
-        registerStatusCodeException(429, HTTP_429_RateLimitOrQuotaException.class, "HTTP 429 (Rate Limited)", true);
-        registerStatusCodeException(500, HTTP_500_ServerErrorException.class, "HTTP 500 (Internal Server Error)", true);
-        registerStatusCodeException(503, HTTP_503_ServerUnavailableException.class, "HTTP 503 (Service Unavailable)", true);
-        registerStatusCodeException(504, HTTP_504_ServerTimeoutException.class, "HTTP 504 (Gateway Timeout)", false);
+        registerStatusCode(400, HTTP_400_RequestRejectedException.class, "HTTP 400 (Bad Request)", false);
+        registerStatusCode(403, HTTP_403_PermissionDeniedException.class, "HTTP 403 (Forbidden)", false);
+        registerStatusCode(404, HTTP_404_NotFoundException.class, "HTTP 404 (Not Found)", false);
+        registerStatusCode(429, HTTP_429_RateLimitOrQuotaException.class, "HTTP 429 (Rate Limited)", true);
+        registerStatusCode(500, HTTP_500_ServerErrorException.class, "HTTP 500 (Internal Server Error)", true);
+        registerStatusCode(503, HTTP_503_ServerUnavailableException.class, "HTTP 503 (Service Unavailable)", true);
+        registerStatusCode(504, HTTP_504_ServerTimeoutException.class, "HTTP 504 (Gateway Timeout)", false);
+
+        if (this.connectionSettings.keepAliveInterval() != null) {
+            startKeepAlive(this.connectionSettings.keepAliveInterval());
+        }
+        if (this.connectionSettings.modelCatalogFile() != null) {
+            models.preload();
+        }
+        if (this.connectionSettings.generationCollector() != null) {
+            this.connectionSettings.generationCollector().attach(this);
+        }
+        if (this.connectionSettings.warmUpOnConstruct()) {
+            Thread.ofVirtual().name("openrouter-warm-up").start(this::warmUp);
+        }
+    }
+
+    /**
+     * Registers the exception for a status code with api-base and keeps the mapping for the
+     * direct streaming path, which reads responses itself.
+     */
+    private void registerStatusCode(int statusCode, Class<? extends ApiClientException> exceptionClass,
+                                    String description, boolean retryable) {
+        registerStatusCodeException(statusCode, exceptionClass, description, retryable);
+        statusMappings.put(statusCode, new StatusMapping(exceptionClass, description, retryable));
+    }
+
+    ApiClientSettings clientSettings() {
+        return clientSettings;
+    }
+
+    Map<String, String> globalHeaders() {
+        return globalHeaders;
+    }
+
+    boolean isRetryableStatus(int statusCode) {
+        StatusMapping mapping = statusMappings.get(statusCode);
+        return mapping != null && mapping.retryable();
+    }
+
+    /**
+     * The exception registered for the status code, or a plain {@link ApiClientException}.
+     */
+    ApiClientException exceptionForStatus(int statusCode, String body) {
+        StatusMapping mapping = statusMappings.get(statusCode);
+        if (mapping == null) {
+            return new ApiClientException("HTTP " + statusCode + ": " + body);
+        }
+        String message = mapping.description() + ": " + body;
+        try {
+            return mapping.exceptionClass().getConstructor(String.class).newInstance(message);
+        } catch (ReflectiveOperationException e) {
+            return new ApiClientException(message);
+        }
+    }
+
+    private record StatusMapping(Class<? extends ApiClientException> exceptionClass, String description, boolean retryable) {
     }
 
     /**
@@ -105,6 +225,267 @@ public final class OpenRouterClient extends ApiClient {
         return new OpenRouterChat(this);
     }
 
+    /**
+     * Returns a builder for the embeddings endpoint (POST /embeddings); large inputs are split
+     * into batches that are sent in parallel.
+     */
+    public OpenRouterEmbeddingsRequest.Builder embeddings() {
+        return OpenRouterEmbeddingsRequest.builder(this);
+    }
+
+    /**
+     * Returns a builder for the key information endpoint (GET /key).
+     */
+    public OpenRouterKeyRequest.Builder key() {
+        return OpenRouterKeyRequest.builder(this);
+    }
+
+    /**
+     * The catalog of available models (GET /models), cached in memory and optionally on disk.
+     * Chat completion requests are validated against it once it is loaded.
+     */
+    public OpenRouterModelCatalog models() {
+        return models;
+    }
+
+    public OpenRouterConnectionSettings connectionSettings() {
+        return connectionSettings;
+    }
+
+    /**
+     * Sends a request and returns its typed response. All request builders of this library
+     * dispatch through here, which applies the connection settings (concurrency limits,
+     * statistics) before handing the request to the installed {@link OpenRouterTransport}.
+     *
+     * @param request the request to send
+     * @param useExponentialBackoff whether retryable failures are retried with exponential backoff
+     */
+    public <T extends OpenRouterResponse<?>> T dispatch(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+        return admitted(() -> request, () -> transport.send(request, useExponentialBackoff));
+    }
+
+    /**
+     * Executes a streaming request; the raw JSON chunks are delivered to the exchange's handler.
+     * Applies the same connection settings as {@link #dispatch(OpenRouterRequest, boolean)}.
+     *
+     * @param exchange the streaming request together with its chunk handler
+     * @param useRetry whether retryable failures are retried
+     */
+    public void dispatchStreaming(OpenRouterStreamingExchange exchange, boolean useRetry) {
+        admitted(exchange::request, () -> {
+            transport.stream(exchange, useRetry);
+            return null;
+        });
+    }
+
+    /**
+     * Returns the transport that sends requests to OpenRouter through api-base.
+     */
+    public OpenRouterTransport liveTransport() {
+        return liveTransport;
+    }
+
+    public OpenRouterTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Replaces the transport used by {@link #dispatch(OpenRouterRequest, boolean)} and
+     * {@link #dispatchStreaming(OpenRouterStreamingExchange, boolean)}. Pass {@code null}
+     * to return to the {@link #liveTransport()}.
+     */
+    public void setTransport(OpenRouterTransport transport) {
+        this.transport = transport != null ? transport : liveTransport;
+    }
+
+    /**
+     * Establishes the connection to OpenRouter (DNS, TCP, TLS) ahead of the first real request
+     * by sending a cheap GET /key request. With {@link OpenRouterConnectionSettings#directStreaming()}
+     * the streaming requests use an HTTP client of their own, which is warmed up the same way.
+     * Failures are logged and otherwise ignored.
+     *
+     * @return true if the warm-up requests succeeded
+     */
+    public boolean warmUp() {
+        try {
+            sendRequest(key().build());
+            if (connectionSettings.directStreaming()) {
+                streamingHttp.warmUp(key().build());
+            }
+            warmUps.increment();
+            return true;
+        } catch (RuntimeException e) {
+            logger.debug("OpenRouter warm-up request failed: {}", e.getMessage());
+            return false;
+        } finally {
+            markActivity();
+        }
+    }
+
+    /**
+     * Sends a keep-alive request whenever the client has been idle for the given interval.
+     * Replaces a previously started keep-alive. The scheduler runs on a daemon thread.
+     */
+    public synchronized void startKeepAlive(Duration interval) {
+        stopKeepAlive();
+        long intervalNanos = interval.toNanos();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "openrouter-keep-alive");
+            t.setDaemon(true);
+            return t;
+        });
+        long checkMillis = Math.max(1, interval.toMillis() / 4);
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (inFlight.get() == 0 && System.nanoTime() - lastActivityNanos.get() >= intervalNanos) {
+                keepAlivePings.increment();
+                warmUp();
+            }
+        }, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        keepAliveScheduler = scheduler;
+    }
+
+    /**
+     * Stops sending keep-alive requests.
+     */
+    public synchronized void stopKeepAlive() {
+        ScheduledExecutorService scheduler = keepAliveScheduler;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            keepAliveScheduler = null;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the connection usage since the client was created. Connection reuse
+     * is estimated, see {@link OpenRouterConnectionStats}.
+     */
+    public OpenRouterConnectionStats connectionStats() {
+        long total = requests.sum();
+        long warm = estimatedWarmRequests.sum();
+        return new OpenRouterConnectionStats(
+                total,
+                warm,
+                total - warm,
+                queuedRequests.sum(),
+                inFlight.get(),
+                peakInFlight.get(),
+                warmUps.sum(),
+                keepAlivePings.sum()
+        );
+    }
+
+    /**
+     * Runs the call once the request has passed the priority scheduler, the tenant scheduler,
+     * the concurrency limiter and the stream limit, in this order.
+     */
+    private <R> R admitted(Supplier<? extends OpenRouterRequest<?>> requestSupplier, Supplier<R> call) {
+        OpenRouterRequestScheduler scheduler = connectionSettings.scheduler();
+        OpenRouterTenantScheduler tenantScheduler = connectionSettings.tenantScheduler();
+        OpenRouterConcurrencyLimiter limiter = connectionSettings.concurrencyLimiter();
+        OpenRouterRequest<?> request = scheduler != null || tenantScheduler != null || limiter != null
+                ? requestSupplier.get()
+                : null;
+
+        if (scheduler != null) {
+            scheduler.acquire(request);
+        }
+        try {
+            if (tenantScheduler != null) {
+                tenantScheduler.acquire(request);
+            }
+            try {
+                return limited(request, limiter, call);
+            } finally {
+                if (tenantScheduler != null) {
+                    tenantScheduler.release(request);
+                }
+            }
+        } finally {
+            if (scheduler != null) {
+                scheduler.release();
+            }
+        }
+    }
+
+    private <R> R limited(OpenRouterRequest<?> request, OpenRouterConcurrencyLimiter limiter, Supplier<R> call) {
+        OpenRouterConcurrencyLimiter.Permit permit = limiter != null
+                ? limiter.acquire(request)
+                : OpenRouterConcurrencyLimiter.Permit.NONE;
+        Throwable failure = null;
+        int outputTokens = 0;
+        try {
+            beginRequest();
+            try {
+                R result = call.get();
+                outputTokens = OpenRouterConcurrencyLimiter.outputTokens(result);
+                return result;
+            } finally {
+                endRequest();
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            permit.complete(failure, outputTokens);
+        }
+    }
+
+    private void beginRequest() {
+        if (streamPermits != null && !streamPermits.tryAcquire()) {
+            queuedRequests.increment();
+            try {
+                streamPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ApiClientException("Interrupted while waiting for a free OpenRouter stream slot");
+            }
+        }
+
+        long now = System.nanoTime();
+        long lastUse = lastConnectionUseNanos.getAndSet(now);
+        lastActivityNanos.set(now);
+        int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+        requests.increment();
+        if (current > 1 || (lastUse != 0 && now - lastUse < connectionSettings.idleTimeout().toNanos())) {
+            estimatedWarmRequests.increment();
+        }
+    }
+
+    private void endRequest() {
+        markActivity();
+        inFlight.decrementAndGet();
+        if (streamPermits != null) {
+            streamPermits.release();
+        }
+    }
+
+    private void markActivity() {
+        long now = System.nanoTime();
+        lastActivityNanos.set(now);
+        lastConnectionUseNanos.set(now);
+    }
+
+    private final class LiveTransport implements OpenRouterTransport {
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            return useExponentialBackoff ? sendRequestWithExponentialBackoff(request) : sendRequest(request);
+        }
+
+        @Override
+        public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+            OpenRouterRequest<?> request = exchange.request();
+            if (connectionSettings.directStreaming() && !request.hasCaptureOnSuccess() && !request.hasCaptureOnError()) {
+                streamingHttp.stream(request, exchange.handler(), useRetry);
+            } else if (useRetry) {
+                executeWithRetry(request);
+            } else {
+                execute(request);
+            }
+        }
+    }
+
     public static class OpenRouterChat {
         private final OpenRouterClient client;
 
@@ -0,0 +1,432 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClient;
+
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in flight per model and adapts the limit to what the upstream
+ * sustains (additive increase, multiplicative decrease).
+ *
+ * <p>Every model starts at the initial limit. A successful request that completes while the model
+ * is using its limit raises the limit by {@code 1/limit}, i.e. by about one per round trip. The
+ * limit shrinks when OpenRouter answers with 429 or 503 (by the overload ratio, at most once per
+ * average round trip). Requests over the limit wait in a queue; with {@link Builder#maxQueue(int)}
+ * or {@link Builder#queueTimeout(Duration)} they are rejected with a {@link LimitExceededException}
+ * instead.
+ *
+ * <p>With a finite {@link Builder#latencyTolerance(double)}, the limit also shrinks (by the latency
+ * ratio) when the recent latency grows beyond that many times the longer-term latency. The latency
+ * of a completion grows with its length, so it is compared per output token, and as the average of
+ * the last {@value #RECENT_SAMPLES} against the average of the last {@value #WINDOW_SAMPLES}
+ * requests; a single short or long completion moves neither far. Only responses that report their
+ * {@code usage} count, streams do not. Short completions still cost more per token than long ones,
+ * so the signal is off by default.
+ *
+ * <p>Requests that are not sent to a model (e.g. GET /key) are not limited. Install a limiter with
+ * {@link OpenRouterConnectionSettings.Builder#concurrencyLimiter(OpenRouterConcurrencyLimiter)};
+ * it is thread-safe.
+ */
+public final class OpenRouterConcurrencyLimiter {
+
+    /**
+     * Weight of a new observation in the average round trip.
+     */
+    private static final double ROUND_TRIP_SMOOTHING = 0.2;
+
+    /**
+     * Latencies per output token kept per model; their average is the baseline.
+     */
+    private static final int WINDOW_SAMPLES = 100;
+
+    /**
+     * Most recent latencies whose average is compared with the baseline.
+     */
+    private static final int RECENT_SAMPLES = 10;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double latencyRatio;
+    private final double overloadRatio;
+    private final int maxQueue;
+    private final Duration queueTimeout;
+    private final Map<String, ModelLimit> limits = new ConcurrentHashMap<>();
+
+    private OpenRouterConcurrencyLimiter(Builder builder) {
+        this.initialLimit = builder.initialLimit;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.latencyTolerance = builder.latencyTolerance;
+        this.latencyRatio = builder.latencyRatio;
+        this.overloadRatio = builder.overloadRatio;
+        this.maxQueue = builder.maxQueue;
+        this.queueTimeout = builder.queueTimeout;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A limiter with default settings.
+     */
+    public static OpenRouterConcurrencyLimiter create() {
+        return builder().build();
+    }
+
+    /**
+     * State of one model.
+     *
+     * @param limit           current limit of requests in flight
+     * @param inFlight        requests in flight
+     * @param queued          requests waiting for a slot
+     * @param rejected        requests rejected because the queue was full or the wait too long
+     * @param latency         average latency per output token of the last {@value #RECENT_SAMPLES} requests
+     * @param baselineLatency average latency per output token of the last {@value #WINDOW_SAMPLES} requests,
+     *                        the reference for the latency signal
+     */
+    public record Entry(int limit, int inFlight, int queued, long rejected, Duration latency, Duration baselineLatency) {
+    }
+
+    /**
+     * Thrown when a request is not admitted because the queue is full or it waited longer than
+     * the queue timeout.
+     */
+    public static final class LimitExceededException extends ApiClient.ApiClientException {
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Current limit of the given model (the initial limit if it was not used yet).
+     */
+    public int limit(String model) {
+        ModelLimit limit = limits.get(model);
+        return limit != null ? limit.entry().limit() : initialLimit;
+    }
+
+    /**
+     * State of every model seen so far, sorted by model id.
+     */
+    public Map<String, Entry> snapshot() {
+        Map<String, Entry> result = new TreeMap<>();
+        limits.forEach((model, limit) -> result.put(model, limit.entry()));
+        return result;
+    }
+
+    /**
+     * Waits for a slot of the request's model. The returned permit must be completed exactly once.
+     */
+    Permit acquire(OpenRouterRequest<?> request) {
+        String model = request.model();
+        if (model == null) {
+            return Permit.NONE;
+        }
+        ModelLimit limit = limits.computeIfAbsent(model, m -> new ModelLimit());
+        limit.acquire(model);
+        return new Permit(limit, System.nanoTime());
+    }
+
+    /**
+     * Output tokens reported by a response, 0 if it reports none.
+     */
+    static int outputTokens(Object response) {
+        return response instanceof OpenRouterChatCompletionResponse completion && completion.usage() != null
+                ? completion.usageSummary().completionTokens()
+                : 0;
+    }
+
+    /**
+     * A slot held by one request.
+     */
+    static class Permit {
+        static final Permit NONE = new Permit(null, 0) {
+            @Override
+            void complete(Throwable failure, int outputTokens, long elapsedNanos) {
+            }
+        };
+
+        private final ModelLimit limit;
+        private final long startNanos;
+
+        private Permit(ModelLimit limit, long startNanos) {
+            this.limit = limit;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Releases the slot and feeds the outcome into the limit.
+         *
+         * @param failure the exception the request ended with, null if it succeeded
+         */
+        void complete(Throwable failure) {
+            complete(failure, 0);
+        }
+
+        /**
+         * Releases the slot and feeds the outcome into the limit.
+         *
+         * @param failure      the exception the request ended with, null if it succeeded
+         * @param outputTokens output tokens of the response, 0 if unknown (no latency sample)
+         */
+        void complete(Throwable failure, int outputTokens) {
+            complete(failure, outputTokens, System.nanoTime() - startNanos);
+        }
+
+        void complete(Throwable failure, int outputTokens, long elapsedNanos) {
+            limit.release(failure, elapsedNanos, outputTokens);
+        }
+    }
+
+    private static boolean isOverload(Throwable failure) {
+        return failure instanceof ApiClient.HTTP_429_RateLimitOrQuotaException
+                || failure instanceof ApiClient.HTTP_503_ServerUnavailableException;
+    }
+
+    private final class ModelLimit {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private double limit = initialLimit;
+        private int inFlight;
+        private int queued;
+        private long rejected;
+        private double roundTripNanos;
+        private final double[] perToken = new double[WINDOW_SAMPLES]; // ring buffer
+        private int samples;
+        private double latencyNanos;
+        private double baselineNanos;
+        private long lastDecreaseNanos;
+
+        void acquire(String model) {
+            lock.lock();
+            try {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    return;
+                }
+                if (queued >= maxQueue) {
+                    rejected++;
+                    throw new LimitExceededException("Concurrency limit of " + (int) limit + " reached for " + model
+                            + " and " + queued + " requests are already waiting");
+                }
+                queued++;
+                try {
+                    long remaining = queueTimeout != null ? queueTimeout.toNanos() : 0;
+                    while (inFlight >= (int) limit) {
+                        if (queueTimeout == null) {
+                            available.await();
+                        } else if (remaining > 0) {
+                            remaining = available.awaitNanos(remaining);
+                        } else {
+                            rejected++;
+                            throw new LimitExceededException("Waited longer than " + queueTimeout
+                                    + " for a free slot of " + model);
+                        }
+                    }
+                    inFlight++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ApiClient.ApiClientException("Interrupted while waiting for a free slot of " + model);
+                } finally {
+                    queued--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(Throwable failure, long elapsedNanos, int outputTokens) {
+            lock.lock();
+            try {
+                boolean saturated = inFlight >= (int) limit;
+                inFlight--;
+                long now = System.nanoTime();
+                if (failure == null) {
+                    roundTripNanos = roundTripNanos == 0
+                            ? elapsedNanos
+                            : roundTripNanos + ROUND_TRIP_SMOOTHING * (elapsedNanos - roundTripNanos);
+                    if (outputTokens > 0) {
+                        recordLatency((double) elapsedNanos / outputTokens);
+                    }
+                    if (samples >= 2 * RECENT_SAMPLES && latencyNanos > latencyTolerance * baselineNanos) {
+                        decrease(latencyRatio, now);
+                    } else if (saturated) {
+                        limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    }
+                } else if (isOverload(failure)) {
+                    decrease(overloadRatio, now);
+                }
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void recordLatency(double nanosPerToken) {
+            perToken[samples % WINDOW_SAMPLES] = nanosPerToken;
+            samples++;
+            latencyNanos = average(Math.min(samples, RECENT_SAMPLES));
+            baselineNanos = average(Math.min(samples, WINDOW_SAMPLES));
+        }
+
+        /**
+         * Average of the {@code count} most recent latencies per token.
+         */
+        private double average(int count) {
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += perToken[Math.floorMod(samples - 1 - i, WINDOW_SAMPLES)];
+            }
+            return sum / count;
+        }
+
+        private void decrease(double ratio, long now) {
+            // Requests that were in flight together report the same overload; count it once per round trip
+            if (lastDecreaseNanos != 0 && now - lastDecreaseNanos < roundTripNanos) {
+                return;
+            }
+            limit = Math.max(minLimit, limit * ratio);
+            lastDecreaseNanos = now;
+        }
+
+        Entry entry() {
+            lock.lock();
+            try {
+                return new Entry(
+                        (int) limit,
+                        inFlight,
+                        queued,
+                        rejected,
+                        Duration.ofNanos(Math.round(latencyNanos)),
+                        Duration.ofNanos(Math.round(baselineNanos))
+                );
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public static final class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 500;
+        private double latencyTolerance = Double.POSITIVE_INFINITY;
+        private double latencyRatio = 0.9;
+        private double overloadRatio = 0.5;
+        private int maxQueue = Integer.MAX_VALUE;
+        private Duration queueTimeout;
+
+        private Builder() {
+        }
+
+        /**
+         * Limit a model starts with (default 20).
+         */
+        public Builder initialLimit(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("initialLimit must be at least 1: " + limit);
+            }
+            this.initialLimit = limit;
+            return this;
+        }
+
+        /**
+         * Lowest limit (default 1).
+         */
+        public Builder minLimit(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("minLimit must be at least 1: " + limit);
+            }
+            this.minLimit = limit;
+            return this;
+        }
+
+        /**
+         * Highest limit (default 500).
+         */
+        public Builder maxLimit(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("maxLimit must be at least 1: " + limit);
+            }
+            this.maxLimit = limit;
+            return this;
+        }
+
+        /**
+         * Factor by which the recent latency per output token may exceed the baseline before the
+         * limit is lowered, e.g. 2.0. The default, {@code Double.POSITIVE_INFINITY}, reacts to
+         * 429/503 only.
+         */
+        public Builder latencyTolerance(double tolerance) {
+            if (!(tolerance > 1.0)) {
+                throw new IllegalArgumentException("latencyTolerance must be greater than 1: " + tolerance);
+            }
+            this.latencyTolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Factor applied to the limit when the latency is too high (default 0.9).
+         */
+        public Builder latencyRatio(double ratio) {
+            this.latencyRatio = checkRatio("latencyRatio", ratio);
+            return this;
+        }
+
+        /**
+         * Factor applied to the limit on 429 and 503 responses (default 0.5).
+         */
+        public Builder overloadRatio(double ratio) {
+            this.overloadRatio = checkRatio("overloadRatio", ratio);
+            return this;
+        }
+
+        /**
+         * Number of requests that may wait for a slot per model; further requests are rejected
+         * right away (default unlimited). 0 rejects every request over the limit.
+         */
+        public Builder maxQueue(int max) {
+            if (max < 0) {
+                throw new IllegalArgumentException("maxQueue must not be negative: " + max);
+            }
+            this.maxQueue = max;
+            return this;
+        }
+
+        /**
+         * Longest time a request waits for a slot before it is rejected (default: no limit).
+         */
+        public Builder queueTimeout(Duration timeout) {
+            if (timeout != null && timeout.isNegative()) {
+                throw new IllegalArgumentException("queueTimeout must not be negative: " + timeout);
+            }
+            this.queueTimeout = timeout;
+            return this;
+        }
+
+        public OpenRouterConcurrencyLimiter build() {
+            if (minLimit > maxLimit) {
+                throw new IllegalArgumentException("minLimit " + minLimit + " exceeds maxLimit " + maxLimit);
+            }
+            initialLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+            return new OpenRouterConcurrencyLimiter(this);
+        }
+
+        private static double checkRatio(String name, double ratio) {
+            if (!(ratio > 0.0 && ratio < 1.0)) {
+                throw new IllegalArgumentException(name + " must be in (0, 1): " + ratio);
+            }
+            return ratio;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package de.entwicklertraining.openrouter4j;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Connection related settings of an {@link OpenRouterClient}.
+ *
+ * <p>api-base sends requests through a JDK {@code HttpClient}, which negotiates HTTP/2 with
+ * openrouter.ai and multiplexes concurrent requests as streams over a shared connection. These
+ * settings control how that connection is prepared and used:
+ * <ul>
+ *   <li>{@link Builder#warmUpOnConstruct(boolean)} establishes DNS, TCP and TLS in the background
+ *       as soon as the client is created, so the first real request does not pay for it.</li>
+ *   <li>{@link Builder#maxConcurrentStreams(int)} caps the number of requests in flight at the
+ *       same time; further requests wait for a free slot.</li>
+ *   <li>{@link Builder#httpVersion(HttpClient.Version)} selects the HTTP version of the
+ *       connections the library opens itself.</li>
+ *   <li>{@link Builder#concurrencyLimiter(OpenRouterConcurrencyLimiter)} adapts a per-model limit
+ *       of requests in flight to the observed latency and rate limiting.</li>
+ *   <li>{@link Builder#scheduler(OpenRouterRequestScheduler)} admits requests by priority, so
+ *       interactive requests do not wait behind batch work.</li>
+ *   <li>{@link Builder#tenantScheduler(OpenRouterTenantScheduler)} keeps one tenant from using up
+ *       the capacity of all others.</li>
+ *   <li>{@link Builder#modelCatalog(Path, Duration)} keeps the model catalog used to validate
+ *       requests locally in a file.</li>
+ *   <li>{@link Builder#generationCollector(OpenRouterGenerationCollector)} looks up the cost and
+ *       latency statistics of every chat completion in the background.</li>
+ *   <li>{@link Builder#keepAliveInterval(Duration)} sends a cheap request whenever the connection
+ *       has been idle for that long, so it is not closed by the server or intermediaries.</li>
+ * </ul>
+ */
+public final class OpenRouterConnectionSettings {
+
+    private final boolean warmUpOnConstruct;
+    private final int maxConcurrentStreams;
+    private final Duration keepAliveInterval;
+    private final Duration idleTimeout;
+    private final boolean directStreaming;
+    private final HttpClient.Version httpVersion;
+    private final OpenRouterConcurrencyLimiter concurrencyLimiter;
+    private final OpenRouterRequestScheduler scheduler;
+    private final OpenRouterTenantScheduler tenantScheduler;
+    private final Path modelCatalogFile;
+    private final Duration modelCatalogRefresh;
+    private final OpenRouterGenerationCollector generationCollector;
+
+    private OpenRouterConnectionSettings(Builder builder) {
+        this.warmUpOnConstruct = builder.warmUpOnConstruct;
+        this.maxConcurrentStreams = builder.maxConcurrentStreams;
+        this.keepAliveInterval = builder.keepAliveInterval;
+        this.idleTimeout = builder.idleTimeout;
+        this.directStreaming = builder.directStreaming;
+        this.httpVersion = builder.httpVersion;
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.scheduler = builder.scheduler;
+        this.tenantScheduler = builder.tenantScheduler;
+        this.modelCatalogFile = builder.modelCatalogFile;
+        this.modelCatalogRefresh = builder.modelCatalogRefresh;
+        this.generationCollector = builder.generationCollector;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Default settings: no warm-up, no keep-alive, unlimited concurrent streams.
+     */
+    public static OpenRouterConnectionSettings defaults() {
+        return builder().build();
+    }
+
+    public boolean warmUpOnConstruct() {
+        return warmUpOnConstruct;
+    }
+
+    /**
+     * Maximum number of requests in flight, 0 for unlimited.
+     */
+    public int maxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Idle time after which a keep-alive request is sent, or null if keep-alive is disabled.
+     */
+    public Duration keepAliveInterval() {
+        return keepAliveInterval;
+    }
+
+    /**
+     * Idle time after which the connection is assumed to be closed. Used to classify
+     * requests as warm or cold in {@link OpenRouterConnectionStats}.
+     */
+    public Duration idleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Whether raw JSON streams (streaming with tool calling) are read by the library's own SSE framer.
+     */
+    public boolean directStreaming() {
+        return directStreaming;
+    }
+
+    /**
+     * HTTP version requested for the connections the library opens itself.
+     */
+    public HttpClient.Version httpVersion() {
+        return httpVersion;
+    }
+
+    /**
+     * Adaptive per-model limit of requests in flight, or null if there is none.
+     */
+    public OpenRouterConcurrencyLimiter concurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Priority scheduler that admits requests, or null if there is none.
+     */
+    public OpenRouterRequestScheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Fair share and quotas per tenant, or null if there is none.
+     */
+    public OpenRouterTenantScheduler tenantScheduler() {
+        return tenantScheduler;
+    }
+
+    /**
+     * File the model catalog is kept in between runs, or null if it is only kept in memory.
+     */
+    public Path modelCatalogFile() {
+        return modelCatalogFile;
+    }
+
+    /**
+     * Age after which the model catalog is refreshed in the background.
+     */
+    public Duration modelCatalogRefresh() {
+        return modelCatalogRefresh;
+    }
+
+    /**
+     * Collector the ids of chat completion responses are submitted to, or null.
+     */
+    public OpenRouterGenerationCollector generationCollector() {
+        return generationCollector;
+    }
+
+    public static final class Builder {
+        private boolean warmUpOnConstruct;
+        private int maxConcurrentStreams;
+        private Duration keepAliveInterval;
+        private Duration idleTimeout = Duration.ofSeconds(60);
+        private boolean directStreaming;
+        private HttpClient.Version httpVersion = HttpClient.Version.HTTP_2;
+        private OpenRouterConcurrencyLimiter concurrencyLimiter;
+        private OpenRouterRequestScheduler scheduler;
+        private OpenRouterTenantScheduler tenantScheduler;
+        private Path modelCatalogFile;
+        private Duration modelCatalogRefresh = Duration.ofHours(1);
+        private OpenRouterGenerationCollector generationCollector;
+
+        private Builder() {
+        }
+
+        /**
+         * Runs {@link OpenRouterClient#warmUp()} in the background when the client is created.
+         */
+        public Builder warmUpOnConstruct(boolean warmUp) {
+            this.warmUpOnConstruct = warmUp;
+            return this;
+        }
+
+        /**
+         * Limits the number of concurrent requests (HTTP/2 streams). 0 means unlimited.
+         */
+        public Builder maxConcurrentStreams(int max) {
+            if (max < 0) {
+                throw new IllegalArgumentException("maxConcurrentStreams must not be negative: " + max);
+            }
+            this.maxConcurrentStreams = max;
+            return this;
+        }
+
+        /**
+         * Sends a keep-alive request whenever no request was sent for the given time.
+         * Null disables keep-alive.
+         */
+        public Builder keepAliveInterval(Duration interval) {
+            if (interval != null && (interval.isZero() || interval.isNegative())) {
+                throw new IllegalArgumentException("keepAliveInterval must be positive: " + interval);
+            }
+            this.keepAliveInterval = interval;
+            return this;
+        }
+
+        /**
+         * Idle time after which the connection is assumed to be closed (default 60 seconds).
+         */
+        public Builder idleTimeout(Duration timeout) {
+            this.idleTimeout = Objects.requireNonNull(timeout, "idleTimeout must not be null");
+            return this;
+        }
+
+        /**
+         * Reads raw JSON streams (streaming with tool calling) with the library's own HTTP/2 client and
+         * SSE framer, which hands the chunks to the parser as bytes instead of strings (default false).
+         * Retries follow the client's {@code ApiClientSettings} and errors map to the same exceptions as
+         * in api-base. Requests with capture callbacks always go through api-base, which invokes the
+         * callbacks.
+         */
+        public Builder directStreaming(boolean enabled) {
+            this.directStreaming = enabled;
+            return this;
+        }
+
+        /**
+         * HTTP version of the connections the library opens itself, i.e. for
+         * {@link #directStreaming(boolean)} (default {@code HTTP_2}, which falls back to HTTP/1.1 if the
+         * server does not offer HTTP/2). {@code HTTP_1_1} avoids multiplexing, e.g. behind proxies that
+         * handle HTTP/2 poorly. Requests sent through api-base use its own client, which also prefers
+         * HTTP/2.
+         */
+        public Builder httpVersion(HttpClient.Version version) {
+            this.httpVersion = Objects.requireNonNull(version, "httpVersion must not be null");
+            return this;
+        }
+
+        /**
+         * Limits the requests in flight per model with a limit that adapts to latency and 429/503
+         * responses. Applies in addition to {@link #maxConcurrentStreams(int)}. Null disables it.
+         */
+        public Builder concurrencyLimiter(OpenRouterConcurrencyLimiter limiter) {
+            this.concurrencyLimiter = limiter;
+            return this;
+        }
+
+        /**
+         * Admits requests by priority into a bounded number of slots before any other limit
+         * applies. Null disables it.
+         */
+        public Builder scheduler(OpenRouterRequestScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Shares the in-flight slots fairly between tenants and enforces their quotas. Applies
+         * after the {@link #scheduler(OpenRouterRequestScheduler)}. Null disables it.
+         */
+        public Builder tenantScheduler(OpenRouterTenantScheduler tenantScheduler) {
+            this.tenantScheduler = tenantScheduler;
+            return this;
+        }
+
+        /**
+         * Keeps the model catalog ({@link OpenRouterClient#models()}) in a file: the client loads
+         * it when it is created and refreshes it in the background once it is older than
+         * {@code refresh}. Requests are then validated against the catalog from the start.
+         *
+         * @param file    the cache file, or null to keep the catalog only in memory
+         * @param refresh age after which the catalog is refreshed (default one hour)
+         */
+        public Builder modelCatalog(Path file, Duration refresh) {
+            Objects.requireNonNull(refresh, "refresh must not be null");
+            if (refresh.isZero() || refresh.isNegative()) {
+                throw new IllegalArgumentException("refresh must be positive: " + refresh);
+            }
+            this.modelCatalogFile = file;
+            this.modelCatalogRefresh = refresh;
+            return this;
+        }
+
+        /**
+         * Submits the id of every chat completion response, streamed or not, to {@code collector},
+         * which looks up the generation statistics in the background. A collector without a client
+         * of its own uses the client these settings are passed to.
+         */
+        public Builder generationCollector(OpenRouterGenerationCollector collector) {
+            this.generationCollector = collector;
+            return this;
+        }
+
+        public OpenRouterConnectionSettings build() {
+            return new OpenRouterConnectionSettings(this);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package de.entwicklertraining.openrouter4j;
+
+/**
+ * A snapshot of the connection usage of an {@link OpenRouterClient}.
+ *
+ * <p>The JDK {@code HttpClient} does not report connection events, so connection reuse is not
+ * observed but <em>estimated</em> from timing: a request counts as warm if it was dispatched while
+ * another request was in flight or less than the configured idle timeout after the last use of a
+ * connection (request, warm-up or keep-alive), i.e. while a pooled connection is probably still
+ * open. Otherwise it counts as cold. The estimate is wrong when the server or a proxy closes
+ * connections earlier than the idle timeout, or when concurrent HTTP/1.1 requests open further
+ * connections.
+ *
+ * @param requests               requests dispatched (warm-ups and keep-alive pings excluded)
+ * @param estimatedWarmRequests  requests dispatched while a pooled connection was probably open
+ * @param estimatedColdRequests  requests that probably had to open a new connection
+ * @param queuedRequests  requests that had to wait for a free stream slot
+ * @param inFlight        requests currently in flight
+ * @param peakInFlight    highest number of requests in flight at the same time
+ * @param warmUps         completed warm-up requests
+ * @param keepAlivePings  keep-alive requests sent
+ */
+public record OpenRouterConnectionStats(
+        long requests,
+        long estimatedWarmRequests,
+        long estimatedColdRequests,
+        long queuedRequests,
+        int inFlight,
+        int peakInFlight,
+        long warmUps,
+        long keepAlivePings
+) {
+
+    /**
+     * Estimated share of requests that reused an open connection, between 0.0 and 1.0.
+     */
+    public double estimatedReuseRatio() {
+        return requests == 0 ? 0.0 : (double) estimatedWarmRequests / requests;
+    }
+}
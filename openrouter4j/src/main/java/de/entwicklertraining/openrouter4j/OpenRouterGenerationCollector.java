@@ -0,0 +1,389 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.openrouter4j.generation.OpenRouterGenerationRequest;
+import de.entwicklertraining.openrouter4j.generation.OpenRouterGenerationStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Looks up the statistics of completed generations (GET /generation) in the background and hands
+ * them to a listener, so that cost and latency accounting stays off the request path.
+ *
+ * <p>Generation ids are queued with {@link #submit(String)}; a client whose
+ * {@link OpenRouterConnectionSettings.Builder#generationCollector(OpenRouterGenerationCollector)}
+ * is set submits the id of every chat completion response (streamed or not) by itself. A
+ * dispatcher thread takes the ids once their {@link Builder#delay(Duration)} has passed and looks
+ * them up with at most {@link Builder#maxConcurrency(int)} requests at a time:
+ * <ul>
+ *   <li>a failed lookup (including the 404 OpenRouter answers until the statistics are ready) is
+ *       retried with exponential backoff, up to {@link Builder#maxAttempts(int)} attempts;</li>
+ *   <li>a 429 pauses all lookups with a growing backoff and retries the id without counting an
+ *       attempt;</li>
+ *   <li>when {@link Builder#maxQueued(int)} ids are pending, further ids are dropped.</li>
+ * </ul>
+ * Lookups are sent with {@link OpenRouterPriority#BATCH}. The collector is thread-safe; listeners
+ * are called on the lookup threads.
+ */
+public final class OpenRouterGenerationCollector implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenRouterGenerationCollector.class);
+
+    private static final int MAX_BACKOFF_SHIFT = 6;
+
+    private final Duration delay;
+    private final int maxAttempts;
+    private final int maxQueued;
+    private final long retryBackoffNanos;
+    private final Consumer<OpenRouterGenerationStats> listener;
+    private final BiConsumer<String, RuntimeException> failureListener;
+    private final Semaphore slots;
+    private final DelayQueue<Job> queue = new DelayQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger consecutiveRateLimits = new AtomicInteger();
+    private final LongAdder collected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final Object idle = new Object();
+    private volatile long pausedUntilNanos;
+    private volatile OpenRouterClient client;
+    private volatile Thread dispatcher;
+    private volatile boolean closed;
+
+    private OpenRouterGenerationCollector(Builder builder) {
+        this.client = builder.client;
+        this.delay = builder.delay;
+        this.maxAttempts = builder.maxAttempts;
+        this.maxQueued = builder.maxQueued;
+        this.retryBackoffNanos = builder.retryBackoff.toNanos();
+        this.listener = builder.listener;
+        this.failureListener = builder.failureListener;
+        this.slots = new Semaphore(builder.maxConcurrency);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Counters of the collector.
+     *
+     * @param pending     ids that are queued or being looked up
+     * @param collected   lookups delivered to the listener
+     * @param failed      ids given up after the last attempt
+     * @param dropped     ids not queued because the queue was full or the collector closed
+     * @param rateLimited lookups answered with 429
+     */
+    public record CollectorStats(int pending, long collected, long failed, long dropped, long rateLimited) {
+    }
+
+    /**
+     * Queues the lookup of a generation.
+     *
+     * @param generationId the {@code id} of a chat completion response; null is ignored
+     * @return false if the id was null or had to be dropped
+     */
+    public boolean submit(String generationId) {
+        if (generationId == null) {
+            return false;
+        }
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        if (pending.incrementAndGet() > maxQueued) {
+            pending.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        queue.add(new Job(generationId, 0, System.nanoTime() + delay.toNanos()));
+        ensureStarted();
+        return true;
+    }
+
+    public CollectorStats stats() {
+        return new CollectorStats(pending.get(), collected.sum(), failed.sum(), dropped.sum(), rateLimited.sum());
+    }
+
+    /**
+     * Waits until every queued id has been delivered or given up.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (idle) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the dispatcher. Ids that are still queued are discarded; call {@link #flush(Duration)}
+     * first to deliver them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread current = dispatcher;
+        if (current != null) {
+            current.interrupt();
+        }
+        int discarded = queue.size();
+        queue.clear();
+        if (discarded > 0) {
+            dropped.add(discarded);
+            finish(discarded);
+        }
+    }
+
+    /**
+     * Binds the collector to the client it looks generations up with, unless it already has one.
+     */
+    void attach(OpenRouterClient owner) {
+        if (client == null) {
+            client = owner;
+        }
+    }
+
+    private synchronized void ensureStarted() {
+        if (dispatcher == null && !closed) {
+            dispatcher = Thread.ofVirtual().name("openrouter-generation-collector").start(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        try {
+            while (!closed) {
+                Job job = queue.take();
+                long pause = pausedUntilNanos - System.nanoTime();
+                if (pause > 0) {
+                    queue.add(job.at(pausedUntilNanos));
+                    continue;
+                }
+                slots.acquire();
+                try {
+                    Thread.ofVirtual().name("openrouter-generation-lookup").start(() -> {
+                        try {
+                            lookUp(job);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    slots.release();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void lookUp(Job job) {
+        OpenRouterClient owner = client;
+        if (owner == null) {
+            fail(job, new IllegalStateException("Generation collector is not attached to a client"));
+            return;
+        }
+        OpenRouterGenerationStats stats;
+        try {
+            stats = owner.dispatch(OpenRouterGenerationRequest.builder(owner).id(job.id()).build(), false).stats();
+        } catch (ApiClient.HTTP_429_RateLimitOrQuotaException e) {
+            rateLimited.increment();
+            int shift = Math.min(consecutiveRateLimits.getAndIncrement(), MAX_BACKOFF_SHIFT);
+            pausedUntilNanos = System.nanoTime() + (retryBackoffNanos << shift);
+            requeue(job.at(pausedUntilNanos));
+            return;
+        } catch (RuntimeException e) {
+            if (job.attempt() + 1 >= maxAttempts) {
+                fail(job, e);
+            } else {
+                long backoff = retryBackoffNanos << Math.min(job.attempt(), MAX_BACKOFF_SHIFT);
+                requeue(new Job(job.id(), job.attempt() + 1, System.nanoTime() + backoff));
+            }
+            return;
+        }
+        consecutiveRateLimits.set(0);
+        collected.increment();
+        try {
+            if (listener != null) {
+                listener.accept(stats);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Generation stats listener failed for {}: {}", job.id(), e.getMessage());
+        } finally {
+            finish(1);
+        }
+    }
+
+    private void requeue(Job job) {
+        if (closed) {
+            dropped.increment();
+            finish(1);
+        } else {
+            queue.add(job);
+        }
+    }
+
+    private void fail(Job job, RuntimeException e) {
+        failed.increment();
+        try {
+            if (failureListener != null) {
+                failureListener.accept(job.id(), e);
+            } else {
+                logger.debug("Giving up generation stats lookup for {}: {}", job.id(), e.getMessage());
+            }
+        } catch (RuntimeException listenerError) {
+            logger.warn("Generation failure listener failed for {}: {}", job.id(), listenerError.getMessage());
+        } finally {
+            finish(1);
+        }
+    }
+
+    private void finish(int count) {
+        if (pending.addAndGet(-count) <= 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A queued lookup, due at {@code dueNanos}.
+     */
+    private record Job(String id, int attempt, long dueNanos) implements Delayed {
+
+        Job at(long nanos) {
+            return new Job(id, attempt, nanos);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Job) other).dueNanos);
+        }
+    }
+
+    public static final class Builder {
+        private OpenRouterClient client;
+        private Duration delay = Duration.ofSeconds(2);
+        private int maxConcurrency = 4;
+        private int maxAttempts = 5;
+        private int maxQueued = 10_000;
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private Consumer<OpenRouterGenerationStats> listener;
+        private BiConsumer<String, RuntimeException> failureListener;
+
+        private Builder() {
+        }
+
+        /**
+         * Client the lookups are sent with. Not needed when the collector is installed with
+         * {@link OpenRouterConnectionSettings.Builder#generationCollector(OpenRouterGenerationCollector)}.
+         */
+        public Builder client(OpenRouterClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Time between the submission of an id and its first lookup (default 2 seconds).
+         */
+        public Builder delay(Duration delay) {
+            Objects.requireNonNull(delay, "delay must not be null");
+            if (delay.isNegative()) {
+                throw new IllegalArgumentException("delay must not be negative: " + delay);
+            }
+            this.delay = delay;
+            return this;
+        }
+
+        /**
+         * Number of lookups in flight at the same time (default 4).
+         */
+        public Builder maxConcurrency(int max) {
+            if (max < 1) {
+                throw new IllegalArgumentException("maxConcurrency must be at least 1: " + max);
+            }
+            this.maxConcurrency = max;
+            return this;
+        }
+
+        /**
+         * Number of lookups per id before it is given up (default 5). 429 responses do not count.
+         */
+        public Builder maxAttempts(int max) {
+            if (max < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1: " + max);
+            }
+            this.maxAttempts = max;
+            return this;
+        }
+
+        /**
+         * Number of ids that may be pending; further ids are dropped (default 10,000).
+         */
+        public Builder maxQueued(int max) {
+            if (max < 1) {
+                throw new IllegalArgumentException("maxQueued must be at least 1: " + max);
+            }
+            this.maxQueued = max;
+            return this;
+        }
+
+        /**
+         * Backoff before the first retry; it doubles with every further attempt (default 1 second).
+         */
+        public Builder retryBackoff(Duration backoff) {
+            Objects.requireNonNull(backoff, "retryBackoff must not be null");
+            if (backoff.isZero() || backoff.isNegative()) {
+                throw new IllegalArgumentException("retryBackoff must be positive: " + backoff);
+            }
+            this.retryBackoff = backoff;
+            return this;
+        }
+
+        /**
+         * Receives the statistics of every generation that was looked up, e.g. to store them.
+         */
+        public Builder listener(Consumer<OpenRouterGenerationStats> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Receives the ids that were given up together with the last error. By default they are logged.
+         */
+        public Builder onFailure(BiConsumer<String, RuntimeException> failureListener) {
+            this.failureListener = failureListener;
+            return this;
+        }
+
+        public OpenRouterGenerationCollector build() {
+            return new OpenRouterGenerationCollector(this);
+        }
+    }
+}
@@ -18,10 +18,24 @@ public sealed interface OpenRouterJsonSchema permits OpenRouterJsonSchemaImpl {
 
     OpenRouterJsonSchema items(OpenRouterJsonSchema itemSchema);
 
+    /**
+     * Limits the number of items of an array schema.
+     */
+    OpenRouterJsonSchema maxItems(int max);
+
     OpenRouterJsonSchema enumValues(String... values);
 
     OpenRouterJsonSchema additionalProperties(boolean allowed);
 
+    /**
+     * Checks a parsed JSON value (JSONObject, JSONArray, String, Number, Boolean) against this
+     * schema: types, required and additional properties, array items and their maximum, enums
+     * and anyOf.
+     */
+    default boolean matches(Object value) {
+        return OpenRouterJsonSchemaImpl.matches(toJson(), value);
+    }
+
     static OpenRouterJsonSchema objectSchema() {
         return new OpenRouterJsonSchemaImpl("object");
     }
@@ -81,6 +95,7 @@ final class OpenRouterJsonSchemaImpl implements OpenRouterJsonSchema {
     private final JSONArray required;
     private final JSONArray enumValues;
     private OpenRouterJsonSchema itemsSchema;
+    private Integer maxItems;
     private final JSONArray anyOfSchemas;
     private boolean additionalProperties;
     private boolean anyOfMode;
@@ -129,6 +144,21 @@ final class OpenRouterJsonSchemaImpl implements OpenRouterJsonSchema {
         return this;
     }
 
+    @Override
+    public OpenRouterJsonSchema maxItems(int max) {
+        if (anyOfMode) {
+            throw new IllegalStateException("Cannot set maxItems in anyOf mode.");
+        }
+        if (!"array".equals(type)) {
+            throw new IllegalStateException("maxItems can only be set for array schemas.");
+        }
+        if (max < 0) {
+            throw new IllegalArgumentException("maxItems must not be negative: " + max);
+        }
+        this.maxItems = max;
+        return this;
+    }
+
     @Override
     public OpenRouterJsonSchema enumValues(String... values) {
         if (anyOfMode) {
@@ -178,6 +208,9 @@ final class OpenRouterJsonSchemaImpl implements OpenRouterJsonSchema {
         if ("array".equals(type) && itemsSchema != null) {
             obj.put("items", itemsSchema.toJson());
         }
+        if (maxItems != null) {
+            obj.put("maxItems", maxItems);
+        }
 
         // OpenRouter does support additionalProperties
         if ("object".equals(type)) {
@@ -190,6 +223,86 @@ final class OpenRouterJsonSchemaImpl implements OpenRouterJsonSchema {
         return obj;
     }
 
+    static boolean matches(JSONObject schema, Object value) {
+        JSONArray anyOf = schema.optJSONArray("anyOf");
+        if (anyOf != null) {
+            for (int i = 0; i < anyOf.length(); i++) {
+                if (matches(anyOf.getJSONObject(i), value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String schemaType = schema.optString("type", null);
+        if (schemaType == null) {
+            return true;
+        }
+        return switch (schemaType) {
+            case "object" -> value instanceof JSONObject obj && matchesObject(schema, obj);
+            case "array" -> value instanceof JSONArray arr && matchesArray(schema, arr);
+            case "string" -> value instanceof String str && matchesEnum(schema, str);
+            case "number" -> value instanceof Number;
+            case "integer" -> value instanceof Integer || value instanceof Long
+                    || value instanceof java.math.BigInteger
+                    || (value instanceof Number num && num.doubleValue() == Math.rint(num.doubleValue()));
+            case "boolean" -> value instanceof Boolean;
+            case "null" -> JSONObject.NULL.equals(value);
+            default -> true;
+        };
+    }
+
+    private static boolean matchesObject(JSONObject schema, JSONObject value) {
+        JSONObject props = schema.optJSONObject("properties");
+        JSONArray req = schema.optJSONArray("required");
+        if (req != null) {
+            for (int i = 0; i < req.length(); i++) {
+                if (!value.has(req.getString(i))) {
+                    return false;
+                }
+            }
+        }
+        for (String key : value.keySet()) {
+            JSONObject propSchema = props != null ? props.optJSONObject(key) : null;
+            if (propSchema == null) {
+                if (!schema.optBoolean("additionalProperties", true)) {
+                    return false;
+                }
+            } else if (!matches(propSchema, value.get(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesArray(JSONObject schema, JSONArray value) {
+        if (value.length() > schema.optInt("maxItems", Integer.MAX_VALUE)) {
+            return false;
+        }
+        JSONObject itemSchema = schema.optJSONObject("items");
+        if (itemSchema != null) {
+            for (int i = 0; i < value.length(); i++) {
+                if (!matches(itemSchema, value.get(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesEnum(JSONObject schema, String value) {
+        JSONArray allowed = schema.optJSONArray("enum");
+        if (allowed == null) {
+            return true;
+        }
+        for (int i = 0; i < allowed.length(); i++) {
+            if (value.equals(allowed.optString(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     void setAnyOfMode(boolean mode) {
         this.anyOfMode = mode;
     }
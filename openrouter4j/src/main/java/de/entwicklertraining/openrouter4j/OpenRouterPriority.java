@@ -0,0 +1,23 @@
+package de.entwicklertraining.openrouter4j;
+
+/**
+ * Priority class of a request, used by the {@link OpenRouterRequestScheduler}.
+ * Declared from highest to lowest priority.
+ */
+public enum OpenRouterPriority {
+
+    /**
+     * A user is waiting for the answer.
+     */
+    INTERACTIVE,
+
+    /**
+     * The default for requests that do not set a priority.
+     */
+    NORMAL,
+
+    /**
+     * Background work that can wait or be dropped under overload.
+     */
+    BATCH
+}
@@ -31,6 +31,28 @@ public abstract class OpenRouterRequest<T extends OpenRouterResponse<?>> extends
     @Override
     public abstract T createResponse(String responseBody);
 
+    /**
+     * Das Modell, an das der Request geht, oder null für Endpunkte ohne Modell (z.B. GET /key).
+     * Wird vom {@link OpenRouterConcurrencyLimiter} als Schlüssel verwendet.
+     */
+    public String model() {
+        return null;
+    }
+
+    /**
+     * Die Priorität, mit der der {@link OpenRouterRequestScheduler} den Request einplant.
+     */
+    public OpenRouterPriority priority() {
+        return OpenRouterPriority.NORMAL;
+    }
+
+    /**
+     * Der Mandant, dem der Request für den {@link OpenRouterTenantScheduler} zugerechnet wird, oder null.
+     */
+    public String tenant() {
+        return null;
+    }
+
     // Da wir isBinaryResponse, getBodyBytes etc. ggf. überschreiben können,
     // lassen wir sie hier unverändert. Standard-Implementierung reicht oft aus.
 }
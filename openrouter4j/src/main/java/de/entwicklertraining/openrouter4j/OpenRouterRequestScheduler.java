@@ -0,0 +1,350 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClient;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits requests into a bounded number of in-flight slots by {@link OpenRouterPriority}, so that
+ * interactive traffic does not queue behind batch jobs sharing the same client.
+ *
+ * <p>Every priority has its own FIFO lane. When a slot frees up, the next request is taken from the
+ * highest non-empty lane (strict priority), or, once {@link Builder#weight(OpenRouterPriority, int)}
+ * is set, by smooth weighted round-robin over the non-empty lanes, which keeps low lanes from
+ * starving. Under overload, requests are shed from the bottom up:
+ * <ul>
+ *   <li>a request that waited longer than its lane's {@link Builder#maxQueueTime(OpenRouterPriority, Duration)}
+ *       gives up,</li>
+ *   <li>when the queue is full, an arriving request displaces the newest request of a lower lane,
+ *       or is rejected if there is none.</li>
+ * </ul>
+ * Shed requests fail with a {@link RequestShedException}. Install a scheduler with
+ * {@link OpenRouterConnectionSettings.Builder#scheduler(OpenRouterRequestScheduler)}; it is thread-safe.
+ */
+public final class OpenRouterRequestScheduler {
+
+    private static final OpenRouterPriority[] PRIORITIES = OpenRouterPriority.values();
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final boolean weighted;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Lane[] lanes = new Lane[PRIORITIES.length];
+    private int inFlight;
+    private int queued;
+
+    private OpenRouterRequestScheduler(Builder builder) {
+        this.maxInFlight = builder.maxInFlight;
+        this.maxQueued = builder.maxQueued;
+        this.weighted = !builder.weights.isEmpty();
+        for (OpenRouterPriority priority : PRIORITIES) {
+            lanes[priority.ordinal()] = new Lane(
+                    builder.weights.getOrDefault(priority, 1),
+                    builder.maxQueueTimes.get(priority)
+            );
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * State of one lane.
+     *
+     * @param queued           requests waiting
+     * @param admitted         requests admitted so far
+     * @param shed             requests shed so far (queue full, displaced or waited too long)
+     * @param averageQueueTime average wait of admitted requests
+     * @param maxQueueTime     longest wait of an admitted request
+     */
+    public record LaneStats(int queued, long admitted, long shed, Duration averageQueueTime, Duration maxQueueTime) {
+    }
+
+    /**
+     * Thrown when a request is shed instead of being admitted.
+     */
+    public static final class RequestShedException extends ApiClient.ApiClientException {
+        public RequestShedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Requests currently admitted.
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * State of every lane.
+     */
+    public Map<OpenRouterPriority, LaneStats> snapshot() {
+        Map<OpenRouterPriority, LaneStats> result = new EnumMap<>(OpenRouterPriority.class);
+        lock.lock();
+        try {
+            for (OpenRouterPriority priority : PRIORITIES) {
+                result.put(priority, lanes[priority.ordinal()].stats());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Waits until the request is admitted. Every admission must be followed by one {@link #release()}.
+     *
+     * @throws RequestShedException if the request is shed
+     */
+    void acquire(OpenRouterRequest<?> request) {
+        OpenRouterPriority priority = Objects.requireNonNullElse(request.priority(), OpenRouterPriority.NORMAL);
+        Lane lane = lanes[priority.ordinal()];
+        lock.lock();
+        try {
+            if (inFlight < maxInFlight) {
+                inFlight++;
+                lane.recordAdmitted(0);
+                return;
+            }
+            if (queued >= maxQueued && !shedBelow(priority)) {
+                lane.shed++;
+                throw new RequestShedException("Request queue is full (" + queued + " waiting), "
+                        + priority + " request rejected");
+            }
+            Ticket ticket = new Ticket(lock.newCondition(), System.nanoTime());
+            lane.queue.addLast(ticket);
+            queued++;
+            awaitAdmission(ticket, lane, priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot of an admitted request and admits the next one.
+     */
+    void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            admitWaiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitAdmission(Ticket ticket, Lane lane, OpenRouterPriority priority) {
+        long deadline = lane.maxQueueTimeNanos > 0 ? ticket.enqueuedNanos + lane.maxQueueTimeNanos : 0;
+        try {
+            while (ticket.state == State.WAITING) {
+                if (deadline == 0) {
+                    ticket.ready.await();
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    lane.queue.remove(ticket);
+                    queued--;
+                    lane.shed++;
+                    throw new RequestShedException(priority + " request waited longer than "
+                            + Duration.ofNanos(lane.maxQueueTimeNanos) + " for a free slot");
+                }
+                ticket.ready.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            if (ticket.state == State.WAITING) {
+                lane.queue.remove(ticket);
+                queued--;
+            } else if (ticket.state == State.ADMITTED) {
+                inFlight--;
+                admitWaiting();
+            }
+            Thread.currentThread().interrupt();
+            throw new ApiClient.ApiClientException("Interrupted while waiting for a free request slot");
+        }
+        if (ticket.state == State.SHED) {
+            throw new RequestShedException(priority + " request displaced by a higher priority request");
+        }
+    }
+
+    /**
+     * Drops the newest request of the lowest non-empty lane below the given priority.
+     */
+    private boolean shedBelow(OpenRouterPriority priority) {
+        for (int i = PRIORITIES.length - 1; i > priority.ordinal(); i--) {
+            Ticket victim = lanes[i].queue.pollLast();
+            if (victim != null) {
+                queued--;
+                lanes[i].shed++;
+                victim.state = State.SHED;
+                victim.ready.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void admitWaiting() {
+        while (inFlight < maxInFlight && queued > 0) {
+            Lane lane = nextLane();
+            Ticket ticket = lane.queue.pollFirst();
+            queued--;
+            inFlight++;
+            lane.recordAdmitted(System.nanoTime() - ticket.enqueuedNanos);
+            ticket.state = State.ADMITTED;
+            ticket.ready.signal();
+        }
+    }
+
+    private Lane nextLane() {
+        if (!weighted) {
+            for (Lane lane : lanes) {
+                if (!lane.queue.isEmpty()) {
+                    return lane;
+                }
+            }
+            throw new IllegalStateException("No request waiting");
+        }
+        // Smooth weighted round-robin: every waiting lane earns its weight, the richest one pays the total
+        Lane best = null;
+        int total = 0;
+        for (Lane lane : lanes) {
+            if (lane.queue.isEmpty()) {
+                continue;
+            }
+            lane.credit += lane.weight;
+            total += lane.weight;
+            if (best == null || lane.credit > best.credit) {
+                best = lane;
+            }
+        }
+        if (best == null) {
+            throw new IllegalStateException("No request waiting");
+        }
+        best.credit -= total;
+        return best;
+    }
+
+    private enum State { WAITING, ADMITTED, SHED }
+
+    private static final class Ticket {
+        final Condition ready;
+        final long enqueuedNanos;
+        State state = State.WAITING;
+
+        Ticket(Condition ready, long enqueuedNanos) {
+            this.ready = ready;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private static final class Lane {
+        final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        final int weight;
+        final long maxQueueTimeNanos;
+        int credit;
+        long admitted;
+        long shed;
+        long totalQueueNanos;
+        long maxQueueNanos;
+
+        Lane(int weight, Duration maxQueueTime) {
+            this.weight = weight;
+            this.maxQueueTimeNanos = maxQueueTime != null ? maxQueueTime.toNanos() : 0;
+        }
+
+        void recordAdmitted(long queueNanos) {
+            admitted++;
+            totalQueueNanos += queueNanos;
+            maxQueueNanos = Math.max(maxQueueNanos, queueNanos);
+        }
+
+        LaneStats stats() {
+            return new LaneStats(
+                    queue.size(),
+                    admitted,
+                    shed,
+                    Duration.ofNanos(admitted == 0 ? 0 : totalQueueNanos / admitted),
+                    Duration.ofNanos(maxQueueNanos)
+            );
+        }
+    }
+
+    public static final class Builder {
+        private int maxInFlight = 64;
+        private int maxQueued = Integer.MAX_VALUE;
+        private final Map<OpenRouterPriority, Integer> weights = new EnumMap<>(OpenRouterPriority.class);
+        private final Map<OpenRouterPriority, Duration> maxQueueTimes = new EnumMap<>(OpenRouterPriority.class);
+
+        private Builder() {
+        }
+
+        /**
+         * Number of requests admitted at the same time (default 64).
+         */
+        public Builder maxInFlight(int max) {
+            if (max < 1) {
+                throw new IllegalArgumentException("maxInFlight must be at least 1: " + max);
+            }
+            this.maxInFlight = max;
+            return this;
+        }
+
+        /**
+         * Number of requests that may wait over all lanes (default unlimited).
+         */
+        public Builder maxQueued(int max) {
+            if (max < 0) {
+                throw new IllegalArgumentException("maxQueued must not be negative: " + max);
+            }
+            this.maxQueued = max;
+            return this;
+        }
+
+        /**
+         * Switches from strict priority to weighted round-robin and sets the share of the given
+         * lane. Lanes without a weight get 1.
+         */
+        public Builder weight(OpenRouterPriority priority, int weight) {
+            Objects.requireNonNull(priority, "priority must not be null");
+            if (weight < 1) {
+                throw new IllegalArgumentException("weight must be at least 1: " + weight);
+            }
+            weights.put(priority, weight);
+            return this;
+        }
+
+        /**
+         * Longest time a request of the given lane waits before it is shed (default: no limit).
+         */
+        public Builder maxQueueTime(OpenRouterPriority priority, Duration maxQueueTime) {
+            Objects.requireNonNull(priority, "priority must not be null");
+            if (maxQueueTime == null) {
+                maxQueueTimes.remove(priority);
+                return this;
+            }
+            if (maxQueueTime.isZero() || maxQueueTime.isNegative()) {
+                throw new IllegalArgumentException("maxQueueTime must be positive: " + maxQueueTime);
+            }
+            maxQueueTimes.put(priority, maxQueueTime);
+            return this;
+        }
+
+        public OpenRouterRequestScheduler build() {
+            return new OpenRouterRequestScheduler(this);
+        }
+    }
+}
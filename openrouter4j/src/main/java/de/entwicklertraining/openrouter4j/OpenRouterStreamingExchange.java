@@ -0,0 +1,54 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A streaming request as seen by an {@link OpenRouterTransport}: the handler that receives the raw
+ * JSON chunks, and a factory that builds the request for a given handler.
+ *
+ * <p>api-base binds the streaming handler to the request when it is built. A transport that wants to
+ * observe or alter the chunks (e.g. for recording) therefore cannot wrap the handler of an existing
+ * request; it calls {@link #withHandler(StreamingResponseHandler)} instead, which builds the request
+ * anew for the wrapping handler.
+ */
+public final class OpenRouterStreamingExchange {
+
+    private final Function<StreamingResponseHandler<String>, ? extends OpenRouterRequest<?>> requestFactory;
+    private final StreamingResponseHandler<String> handler;
+    private OpenRouterRequest<?> request;
+
+    public OpenRouterStreamingExchange(
+            Function<StreamingResponseHandler<String>, ? extends OpenRouterRequest<?>> requestFactory,
+            StreamingResponseHandler<String> handler
+    ) {
+        this.requestFactory = Objects.requireNonNull(requestFactory, "requestFactory must not be null");
+        this.handler = Objects.requireNonNull(handler, "handler must not be null");
+    }
+
+    /**
+     * The handler that receives every SSE data chunk as raw JSON string.
+     */
+    public StreamingResponseHandler<String> handler() {
+        return handler;
+    }
+
+    /**
+     * The request, built with {@link #handler()} as its streaming handler.
+     */
+    public synchronized OpenRouterRequest<?> request() {
+        if (request == null) {
+            request = requestFactory.apply(handler);
+        }
+        return request;
+    }
+
+    /**
+     * Returns an exchange for the same request that delivers the chunks to {@code newHandler}.
+     */
+    public OpenRouterStreamingExchange withHandler(StreamingResponseHandler<String> newHandler) {
+        return new OpenRouterStreamingExchange(requestFactory, newHandler);
+    }
+}
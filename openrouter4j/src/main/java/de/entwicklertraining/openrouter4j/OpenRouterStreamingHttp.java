@@ -0,0 +1,233 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.streaming.OpenRouterChunkSink;
+import de.entwicklertraining.openrouter4j.streaming.OpenRouterSseFramer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Executes raw JSON streaming requests with its own HTTP/2 client and feeds the response bytes through
+ * an {@link OpenRouterSseFramer}. Handlers implementing {@link OpenRouterChunkSink} receive the chunks
+ * as byte slices, all others as decoded strings.
+ *
+ * <p>Only used when {@link OpenRouterConnectionSettings#directStreaming()} is enabled. Base URL and
+ * headers are read from the client for every request; retries follow the client's
+ * {@link ApiClientSettings} and failed responses map to the exceptions registered with the client.
+ */
+final class OpenRouterStreamingHttp {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_ERROR_BODY_BYTES = 64 * 1024;
+
+    private final OpenRouterClient client;
+    private volatile HttpClient httpClient;
+
+    OpenRouterStreamingHttp(OpenRouterClient client) {
+        this.client = client;
+    }
+
+    void stream(OpenRouterRequest<?> request, StreamingResponseHandler<String> handler, boolean useRetry) {
+        long deadline = request.getMaxExecutionTimeInSeconds() > 0
+                ? System.nanoTime() + Duration.ofSeconds(request.getMaxExecutionTimeInSeconds()).toNanos()
+                : Long.MAX_VALUE;
+        HttpResponse<InputStream> response = connect(request, useRetry);
+
+        OpenRouterChunkSink sink = handler instanceof OpenRouterChunkSink chunkSink
+                ? chunkSink
+                : (data, offset, length) -> handler.onData(new String(data, offset, length, StandardCharsets.UTF_8));
+        OpenRouterSseFramer framer = new OpenRouterSseFramer(sink);
+        Supplier<Boolean> canceled = request.getIsCanceledSupplier();
+
+        handler.onStreamStart();
+        // Closing the body before the end of the stream cancels the HTTP/2 stream. The watches close it
+        // from the watchdog thread, which also ends a read that is waiting for the next chunk: on
+        // cancellation, and at the deadline, as the request timeout only covers the response headers.
+        InputStream body = response.body();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        OpenRouterCancellation.Watch watch = OpenRouterCancellation.watch(canceled, () -> closeQuietly(body));
+        OpenRouterCancellation.Watch timeout = OpenRouterCancellation.at(deadline, () -> {
+            timedOut.set(true);
+            closeQuietly(body);
+        });
+        try (body; watch; timeout) {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int read;
+            while (!framer.isDone() && (read = body.read(buffer)) >= 0) {
+                framer.feed(buffer, 0, read);
+                if (isCanceled(handler, canceled)) {
+                    return;
+                }
+                if (System.nanoTime() > deadline) {
+                    timedOut.set(true);
+                    break;
+                }
+            }
+            if (isCanceled(handler, canceled)) {
+                return;
+            }
+            if (timedOut.get() && !framer.isDone()) {
+                throw timedOut(request, handler);
+            }
+            framer.finish();
+        } catch (IOException e) {
+            // A read that fails because the request was canceled (body closed, thread interrupted) is not an error
+            if (isCanceled(handler, canceled)) {
+                return;
+            }
+            if (timedOut.get()) {
+                throw timedOut(request, handler);
+            }
+            handler.onError(e);
+            throw new ApiClient.ApiClientException("Streaming response failed: " + e.getMessage(), e);
+        }
+        handler.onComplete();
+    }
+
+    /**
+     * Opens the connection of this client ahead of the first streaming request (DNS, TCP, TLS) by
+     * sending the cheap GET {@code request}; the response body is discarded.
+     */
+    void warmUp(OpenRouterRequest<?> request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(client.getBaseUrl() + request.getRelativeUrl()))
+                .timeout(Duration.ofSeconds(30))
+                .GET();
+        client.globalHeaders().forEach(builder::header);
+        HttpResponse<Void> response;
+        try {
+            response = httpClient().send(builder.build(), HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            throw new ApiClient.ApiClientException("Warm-up request failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiClient.ApiClientException("Interrupted while sending warm-up request");
+        }
+        if (response.statusCode() >= 300) {
+            throw client.exceptionForStatus(response.statusCode(), "");
+        }
+    }
+
+    private static ApiClient.ApiTimeoutException timedOut(OpenRouterRequest<?> request,
+                                                          StreamingResponseHandler<String> handler) {
+        ApiClient.ApiTimeoutException e = new ApiClient.ApiTimeoutException(
+                "Streaming request exceeded the maximum execution time of "
+                        + request.getMaxExecutionTimeInSeconds() + " seconds");
+        handler.onError(e);
+        return e;
+    }
+
+    private static boolean isCanceled(StreamingResponseHandler<String> handler, Supplier<Boolean> canceled) {
+        return Thread.currentThread().isInterrupted()
+                || handler.shouldCancel()
+                || (canceled != null && Boolean.TRUE.equals(canceled.get()));
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // The stream is abandoned anyway
+        }
+    }
+
+    private HttpResponse<InputStream> connect(OpenRouterRequest<?> request, boolean useRetry) {
+        HttpRequest httpRequest = buildRequest(request);
+        ApiClientSettings settings = client.clientSettings();
+        for (int attempt = 0; ; attempt++) {
+            boolean lastAttempt = !useRetry || attempt >= settings.getMaxRetries();
+            HttpResponse<InputStream> response;
+            try {
+                response = httpClient().send(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (IOException e) {
+                if (lastAttempt) {
+                    throw new ApiClient.ApiClientException("Streaming request failed: " + e.getMessage(), e);
+                }
+                sleep(backoffMillis(settings, attempt));
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ApiClient.ApiClientException("Interrupted while sending streaming request");
+            }
+
+            int status = response.statusCode();
+            if (status < 300) {
+                return response;
+            }
+            String body = readErrorBody(response);
+            if (!client.isRetryableStatus(status) || lastAttempt) {
+                throw client.exceptionForStatus(status, body);
+            }
+            long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(0) * 1000;
+            sleep(Math.max(backoffMillis(settings, attempt), retryAfter));
+        }
+    }
+
+    private static long backoffMillis(ApiClientSettings settings, int attempt) {
+        double delay = settings.getInitialDelayMs() * Math.pow(settings.getExponentialBase(), attempt);
+        if (settings.isUseJitter()) {
+            delay *= 0.5 + ThreadLocalRandom.current().nextDouble() * 0.5;
+        }
+        return (long) Math.min(delay, settings.getMaxDelayMs());
+    }
+
+    private HttpRequest buildRequest(OpenRouterRequest<?> request) {
+        byte[] body = request.getBodyBytes();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(client.getBaseUrl() + request.getRelativeUrl()))
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .method(request.getHttpMethod(), body != null
+                        ? HttpRequest.BodyPublishers.ofByteArray(body)
+                        : HttpRequest.BodyPublishers.ofString(request.getBody()));
+        client.globalHeaders().forEach(builder::header);
+        if (request.getMaxExecutionTimeInSeconds() > 0) {
+            builder.timeout(Duration.ofSeconds(request.getMaxExecutionTimeInSeconds()));
+        }
+        return builder.build();
+    }
+
+    private HttpClient httpClient() {
+        HttpClient result = httpClient;
+        if (result == null) {
+            synchronized (this) {
+                result = httpClient;
+                if (result == null) {
+                    result = HttpClient.newBuilder()
+                            .version(client.connectionSettings().httpVersion())
+                            .connectTimeout(Duration.ofSeconds(30))
+                            .build();
+                    httpClient = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String readErrorBody(HttpResponse<InputStream> response) {
+        try (InputStream in = response.body()) {
+            return new String(in.readNBytes(MAX_ERROR_BODY_BYTES), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiClient.ApiClientException("Interrupted while waiting to retry a streaming request");
+        }
+    }
+}
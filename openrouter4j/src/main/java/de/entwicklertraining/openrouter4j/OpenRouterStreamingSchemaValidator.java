@@ -0,0 +1,486 @@
+package de.entwicklertraining.openrouter4j;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Checks JSON text against an {@link OpenRouterJsonSchema} while it is still being generated,
+ * e.g. the content deltas of a streamed structured output. {@link #accept(CharSequence)} takes the
+ * text in pieces of any size and reports the first definitive violation, that is one that no
+ * continuation of the text can repair:
+ * <ul>
+ *   <li>text before the JSON value (prose, markdown fences) or after it,</li>
+ *   <li>a value of the wrong type, known from its first character,</li>
+ *   <li>a property that is not allowed ({@code additionalProperties: false}) or a string that is
+ *       not one of its enum values, known from the first character that rules out all of them,</li>
+ *   <li>an array with more items than its {@code maxItems},</li>
+ *   <li>a missing required property, once its object is closed,</li>
+ *   <li>a fraction for an integer and invalid JSON.</li>
+ * </ul>
+ * An incomplete value is not a violation. Where several {@code anyOf} variants accept the type of a
+ * value, the value is not checked any further.
+ *
+ * <p>Not thread-safe; use one validator per text.
+ */
+public final class OpenRouterStreamingSchemaValidator {
+
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private enum State { FIRST, NEXT, COLON, VALUE, AFTER_VALUE }
+
+    private enum Scalar { STRING, NUMBER, LITERAL }
+
+    /**
+     * An open object or array.
+     */
+    private static final class Frame {
+        final boolean object;
+        final JSONObject schema;
+        final Set<String> keys = new HashSet<>();
+        State state = State.FIRST;
+        String key;
+        int items;
+
+        Frame(boolean object, JSONObject schema) {
+            this.object = object;
+            this.schema = schema;
+        }
+    }
+
+    private final JSONObject schema;
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private boolean done;
+    private long position;
+    private String violation;
+
+    // The scalar being read, if any
+    private Scalar scalar;
+    private JSONObject scalarSchema;
+    private boolean key;
+    private List<String> allowed; // values the string may take, or null for any
+    private final StringBuilder text = new StringBuilder();
+    private boolean escape;
+    private int unicodeDigits = -1;
+    private int unicode;
+    private String literal;
+
+    public OpenRouterStreamingSchemaValidator(OpenRouterJsonSchema schema) {
+        this.schema = schema.toJson();
+    }
+
+    /**
+     * Checks the next piece of the text.
+     *
+     * @return the first violation (this or an earlier piece), or null if the text can still match
+     */
+    public String accept(CharSequence chunk) {
+        for (int i = 0; i < chunk.length() && violation == null; i++) {
+            position++;
+            char c = chunk.charAt(i);
+            if (scalar == null || !continueScalar(c)) {
+                if (violation == null) {
+                    structural(c);
+                }
+            }
+        }
+        return violation;
+    }
+
+    /**
+     * The first violation found so far, or null.
+     */
+    public String violation() {
+        return violation;
+    }
+
+    /**
+     * Whether the JSON value is complete.
+     */
+    public boolean isComplete() {
+        return done;
+    }
+
+    private void structural(char c) {
+        if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            return;
+        }
+        Frame frame = frames.peek();
+        if (frame == null) {
+            if (done) {
+                fail(false, "text after the JSON value");
+            } else {
+                startValue(c, schema);
+            }
+        } else if (frame.object) {
+            switch (frame.state) {
+                case FIRST, NEXT -> {
+                    if (c == '"') {
+                        startString(true, frame.schema != null && !frame.schema.optBoolean("additionalProperties", true)
+                                ? propertyNames(frame.schema) : null, null);
+                    } else if (c == '}' && frame.state == State.FIRST) {
+                        closeObject(frame);
+                    } else {
+                        fail(false, "expected a property name but got '" + c + "'");
+                    }
+                }
+                case COLON -> {
+                    if (c == ':') {
+                        frame.state = State.VALUE;
+                    } else {
+                        fail(true, "expected ':' but got '" + c + "'");
+                    }
+                }
+                case VALUE -> {
+                    frame.state = State.AFTER_VALUE;
+                    JSONObject properties = frame.schema != null ? frame.schema.optJSONObject("properties") : null;
+                    startValue(c, properties != null ? properties.optJSONObject(frame.key) : null);
+                }
+                case AFTER_VALUE -> {
+                    if (c == ',') {
+                        frame.state = State.NEXT;
+                    } else if (c == '}') {
+                        closeObject(frame);
+                    } else {
+                        fail(true, "expected ',' or '}' but got '" + c + "'");
+                    }
+                }
+            }
+        } else {
+            if (frame.state == State.AFTER_VALUE) {
+                if (c == ',') {
+                    frame.state = State.VALUE;
+                } else if (c == ']') {
+                    closeArray();
+                } else {
+                    fail(true, "expected ',' or ']' but got '" + c + "'");
+                }
+            } else if (c == ']' && frame.state == State.FIRST) {
+                closeArray();
+            } else {
+                frame.items++;
+                frame.state = State.AFTER_VALUE;
+                int maxItems = frame.schema != null ? frame.schema.optInt("maxItems", -1) : -1;
+                if (maxItems >= 0 && frame.items > maxItems) {
+                    fail(false, "more than " + maxItems + " items");
+                } else {
+                    startValue(c, frame.schema != null ? frame.schema.optJSONObject("items") : null);
+                }
+            }
+        }
+    }
+
+    private void startValue(char c, JSONObject valueSchema) {
+        String type = switch (c) {
+            case '{' -> "object";
+            case '[' -> "array";
+            case '"' -> "string";
+            case 't', 'f' -> "boolean";
+            case 'n' -> "null";
+            default -> c == '-' || (c >= '0' && c <= '9') ? "number" : null;
+        };
+        if (type == null) {
+            fail(true, frames.isEmpty() ? "text before the JSON value" : "unexpected character '" + c + "'");
+            return;
+        }
+        if (!accepts(valueSchema, type)) {
+            fail(true, "expected " + describe(valueSchema) + " but got " + type);
+            return;
+        }
+        JSONObject resolved = resolve(valueSchema, type);
+        switch (type) {
+            case "object" -> frames.push(new Frame(true, resolved));
+            case "array" -> frames.push(new Frame(false, resolved));
+            case "string" -> {
+                JSONArray values = resolved != null ? resolved.optJSONArray("enum") : null;
+                startString(false, values != null ? strings(values) : null, resolved);
+            }
+            case "number" -> {
+                scalar = Scalar.NUMBER;
+                scalarSchema = resolved;
+                text.setLength(0);
+                text.append(c);
+            }
+            default -> {
+                scalar = Scalar.LITERAL;
+                literal = c == 't' ? "true" : c == 'f' ? "false" : "null";
+                text.setLength(0);
+                text.append(c);
+            }
+        }
+    }
+
+    private void startString(boolean isKey, List<String> allowedValues, JSONObject stringSchema) {
+        scalar = Scalar.STRING;
+        scalarSchema = stringSchema;
+        key = isKey;
+        allowed = allowedValues;
+        text.setLength(0);
+        escape = false;
+        unicodeDigits = -1;
+    }
+
+    /**
+     * Continues the scalar being read.
+     *
+     * @return false if {@code c} ends a number and still has to be read as a structural character
+     */
+    private boolean continueScalar(char c) {
+        switch (scalar) {
+            case NUMBER -> {
+                if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    text.append(c);
+                    return true;
+                }
+                endNumber();
+                return false;
+            }
+            case LITERAL -> {
+                text.append(c);
+                if (!startsWith(literal, text)) {
+                    fail(true, "invalid literal '" + text + "'");
+                } else if (literal.length() == text.length()) {
+                    scalar = null;
+                    valueDone();
+                }
+                return true;
+            }
+            default -> {
+                continueString(c);
+                return true;
+            }
+        }
+    }
+
+    private void continueString(char c) {
+        if (unicodeDigits >= 0) {
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                fail(true, "invalid unicode escape");
+                return;
+            }
+            unicode = unicode * 16 + digit;
+            if (++unicodeDigits == 4) {
+                unicodeDigits = -1;
+                appendString((char) unicode);
+            }
+        } else if (escape) {
+            escape = false;
+            switch (c) {
+                case '"', '\\', '/' -> appendString(c);
+                case 'b' -> appendString('\b');
+                case 'f' -> appendString('\f');
+                case 'n' -> appendString('\n');
+                case 'r' -> appendString('\r');
+                case 't' -> appendString('\t');
+                case 'u' -> {
+                    unicodeDigits = 0;
+                    unicode = 0;
+                }
+                default -> fail(true, "invalid escape '\\" + c + "'");
+            }
+        } else if (c == '\\') {
+            escape = true;
+        } else if (c == '"') {
+            endString();
+        } else if (c < 0x20) {
+            fail(true, "unescaped control character in string");
+        } else {
+            appendString(c);
+        }
+    }
+
+    private void appendString(char c) {
+        if (allowed == null) {
+            // Only property names and enum values are needed
+            if (key) {
+                text.append(c);
+            }
+            return;
+        }
+        text.append(c);
+        for (String value : allowed) {
+            if (startsWith(value, text)) {
+                return;
+            }
+        }
+        failString();
+    }
+
+    private void endString() {
+        scalar = null;
+        if (allowed != null && !allowed.contains(text.toString())) {
+            failString();
+            return;
+        }
+        if (key) {
+            Frame frame = frames.peek();
+            frame.key = text.toString();
+            frame.keys.add(frame.key);
+            frame.state = State.COLON;
+        } else {
+            valueDone();
+        }
+    }
+
+    private void failString() {
+        if (key) {
+            fail(false, "property \"" + text + "\" is not allowed");
+        } else {
+            fail(true, "\"" + text + "\" is not one of " + allowed);
+        }
+    }
+
+    private void endNumber() {
+        scalar = null;
+        String number = text.toString();
+        if (!NUMBER.matcher(number).matches()) {
+            fail(true, "invalid number " + number);
+            return;
+        }
+        if (scalarSchema != null && "integer".equals(scalarSchema.optString("type")) && !isInteger(number)) {
+            fail(true, "expected integer but got " + number);
+            return;
+        }
+        valueDone();
+    }
+
+    private static boolean startsWith(String value, CharSequence prefix) {
+        if (value.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (value.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInteger(String number) {
+        BigDecimal value = new BigDecimal(number);
+        return value.signum() == 0 || value.stripTrailingZeros().scale() <= 0;
+    }
+
+    private void closeObject(Frame frame) {
+        JSONArray required = frame.schema != null ? frame.schema.optJSONArray("required") : null;
+        if (required != null) {
+            for (int i = 0; i < required.length(); i++) {
+                if (!frame.keys.contains(required.getString(i))) {
+                    fail(false, "missing required property \"" + required.getString(i) + "\"");
+                    return;
+                }
+            }
+        }
+        frames.pop();
+        valueDone();
+    }
+
+    private void closeArray() {
+        frames.pop();
+        valueDone();
+    }
+
+    private void valueDone() {
+        if (frames.isEmpty()) {
+            done = true;
+        }
+    }
+
+    /**
+     * Whether a value of the JSON type {@code type} can match {@code valueSchema} (null for any value).
+     */
+    private static boolean accepts(JSONObject valueSchema, String type) {
+        if (valueSchema == null) {
+            return true;
+        }
+        JSONArray anyOf = valueSchema.optJSONArray("anyOf");
+        if (anyOf != null) {
+            for (int i = 0; i < anyOf.length(); i++) {
+                if (accepts(anyOf.getJSONObject(i), type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String expected = valueSchema.optString("type", null);
+        return expected == null || expected.equals(type) || ("integer".equals(expected) && "number".equals(type));
+    }
+
+    /**
+     * The schema a value of type {@code type} is checked against: the only anyOf variant accepting
+     * the type, or null if several do.
+     */
+    private static JSONObject resolve(JSONObject valueSchema, String type) {
+        JSONArray anyOf = valueSchema != null ? valueSchema.optJSONArray("anyOf") : null;
+        if (anyOf == null) {
+            return valueSchema;
+        }
+        JSONObject match = null;
+        for (int i = 0; i < anyOf.length(); i++) {
+            if (accepts(anyOf.getJSONObject(i), type)) {
+                if (match != null) {
+                    return null;
+                }
+                match = anyOf.getJSONObject(i);
+            }
+        }
+        return resolve(match, type);
+    }
+
+    private static String describe(JSONObject valueSchema) {
+        JSONArray anyOf = valueSchema.optJSONArray("anyOf");
+        if (anyOf == null) {
+            return valueSchema.optString("type");
+        }
+        List<String> types = new ArrayList<>();
+        for (int i = 0; i < anyOf.length(); i++) {
+            types.add(describe(anyOf.getJSONObject(i)));
+        }
+        return String.join(" or ", types);
+    }
+
+    private static List<String> propertyNames(JSONObject objectSchema) {
+        JSONObject properties = objectSchema.optJSONObject("properties");
+        return properties != null ? List.copyOf(properties.keySet()) : List.of();
+    }
+
+    private static List<String> strings(JSONArray values) {
+        List<String> result = new ArrayList<>(values.length());
+        for (int i = 0; i < values.length(); i++) {
+            result.add(values.optString(i));
+        }
+        return result;
+    }
+
+    /**
+     * Records a violation with the path of the value it concerns, e.g. {@code $.steps[2].name}.
+     *
+     * @param member whether it concerns the current member of the innermost open object or array
+     *               rather than the object or array itself
+     */
+    private void fail(boolean member, String message) {
+        StringBuilder path = new StringBuilder("$");
+        Iterator<Frame> outerFirst = frames.descendingIterator();
+        while (outerFirst.hasNext()) {
+            Frame frame = outerFirst.next();
+            if (!member && !outerFirst.hasNext()) {
+                break;
+            }
+            if (frame.object && frame.key != null && frame.state != State.FIRST && frame.state != State.NEXT) {
+                path.append('.').append(frame.key);
+            } else if (!frame.object && frame.items > 0) {
+                path.append('[').append(frame.items - 1).append(']');
+            }
+        }
+        violation = path + ": " + message + " (at character " + position + ")";
+    }
+}
@@ -0,0 +1,426 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClient;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shares a bounded number of in-flight slots fairly between tenants and enforces per-tenant
+ * request and token quotas, so that one busy tenant cannot use up the OpenRouter rate limit.
+ *
+ * <p>While slots are free, requests are admitted right away. Once all slots are taken, requests
+ * wait in a queue of their tenant and freed slots are handed out by deficit round-robin: tenants
+ * with waiting requests take turns, and a tenant may start up to its weight in requests per turn.
+ * A tenant's share therefore does not depend on how many requests it queues.
+ *
+ * <p>Quotas are counted per tenant over a sliding minute. A request of a tenant that has used up
+ * its requests or tokens per minute is rejected with a {@link QuotaExceededException}. Tokens are
+ * known only after a response, so the token quota admits requests until the usage reported so
+ * far reaches it; chat completions report their usage automatically.
+ *
+ * <p>There is no global lock: admission uses an atomic slot counter, every tenant has its own
+ * lock for its queue and counters, and the round-robin order is a lock-free queue of the tenants
+ * that are waiting. Requests without a tenant share the tenant {@value #DEFAULT_TENANT}. Install a
+ * scheduler with {@link OpenRouterConnectionSettings.Builder#tenantScheduler(OpenRouterTenantScheduler)}.
+ */
+public final class OpenRouterTenantScheduler {
+
+    /**
+     * Tenant of requests that do not name one.
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final int maxInFlight;
+    private final Policy defaultPolicy;
+    private final Map<String, Policy> policies;
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Tenant> waitingTenants = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private OpenRouterTenantScheduler(Builder builder) {
+        this.maxInFlight = builder.maxInFlight;
+        this.defaultPolicy = builder.defaultPolicy;
+        this.policies = Map.copyOf(builder.policies);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Share and quotas of a tenant.
+     *
+     * @param weight            requests the tenant may start per round-robin turn, at least 1
+     * @param requestsPerMinute request quota, 0 for unlimited
+     * @param tokensPerMinute   token quota (prompt and completion), 0 for unlimited
+     */
+    public record Policy(int weight, long requestsPerMinute, long tokensPerMinute) {
+
+        public Policy {
+            if (weight < 1) {
+                throw new IllegalArgumentException("weight must be at least 1: " + weight);
+            }
+            if (requestsPerMinute < 0 || tokensPerMinute < 0) {
+                throw new IllegalArgumentException("quotas must not be negative");
+            }
+        }
+
+        /**
+         * Weight 1 without quotas.
+         */
+        public static Policy unlimited() {
+            return new Policy(1, 0, 0);
+        }
+    }
+
+    /**
+     * Usage of one tenant.
+     *
+     * @param requests          requests admitted since the scheduler was created
+     * @param rejected          requests rejected by a quota
+     * @param tokens            tokens reported since the scheduler was created
+     * @param inFlight          requests of the tenant in flight
+     * @param queued            requests of the tenant waiting for a slot
+     * @param requestsPerMinute requests admitted during the last minute
+     * @param tokensPerMinute   tokens reported during the last minute
+     */
+    public record TenantStats(
+            long requests,
+            long rejected,
+            long tokens,
+            int inFlight,
+            int queued,
+            long requestsPerMinute,
+            long tokensPerMinute
+    ) {
+    }
+
+    /**
+     * Thrown when a tenant has used up its requests or tokens per minute.
+     */
+    public static final class QuotaExceededException extends ApiClient.ApiClientException {
+        public QuotaExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Requests currently admitted over all tenants.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Usage of the given tenant (all zero if it has not sent a request yet).
+     */
+    public TenantStats stats(String tenant) {
+        Tenant t = tenants.get(tenantKey(tenant));
+        return t != null ? t.stats() : new TenantStats(0, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Usage of every tenant seen so far, sorted by tenant key.
+     */
+    public Map<String, TenantStats> snapshot() {
+        Map<String, TenantStats> result = new TreeMap<>();
+        tenants.forEach((key, tenant) -> result.put(key, tenant.stats()));
+        return result;
+    }
+
+    /**
+     * Adds tokens to a tenant's usage. Chat completions are recorded automatically; use this for
+     * tokens consumed outside the client.
+     */
+    public void recordTokens(String tenant, long tokens) {
+        if (tokens > 0) {
+            tenant(tenantKey(tenant)).recordTokens(tokens, System.nanoTime());
+        }
+    }
+
+    /**
+     * Waits until the request is admitted. Every admission must be followed by one {@link #release(OpenRouterRequest)}.
+     *
+     * @throws QuotaExceededException if the tenant has used up a quota
+     */
+    void acquire(OpenRouterRequest<?> request) {
+        Tenant tenant = tenant(tenantKey(request.tenant()));
+        tenant.checkQuota(System.nanoTime());
+
+        if (waitingTenants.isEmpty() && tryTakeSlot()) {
+            tenant.admitted(System.nanoTime());
+            return;
+        }
+
+        Ticket ticket = new Ticket(Thread.currentThread());
+        tenant.enqueue(ticket);
+        drain();
+        boolean interrupted = false;
+        while (ticket.state.get() == Ticket.WAITING) {
+            LockSupport.park(this);
+            interrupted |= Thread.interrupted();
+            if (interrupted && ticket.state.compareAndSet(Ticket.WAITING, Ticket.CANCELED)) {
+                Thread.currentThread().interrupt();
+                throw new ApiClient.ApiClientException("Interrupted while waiting for a free request slot");
+            }
+        }
+        if (interrupted) {
+            // Admitted while being interrupted: keep the slot and leave the interrupt to the caller
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Frees the slot of an admitted request and hands it to the next waiting tenant.
+     */
+    void release(OpenRouterRequest<?> request) {
+        Tenant tenant = tenants.get(tenantKey(request.tenant()));
+        if (tenant != null) {
+            tenant.released();
+        }
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Hands free slots to waiting requests. Runs after every enqueue and release, so a slot and a
+     * waiting request can never miss each other.
+     */
+    private void drain() {
+        while (!waitingTenants.isEmpty() && tryTakeSlot()) {
+            if (!admitNext()) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Admits the next request in deficit round-robin order into a slot that is already taken.
+     *
+     * @return false if no request was waiting
+     */
+    private boolean admitNext() {
+        Tenant tenant;
+        while ((tenant = waitingTenants.poll()) != null) {
+            if (tenant.admitOne()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tryTakeSlot() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private Tenant tenant(String key) {
+        return tenants.computeIfAbsent(key, k -> new Tenant(k, policies.getOrDefault(k, defaultPolicy)));
+    }
+
+    private static String tenantKey(String tenant) {
+        return tenant != null ? tenant : DEFAULT_TENANT;
+    }
+
+    private static final class Ticket {
+        static final int WAITING = 0;
+        static final int ADMITTED = 1;
+        static final int CANCELED = 2;
+
+        final Thread waiter;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Ticket(Thread waiter) {
+            this.waiter = waiter;
+        }
+    }
+
+    /**
+     * Requests in a sliding minute: the count of the current minute plus the share of the previous
+     * minute that still lies in the window.
+     */
+    private static final class Window {
+        private long minute = Long.MIN_VALUE;
+        private long current;
+        private long previous;
+
+        void add(long amount, long now) {
+            roll(now);
+            current += amount;
+        }
+
+        long estimate(long now) {
+            roll(now);
+            double previousShare = 1.0 - (double) Math.floorMod(now, MINUTE_NANOS) / MINUTE_NANOS;
+            return current + Math.round(previous * previousShare);
+        }
+
+        private void roll(long now) {
+            long m = Math.floorDiv(now, MINUTE_NANOS);
+            if (m != minute) {
+                previous = m == minute + 1 ? current : 0;
+                current = 0;
+                minute = m;
+            }
+        }
+    }
+
+    /**
+     * A tenant takes part in the round-robin with as many entries in {@link #waitingTenants} as its
+     * weight (its deficit). Every entry polled admits one request; when the last one is used and
+     * requests are left, the tenant queues up again at the end.
+     */
+    private final class Tenant {
+        private final String key;
+        private final Policy policy;
+        private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        private final Window requestWindow = new Window();
+        private final Window tokenWindow = new Window();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder tokens = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private int deficit;
+
+        Tenant(String key, Policy policy) {
+            this.key = key;
+            this.policy = policy;
+        }
+
+        synchronized void checkQuota(long now) {
+            if (policy.requestsPerMinute() > 0 && requestWindow.estimate(now) >= policy.requestsPerMinute()) {
+                rejected.increment();
+                throw new QuotaExceededException("Tenant " + key + " exceeded its quota of "
+                        + policy.requestsPerMinute() + " requests per minute");
+            }
+            if (policy.tokensPerMinute() > 0 && tokenWindow.estimate(now) >= policy.tokensPerMinute()) {
+                rejected.increment();
+                throw new QuotaExceededException("Tenant " + key + " exceeded its quota of "
+                        + policy.tokensPerMinute() + " tokens per minute");
+            }
+        }
+
+        synchronized void admitted(long now) {
+            requestWindow.add(1, now);
+            requests.increment();
+            inFlight.incrementAndGet();
+        }
+
+        synchronized void recordTokens(long amount, long now) {
+            tokenWindow.add(amount, now);
+            tokens.add(amount);
+        }
+
+        void released() {
+            inFlight.decrementAndGet();
+        }
+
+        synchronized void enqueue(Ticket ticket) {
+            queue.addLast(ticket);
+            if (deficit == 0) {
+                joinRoundRobin();
+            }
+        }
+
+        /**
+         * Uses one entry of the tenant's deficit to admit its next request.
+         *
+         * @return false if the tenant had no request waiting
+         */
+        synchronized boolean admitOne() {
+            deficit--;
+            Ticket ticket;
+            while ((ticket = queue.pollFirst()) != null) {
+                if (ticket.state.compareAndSet(Ticket.WAITING, Ticket.ADMITTED)) {
+                    break;
+                }
+            }
+            if (ticket != null) {
+                admitted(System.nanoTime());
+                LockSupport.unpark(ticket.waiter);
+            }
+            if (deficit == 0 && !queue.isEmpty()) {
+                joinRoundRobin();
+            }
+            return ticket != null;
+        }
+
+        private void joinRoundRobin() {
+            deficit = policy.weight();
+            for (int i = 0; i < deficit; i++) {
+                waitingTenants.offer(this);
+            }
+        }
+
+        synchronized TenantStats stats() {
+            long now = System.nanoTime();
+            return new TenantStats(
+                    requests.sum(),
+                    rejected.sum(),
+                    tokens.sum(),
+                    inFlight.get(),
+                    (int) queue.stream().filter(t -> t.state.get() == Ticket.WAITING).count(),
+                    requestWindow.estimate(now),
+                    tokenWindow.estimate(now)
+            );
+        }
+    }
+
+    public static final class Builder {
+        private int maxInFlight = 64;
+        private Policy defaultPolicy = Policy.unlimited();
+        private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Number of requests admitted at the same time over all tenants (default 64).
+         */
+        public Builder maxInFlight(int max) {
+            if (max < 1) {
+                throw new IllegalArgumentException("maxInFlight must be at least 1: " + max);
+            }
+            this.maxInFlight = max;
+            return this;
+        }
+
+        /**
+         * Policy of tenants without their own (default: weight 1, no quotas).
+         */
+        public Builder defaultPolicy(Policy policy) {
+            this.defaultPolicy = Objects.requireNonNull(policy, "policy must not be null");
+            return this;
+        }
+
+        /**
+         * Policy of one tenant.
+         */
+        public Builder policy(String tenant, Policy policy) {
+            Objects.requireNonNull(tenant, "tenant must not be null");
+            policies.put(tenant, Objects.requireNonNull(policy, "policy must not be null"));
+            return this;
+        }
+
+        public OpenRouterTenantScheduler build() {
+            return new OpenRouterTenantScheduler(this);
+        }
+    }
+}
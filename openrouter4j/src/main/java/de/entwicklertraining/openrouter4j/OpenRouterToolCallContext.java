@@ -2,7 +2,25 @@ package de.entwicklertraining.openrouter4j;
 
 import org.json.JSONObject;
 
+import java.time.Duration;
+
 /**
  * Holds the arguments that the model is passing when it calls a "function" (tool).
+ *
+ * @param arguments     the parsed arguments
+ * @param deadlineNanos {@link System#nanoTime()} by which the whole request must be done, or null
  */
-public record OpenRouterToolCallContext(JSONObject arguments) {}
+public record OpenRouterToolCallContext(JSONObject arguments, Long deadlineNanos) {
+
+    public OpenRouterToolCallContext(JSONObject arguments) {
+        this(arguments, null);
+    }
+
+    /**
+     * Time left until the request's deadline (zero once it has passed), or null if the request
+     * has none. Long-running tools should finish, or give up, within this time.
+     */
+    public Duration remainingTime() {
+        return deadlineNanos != null ? Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())) : null;
+    }
+}
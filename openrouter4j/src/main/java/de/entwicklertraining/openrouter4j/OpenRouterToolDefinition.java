@@ -14,17 +14,20 @@ public final class OpenRouterToolDefinition {
     private final String description;
     private final JSONObject parameters;
     private final OpenRouterToolsCallback callback;
+    private final OpenRouterCacheControl cacheControl;
 
     private OpenRouterToolDefinition(
             String name,
             String description,
             JSONObject parameters,
-            OpenRouterToolsCallback callback
+            OpenRouterToolsCallback callback,
+            OpenRouterCacheControl cacheControl
     ) {
         this.name = name;
         this.description = description;
         this.parameters = parameters;
         this.callback = callback;
+        this.cacheControl = cacheControl;
     }
 
     public String name() {
@@ -43,6 +46,13 @@ public final class OpenRouterToolDefinition {
         return callback;
     }
 
+    /**
+     * Prompt caching breakpoint after this tool, or null.
+     */
+    public OpenRouterCacheControl cacheControl() {
+        return cacheControl;
+    }
+
     /**
      * OpenRouter expects tools in this format:
      * {
@@ -51,7 +61,8 @@ public final class OpenRouterToolDefinition {
      *     "name": "...",
      *     "description": "...",
      *     "parameters": {...}
-     *   }
+     *   },
+     *   "cache_control": {...}   // only if set
      * }
      */
     public JSONObject toJson() {
@@ -63,6 +74,9 @@ public final class OpenRouterToolDefinition {
         JSONObject tool = new JSONObject();
         tool.put("type", "function");
         tool.put("function", function);
+        if (cacheControl != null) {
+            tool.put("cache_control", cacheControl.toJson());
+        }
         return tool;
     }
 
@@ -78,6 +92,7 @@ public final class OpenRouterToolDefinition {
         private final JSONObject properties = new JSONObject();
         private final JSONArray required = new JSONArray();
         private OpenRouterToolsCallback callback;
+        private OpenRouterCacheControl cacheControl;
 
         private Builder(String name) {
             this.name = name;
@@ -102,6 +117,15 @@ public final class OpenRouterToolDefinition {
             return this;
         }
 
+        /**
+         * Places a prompt caching breakpoint after this tool. Tools come before the messages in the
+         * prompt, so marking the last tool caches all tool definitions.
+         */
+        public Builder cacheControl(OpenRouterCacheControl control) {
+            this.cacheControl = control;
+            return this;
+        }
+
         public OpenRouterToolDefinition build() {
             if (!properties.isEmpty()) {
                 schema.put("properties", properties);
@@ -110,7 +134,7 @@ public final class OpenRouterToolDefinition {
                 schema.put("required", required);
             }
 
-            return new OpenRouterToolDefinition(name, description, schema, callback);
+            return new OpenRouterToolDefinition(name, description, schema, callback, cacheControl);
         }
     }
 }
@@ -0,0 +1,31 @@
+package de.entwicklertraining.openrouter4j;
+
+/**
+ * Carries requests of an {@link OpenRouterClient} to OpenRouter (or to something standing in for it).
+ *
+ * <p>The default transport ({@link OpenRouterClient#liveTransport()}) sends requests through api-base.
+ * Alternative transports can wrap it, e.g. to record traffic, or replace it completely, e.g. to replay
+ * recorded traffic without network access. Install a transport with
+ * {@link OpenRouterClient#setTransport(OpenRouterTransport)}.
+ *
+ * <p>Implementations must be thread-safe; requests are dispatched concurrently.
+ */
+public interface OpenRouterTransport {
+
+    /**
+     * Sends a request and returns its typed response.
+     *
+     * @param request the request to send
+     * @param useExponentialBackoff whether retryable failures are retried with exponential backoff
+     */
+    <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff);
+
+    /**
+     * Executes a streaming request. Every SSE data chunk must be passed as raw JSON string to
+     * {@link OpenRouterStreamingExchange#handler()}; the method returns when the stream has ended.
+     *
+     * @param exchange the streaming request together with its chunk handler
+     * @param useRetry whether retryable failures are retried
+     */
+    void stream(OpenRouterStreamingExchange exchange, boolean useRetry);
+}
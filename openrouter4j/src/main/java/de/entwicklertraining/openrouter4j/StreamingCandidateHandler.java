@@ -0,0 +1,27 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+
+/**
+ * Streaming handler for requests with several candidates ({@code n > 1}). Content deltas are
+ * routed by candidate index instead of being delivered to {@link #onData(String)}.
+ *
+ * <p>A regular {@link StreamingResponseHandler} only receives the deltas of candidate 0.
+ * Candidates that are requested separately (client-side fan-out) stream concurrently, so
+ * implementations must be thread-safe.
+ */
+public interface StreamingCandidateHandler extends StreamingResponseHandler<String> {
+
+    /**
+     * Called for every content delta of a candidate. The default forwards candidate 0 to
+     * {@link #onData(String)} and drops the others.
+     *
+     * @param candidate the 0-based candidate index ({@code choices[].index} of the final response)
+     * @param delta     the content delta
+     */
+    default void onCandidateData(int candidate, String delta) {
+        if (candidate == 0) {
+            onData(delta);
+        }
+    }
+}
@@ -45,6 +45,16 @@ public interface StreamingToolCallHandler extends StreamingResponseHandler<Strin
      */
     default void onTurnComplete(int turnNumber) {}
 
+    /**
+     * Called when a turn was aborted because its content violated the response schema
+     * (see {@code abortOnSchemaViolation}). The content received since the start of the turn is
+     * invalid and should be discarded; if a retry is left, the turn is streamed again.
+     *
+     * @param violation   what was wrong and where, e.g. {@code "$.items[3]: expected string but got number"}
+     * @param retriesLeft how often the turn will still be retried, 0 if the call fails now
+     */
+    default void onSchemaViolation(String violation, int retriesLeft) {}
+
     /**
      * Called when the entire streaming tool-call loop has finished and the
      * final text response has been fully streamed.
@@ -0,0 +1,79 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterCancellation;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * A future whose work runs on its own virtual thread and is torn down when the future is canceled.
+ *
+ * <p>{@link CompletableFuture#cancel(boolean)} normally only completes the future, while the work
+ * keeps running. Here cancellation also runs the {@code onCancel} hook and interrupts the worker,
+ * which closes a stream that is being read, aborts a pending connect or retry wait and interrupts
+ * a running tool callback. A cancel supplier is watched as well and cancels the future when it
+ * returns true.
+ */
+final class OpenRouterCancellableFuture<T> extends CompletableFuture<T> {
+
+    private final Runnable onCancel;
+    private volatile Thread worker;
+
+    private OpenRouterCancellableFuture(Runnable onCancel) {
+        this.onCancel = onCancel;
+    }
+
+    /**
+     * Starts {@code work} on a new virtual thread.
+     *
+     * @param canceled cancel supplier to watch, or null
+     * @param onCancel runs once when the future is canceled, before the worker is interrupted
+     */
+    static <T> OpenRouterCancellableFuture<T> start(
+            String name,
+            Supplier<T> work,
+            Supplier<Boolean> canceled,
+            Runnable onCancel
+    ) {
+        OpenRouterCancellableFuture<T> future = new OpenRouterCancellableFuture<>(onCancel);
+        OpenRouterCancellation.Watch watch = OpenRouterCancellation.watch(canceled, () -> future.cancel(true));
+        future.whenComplete((result, error) -> watch.close());
+        future.worker = Thread.ofVirtual().name(name).start(() -> {
+            try {
+                future.complete(work.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                future.worker = null;
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Cancels the future and stops the work, whatever the value of {@code mayInterruptIfRunning}.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean canceled = super.cancel(mayInterruptIfRunning);
+        if (canceled) {
+            onCancel.run();
+            Thread thread = worker;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+        return canceled;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the current thread was interrupted,
+     * which is how a canceled future reaches its work.
+     */
+    static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Request was canceled");
+        }
+    }
+}
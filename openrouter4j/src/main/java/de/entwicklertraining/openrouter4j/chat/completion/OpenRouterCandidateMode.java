@@ -0,0 +1,24 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+/**
+ * How a request with {@code n > 1} obtains its candidates.
+ * See {@link OpenRouterChatCompletionRequest.Builder#n(Integer)}.
+ */
+public enum OpenRouterCandidateMode {
+
+    /**
+     * Sends {@code n} to the model and accepts however many choices come back.
+     */
+    NATIVE,
+
+    /**
+     * Sends {@code n} to the model; if fewer choices come back (the model or provider ignores
+     * {@code n}), the missing candidates are requested with concurrent single-choice requests.
+     */
+    AUTO,
+
+    /**
+     * Never sends {@code n}; every candidate is its own concurrent single-choice request.
+     */
+    FAN_OUT
+}
@@ -6,13 +6,25 @@ import de.entwicklertraining.api.base.streaming.StreamingFormat;
 import de.entwicklertraining.api.base.streaming.StreamingInfo;
 import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
 import de.entwicklertraining.openrouter4j.*;
+import de.entwicklertraining.openrouter4j.conversation.OpenRouterConversationStore;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Handles OpenRouter chat completion requests with automatic tool calling loops.
@@ -31,19 +43,64 @@ public final class OpenRouterChatCompletionCallHandler {
         this.client = client;
     }
 
+    /**
+     * Runs a request (tool loop or candidates) and waits for its response. With a cancel supplier,
+     * the work runs on its own virtual thread: the supplier returning true, or the calling thread
+     * being interrupted, interrupts the in-flight HTTP request and a running tool callback, and
+     * the call fails with a {@link CancellationException}.
+     */
     public OpenRouterChatCompletionResponse handleRequest(
             OpenRouterChatCompletionRequest initialRequest,
             boolean useExponentialBackoff
     ) {
-        // Copy the initial messages and build a tool map
-        List<JSONObject> messages = new ArrayList<>(initialRequest.messages());
-        var toolMap = new HashMap<String, OpenRouterToolDefinition>();
-        for (var tool : initialRequest.tools()) {
-            toolMap.put(tool.name(), tool);
+        Supplier<Boolean> canceled = initialRequest.getIsCanceledSupplier();
+        if (canceled == null) {
+            return handle(initialRequest, useExponentialBackoff);
+        }
+        CompletableFuture<OpenRouterChatCompletionResponse> future = OpenRouterCancellableFuture.start(
+                "openrouter4j-call", () -> handle(initialRequest, useExponentialBackoff), canceled, () -> { });
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Request was canceled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new ApiClient.ApiClientException("Request failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private OpenRouterChatCompletionResponse handle(
+            OpenRouterChatCompletionRequest initialRequest,
+            boolean useExponentialBackoff
+    ) {
+        if (initialRequest.candidateCount() > 1) {
+            return handleCandidates(initialRequest, useExponentialBackoff);
         }
+        return runToolLoop(initialRequest, useExponentialBackoff, 1);
+    }
+
+    private OpenRouterChatCompletionResponse runToolLoop(
+            OpenRouterChatCompletionRequest initialRequest,
+            boolean useExponentialBackoff,
+            int firstTurn
+    ) {
+        // Start from the initial messages (shared, not copied) and build a tool map
+        OpenRouterMessageHistory messages = initialRequest.messages();
+        Map<String, OpenRouterToolDefinition> toolMap = toolMap(initialRequest);
 
         OpenRouterChatCompletionRequest currentRequest = initialRequest;
-        int turnCount = 0;
+        int turnCount = firstTurn - 1;
+        List<OpenRouterUsage> turns = new ArrayList<>();
+        Long deadline = initialRequest.deadlineNanos();
+        long longestTurn = 0;
+        List<JSONObject> unsaved = new ArrayList<>(initialRequest.newConversationMessages());
 
         while (true) {
             turnCount++;
@@ -54,244 +111,753 @@ public final class OpenRouterChatCompletionCallHandler {
             }
 
             // Send the request
+            checkCanceled(currentRequest);
+            long turnStart = System.nanoTime();
             OpenRouterChatCompletionResponse response;
-            if (useExponentialBackoff) {
-                response = client.sendRequestWithExponentialBackoff(currentRequest);
-            } else {
-                response = client.sendRequest(currentRequest);
+            try {
+                response = send(currentRequest, useExponentialBackoff);
+            } catch (RuntimeException e) {
+                throw deadlineExceededOr(e, deadline, turns);
             }
-
-            // Check for API errors
-            if (response.getJson().has("error")) {
-                throw new ApiClient.HTTP_400_RequestRejectedException(
-                        "OpenRouter API returned an error: " + response.getJson().toString()
-                );
+            checkForError(response);
+            if (response.usage() != null) {
+                turns.add(response.usageSummary());
             }
 
             String finishReason = response.finishReason();
 
             // Check for refusal
             if (response.hasRefusal()) {
-                return response;
+                persistTurn(initialRequest, unsaved, List.of(response.message()));
+                return response.withTurnUsage(turns);
             }
 
             // Check if we have tool calls
             if (!"tool_calls".equals(finishReason) || !response.hasToolCalls()) {
                 // No tool calls - this is the final response
-                return response;
+                persistTurn(initialRequest, unsaved, List.of(response.message()));
+                return response.withTurnUsage(turns);
             }
 
             // Process tool calls
             JSONArray toolCalls = response.toolCalls();
             if (toolCalls == null || toolCalls.isEmpty()) {
-                return response;
+                persistTurn(initialRequest, unsaved, List.of(response.message()));
+                return response.withTurnUsage(turns);
             }
 
-            // Add the assistant message with tool_calls to the conversation
-            messages.add(response.message());
-
-            // Process each tool call
-            for (int i = 0; i < toolCalls.length(); i++) {
-                JSONObject toolCall = toolCalls.getJSONObject(i);
-                String toolCallId = toolCall.getString("id");
-                JSONObject functionObj = toolCall.getJSONObject("function");
-                String functionName = functionObj.getString("name");
-                String argumentsStr = functionObj.getString("arguments");
+            // Add the assistant message with tool_calls and the tool results to the conversation
+            checkCanceled(currentRequest);
+            if (OpenRouterDeadlines.isExpired(deadline)) {
+                throw deadlineExceeded(turns, null);
+            }
+            List<JSONObject> turn = new ArrayList<>();
+            turn.add(response.message());
+            turn.addAll(executeToolCalls(toolCalls, toolMap, null, deadline));
+            messages = messages.appendAll(turn);
+            persistTurn(initialRequest, unsaved, turn);
+            if (OpenRouterDeadlines.isExpired(deadline)) {
+                throw deadlineExceeded(turns, null);
+            }
+            longestTurn = Math.max(longestTurn, System.nanoTime() - turnStart);
 
-                // Check if we have this tool
-                if (!toolMap.containsKey(functionName)) {
-                    throw new ApiClient.ApiResponseUnusableException(
-                            "Unknown tool requested: " + functionName
-                    );
-                }
+            // Build the next request with updated messages
+            currentRequest = anotherTurnFits(deadline, longestTurn)
+                    ? buildNextRequest(initialRequest, messages)
+                    : buildFinalRequest(initialRequest, messages);
+        }
+    }
 
-                // Parse arguments
-                JSONObject args;
-                try {
-                    args = new JSONObject(argumentsStr);
-                } catch (Exception e) {
-                    throw new ApiClient.ApiResponseUnusableException(
-                            "Failed to parse tool call arguments for " + functionName + ": " + e.getMessage()
-                    );
+    /**
+     * Obtains {@code n > 1} candidates. The first request asks for all of them at once (unless
+     * the mode is FAN_OUT); candidates that end with tool calls continue as independent
+     * single-choice tool loops, and in AUTO mode missing candidates are requested separately.
+     * All follow-up requests run concurrently.
+     */
+    private OpenRouterChatCompletionResponse handleCandidates(
+            OpenRouterChatCompletionRequest initialRequest,
+            boolean useExponentialBackoff
+    ) {
+        int n = initialRequest.candidateCount();
+        OpenRouterChatCompletionRequest single = buildNextRequest(initialRequest, initialRequest.messages(), null);
+        List<Supplier<OpenRouterChatCompletionResponse>> tasks = new ArrayList<>();
+        List<OpenRouterUsage> turns = new ArrayList<>();
+        JSONObject first = null;
+
+        if (initialRequest.candidateMode() == OpenRouterCandidateMode.FAN_OUT) {
+            for (int c = 0; c < n; c++) {
+                tasks.add(() -> runToolLoop(single, useExponentialBackoff, 1));
+            }
+        } else {
+            OpenRouterChatCompletionResponse initial;
+            try {
+                initial = send(initialRequest, useExponentialBackoff);
+            } catch (RuntimeException e) {
+                throw deadlineExceededOr(e, initialRequest.deadlineNanos(), turns);
+            }
+            checkForError(initial);
+            turns.addAll(initial.turnUsage());
+            first = initial.getJson();
+            Map<String, OpenRouterToolDefinition> toolMap = toolMap(initialRequest);
+
+            for (int c = 0; c < n; c++) {
+                JSONObject choice = initial.choice(c);
+                if (choice == null) {
+                    if (initialRequest.candidateMode() == OpenRouterCandidateMode.AUTO) {
+                        tasks.add(() -> runToolLoop(single, useExponentialBackoff, 1));
+                    }
+                } else if (!"tool_calls".equals(initial.finishReason(c)) || initial.toolCalls(c) == null
+                        || initial.toolCalls(c).isEmpty()) {
+                    JSONObject finalRoot = new JSONObject().put("choices", new JSONArray().put(choice));
+                    tasks.add(() -> new OpenRouterChatCompletionResponse(finalRoot, initialRequest));
+                } else {
+                    JSONObject assistantMessage = initial.message(c);
+                    JSONArray toolCalls = initial.toolCalls(c);
+                    tasks.add(() -> {
+                        OpenRouterMessageHistory messages = initialRequest.messages().append(assistantMessage)
+                                .appendAll(executeToolCalls(toolCalls, toolMap, null, initialRequest.deadlineNanos()));
+                        return runToolLoop(buildNextRequest(initialRequest, messages, null), useExponentialBackoff, 2);
+                    });
                 }
-
-                // Execute the tool callback
-                OpenRouterToolDefinition toolDef = toolMap.get(functionName);
-                OpenRouterToolResult result = toolDef.callback().handle(
-                        new OpenRouterToolCallContext(args)
-                );
-
-                // Add tool result as a message with role "tool"
-                // OpenRouter expects: { "role": "tool", "tool_call_id": "...", "content": "..." }
-                JSONObject toolResultMsg = new JSONObject();
-                toolResultMsg.put("role", "tool");
-                toolResultMsg.put("tool_call_id", toolCallId);
-                toolResultMsg.put("content", result.content().toString());
-                messages.add(toolResultMsg);
             }
+        }
 
-            // Build the next request with updated messages
-            currentRequest = buildNextRequest(initialRequest, messages);
+        List<JSONObject> choices = new ArrayList<>();
+        List<OpenRouterChatCompletionRequest.DeadlineExceededException> dropped = new CopyOnWriteArrayList<>();
+        for (OpenRouterChatCompletionResponse result : runConcurrently(droppedAtDeadline(tasks, dropped))) {
+            if (result == null) {
+                continue;
+            }
+            // Every result holds exactly one choice, whatever its index
+            JSONArray resultChoices = result.getJson().optJSONArray("choices");
+            if (resultChoices != null && !resultChoices.isEmpty()) {
+                choices.add(resultChoices.getJSONObject(0));
+            }
+            turns.addAll(result.turnUsage());
+            if (first == null) {
+                first = result.getJson();
+            }
+        }
+        if (dropped.isEmpty()) {
+            return OpenRouterChatCompletionResponse.combine(initialRequest, first, initialRequest.model(), choices, turns);
         }
+        dropped.forEach(e -> turns.addAll(e.turnUsage()));
+        if (choices.isEmpty()) {
+            throw deadlineExceeded(turns, dropped.get(0).getCause());
+        }
+        return OpenRouterChatCompletionResponse.combine(initialRequest, first, initialRequest.model(), choices, turns)
+                .withDeadlineReached();
     }
 
+    /**
+     * Runs a streaming request (tool loop or candidates) on its own virtual thread. Cancelling the
+     * returned future, or the request's cancel supplier returning true, closes the open stream and
+     * interrupts a running tool callback; the handler then receives neither onComplete nor onError.
+     */
     public CompletableFuture<OpenRouterChatCompletionResponse> handleStreamingRequest(
             OpenRouterChatCompletionRequest initialRequest,
             StreamingResponseHandler<String> userHandler,
             boolean useRetry
     ) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<JSONObject> messages = new ArrayList<>(initialRequest.messages());
-            var toolMap = new HashMap<String, OpenRouterToolDefinition>();
-            for (var tool : initialRequest.tools()) {
-                toolMap.put(tool.name(), tool);
+        StreamingCall call = new StreamingCall(initialRequest.getIsCanceledSupplier());
+        return OpenRouterCancellableFuture.start("openrouter4j-stream", () -> {
+            List<JSONObject> choices = initialRequest.candidateCount() > 1
+                    ? candidatesBeforeDeadline(streamCandidates(initialRequest, userHandler, useRetry, call), call)
+                    : List.of(streamToolLoop(
+                            initialRequest, initialRequest.messages(), userHandler, useRetry, 0, 1, call
+                    ));
+
+            call.checkCanceled();
+            if (userHandler instanceof StreamingToolCallHandler stch) {
+                stch.onFinalComplete();
             }
+            userHandler.onComplete();
 
-            OpenRouterChatCompletionRequest currentRequest = initialRequest;
-            int turnCount = 0;
+            String model = call.model.get() != null ? call.model.get() : initialRequest.model();
+            JSONObject first = new JSONObject(call.metadata).put("object", "chat.completion");
+            if (call.id.get() != null) {
+                first.put("id", call.id.get());
+            }
+            OpenRouterChatCompletionResponse response =
+                    OpenRouterChatCompletionResponse.combine(initialRequest, first, model, choices, call.turns);
+            return call.deadlineReached ? response.withDeadlineReached() : response;
+        }, initialRequest.getIsCanceledSupplier(), call::cancel);
+    }
 
-            while (true) {
-                turnCount++;
-                if (turnCount > MAX_TURNS) {
-                    throw new ApiClient.ApiClientException(
-                            "Exceeded maximum of " + MAX_TURNS + " streaming call iterations without final stop."
-                    );
-                }
+    /**
+     * Runs the streaming tool loop for one candidate and returns its final choice.
+     *
+     * @param candidate   index the content deltas are reported under (the stream itself has one choice)
+     * @param call        state shared by the streams of this call
+     */
+    private JSONObject streamToolLoop(
+            OpenRouterChatCompletionRequest initialRequest,
+            OpenRouterMessageHistory initialMessages,
+            StreamingResponseHandler<String> userHandler,
+            boolean useRetry,
+            int candidate,
+            int firstTurn,
+            StreamingCall call
+    ) {
+        OpenRouterMessageHistory messages = initialMessages;
+        Map<String, OpenRouterToolDefinition> toolMap = toolMap(initialRequest);
 
-                StreamingToolCallAccumulator accumulator = new StreamingToolCallAccumulator(userHandler);
-                OpenRouterChatCompletionRequest streamingRequest =
-                        buildStreamingRequest(currentRequest, messages, accumulator);
+        OpenRouterChatCompletionRequest currentRequest = initialRequest;
+        int turnCount = firstTurn - 1;
+        Long deadline = initialRequest.deadlineNanos();
+        long longestTurn = 0;
+        Integer schemaRetries = initialRequest.schemaViolationRetries();
+        OpenRouterMessageHistory corrected = null;
+        List<JSONObject> unsaved = new ArrayList<>(initialRequest.newConversationMessages());
 
-                if (useRetry) {
-                    client.executeWithRetry(streamingRequest);
-                } else {
-                    client.execute(streamingRequest);
-                }
+        while (true) {
+            turnCount++;
+            if (turnCount > MAX_TURNS) {
+                throw new ApiClient.ApiClientException(
+                        "Exceeded maximum of " + MAX_TURNS + " streaming call iterations without final stop."
+                );
+            }
 
-                if (!accumulator.hasToolCalls()) {
-                    if (userHandler instanceof StreamingToolCallHandler stch) {
-                        stch.onFinalComplete();
-                    }
-                    userHandler.onComplete();
+            StreamingToolCallAccumulator accumulator = new StreamingToolCallAccumulator(userHandler, candidate);
+            if (schemaRetries != null) {
+                accumulator.validateWith(new OpenRouterStreamingSchemaValidator(initialRequest.responseSchema()),
+                        !initialRequest.tools().isEmpty());
+            }
+            OpenRouterChatCompletionRequest turnRequest = currentRequest;
+            OpenRouterMessageHistory turnMessages = corrected != null ? corrected : messages;
+            corrected = null;
+            long turnStart = System.nanoTime();
+
+            try {
+                sendStreaming(
+                        turnRequest,
+                        new OpenRouterStreamingExchange(
+                                chunkHandler -> buildStreamingRequest(turnRequest, turnMessages, chunkHandler),
+                                accumulator
+                        ),
+                        accumulator,
+                        useRetry,
+                        call
+                );
+            } catch (ApiClient.ApiClientException e) {
+                throw deadlineExceededOr(e, deadline, call.turns);
+            }
 
-                    return new OpenRouterChatCompletionResponse(
-                            buildSyntheticResponseJson(accumulator, initialRequest.model()),
-                            initialRequest
+            String violation = accumulator.getSchemaViolation();
+            if (violation != null) {
+                boolean retry = schemaRetries > 0 && !OpenRouterDeadlines.isExpired(deadline);
+                if (userHandler instanceof StreamingToolCallHandler stch) {
+                    stch.onSchemaViolation(violation, retry ? schemaRetries : 0);
+                }
+                if (!retry) {
+                    throw new ApiClient.ApiResponseUnusableException(
+                            "Streamed content does not match the response schema: " + violation
                     );
                 }
+                schemaRetries--;
+                // The corrective exchange is only sent with the retry, not kept in the conversation
+                corrected = withSchemaCorrection(messages, accumulator, violation);
+                currentRequest = buildNextRequest(initialRequest, corrected);
+                continue;
+            }
 
-                JSONArray toolCalls = accumulator.getAccumulatedToolCalls();
-                messages.add(accumulator.buildAssistantMessage());
+            JSONObject choice = accumulator.buildChoice(0);
+            if (!accumulator.hasToolCalls()) {
+                persistTurn(initialRequest, unsaved, List.of(choice.getJSONObject("message")));
+                return choice;
+            }
+            if (OpenRouterDeadlines.isExpired(deadline)) {
+                throw deadlineExceeded(call.turns, null);
+            }
 
-                for (int i = 0; i < toolCalls.length(); i++) {
-                    JSONObject toolCall = toolCalls.getJSONObject(i);
-                    String toolCallId = toolCall.getString("id");
-                    JSONObject functionObj = toolCall.getJSONObject("function");
-                    String functionName = functionObj.getString("name");
-                    String argumentsStr = functionObj.getString("arguments");
+            List<JSONObject> turn = new ArrayList<>();
+            turn.add(accumulator.buildAssistantMessage());
+            turn.addAll(executeToolCalls(accumulator.getAccumulatedToolCalls(), toolMap, userHandler, deadline));
+            messages = messages.appendAll(turn);
+            persistTurn(initialRequest, unsaved, turn);
 
-                    if (!toolMap.containsKey(functionName)) {
-                        throw new ApiClient.ApiResponseUnusableException(
-                                "Unknown tool requested: " + functionName
-                        );
-                    }
+            if (userHandler instanceof StreamingToolCallHandler stch) {
+                stch.onTurnComplete(turnCount);
+            }
+            if (OpenRouterDeadlines.isExpired(deadline)) {
+                throw deadlineExceeded(call.turns, null);
+            }
+            longestTurn = Math.max(longestTurn, System.nanoTime() - turnStart);
 
-                    JSONObject args;
-                    try {
-                        args = new JSONObject(argumentsStr);
-                    } catch (Exception e) {
-                        throw new ApiClient.ApiResponseUnusableException(
-                                "Failed to parse tool call arguments for " + functionName + ": " + e.getMessage()
-                        );
-                    }
+            currentRequest = anotherTurnFits(deadline, longestTurn)
+                    ? buildNextRequest(initialRequest, messages)
+                    : buildFinalRequest(initialRequest, messages);
+        }
+    }
 
-                    if (userHandler instanceof StreamingToolCallHandler stch) {
-                        stch.onToolCallDetected(functionName, toolCallId, args);
-                    }
+    /**
+     * The messages of a turn that is retried after a schema violation: the aborted answer, if it
+     * has any content, and a user message naming the violation.
+     */
+    private static OpenRouterMessageHistory withSchemaCorrection(
+            OpenRouterMessageHistory messages,
+            StreamingToolCallAccumulator accumulator,
+            String violation
+    ) {
+        JSONObject aborted = accumulator.buildAssistantMessage();
+        if (!aborted.optString("content").isEmpty()) {
+            messages = messages.append(aborted);
+        }
+        return messages.append(new JSONObject()
+                .put("role", "user")
+                .put("content", "Your answer was stopped because it does not match the required JSON schema: "
+                        + violation + ". Answer again with only a JSON value that matches the schema, "
+                        + "without any other text."));
+    }
 
-                    OpenRouterToolDefinition toolDef = toolMap.get(functionName);
-                    OpenRouterToolResult result = toolDef.callback().handle(
-                            new OpenRouterToolCallContext(args)
-                    );
+    /**
+     * Streaming counterpart of {@link #handleCandidates}: the first turn streams all choices at
+     * once, deltas are routed by choice index; tool calls and missing candidates continue as
+     * concurrent single-choice streams.
+     */
+    private List<JSONObject> streamCandidates(
+            OpenRouterChatCompletionRequest initialRequest,
+            StreamingResponseHandler<String> userHandler,
+            boolean useRetry,
+            StreamingCall call
+    ) {
+        int n = initialRequest.candidateCount();
+        OpenRouterChatCompletionRequest single = buildNextRequest(initialRequest, initialRequest.messages(), null);
+        List<Supplier<JSONObject>> tasks = new ArrayList<>();
+
+        if (initialRequest.candidateMode() == OpenRouterCandidateMode.FAN_OUT) {
+            for (int c = 0; c < n; c++) {
+                int candidate = c;
+                tasks.add(() -> streamToolLoop(single, single.messages(), userHandler, useRetry, candidate, 1, call));
+            }
+            return runConcurrently(droppedAtDeadline(tasks, call.dropped));
+        }
 
+        StreamingToolCallAccumulator accumulator = new StreamingToolCallAccumulator(userHandler);
+        sendStreaming(
+                initialRequest,
+                new OpenRouterStreamingExchange(
+                        chunkHandler -> buildStreamingRequest(initialRequest, initialRequest.messages(), chunkHandler),
+                        accumulator
+                ),
+                accumulator,
+                useRetry,
+                call
+        );
+
+        Map<String, OpenRouterToolDefinition> toolMap = toolMap(initialRequest);
+        for (int c = 0; c < n; c++) {
+            int candidate = c;
+            if (!accumulator.choiceIndices().contains(c)) {
+                if (initialRequest.candidateMode() == OpenRouterCandidateMode.AUTO) {
+                    tasks.add(() -> streamToolLoop(single, single.messages(), userHandler, useRetry, candidate, 1, call));
+                }
+            } else if (!accumulator.hasToolCalls(c)) {
+                JSONObject choice = accumulator.buildChoice(c);
+                tasks.add(() -> choice);
+            } else {
+                JSONObject assistantMessage = accumulator.buildAssistantMessage(c);
+                JSONArray toolCalls = accumulator.getAccumulatedToolCalls(c);
+                tasks.add(() -> {
+                    OpenRouterMessageHistory messages = initialRequest.messages().append(assistantMessage)
+                            .appendAll(executeToolCalls(toolCalls, toolMap, userHandler, initialRequest.deadlineNanos()));
                     if (userHandler instanceof StreamingToolCallHandler stch) {
-                        stch.onToolExecuted(functionName, toolCallId, result);
+                        stch.onTurnComplete(1);
                     }
+                    return streamToolLoop(single, messages, userHandler, useRetry, candidate, 2, call);
+                });
+            }
+        }
+        return runConcurrently(droppedAtDeadline(tasks, call.dropped));
+    }
 
-                    JSONObject toolResultMsg = new JSONObject();
-                    toolResultMsg.put("role", "tool");
-                    toolResultMsg.put("tool_call_id", toolCallId);
-                    toolResultMsg.put("content", result.content().toString());
-                    messages.add(toolResultMsg);
+    /**
+     * Wraps candidate tasks so that a candidate whose tool loop is ended by the deadline yields
+     * null instead of failing the other candidates; its exception is added to {@code dropped}.
+     */
+    private static <T> List<Supplier<T>> droppedAtDeadline(
+            List<Supplier<T>> tasks,
+            List<OpenRouterChatCompletionRequest.DeadlineExceededException> dropped
+    ) {
+        List<Supplier<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            wrapped.add(() -> {
+                try {
+                    return task.get();
+                } catch (OpenRouterChatCompletionRequest.DeadlineExceededException e) {
+                    dropped.add(e);
+                    return null;
                 }
+            });
+        }
+        return wrapped;
+    }
 
-                if (userHandler instanceof StreamingToolCallHandler stch) {
-                    stch.onTurnComplete(turnCount);
-                }
+    /**
+     * The streamed candidates that gave a final answer; fails if the deadline ended all of them.
+     */
+    private static List<JSONObject> candidatesBeforeDeadline(List<JSONObject> choices, StreamingCall call) {
+        List<JSONObject> answered = new ArrayList<>(choices.size());
+        for (JSONObject choice : choices) {
+            if (choice != null) {
+                answered.add(choice);
+            }
+        }
+        if (!call.dropped.isEmpty()) {
+            if (answered.isEmpty()) {
+                throw deadlineExceeded(call.turns, call.dropped.get(0).getCause());
+            }
+            call.deadlineReached = true;
+        }
+        return answered;
+    }
+
+    /**
+     * {@code e}, or a {@link OpenRouterChatCompletionRequest.DeadlineExceededException} if the
+     * request timed out because the deadline has passed. Other failures are never turned into a
+     * deadline, even once it has passed.
+     */
+    private static RuntimeException deadlineExceededOr(RuntimeException e, Long deadline, List<OpenRouterUsage> turns) {
+        if (OpenRouterDeadlines.isExpired(deadline) && OpenRouterDeadlines.isTimeout(e)) {
+            return deadlineExceeded(turns, e);
+        }
+        return e;
+    }
+
+    private static OpenRouterChatCompletionRequest.DeadlineExceededException deadlineExceeded(
+            List<OpenRouterUsage> turns,
+            Throwable cause
+    ) {
+        return new OpenRouterChatCompletionRequest.DeadlineExceededException(
+                "Deadline reached after " + turns.size() + " turn(s) without a final answer", turns, cause);
+    }
+
+    /**
+     * Executes the tool calls of one assistant message and returns the resulting "tool" messages.
+     */
+    private List<JSONObject> executeToolCalls(
+            JSONArray toolCalls,
+            Map<String, OpenRouterToolDefinition> toolMap,
+            StreamingResponseHandler<String> userHandler,
+            Long deadlineNanos
+    ) {
+        List<JSONObject> results = new ArrayList<>(toolCalls.length());
+        for (int i = 0; i < toolCalls.length(); i++) {
+            JSONObject toolCall = toolCalls.getJSONObject(i);
+            String toolCallId = toolCall.getString("id");
+            JSONObject functionObj = toolCall.getJSONObject("function");
+            String functionName = functionObj.getString("name");
+            String argumentsStr = functionObj.getString("arguments");
+
+            // Check if we have this tool
+            if (!toolMap.containsKey(functionName)) {
+                throw new ApiClient.ApiResponseUnusableException(
+                        "Unknown tool requested: " + functionName
+                );
+            }
+
+            // Parse arguments
+            JSONObject args;
+            try {
+                args = new JSONObject(argumentsStr);
+            } catch (Exception e) {
+                throw new ApiClient.ApiResponseUnusableException(
+                        "Failed to parse tool call arguments for " + functionName + ": " + e.getMessage()
+                );
+            }
+
+            if (userHandler instanceof StreamingToolCallHandler stch) {
+                stch.onToolCallDetected(functionName, toolCallId, args);
+            }
+
+            // Execute the tool callback; a canceled request interrupts it
+            OpenRouterCancellableFuture.checkInterrupted();
+            OpenRouterToolDefinition toolDef = toolMap.get(functionName);
+            OpenRouterToolResult result = toolDef.callback().handle(
+                    new OpenRouterToolCallContext(args, deadlineNanos)
+            );
+            OpenRouterCancellableFuture.checkInterrupted();
+
+            if (userHandler instanceof StreamingToolCallHandler stch) {
+                stch.onToolExecuted(functionName, toolCallId, result);
+            }
+
+            // Add tool result as a message with role "tool"
+            // OpenRouter expects: { "role": "tool", "tool_call_id": "...", "content": "..." }
+            JSONObject toolResultMsg = new JSONObject();
+            toolResultMsg.put("role", "tool");
+            toolResultMsg.put("tool_call_id", toolCallId);
+            toolResultMsg.put("content", result.content().toString());
+            results.add(toolResultMsg);
+        }
+        return results;
+    }
+
+    private static Map<String, OpenRouterToolDefinition> toolMap(OpenRouterChatCompletionRequest request) {
+        var toolMap = new HashMap<String, OpenRouterToolDefinition>();
+        for (var tool : request.tools()) {
+            toolMap.put(tool.name(), tool);
+        }
+        return toolMap;
+    }
 
-                currentRequest = buildNextRequest(initialRequest, messages);
+    /**
+     * Dispatches a request and reports the outcome to the request's model router, if any.
+     */
+    private OpenRouterChatCompletionResponse send(OpenRouterChatCompletionRequest request, boolean useExponentialBackoff) {
+        OpenRouterModelRouter router = request.modelRouter();
+        long start = System.nanoTime();
+        OpenRouterChatCompletionResponse response;
+        try {
+            response = client.dispatch(request, useExponentialBackoff);
+        } catch (RuntimeException e) {
+            if (router != null) {
+                router.recordFailure(request);
             }
-        });
+            throw e;
+        }
+        if (router != null) {
+            router.record(request, response.model(), System.nanoTime() - start);
+        }
+        recordTenantTokens(request, response.usage());
+        collectGeneration(response.id());
+        return response;
     }
 
-    private OpenRouterChatCompletionRequest buildStreamingRequest(
-            OpenRouterChatCompletionRequest original,
-            List<JSONObject> updatedMessages,
-            StreamingToolCallAccumulator accumulator
+    /**
+     * Writes a completed turn to the request's conversation store: the messages not saved yet
+     * (the new input of the call, until the first turn is saved), then the turn itself (the
+     * assistant message and its tool results, or the final answer), then a commit.
+     */
+    private static void persistTurn(
+            OpenRouterChatCompletionRequest request,
+            List<JSONObject> unsaved,
+            List<JSONObject> turn
     ) {
-        var builder = OpenRouterChatCompletionRequest.builder(client)
-                .model(original.model())
-                .maxExecutionTimeInSeconds(original.getMaxExecutionTimeInSeconds())
-                .setCancelSupplier(original.getIsCanceledSupplier())
-                .temperature(original.temperature())
-                .topK(original.topK())
-                .topP(original.topP())
-                .maxOutputTokens(original.maxTokens())
-                .stopSequences(original.stopSequences())
-                .tools(original.tools())
-                .toolChoice(original.toolChoice())
-                .parallelToolCalls(original.parallelToolCalls())
-                .responseSchema(original.responseSchema())
-                .responseMimeType(original.responseMimeType())
-                .thinking(original.thinkingBudget())
-                .stream(true)
-                .addAllMessages(updatedMessages);
+        OpenRouterConversationStore store = request.conversationStore();
+        if (store == null) {
+            return;
+        }
+        String sessionId = request.conversationId();
+        store.appendAll(sessionId, unsaved);
+        store.appendAll(sessionId, turn);
+        store.commit(sessionId);
+        unsaved.clear();
+    }
 
-        if (original.providers() != null && !original.providers().isEmpty()) {
-            builder.provider(original.providers().toArray(new String[0]));
+    private void collectGeneration(String generationId) {
+        OpenRouterGenerationCollector collector = client.connectionSettings().generationCollector();
+        if (collector != null) {
+            collector.submit(generationId);
         }
-        if (original.hasCaptureOnSuccess()) {
-            builder.captureOnSuccess(original.getCaptureOnSuccess());
+    }
+
+    private void recordTenantTokens(OpenRouterChatCompletionRequest request, JSONObject usage) {
+        OpenRouterTenantScheduler tenants = client.connectionSettings().tenantScheduler();
+        if (tenants != null && usage != null) {
+            tenants.recordTokens(request.tenant(), OpenRouterUsage.fromJson(usage).totalTokens());
         }
-        if (original.hasCaptureOnError()) {
-            builder.captureOnError(original.getCaptureOnError());
+    }
+
+    /**
+     * Streaming counterpart of {@link #send}: the latency reported to the model router is the
+     * time until the first chunk, the served model is taken from the chunks.
+     */
+    private void sendStreaming(
+            OpenRouterChatCompletionRequest request,
+            OpenRouterStreamingExchange exchange,
+            StreamingToolCallAccumulator accumulator,
+            boolean useRetry,
+            StreamingCall call
+    ) {
+        OpenRouterModelRouter router = request.modelRouter();
+        accumulator.cancelWhen(call::isCanceled);
+        long start = System.nanoTime();
+        try {
+            client.dispatchStreaming(exchange, useRetry);
+        } catch (RuntimeException e) {
+            call.checkCanceled();
+            if (router != null) {
+                router.recordFailure(request);
+            }
+            throw e;
+        }
+        // A canceled stream ends early without an error; its partial result must not be used
+        call.checkCanceled();
+        if (accumulator.getModel() != null) {
+            call.model.compareAndSet(null, accumulator.getModel());
+        }
+        if (accumulator.getId() != null && call.id.compareAndSet(null, accumulator.getId())) {
+            call.metadata.putAll(accumulator.getMetadata());
+        }
+        if (accumulator.getUsage() != null) {
+            call.turns.add(OpenRouterUsage.fromJson(accumulator.getUsage()));
+            recordTenantTokens(request, accumulator.getUsage());
         }
+        collectGeneration(accumulator.getId());
+        if (router != null) {
+            long firstChunk = accumulator.getFirstChunkNanos();
+            router.record(request, accumulator.getModel(), (firstChunk != 0 ? firstChunk : System.nanoTime()) - start);
+        }
+    }
 
-        builder.setRawJsonStreaming(accumulator);
-        return builder.build();
+    /**
+     * State shared by the streams of one streaming call: what they report besides the choices,
+     * and whether the call was canceled.
+     */
+    private static final class StreamingCall {
+        final AtomicReference<String> model = new AtomicReference<>();
+        final AtomicReference<String> id = new AtomicReference<>();
+        final Map<String, Object> metadata = new ConcurrentHashMap<>();
+        final List<OpenRouterUsage> turns = new CopyOnWriteArrayList<>();
+        final List<OpenRouterChatCompletionRequest.DeadlineExceededException> dropped = new CopyOnWriteArrayList<>();
+        private final Supplier<Boolean> canceledSupplier;
+        private volatile boolean canceled;
+        volatile boolean deadlineReached;
+
+        /**
+         * @param canceledSupplier the request's cancel supplier, or null; api-base may end a stream
+         *                         early when it returns true, so it is checked like {@link #cancel()}
+         */
+        StreamingCall(Supplier<Boolean> canceledSupplier) {
+            this.canceledSupplier = canceledSupplier;
+        }
+
+        void cancel() {
+            canceled = true;
+        }
+
+        boolean isCanceled() {
+            return canceled || (canceledSupplier != null && Boolean.TRUE.equals(canceledSupplier.get()));
+        }
+
+        void checkCanceled() {
+            if (isCanceled()) {
+                throw new CancellationException("Streaming request was canceled");
+            }
+            OpenRouterCancellableFuture.checkInterrupted();
+        }
     }
 
-    private JSONObject buildSyntheticResponseJson(StreamingToolCallAccumulator accumulator, String model) {
-        JSONObject msg = accumulator.buildAssistantMessage();
-        JSONObject choice = new JSONObject();
-        choice.put("index", 0);
-        choice.put("message", msg);
-        choice.put("finish_reason", accumulator.getFinishReason() != null ? accumulator.getFinishReason() : "stop");
+    /**
+     * Stops a synchronous tool loop between two turns once the request's cancel supplier returns
+     * true; within a turn, {@link #handleRequest} interrupts the worker thread.
+     */
+    private static void checkCanceled(OpenRouterChatCompletionRequest request) {
+        Supplier<Boolean> canceled = request.getIsCanceledSupplier();
+        if (canceled != null && Boolean.TRUE.equals(canceled.get())) {
+            throw new CancellationException("Request was canceled");
+        }
+        OpenRouterCancellableFuture.checkInterrupted();
+    }
 
-        JSONObject root = new JSONObject();
-        root.put("choices", new JSONArray().put(choice));
-        if (model != null) {
-            root.put("model", model);
+    private static void checkForError(OpenRouterChatCompletionResponse response) {
+        if (response.getJson().has("error")) {
+            throw new ApiClient.HTTP_400_RequestRejectedException(
+                    "OpenRouter API returned an error: " + response.getJson().toString()
+            );
+        }
+    }
+
+    /**
+     * Runs the tasks on virtual threads and returns their results in order. The first failure
+     * cancels the remaining tasks and is rethrown.
+     */
+    private static <T> List<T> runConcurrently(List<Supplier<T>> tasks) {
+        if (tasks.size() == 1) {
+            return Collections.singletonList(tasks.get(0).get());
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Supplier<T> task : tasks) {
+                futures.add(executor.submit(task::get));
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    if (e.getCause() instanceof RuntimeException re) {
+                        throw re;
+                    }
+                    throw new ApiClient.ApiClientException("Candidate request failed: " + e.getCause(), e.getCause());
+                } catch (InterruptedException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    Thread.currentThread().interrupt();
+                    throw new ApiClient.ApiClientException("Interrupted while waiting for candidates", e);
+                }
+            }
+            return results;
         }
-        return root;
+    }
+
+    private OpenRouterChatCompletionRequest buildStreamingRequest(
+            OpenRouterChatCompletionRequest original,
+            List<JSONObject> updatedMessages,
+            StreamingResponseHandler<String> chunkHandler
+    ) {
+        var builder = copyOf(original, updatedMessages)
+                .n(original.n())
+                .stream(true);
+        builder.setRawJsonStreaming(chunkHandler);
+        return builder.build();
     }
 
     private OpenRouterChatCompletionRequest buildNextRequest(
             OpenRouterChatCompletionRequest original,
             List<JSONObject> updatedMessages
+    ) {
+        return buildNextRequest(original, updatedMessages, original.n());
+    }
+
+    /**
+     * Builds the last turn of a loop whose deadline leaves no room for another round of tool
+     * calls: the tools stay declared (the conversation refers to them), but the model is asked
+     * to answer with what it has.
+     */
+    private OpenRouterChatCompletionRequest buildFinalRequest(
+            OpenRouterChatCompletionRequest original,
+            List<JSONObject> updatedMessages
+    ) {
+        return copyOf(original, updatedMessages)
+                .n(original.n())
+                .stream(original.stream())
+                .toolChoice("none")
+                .build();
+    }
+
+    /**
+     * Whether the remaining budget still holds a turn as long as the longest one so far.
+     */
+    private static boolean anotherTurnFits(Long deadlineNanos, long longestTurnNanos) {
+        return deadlineNanos == null || deadlineNanos - System.nanoTime() > longestTurnNanos;
+    }
+
+    private OpenRouterChatCompletionRequest buildNextRequest(
+            OpenRouterChatCompletionRequest original,
+            List<JSONObject> updatedMessages,
+            Integer n
+    ) {
+        return copyOf(original, updatedMessages)
+                .n(n)
+                .stream(original.stream())
+                .build();
+    }
+
+    /**
+     * Returns a builder preset with the settings of {@code original}, except for {@code n},
+     * the stream flag and the streaming handler, which differ between follow-up requests.
+     * {@code messages} starts with the messages of {@code original}, whose images are not
+     * preprocessed again.
+     */
+    OpenRouterChatCompletionRequest.Builder copyOf(
+            OpenRouterChatCompletionRequest original,
+            List<JSONObject> messages
     ) {
         var builder = OpenRouterChatCompletionRequest.builder(client)
                 .model(original.model())
+                .modelRouter(original.modelRouter())
                 .maxExecutionTimeInSeconds(original.getMaxExecutionTimeInSeconds())
                 .setCancelSupplier(original.getIsCanceledSupplier())
                 .temperature(original.temperature())
@@ -305,8 +871,22 @@ public final class OpenRouterChatCompletionCallHandler {
                 .responseSchema(original.responseSchema())
                 .responseMimeType(original.responseMimeType())
                 .thinking(original.thinkingBudget())
-                .stream(original.stream())
-                .addAllMessages(updatedMessages);
+                .candidateMode(original.candidateMode())
+                .automaticCaching(original.automaticCaching())
+                .usageAccounting(original.usageAccounting())
+                .deadlineNanos(original.deadlineNanos())
+                .priority(original.priority())
+                .tenant(original.tenant())
+                .conversationSession(original.conversationStore(), original.conversationId())
+                .abortOnSchemaViolation(original.schemaViolationRetries())
+                .imagePreprocessor(original.imagePreprocessor())
+                .preprocessedMessages(original.messages().size())
+                .addAllMessages(messages);
+
+        // Carry the fallback list over (a model router reorders it again on build)
+        if (!original.models().isEmpty()) {
+            builder.models(original.models());
+        }
 
         // Add provider selection if present
         if (original.providers() != null && !original.providers().isEmpty()) {
@@ -321,6 +901,6 @@ public final class OpenRouterChatCompletionCallHandler {
             builder.captureOnError(original.getCaptureOnError());
         }
 
-        return builder.build();
+        return builder;
     }
 }
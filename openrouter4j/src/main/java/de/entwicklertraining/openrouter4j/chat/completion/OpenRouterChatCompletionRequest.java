@@ -1,17 +1,20 @@
 package de.entwicklertraining.openrouter4j.chat.completion;
 
+import de.entwicklertraining.api.base.ApiClient;
 import de.entwicklertraining.api.base.ApiRequestBuilderBase;
 import de.entwicklertraining.api.base.streaming.SSEStreamProcessor;
 import de.entwicklertraining.api.base.streaming.StreamingFormat;
 import de.entwicklertraining.api.base.streaming.StreamingInfo;
 import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
 import de.entwicklertraining.openrouter4j.*;
+import de.entwicklertraining.openrouter4j.conversation.OpenRouterConversationStore;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -24,12 +27,14 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
 
     private final OpenRouterClient client;
     private final String model;
+    private final List<String> models; // OpenRouter-specific: server-side fallback list
+    private final OpenRouterModelRouter modelRouter;
     private final Double temperature;
     private final Integer topK;
     private final Double topP;
     private final Integer maxTokens; // OpenRouter uses max_tokens (not maxOutputTokens)
     private final List<String> stopSequences;
-    private final List<JSONObject> messages;
+    private final OpenRouterMessageHistory messages;
     private final List<OpenRouterToolDefinition> tools;
     private final String toolChoice; // "auto", "required", "none"
     private final Boolean parallelToolCalls;
@@ -38,20 +43,38 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
     private final List<String> providers; // OpenRouter-specific: provider selection
     private final Integer thinkingBudget; // For reasoning models
     private final boolean stream; // Enable streaming responses
+    private final Integer n; // Number of candidates
+    private final OpenRouterCandidateMode candidateMode;
+    private final OpenRouterCacheControl automaticCaching;
+    private final boolean usageAccounting;
+    private final boolean streamUsage;
+    private final Long deadlineNanos; // System.nanoTime() by which the whole call must be done
+    private final OpenRouterPriority priority;
+    private final String tenant;
+    private final OpenRouterConversationStore conversationStore;
+    private final String conversationId;
+    private final List<JSONObject> newConversationMessages; // not yet in the conversation store
+    private final Integer schemaViolationRetries; // null: streamed content is not validated
+    private final OpenRouterImagePreprocessor imagePreprocessor;
 
     private static final Set<String> ALLOWED_EXTENSIONS =
             Set.of("jpg", "jpeg", "png", "webp", "heic", "heif");
 
+    private static final Set<String> ALLOWED_MIME_TYPES =
+            Set.of("image/jpeg", "image/png", "image/webp", "image/heic", "image/heif");
+
     OpenRouterChatCompletionRequest(
             Builder builder,
             OpenRouterClient client,
             String model,
+            List<String> models,
+            OpenRouterModelRouter modelRouter,
             Double temperature,
             Integer topK,
             Double topP,
             Integer maxTokens,
             List<String> stopSequences,
-            List<JSONObject> messages,
+            OpenRouterMessageHistory messages,
             List<OpenRouterToolDefinition> tools,
             String toolChoice,
             Boolean parallelToolCalls,
@@ -59,11 +82,26 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
             String responseMimeType,
             List<String> providers,
             Integer thinkingBudget,
-            boolean stream
+            boolean stream,
+            Integer n,
+            OpenRouterCandidateMode candidateMode,
+            OpenRouterCacheControl automaticCaching,
+            boolean usageAccounting,
+            boolean streamUsage,
+            Long deadlineNanos,
+            OpenRouterPriority priority,
+            String tenant,
+            OpenRouterConversationStore conversationStore,
+            String conversationId,
+            List<JSONObject> newConversationMessages,
+            Integer schemaViolationRetries,
+            OpenRouterImagePreprocessor imagePreprocessor
     ) {
         super(builder);
         this.client = client;
         this.model = model;
+        this.models = models;
+        this.modelRouter = modelRouter;
         this.temperature = temperature;
         this.topK = topK;
         this.topP = topP;
@@ -78,12 +116,38 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         this.providers = providers;
         this.thinkingBudget = thinkingBudget;
         this.stream = stream;
+        this.n = n;
+        this.candidateMode = candidateMode;
+        this.automaticCaching = automaticCaching;
+        this.usageAccounting = usageAccounting;
+        this.streamUsage = streamUsage;
+        this.deadlineNanos = deadlineNanos;
+        this.priority = priority;
+        this.tenant = tenant;
+        this.conversationStore = conversationStore;
+        this.conversationId = conversationId;
+        this.newConversationMessages = newConversationMessages;
+        this.schemaViolationRetries = schemaViolationRetries;
+        this.imagePreprocessor = imagePreprocessor;
     }
 
+    @Override
     public String model() {
         return model;
     }
 
+    /**
+     * The fallback list sent as {@code models}, in the order it is tried; empty if only
+     * {@link #model()} is used.
+     */
+    public List<String> models() {
+        return models;
+    }
+
+    public OpenRouterModelRouter modelRouter() {
+        return modelRouter;
+    }
+
     public Double temperature() {
         return temperature;
     }
@@ -104,7 +168,10 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         return stopSequences;
     }
 
-    public List<JSONObject> messages() {
+    /**
+     * The conversation; deriving a history with more messages from it shares the existing ones.
+     */
+    public OpenRouterMessageHistory messages() {
         return messages;
     }
 
@@ -143,6 +210,100 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         return stream;
     }
 
+    /**
+     * Number of candidates requested, or null if not set.
+     */
+    public Integer n() {
+        return n;
+    }
+
+    /**
+     * Number of candidates requested, at least 1.
+     */
+    public int candidateCount() {
+        return n != null ? n : 1;
+    }
+
+    public OpenRouterCandidateMode candidateMode() {
+        return candidateMode;
+    }
+
+    /**
+     * Breakpoint placed automatically on the system prompt, the tools and the conversation
+     * prefix, or null if automatic caching is off.
+     */
+    public OpenRouterCacheControl automaticCaching() {
+        return automaticCaching;
+    }
+
+    /**
+     * Whether OpenRouter is asked to report the cost in {@code usage}.
+     */
+    public boolean usageAccounting() {
+        return usageAccounting;
+    }
+
+    /**
+     * The deadline of the whole call as a {@link System#nanoTime()} value, or null if there is none.
+     */
+    public Long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    @Override
+    public OpenRouterPriority priority() {
+        return priority;
+    }
+
+    @Override
+    public String tenant() {
+        return tenant;
+    }
+
+    /**
+     * The store the conversation is persisted to, or null.
+     */
+    public OpenRouterConversationStore conversationStore() {
+        return conversationStore;
+    }
+
+    /**
+     * The session id in the {@link #conversationStore()}, or null.
+     */
+    public String conversationId() {
+        return conversationId;
+    }
+
+    /**
+     * The messages added after {@link Builder#conversation} (without the system instruction), which
+     * are written to the store with the first completed turn.
+     */
+    List<JSONObject> newConversationMessages() {
+        return newConversationMessages;
+    }
+
+    /**
+     * How often a streamed turn that violated the response schema is retried, or null if streamed
+     * content is not validated.
+     */
+    public Integer schemaViolationRetries() {
+        return schemaViolationRetries;
+    }
+
+    /**
+     * The preprocessor applied to inline images on build, or null.
+     */
+    public OpenRouterImagePreprocessor imagePreprocessor() {
+        return imagePreprocessor;
+    }
+
+    /**
+     * Time left until the deadline (zero once it has passed), or null if there is no deadline.
+     */
+    public Duration remainingTime() {
+        return deadlineNanos != null ? OpenRouterDeadlines.remaining(deadlineNanos) : null;
+    }
+
     @Override
     public String getRelativeUrl() {
         return "/chat/completions";
@@ -153,13 +314,39 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         return "POST";
     }
 
+    /**
+     * Returns the JSON body. Inline images ({@link OpenRouterImageData}) are expanded to their
+     * base64 data URLs; prefer {@link #getBodyBytes()} when the body is sent.
+     */
     @Override
     public String getBody() {
+        JSONObject root = buildBodyJson();
+        if (!OpenRouterRequestBodyWriter.containsImageData(root)) {
+            return root.toString();
+        }
+        return new String(OpenRouterRequestBodyWriter.write(root), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the UTF-8 encoded JSON body. Inline images are base64-encoded straight into
+     * the returned array instead of being materialized as intermediate strings.
+     */
+    @Override
+    public byte[] getBodyBytes() {
+        return OpenRouterRequestBodyWriter.write(buildBodyJson());
+    }
+
+    private JSONObject buildBodyJson() {
         JSONObject root = new JSONObject();
 
         // Required: model
         root.put("model", model);
 
+        // Fallback models, tried in order by OpenRouter if the previous one fails
+        if (models.size() > 1) {
+            root.put("models", new JSONArray(models));
+        }
+
         // Required: messages
         JSONArray messagesArr = new JSONArray();
         for (JSONObject msg : messages) {
@@ -180,6 +367,9 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         if (maxTokens != null) {
             root.put("max_tokens", maxTokens);
         }
+        if (n != null && candidateMode != OpenRouterCandidateMode.FAN_OUT) {
+            root.put("n", n);
+        }
         if (stopSequences != null && !stopSequences.isEmpty()) {
             JSONArray stopArr = new JSONArray();
             for (String s : stopSequences) {
@@ -249,9 +439,22 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         // Streaming
         if (stream) {
             root.put("stream", true);
+            if (streamUsage) {
+                root.put("stream_options", new JSONObject().put("include_usage", true));
+            }
+        }
+
+        // Usage accounting (OpenRouter-specific): adds the cost to usage
+        if (usageAccounting) {
+            root.put("usage", new JSONObject().put("include", true));
+        }
+
+        // Prompt caching breakpoints
+        if (automaticCaching != null) {
+            OpenRouterPromptCache.applyAutomatic(messagesArr, root.optJSONArray("tools"), automaticCaching);
         }
 
-        return root.toString();
+        return root;
     }
 
     @Override
@@ -259,6 +462,27 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         return new OpenRouterChatCompletionResponse(new JSONObject(responseBody), this);
     }
 
+    /**
+     * Thrown when the {@link Builder#deadline(Duration) deadline} ends a tool loop before the model
+     * gave its final answer. The tool calls of the completed turns have been executed (and
+     * persisted, with a conversation store); {@link #turnUsage()} holds the usage of those turns.
+     */
+    public static final class DeadlineExceededException extends ApiClient.ApiClientException {
+        private final List<OpenRouterUsage> turnUsage;
+
+        public DeadlineExceededException(String message, List<OpenRouterUsage> turnUsage, Throwable cause) {
+            super(message, cause);
+            this.turnUsage = List.copyOf(turnUsage);
+        }
+
+        /**
+         * Usage of the turns completed before the deadline, in order.
+         */
+        public List<OpenRouterUsage> turnUsage() {
+            return turnUsage;
+        }
+    }
+
     public static Builder builder(OpenRouterClient client) {
         return new Builder(client);
     }
@@ -266,12 +490,14 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
     public static final class Builder extends ApiRequestBuilderBase<Builder, OpenRouterChatCompletionRequest> {
         private final OpenRouterClient client;
         private String model = "google/gemini-2.5-flash";
+        private final List<String> models = new ArrayList<>();
+        private OpenRouterModelRouter modelRouter;
         private Double temperature;
         private Integer topK;
         private Double topP;
         private Integer maxTokens;
         private final List<String> stopSequences = new ArrayList<>();
-        private final List<JSONObject> messages = new ArrayList<>();
+        private OpenRouterMessageHistory messages = OpenRouterMessageHistory.empty();
         private final List<OpenRouterToolDefinition> tools = new ArrayList<>();
         private String toolChoice;
         private Boolean parallelToolCalls;
@@ -280,14 +506,72 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         private final List<String> providers = new ArrayList<>();
         private Integer thinkingBudget;
         private boolean streamEnabled;
+        private Integer n;
+        private OpenRouterCandidateMode candidateMode = OpenRouterCandidateMode.AUTO;
+        private OpenRouterCacheControl automaticCaching;
+        private boolean usageAccounting;
+        private boolean streamUsage;
+        private Duration deadline;
+        private Long deadlineNanos;
+        private int maxExecutionTimeInSeconds;
+        private OpenRouterPriority priority = OpenRouterPriority.NORMAL;
+        private String tenant;
+        private OpenRouterConversationStore conversationStore;
+        private String conversationId;
+        private int newMessagesFrom = -1; // index of the first message added after the conversation was loaded
+        private int preprocessedMessages; // leading messages whose images are preprocessed already
+        private JSONObject systemMessage;
+        private Integer schemaViolationRetries;
+        private OpenRouterImagePreprocessor imagePreprocessor;
 
         public Builder(OpenRouterClient client) {
             super(client); // Pass client to parent for execute() methods
             this.client = client;
         }
 
+        /**
+         * Sets the model. Replaces a fallback list set with {@link #models(String...)}.
+         */
         public Builder model(String m) {
             this.model = m;
+            this.models.clear();
+            return this;
+        }
+
+        /**
+         * Sets a list of models that OpenRouter tries in order: if the first one fails (error,
+         * rate limit, downtime, moderation), the request is routed to the next one on the server
+         * side, without an extra round trip. The model that actually answered is reported by
+         * {@link OpenRouterChatCompletionResponse#model()}.
+         */
+        public Builder models(String... modelIds) {
+            return models(Arrays.asList(modelIds));
+        }
+
+        /**
+         * List variant of {@link #models(String...)}.
+         */
+        public Builder models(List<String> modelIds) {
+            Objects.requireNonNull(modelIds, "models must not be null");
+            if (modelIds.isEmpty()) {
+                throw new IllegalArgumentException("models must not be empty");
+            }
+            for (String id : modelIds) {
+                Objects.requireNonNull(id, "models must not contain null");
+            }
+            this.model = modelIds.get(0);
+            this.models.clear();
+            this.models.addAll(modelIds);
+            return this;
+        }
+
+        /**
+         * Reorders the {@link #models(String...)} fallback list by the latency and failure rate the
+         * router has observed, when the request is built, and feeds the outcome of the request back
+         * into the router.
+         */
+        public Builder modelRouter(OpenRouterModelRouter router) {
+            this.modelRouter = router;
             return this;
         }
 
@@ -332,12 +616,69 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
             JSONObject msg = new JSONObject();
             msg.put("role", role);
             msg.put("content", text);
-            messages.add(msg);
+            messages = messages.append(msg);
+            return this;
+        }
+
+        /**
+         * Adds a typed message, converted with {@link OpenRouterMessage#toJson()}.
+         */
+        public Builder addMessage(OpenRouterMessage message) {
+            messages = messages.append(message.toJson());
+            return this;
+        }
+
+        /**
+         * Adds typed messages, converted with {@link OpenRouterMessage#toJson()}.
+         */
+        public Builder addMessages(List<? extends OpenRouterMessage> msgList) {
+            for (OpenRouterMessage message : msgList) {
+                addMessage(message);
+            }
             return this;
         }
 
+        /**
+         * Adds a message with a prompt caching breakpoint after it; everything up to and including
+         * this message is cached by providers that support it.
+         */
+        public Builder addMessage(String role, String text, OpenRouterCacheControl cacheControl) {
+            addMessage(role, text);
+            return cacheBreakpoint(cacheControl);
+        }
+
+        /**
+         * Places a prompt caching breakpoint after the last message added so far (also works
+         * for image messages). Does nothing if there is no message with content yet.
+         */
+        public Builder cacheBreakpoint(OpenRouterCacheControl cacheControl) {
+            Objects.requireNonNull(cacheControl, "cacheControl must not be null");
+            if (!messages.isEmpty()) {
+                int last = messages.size() - 1;
+                messages = messages.with(last, OpenRouterPromptCache.withBreakpoint(messages.get(last), cacheControl));
+            }
+            return this;
+        }
+
+        /**
+         * Places prompt caching breakpoints automatically on every request, including the
+         * follow-up requests of a tool loop: after the system prompt, after the last tool and on
+         * the last message, which is the prefix the next turn repeats. Explicit breakpoints are
+         * kept and count against the limit of {@link OpenRouterCacheControl#MAX_BREAKPOINTS}.
+         *
+         * @param cacheControl the breakpoint to place, or null to turn automatic caching off
+         */
+        public Builder automaticCaching(OpenRouterCacheControl cacheControl) {
+            this.automaticCaching = cacheControl;
+            return this;
+        }
+
+        /**
+         * Adds the messages; an {@link OpenRouterMessageHistory} passed to an empty builder is
+         * taken over as it is, without copying.
+         */
         public Builder addAllMessages(List<JSONObject> msgList) {
-            this.messages.addAll(msgList);
+            this.messages = messages.appendAll(msgList);
             return this;
         }
 
@@ -379,14 +720,31 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
          * If a system message already exists, it will be replaced.
          */
         public Builder systemInstruction(String instruction) {
-            // Remove existing system messages
-            messages.removeIf(msg -> "system".equals(msg.optString("role")));
-
-            // Add new system message at the beginning
+            // Add new system message at the beginning, followed by all but the existing system messages
             JSONObject systemMsg = new JSONObject();
             systemMsg.put("role", "system");
             systemMsg.put("content", instruction);
-            messages.add(0, systemMsg);
+            int newMessages = 0;
+            if (newMessagesFrom >= 0) {
+                newMessages = (int) messages.subList(newMessagesFrom, messages.size()).stream()
+                        .filter(msg -> !"system".equals(msg.optString("role")))
+                        .count();
+            }
+            messages = OpenRouterMessageHistory.empty().append(systemMsg).appendAll(messages.without("system"));
+            if (newMessagesFrom >= 0) {
+                newMessagesFrom = messages.size() - newMessages;
+            }
+            systemMessage = systemMsg;
+            return this;
+        }
+
+        /**
+         * Sets the system instruction with a prompt caching breakpoint after it.
+         */
+        public Builder systemInstruction(String instruction, OpenRouterCacheControl cacheControl) {
+            systemInstruction(instruction);
+            messages = messages.with(0, OpenRouterPromptCache.withBreakpoint(messages.get(0), cacheControl));
+            systemMessage = messages.get(0);
             return this;
         }
 
@@ -410,7 +768,170 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
             return this;
         }
 
+        /**
+         * Requests {@code n} candidate completions for the same prompt, e.g. for voting or
+         * best-of-N reranking. The prompt is processed once when the model supports {@code n};
+         * see {@link #candidateMode(OpenRouterCandidateMode)} for models that don't.
+         *
+         * <p>The candidates are available via {@link OpenRouterChatCompletionResponse#candidates()}
+         * and the choice-indexed accessors. When streaming, deltas are routed by candidate index
+         * to a {@link StreamingCandidateHandler}. With tools, every candidate runs its own tool loop.
+         *
+         * <p>The tool loops of the candidates run concurrently, so with {@code n > 1} the tool
+         * callbacks are invoked from several threads at the same time (once per candidate and tool
+         * call). Callbacks that share state must be thread-safe.
+         *
+         * @param n number of candidates (at least 1), or null to not send the parameter
+         */
+        public Builder n(Integer n) {
+            if (n != null && n < 1) {
+                throw new IllegalArgumentException("n must be at least 1: " + n);
+            }
+            this.n = n;
+            return this;
+        }
+
+        /**
+         * How candidates are obtained when {@code n > 1}. Default: {@link OpenRouterCandidateMode#AUTO}.
+         */
+        public Builder candidateMode(OpenRouterCandidateMode mode) {
+            this.candidateMode = Objects.requireNonNull(mode, "candidateMode must not be null");
+            return this;
+        }
+
+        /**
+         * Sets a time budget for the whole call, counted from {@link #build()}. Unlike
+         * {@code maxExecutionTimeInSeconds}, which applies to every HTTP request on its own, the
+         * budget covers all turns of a tool loop including the tool callbacks:
+         * <ul>
+         *   <li>every HTTP request times out when the remaining budget is used up,</li>
+         *   <li>tool callbacks see the remaining time via {@link OpenRouterToolCallContext#remainingTime()},</li>
+         *   <li>when another turn with tools would not fit into the remaining budget, the next turn asks
+         *       the model for its final answer ({@code tool_choice: "none"}),</li>
+         *   <li>when the budget is used up before the final answer, the call fails with a
+         *       {@link DeadlineExceededException}; with several candidates, those that answered in time
+         *       are returned, marked with {@link OpenRouterChatCompletionResponse#deadlineReached()}.</li>
+         * </ul>
+         *
+         * @param budget the time budget, or null for none
+         */
+        public Builder deadline(Duration budget) {
+            if (budget != null && (budget.isZero() || budget.isNegative())) {
+                throw new IllegalArgumentException("deadline must be positive: " + budget);
+            }
+            this.deadline = budget;
+            return this;
+        }
+
+        /**
+         * Priority class for the client's {@link OpenRouterRequestScheduler}
+         * (default {@link OpenRouterPriority#NORMAL}). Applies to every request of a tool loop.
+         */
+        public Builder priority(OpenRouterPriority priority) {
+            this.priority = Objects.requireNonNull(priority, "priority must not be null");
+            return this;
+        }
+
+        /**
+         * Tenant the request is accounted to by the client's {@link OpenRouterTenantScheduler}
+         * (fair share and quotas). Applies to every request of a tool loop.
+         */
+        public Builder tenant(String tenant) {
+            this.tenant = tenant;
+            return this;
+        }
+
+        /**
+         * Persists the conversation in a store and resumes it from there. The committed messages
+         * of the session are added now, so call this before adding the new messages of the call.
+         * While the call runs, every completed turn (assistant message and tool results, or the
+         * final answer) is written to the store together with the new messages before it. After a
+         * crash, building the request again with the same session continues from the last
+         * completed turn. Not supported together with {@code n > 1}.
+         *
+         * @param store     the store
+         * @param sessionId id of the conversation in the store
+         */
+        public Builder conversation(OpenRouterConversationStore store, String sessionId) {
+            this.conversationStore = Objects.requireNonNull(store, "store must not be null");
+            this.conversationId = Objects.requireNonNull(sessionId, "sessionId must not be null");
+            // The stored messages are read from the store when the request body is written
+            this.messages = messages.appendView(store.messages(sessionId));
+            this.newMessagesFrom = messages.size();
+            return this;
+        }
+
+        /**
+         * Persists to a session without loading it (follow-up requests of a tool loop).
+         */
+        Builder conversationSession(OpenRouterConversationStore store, String sessionId) {
+            this.conversationStore = store;
+            this.conversationId = sessionId;
+            return this;
+        }
+
+        /**
+         * Validates the streamed content against the {@link #responseSchema(OpenRouterJsonSchema)}
+         * while it arrives (see {@link OpenRouterStreamingSchemaValidator}). On the first definitive
+         * violation, e.g. prose before the JSON, a value of the wrong type or an array longer than
+         * its {@code maxItems}, the stream is closed instead of paid for to the end, and the turn is
+         * retried with the partial answer and a corrective message appended; a
+         * {@link StreamingToolCallHandler} is told via
+         * {@link StreamingToolCallHandler#onSchemaViolation(String, int)} to discard what it received.
+         * Once the retries are used up, the call fails with an
+         * {@link de.entwicklertraining.api.base.ApiClient.ApiResponseUnusableException}. The corrective
+         * messages are not part of the conversation persisted by {@link #conversation}.
+         *
+         * <p>With tools, a turn may start with prose before its tool calls. Such turns are not
+         * validated: a violation only counts if the turn ends without tool calls, and then only once
+         * the turn has been streamed to the end.
+         *
+         * <p>Applies to streamed single-choice turns; the shared first stream of {@code n > 1} candidates
+         * in {@link OpenRouterCandidateMode#AUTO} or {@link OpenRouterCandidateMode#NATIVE} is not validated.
+         *
+         * @param retries how often to retry (0 to only abort), or null to not validate
+         */
+        public Builder abortOnSchemaViolation(Integer retries) {
+            if (retries != null && retries < 0) {
+                throw new IllegalArgumentException("retries must not be negative: " + retries);
+            }
+            this.schemaViolationRetries = retries;
+            return this;
+        }
+
+        /**
+         * Continues the deadline of an earlier request (follow-up requests of a tool loop).
+         */
+        Builder deadlineNanos(Long nanos) {
+            this.deadlineNanos = nanos;
+            return this;
+        }
+
+        /**
+         * Limits the time of each HTTP request. With a {@link #deadline(Duration)}, the limit
+         * shrinks to the remaining budget.
+         */
+        @Override
+        public Builder maxExecutionTimeInSeconds(int seconds) {
+            this.maxExecutionTimeInSeconds = seconds;
+            return super.maxExecutionTimeInSeconds(seconds);
+        }
+
+        /**
+         * Asks OpenRouter to include the cost of the request in {@code usage}
+         * (see {@link OpenRouterChatCompletionResponse#cost()}).
+         */
+        public Builder usageAccounting(boolean enabled) {
+            this.usageAccounting = enabled;
+            return this;
+        }
+
+        /**
+         * Streams read by the library's own chunk parser also request the final usage chunk
+         * ({@code stream_options.include_usage}), which carries no choices.
+         */
         void setRawJsonStreaming(StreamingResponseHandler<String> handler) {
+            this.streamUsage = true;
             SSEStreamProcessor<String> rawProcessor = new SSEStreamProcessor<>(
                     String.class, SSEStreamProcessor.CommonExtractors.RAW_JSON
             );
@@ -446,27 +967,61 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
             }
 
             // For OpenRouter, we can use the image URL directly in content array
-            JSONObject msg = new JSONObject();
-            msg.put("role", "user");
+            return addImageMessage(url);
+        }
 
-            JSONArray contentArr = new JSONArray();
-            JSONObject imageContent = new JSONObject();
-            imageContent.put("type", "image_url");
-            JSONObject imageUrl = new JSONObject();
-            imageUrl.put("url", url);
-            imageContent.put("image_url", imageUrl);
-            contentArr.put(imageContent);
+        /**
+         * Adds a local image file as a base64 data URL in a user message.
+         * The file is only referenced here; it is base64-encoded when the request body is written
+         * (see {@link OpenRouterImageData}), so the file must not change until the request was sent.
+         */
+        public Builder addImageByBase64(Path filePath) {
+            return addImageMessage(loadImage(filePath));
+        }
 
-            msg.put("content", contentArr);
-            messages.add(msg);
+        /**
+         * Adds in-memory image bytes as a base64 data URL in a user message.
+         * The buffer is referenced, not copied, and must not be modified afterwards.
+         *
+         * @param data     the raw image bytes (from position to limit)
+         * @param mimeType one of image/jpeg, image/png, image/webp, image/heic, image/heif
+         */
+        public Builder addImageByBase64(ByteBuffer data, String mimeType) {
+            Objects.requireNonNull(mimeType, "mimeType must not be null");
+            if (!ALLOWED_MIME_TYPES.contains(mimeType)) {
+                throw new IllegalArgumentException(
+                        "Unsupported mime type: " + mimeType + ". Allowed: " + ALLOWED_MIME_TYPES
+                );
+            }
+            return addImageMessage(OpenRouterImageData.of(data, mimeType));
+        }
 
+        /**
+         * Adds several local image files, each in its own user message, in the given order.
+         * The files are read and hashed in parallel.
+         */
+        public Builder addImagesByBase64(List<Path> filePaths) {
+            Objects.requireNonNull(filePaths, "filePaths must not be null");
+            List<OpenRouterImageData> images = filePaths.parallelStream()
+                    .map(Builder::loadImage)
+                    .toList();
+            for (OpenRouterImageData image : images) {
+                addImageMessage(image);
+            }
             return this;
         }
 
         /**
-         * Reads a local image file, base64-encodes it, and adds it as a user message.
+         * Downscales and re-encodes all inline images (added via {@code addImageByBase64})
+         * when the request is built, using the final model for per-model limits.
+         * Images added by URL are not touched.
          */
-        public Builder addImageByBase64(Path filePath) {
+        public Builder imagePreprocessor(OpenRouterImagePreprocessor preprocessor) {
+            this.imagePreprocessor = preprocessor;
+            return this;
+        }
+
+        private static OpenRouterImageData loadImage(Path filePath) {
             Objects.requireNonNull(filePath, "filePath must not be null");
 
             String fileName = filePath.getFileName().toString().toLowerCase(Locale.ROOT);
@@ -477,30 +1032,28 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
                 );
             }
 
-            String mimeType = extensionToMime(ext);
-
-            byte[] fileBytes;
-            try {
-                fileBytes = Files.readAllBytes(filePath);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to read file: " + filePath + " => " + e.getMessage(), e);
-            }
-            String base64Data = Base64.getEncoder().encodeToString(fileBytes);
+            return OpenRouterImageData.of(filePath, extensionToMime(ext));
+        }
 
-            // Create message with base64 image
+        /**
+         * Adds a user message with a single image_url content part. The url is either a
+         * plain String or an {@link OpenRouterImageData} reference.
+         */
+        private Builder addImageMessage(Object url) {
             JSONObject msg = new JSONObject();
             msg.put("role", "user");
 
             JSONArray contentArr = new JSONArray();
             JSONObject imageContent = new JSONObject();
             imageContent.put("type", "image_url");
-            JSONObject imageUrl = new JSONObject();
-            imageUrl.put("url", "data:" + mimeType + ";base64," + base64Data);
+            JSONObject imageUrl = url instanceof OpenRouterImageData image
+                    ? OpenRouterInlineImageUrl.of(image)
+                    : new JSONObject().put("url", url);
             imageContent.put("image_url", imageUrl);
             contentArr.put(imageContent);
 
             msg.put("content", contentArr);
-            messages.add(msg);
+            messages = messages.append(msg);
 
             return this;
         }
@@ -527,20 +1080,159 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
             };
         }
 
+        /**
+         * The first {@code count} messages are the preprocessed messages of an earlier request
+         * (follow-up requests of a tool loop), so {@link #build()} leaves their images alone.
+         */
+        Builder preprocessedMessages(int count) {
+            this.preprocessedMessages = count;
+            return this;
+        }
+
+        /**
+         * Replaces every inline image from index {@code from} on with its preprocessed version.
+         * Affected messages are copied, the builder's own message objects stay untouched.
+         */
+        private OpenRouterMessageHistory preprocessImages(OpenRouterMessageHistory source, int from) {
+            List<JSONObject> pending = source.subList(Math.min(from, source.size()), source.size());
+            Map<OpenRouterImageData, OpenRouterImageData> processed = new IdentityHashMap<>();
+            for (JSONObject msg : pending) {
+                for (OpenRouterImageData image : inlineImages(msg)) {
+                    processed.put(image, image);
+                }
+            }
+            if (processed.isEmpty()) {
+                return source;
+            }
+            processed.keySet().parallelStream()
+                    .map(image -> Map.entry(image, imagePreprocessor.process(image, model)))
+                    .toList()
+                    .forEach(e -> processed.put(e.getKey(), e.getValue()));
+
+            OpenRouterMessageHistory result = source;
+            for (int i = source.size() - pending.size(); i < source.size(); i++) {
+                JSONObject msg = source.get(i);
+                if (inlineImages(msg).isEmpty()) {
+                    continue;
+                }
+                JSONObject copy = shallowCopy(msg);
+                JSONArray parts = new JSONArray();
+                for (Object part : msg.getJSONArray("content")) {
+                    JSONObject imageUrl = part instanceof JSONObject obj ? obj.optJSONObject("image_url") : null;
+                    OpenRouterImageData image = OpenRouterInlineImageUrl.imageOf(imageUrl);
+                    if (image != null) {
+                        JSONObject partCopy = shallowCopy((JSONObject) part);
+                        partCopy.put("image_url", ((OpenRouterInlineImageUrl) imageUrl).withImage(processed.get(image)));
+                        parts.put(partCopy);
+                    } else {
+                        parts.put(part);
+                    }
+                }
+                copy.put("content", parts);
+                result = result.with(i, copy);
+            }
+            return result;
+        }
+
+        private static JSONObject shallowCopy(JSONObject source) {
+            return new JSONObject(source, source.keySet().toArray(new String[0]));
+        }
+
+        private static List<OpenRouterImageData> inlineImages(JSONObject msg) {
+            JSONArray parts = msg.optJSONArray("content");
+            if (parts == null) {
+                return List.of();
+            }
+            List<OpenRouterImageData> images = new ArrayList<>();
+            for (int i = 0; i < parts.length(); i++) {
+                JSONObject part = parts.optJSONObject(i);
+                OpenRouterImageData image = OpenRouterInlineImageUrl.imageOf(part != null ? part.optJSONObject("image_url") : null);
+                if (image != null) {
+                    images.add(image);
+                }
+            }
+            return images;
+        }
+
+        /**
+         * The request parameters in use, named like in the {@code supported_parameters} of the model catalog.
+         */
+        private List<String> usedParameters() {
+            List<String> used = new ArrayList<>();
+            if (!tools.isEmpty()) {
+                used.add("tools");
+                if (toolChoice != null) {
+                    used.add("tool_choice");
+                }
+            }
+            if (responseSchema != null) {
+                used.add("structured_outputs");
+            } else if (responseMimeType != null) {
+                used.add("response_format");
+            }
+            if (thinkingBudget != null) {
+                used.add("reasoning");
+            }
+            if (temperature != null) {
+                used.add("temperature");
+            }
+            if (topK != null) {
+                used.add("top_k");
+            }
+            if (topP != null) {
+                used.add("top_p");
+            }
+            if (maxTokens != null) {
+                used.add("max_tokens");
+            }
+            if (!stopSequences.isEmpty()) {
+                used.add("stop");
+            }
+            return used;
+        }
+
         public OpenRouterChatCompletionRequest build() {
             // If streaming is enabled via api-base StreamingInfo, also set the stream flag
             boolean shouldStream = streamEnabled || (getStreamingInfo() != null && getStreamingInfo().isEnabled());
+            // Stored messages of a conversation were preprocessed when they were first sent
+            OpenRouterMessageHistory finalMessages = imagePreprocessor != null
+                    ? preprocessImages(messages, Math.max(preprocessedMessages, newMessagesFrom))
+                    : messages;
+            List<String> finalModels = modelRouter != null && models.size() > 1 ? modelRouter.order(models) : models;
+            if (client != null) {
+                // Fails fast on requests the model cannot serve, once the model catalog is loaded
+                // Each fallback model may end up serving it
+                List<String> parameters = usedParameters();
+                for (String candidate : finalModels.isEmpty() ? Collections.singletonList(model) : finalModels) {
+                    client.models().validate(candidate, parameters, finalMessages.textLength(), maxTokens);
+                }
+            }
+            if (schemaViolationRetries != null && responseSchema == null) {
+                throw new IllegalArgumentException("abortOnSchemaViolation requires a responseSchema");
+            }
+            if (conversationStore != null && n != null && n > 1) {
+                throw new IllegalArgumentException("A persisted conversation cannot have multiple candidates (n = " + n + ")");
+            }
+            Long finalDeadline = deadline != null ? Long.valueOf(System.nanoTime() + deadline.toNanos()) : deadlineNanos;
+            if (finalDeadline != null) {
+                int remaining = OpenRouterDeadlines.remainingSeconds(finalDeadline);
+                super.maxExecutionTimeInSeconds(maxExecutionTimeInSeconds > 0
+                        ? Math.min(maxExecutionTimeInSeconds, remaining)
+                        : remaining);
+            }
 
             return new OpenRouterChatCompletionRequest(
                     this,
                     client,
-                    model,
+                    finalModels.isEmpty() ? model : finalModels.get(0),
+                    List.copyOf(finalModels),
+                    modelRouter,
                     temperature,
                     topK,
                     topP,
                     maxTokens,
                     List.copyOf(stopSequences),
-                    List.copyOf(messages),
+                    finalMessages,
                     List.copyOf(tools),
                     toolChoice,
                     parallelToolCalls,
@@ -548,7 +1240,24 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
                     responseMimeType,
                     List.copyOf(providers),
                     thinkingBudget,
-                    shouldStream
+                    shouldStream,
+                    n,
+                    candidateMode,
+                    automaticCaching,
+                    usageAccounting,
+                    streamUsage,
+                    finalDeadline,
+                    priority,
+                    tenant,
+                    conversationStore,
+                    conversationId,
+                    newMessagesFrom >= 0
+                            ? finalMessages.subList(newMessagesFrom, finalMessages.size()).stream()
+                                    .filter(message -> message != systemMessage)
+                                    .toList()
+                            : List.of(),
+                    schemaViolationRetries,
+                    imagePreprocessor
             );
         }
 
@@ -556,7 +1265,8 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         public OpenRouterChatCompletionResponse execute() {
             OpenRouterChatCompletionRequest req = build();
             var handler = new OpenRouterChatCompletionCallHandler(client);
-            if (!req.tools().isEmpty() && req.isStreamingEnabled()) {
+            if (req.isStreamingEnabled() && (!req.tools().isEmpty() || req.candidateCount() > 1
+                    || req.schemaViolationRetries() != null)) {
                 return handler.handleStreamingRequest(req, extractStreamingHandler(), false).join();
             }
             return handler.handleRequest(req, false);
@@ -566,7 +1276,8 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
         public OpenRouterChatCompletionResponse executeWithExponentialBackoff() {
             OpenRouterChatCompletionRequest req = build();
             var handler = new OpenRouterChatCompletionCallHandler(client);
-            if (!req.tools().isEmpty() && req.isStreamingEnabled()) {
+            if (req.isStreamingEnabled() && (!req.tools().isEmpty() || req.candidateCount() > 1
+                    || req.schemaViolationRetries() != null)) {
                 return handler.handleStreamingRequest(req, extractStreamingHandler(), true).join();
             }
             return handler.handleRequest(req, true);
@@ -578,7 +1289,8 @@ public final class OpenRouterChatCompletionRequest extends OpenRouterRequest<Ope
             if (info != null && info.isEnabled() && info.getHandler() != null) {
                 return (StreamingResponseHandler<String>) info.getHandler();
             }
-            throw new IllegalStateException("Streaming handler is required for streaming + tool calling");
+            throw new IllegalStateException(
+                    "Streaming handler is required for streaming + tool calling, candidates or schema validation");
         }
     }
 }
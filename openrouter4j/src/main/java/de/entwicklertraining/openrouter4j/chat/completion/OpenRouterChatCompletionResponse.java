@@ -7,7 +7,8 @@ import de.entwicklertraining.openrouter4j.OpenRouterResponse;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Wraps the JSON response from OpenRouter chat completions endpoint.
@@ -42,22 +43,72 @@ import java.util.Objects;
  */
 public final class OpenRouterChatCompletionResponse extends OpenRouterResponse<OpenRouterChatCompletionRequest> {
 
+    private static final List<String> COMBINED_METADATA =
+            List.of("id", "object", "created", "provider", "system_fingerprint");
+
+    private final OpenRouterChatCompletionRequest request;
+    private final List<OpenRouterUsage> turnUsage;
+    private final boolean deadlineReached;
+
     public OpenRouterChatCompletionResponse(JSONObject json, OpenRouterChatCompletionRequest request) {
+        this(json, request, null, false);
+    }
+
+    OpenRouterChatCompletionResponse(
+            JSONObject json,
+            OpenRouterChatCompletionRequest request,
+            List<OpenRouterUsage> turnUsage,
+            boolean deadlineReached
+    ) {
         super(json, request);
+        this.request = request;
+        this.turnUsage = turnUsage != null ? List.copyOf(turnUsage) : null;
+        this.deadlineReached = deadlineReached;
+    }
+
+    /**
+     * True if the request's deadline ended the tool loop of some candidates ({@code n > 1}) before
+     * their final answer; the response holds only the candidates that answered in time. A single
+     * tool loop ended by the deadline throws
+     * {@link OpenRouterChatCompletionRequest.DeadlineExceededException} instead.
+     */
+    public boolean deadlineReached() {
+        return deadlineReached;
     }
 
     /**
      * Returns the assistant's message content from choices[0].message.content
      */
     public String assistantMessage() {
-        try {
-            JSONArray choices = getJson().getJSONArray("choices");
-            JSONObject firstChoice = choices.getJSONObject(0);
-            JSONObject message = firstChoice.getJSONObject("message");
-            return message.optString("content", null);
-        } catch (Exception e) {
-            return null;
+        return assistantMessage(0);
+    }
+
+    /**
+     * Returns the message content of the given choice (choices[i].message.content).
+     */
+    public String assistantMessage(int choice) {
+        JSONObject message = message(choice);
+        return message != null ? message.optString("content", null) : null;
+    }
+
+    /**
+     * Returns the message content of every choice, ordered by choice index.
+     * Useful with {@link OpenRouterChatCompletionRequest.Builder#n(Integer)} for voting or reranking.
+     */
+    public List<String> candidates() {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < choiceCount(); i++) {
+            result.add(assistantMessage(i));
         }
+        return result;
+    }
+
+    /**
+     * Number of choices in the response.
+     */
+    public int choiceCount() {
+        JSONArray choices = getJson().optJSONArray("choices");
+        return choices != null ? choices.length() : 0;
     }
 
     /**
@@ -65,13 +116,15 @@ public final class OpenRouterChatCompletionResponse extends OpenRouterResponse<O
      * Possible values: "stop", "length", "tool_calls", "content_filter"
      */
     public String finishReason() {
-        try {
-            JSONArray choices = getJson().getJSONArray("choices");
-            JSONObject firstChoice = choices.getJSONObject(0);
-            return firstChoice.optString("finish_reason", null);
-        } catch (Exception e) {
-            return null;
-        }
+        return finishReason(0);
+    }
+
+    /**
+     * Returns the finish_reason of the given choice.
+     */
+    public String finishReason(int choice) {
+        JSONObject c = choice(choice);
+        return c != null ? c.optString("finish_reason", null) : null;
     }
 
     /**
@@ -79,28 +132,16 @@ public final class OpenRouterChatCompletionResponse extends OpenRouterResponse<O
      * OpenRouter supports refusals in choices[0].message.refusal
      */
     public boolean hasRefusal() {
-        try {
-            JSONArray choices = getJson().getJSONArray("choices");
-            JSONObject firstChoice = choices.getJSONObject(0);
-            JSONObject message = firstChoice.getJSONObject("message");
-            return message.has("refusal") && !message.isNull("refusal");
-        } catch (Exception e) {
-            return false;
-        }
+        JSONObject message = message(0);
+        return message != null && message.has("refusal") && !message.isNull("refusal");
     }
 
     /**
      * Returns the refusal text if present.
      */
     public String refusal() {
-        try {
-            JSONArray choices = getJson().getJSONArray("choices");
-            JSONObject firstChoice = choices.getJSONObject(0);
-            JSONObject message = firstChoice.getJSONObject("message");
-            return message.optString("refusal", null);
-        } catch (Exception e) {
-            return null;
-        }
+        JSONObject message = message(0);
+        return message != null ? message.optString("refusal", null) : null;
     }
 
     /**
@@ -116,37 +157,74 @@ public final class OpenRouterChatCompletionResponse extends OpenRouterResponse<O
      * Checks if the response contains tool calls.
      */
     public boolean hasToolCalls() {
-        try {
-            JSONArray choices = getJson().getJSONArray("choices");
-            JSONObject firstChoice = choices.getJSONObject(0);
-            JSONObject message = firstChoice.getJSONObject("message");
-            return message.has("tool_calls") && !message.isNull("tool_calls");
-        } catch (Exception e) {
-            return false;
-        }
+        return hasToolCalls(0);
+    }
+
+    /**
+     * Checks if the given choice contains tool calls.
+     */
+    public boolean hasToolCalls(int choice) {
+        JSONObject message = message(choice);
+        return message != null && message.has("tool_calls") && !message.isNull("tool_calls");
     }
 
     /**
      * Returns the tool calls array from choices[0].message.tool_calls
      */
     public JSONArray toolCalls() {
-        try {
-            JSONArray choices = getJson().getJSONArray("choices");
-            JSONObject firstChoice = choices.getJSONObject(0);
-            JSONObject message = firstChoice.getJSONObject("message");
-            return message.optJSONArray("tool_calls");
-        } catch (Exception e) {
-            return null;
-        }
+        return toolCalls(0);
+    }
+
+    /**
+     * Returns the tool calls array of the given choice.
+     */
+    public JSONArray toolCalls(int choice) {
+        JSONObject message = message(choice);
+        return message != null ? message.optJSONArray("tool_calls") : null;
     }
 
     /**
-     * Returns usage information if present.
+     * Returns usage information if present. When the response is the result of a tool loop or
+     * of several candidate requests, this is the sum over all requests; see {@link #turnUsage()}.
      */
     public JSONObject usage() {
         return getJson().optJSONObject("usage");
     }
 
+    /**
+     * Returns {@link #usage()} as a typed summary (all zero if there is none).
+     */
+    public OpenRouterUsage usageSummary() {
+        return OpenRouterUsage.fromJson(usage());
+    }
+
+    /**
+     * Usage of every request that contributed to this response, in the order they completed
+     * (one entry per tool loop turn and candidate). A response of a single request has one entry.
+     */
+    public List<OpenRouterUsage> turnUsage() {
+        if (turnUsage != null) {
+            return turnUsage;
+        }
+        return usage() != null ? List.of(usageSummary()) : List.of();
+    }
+
+    /**
+     * Returns the reasoning tokens used (usage.completion_tokens_details.reasoning_tokens).
+     */
+    public Integer reasoningTokens() {
+        JSONObject usage = usage();
+        JSONObject details = usage != null ? usage.optJSONObject("completion_tokens_details") : null;
+        return details != null && details.has("reasoning_tokens") ? details.optInt("reasoning_tokens") : null;
+    }
+
+    /**
+     * Returns the cost in credits (usage.cost), or null if OpenRouter did not report it.
+     */
+    public Double cost() {
+        return usageSummary().cost();
+    }
+
     /**
      * Returns the total tokens used (prompt + completion).
      */
@@ -171,6 +249,16 @@ public final class OpenRouterChatCompletionResponse extends OpenRouterResponse<O
         return usage != null ? usage.optInt("completion_tokens") : null;
     }
 
+    /**
+     * Returns the prompt tokens that were read from the provider's prompt cache
+     * (usage.prompt_tokens_details.cached_tokens), or null if the provider did not report it.
+     */
+    public Integer cachedTokens() {
+        JSONObject usage = usage();
+        JSONObject details = usage != null ? usage.optJSONObject("prompt_tokens_details") : null;
+        return details != null && details.has("cached_tokens") ? details.optInt("cached_tokens") : null;
+    }
+
     /**
      * Parses the assistant message as JSON.
      * Useful when response_format was set to json_object or json_schema.
@@ -208,13 +296,52 @@ public final class OpenRouterChatCompletionResponse extends OpenRouterResponse<O
      * Returns the full message object from choices[0].message
      */
     public JSONObject message() {
-        try {
-            JSONArray choices = getJson().getJSONArray("choices");
-            JSONObject firstChoice = choices.getJSONObject(0);
-            return firstChoice.getJSONObject("message");
-        } catch (Exception e) {
+        return message(0);
+    }
+
+    /**
+     * Returns the full message object of the given choice.
+     */
+    public JSONObject message(int choice) {
+        JSONObject c = choice(choice);
+        return c != null ? c.optJSONObject("message") : null;
+    }
+
+    /**
+     * Returns the message of choices[0] as a typed value, or null if there is none.
+     */
+    public OpenRouterMessage.AssistantMessage toMessage() {
+        return toMessage(0);
+    }
+
+    /**
+     * Returns the message of the given choice as a typed value, or null if there is none.
+     */
+    public OpenRouterMessage.AssistantMessage toMessage(int choice) {
+        JSONObject message = message(choice);
+        return message != null ? OpenRouterMessageCodec.assistantFromJson(message) : null;
+    }
+
+    /**
+     * Returns the choice object whose index is the given one, or null if there is none.
+     * Choices are looked up by their "index" field, so an unordered array is fine.
+     */
+    public JSONObject choice(int index) {
+        JSONArray choices = getJson().optJSONArray("choices");
+        if (choices == null) {
             return null;
         }
+        JSONObject positional = choices.optJSONObject(index);
+        if (positional != null && positional.optInt("index", index) == index) {
+            return positional;
+        }
+        for (int i = 0; i < choices.length(); i++) {
+            JSONObject c = choices.optJSONObject(i);
+            if (c != null && c.optInt("index", -1) == index) {
+                return c;
+            }
+        }
+        return null;
     }
 
     /**
@@ -224,10 +351,109 @@ public final class OpenRouterChatCompletionResponse extends OpenRouterResponse<O
         return getJson().optString("model", null);
     }
 
+    /**
+     * Position of the model that answered in the request's {@code models} fallback list,
+     * or -1 if the request had no fallback list or the model is not in it.
+     */
+    public int fallbackIndex() {
+        if (request == null || request.models().isEmpty()) {
+            return -1;
+        }
+        return indexOfModel(request.models(), model());
+    }
+
+    /**
+     * True if the answer did not come from the first model of the fallback list.
+     */
+    public boolean usedFallback() {
+        return fallbackIndex() > 0;
+    }
+
+    /**
+     * Finds a served model in a list of requested models. OpenRouter may report a dated
+     * variant ("openai/gpt-4o-2024-08-06" for "openai/gpt-4o"), so prefixes count as well;
+     * the longest matching entry wins.
+     */
+    static int indexOfModel(List<String> models, String served) {
+        if (served == null) {
+            return -1;
+        }
+        int best = -1;
+        for (int i = 0; i < models.size(); i++) {
+            String m = models.get(i);
+            if (m.equals(served)) {
+                return i;
+            }
+            if (served.startsWith(m) && (best < 0 || m.length() > models.get(best).length())) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
     /**
      * Returns the completion ID.
      */
     public String id() {
         return getJson().optString("id", null);
     }
+
+    /**
+     * Returns a copy of this response whose usage is the sum of the given turns
+     * (this response's own usage must be among them).
+     */
+    OpenRouterChatCompletionResponse withTurnUsage(List<OpenRouterUsage> turns) {
+        if (turns.size() <= 1) {
+            return this;
+        }
+        JSONObject json = new JSONObject(getJson(), JSONObject.getNames(getJson()));
+        json.put("usage", OpenRouterUsage.sum(turns).toJson());
+        return new OpenRouterChatCompletionResponse(json, request, turns, deadlineReached);
+    }
+
+    /**
+     * Returns a copy of this response marked with {@link #deadlineReached()}.
+     */
+    OpenRouterChatCompletionResponse withDeadlineReached() {
+        return new OpenRouterChatCompletionResponse(getJson(), request, turnUsage, true);
+    }
+
+    /**
+     * Builds a multi-choice response from choices that were obtained separately (client-side
+     * fan-out, streaming). The choices are renumbered in the given order and the usage is the
+     * sum of the given turns.
+     *
+     * @param first the response (or the metadata of the stream) of the first candidate; its
+     *              {@code id}, {@code object}, {@code created}, {@code provider} and
+     *              {@code system_fingerprint} are carried over. May be null.
+     */
+    static OpenRouterChatCompletionResponse combine(
+            OpenRouterChatCompletionRequest request,
+            JSONObject first,
+            String model,
+            List<JSONObject> choices,
+            List<OpenRouterUsage> turns
+    ) {
+        JSONArray choiceArr = new JSONArray();
+        for (int i = 0; i < choices.size(); i++) {
+            choiceArr.put(new JSONObject(choices.get(i), JSONObject.getNames(choices.get(i))).put("index", i));
+        }
+        JSONObject root = new JSONObject();
+        if (first != null) {
+            for (String key : COMBINED_METADATA) {
+                Object value = first.opt(key);
+                if (value != null && value != JSONObject.NULL) {
+                    root.put(key, value);
+                }
+            }
+        }
+        if (model != null) {
+            root.put("model", model);
+        }
+        root.put("choices", choiceArr);
+        if (!turns.isEmpty()) {
+            root.put("usage", OpenRouterUsage.sum(turns).toJson());
+        }
+        return new OpenRouterChatCompletionResponse(root, request, turns, false);
+    }
 }
@@ -0,0 +1,74 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterCacheControl;
+
+import java.util.Objects;
+
+/**
+ * A content part of a system or user {@link OpenRouterMessage}.
+ */
+public sealed interface OpenRouterContentPart {
+
+    /**
+     * Prompt caching breakpoint after this part, or null.
+     */
+    OpenRouterCacheControl cacheControl();
+
+    static Text text(String text) {
+        return new Text(text, null);
+    }
+
+    static ImageUrl imageUrl(String url) {
+        return new ImageUrl(url, null, null);
+    }
+
+    static InlineImage image(OpenRouterImageData data) {
+        return new InlineImage(data, null);
+    }
+
+    static File file(String filename, String fileData) {
+        return new File(filename, fileData, null);
+    }
+
+    /**
+     * {@code {"type": "text", "text": ...}}
+     */
+    record Text(String text, OpenRouterCacheControl cacheControl) implements OpenRouterContentPart {
+        public Text {
+            Objects.requireNonNull(text, "text must not be null");
+        }
+    }
+
+    /**
+     * {@code {"type": "image_url", "image_url": {"url": ..., "detail": ...}}} with an http(s) or data URL.
+     *
+     * @param detail "auto", "low" or "high", or null for the provider default
+     */
+    record ImageUrl(String url, String detail, OpenRouterCacheControl cacheControl) implements OpenRouterContentPart {
+        public ImageUrl {
+            Objects.requireNonNull(url, "url must not be null");
+        }
+    }
+
+    /**
+     * An image that is base64-encoded into the request body when it is written, see
+     * {@link OpenRouterImageData}.
+     */
+    record InlineImage(OpenRouterImageData data, OpenRouterCacheControl cacheControl) implements OpenRouterContentPart {
+        public InlineImage {
+            Objects.requireNonNull(data, "data must not be null");
+        }
+    }
+
+    /**
+     * {@code {"type": "file", "file": {"filename": ..., "file_data": ...}}}, e.g. a PDF.
+     *
+     * @param fileData a data URL ({@code data:application/pdf;base64,...}) or an http(s) URL
+     */
+    record File(String filename, String fileData, OpenRouterCacheControl cacheControl) implements OpenRouterContentPart {
+        public File {
+            Objects.requireNonNull(filename, "filename must not be null");
+            Objects.requireNonNull(fileData, "fileData must not be null");
+        }
+    }
+}
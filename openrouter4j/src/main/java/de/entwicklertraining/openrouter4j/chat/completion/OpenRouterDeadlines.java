@@ -0,0 +1,51 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.api.base.ApiClient;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Arithmetic on deadlines given as {@link System#nanoTime()} values.
+ */
+final class OpenRouterDeadlines {
+
+    private OpenRouterDeadlines() {
+    }
+
+    static Duration remaining(long deadlineNanos) {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    static boolean isExpired(Long deadlineNanos) {
+        return deadlineNanos != null && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Remaining whole seconds, rounded up and at least 1, for api-base's per-request timeout.
+     */
+    static int remainingSeconds(long deadlineNanos) {
+        long nanos = deadlineNanos - System.nanoTime();
+        long seconds = (nanos + 999_999_999L) / 1_000_000_000L;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    /**
+     * Whether {@code e} or one of its causes is a timeout: of api-base, of the HTTP client or
+     * socket, or a 504 from the gateway.
+     */
+    static boolean isTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() != t ? t.getCause() : null) {
+            if (t instanceof ApiClient.ApiTimeoutException
+                    || t instanceof ApiClient.HTTP_504_ServerTimeoutException
+                    || t instanceof HttpTimeoutException
+                    || t instanceof SocketTimeoutException
+                    || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
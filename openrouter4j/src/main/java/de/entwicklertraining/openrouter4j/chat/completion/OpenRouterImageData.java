@@ -0,0 +1,242 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import org.json.JSONObject;
+import org.json.JSONString;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An inline image that is kept as a file or buffer reference until the request body is serialized.
+ *
+ * <p>Instances are held in the {@code image_url} object of a message in place of the
+ * {@code data:<mime>;base64,...} string; reading {@code url} from that object still returns the
+ * data URL as a {@code String}. {@link OpenRouterRequestBodyWriter} encodes them straight into the
+ * request body, so the base64 representation never exists as a separate {@code String} when sending.
+ * Files of {@value #MAPPED_READ_THRESHOLD} bytes or more are read through a memory mapping.
+ *
+ * <p>Images are deduplicated by their SHA-256 content hash: attaching the same content again (in the
+ * same or another request) returns the already known instance as long as it is still referenced.
+ * File sources must not change until the request has been sent.
+ */
+public final class OpenRouterImageData implements JSONString {
+
+    static final int MAPPED_READ_THRESHOLD = 1 << 20;
+
+    // Largest source whose base64 form still fits into a single byte[] request body
+    private static final long MAX_SOURCE_BYTES = (Integer.MAX_VALUE - 64L) / 4 * 3;
+
+    // Multiple of 3 so that every chunk except the last one encodes without padding
+    private static final int ENCODE_CHUNK_BYTES = 3 * 16 * 1024;
+
+    private static final ConcurrentHashMap<String, KnownImage> KNOWN_IMAGES = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<OpenRouterImageData> COLLECTED_IMAGES = new ReferenceQueue<>();
+
+    private final String mimeType;
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final long size;
+    private final String contentHash;
+
+    private OpenRouterImageData(String mimeType, Path path, ByteBuffer buffer, long size, String contentHash) {
+        this.mimeType = mimeType;
+        this.path = path;
+        this.buffer = buffer;
+        this.size = size;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * References a local image file. The file is read once to compute its content hash,
+     * the base64 encoding happens when the request body is written.
+     */
+    public static OpenRouterImageData of(Path filePath, String mimeType) {
+        Objects.requireNonNull(filePath, "filePath must not be null");
+        Objects.requireNonNull(mimeType, "mimeType must not be null");
+
+        ByteBuffer content = read(filePath);
+        return intern(new OpenRouterImageData(mimeType, filePath, null, content.remaining(), hash(content)));
+    }
+
+    /**
+     * References image bytes held in memory. The remaining content of the buffer is used,
+     * the buffer itself is not modified and must not be modified afterwards.
+     */
+    public static OpenRouterImageData of(ByteBuffer data, String mimeType) {
+        Objects.requireNonNull(data, "data must not be null");
+        Objects.requireNonNull(mimeType, "mimeType must not be null");
+
+        ByteBuffer content = data.asReadOnlyBuffer();
+        checkSize(content.remaining(), "buffer");
+        return intern(new OpenRouterImageData(mimeType, null, content, content.remaining(), hash(content)));
+    }
+
+    public String mimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Size of the raw (not encoded) image in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Hex encoded SHA-256 hash of the raw image bytes.
+     */
+    public String contentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Returns the raw image bytes. For large files this is a read-only memory mapping.
+     */
+    public ByteBuffer content() {
+        return buffer != null ? buffer.duplicate() : read(path);
+    }
+
+    String dataUrlPrefix() {
+        return "data:" + mimeType + ";base64,";
+    }
+
+    /**
+     * Number of bytes {@link #encodeTo(byte[], int)} writes.
+     */
+    int encodedLength() {
+        return (int) ((size + 2) / 3 * 4);
+    }
+
+    /**
+     * Writes the base64 encoding of the image into {@code target}, starting at {@code offset}.
+     * Only small, fixed-size scratch buffers are allocated regardless of the image size.
+     */
+    void encodeTo(byte[] target, int offset) {
+        ByteBuffer src = content();
+        Base64.Encoder encoder = Base64.getEncoder();
+        byte[] in = new byte[(int) Math.min(ENCODE_CHUNK_BYTES, Math.max(size, 3))];
+        byte[] out = new byte[(in.length + 2) / 3 * 4];
+
+        if (src.remaining() != size) {
+            throw new IllegalStateException("Image source changed since it was attached: " + this);
+        }
+
+        int pos = offset;
+        while (src.hasRemaining()) {
+            int n = Math.min(in.length, src.remaining());
+            src.get(in, 0, n);
+            byte[] chunk = n == in.length ? in : Arrays.copyOf(in, n);
+            int written = encoder.encode(chunk, out);
+            System.arraycopy(out, 0, target, pos, written);
+            pos += written;
+        }
+    }
+
+    /**
+     * Fallback used when the surrounding JSONObject is serialized with {@code toString()}.
+     * This materializes the complete data URL; the request body itself is written by
+     * {@link OpenRouterRequestBodyWriter} without going through this method.
+     */
+    @Override
+    public String toJSONString() {
+        return JSONObject.quote(dataUrl());
+    }
+
+    /**
+     * The complete {@code data:} URL of the image.
+     */
+    String dataUrl() {
+        byte[] prefix = dataUrlPrefix().getBytes(StandardCharsets.US_ASCII);
+        byte[] url = new byte[prefix.length + encodedLength()];
+        System.arraycopy(prefix, 0, url, 0, prefix.length);
+        encodeTo(url, prefix.length);
+        return new String(url, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return "OpenRouterImageData[" + mimeType + ", " + size + " bytes, sha256=" + contentHash + "]";
+    }
+
+    private static OpenRouterImageData intern(OpenRouterImageData candidate) {
+        purgeCollected();
+        String key = candidate.mimeType + ':' + candidate.contentHash;
+        while (true) {
+            KnownImage ref = KNOWN_IMAGES.putIfAbsent(key, new KnownImage(key, candidate));
+            if (ref == null) {
+                return candidate;
+            }
+            OpenRouterImageData known = ref.get();
+            if (known != null) {
+                return known;
+            }
+            if (KNOWN_IMAGES.replace(key, ref, new KnownImage(key, candidate))) {
+                return candidate;
+            }
+        }
+    }
+
+    private static void purgeCollected() {
+        Reference<? extends OpenRouterImageData> ref;
+        while ((ref = COLLECTED_IMAGES.poll()) != null) {
+            KnownImage known = (KnownImage) ref;
+            KNOWN_IMAGES.remove(known.key, known);
+        }
+    }
+
+    private static ByteBuffer read(Path filePath) {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            checkSize(fileSize, filePath.toString());
+            if (fileSize >= MAPPED_READ_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            }
+            ByteBuffer content = ByteBuffer.allocate((int) fileSize);
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // keep reading until the buffer is full or EOF is reached
+            }
+            return content.flip();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read file: " + filePath + " => " + e.getMessage(), e);
+        }
+    }
+
+    private static void checkSize(long bytes, String source) {
+        if (bytes > MAX_SOURCE_BYTES) {
+            throw new IllegalArgumentException("Image too large to inline (" + bytes + " bytes): " + source);
+        }
+    }
+
+    private static String hash(ByteBuffer content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class KnownImage extends WeakReference<OpenRouterImageData> {
+        final String key;
+
+        KnownImage(String key, OpenRouterImageData image) {
+            super(image, COLLECTED_IMAGES);
+            this.key = key;
+        }
+    }
+}
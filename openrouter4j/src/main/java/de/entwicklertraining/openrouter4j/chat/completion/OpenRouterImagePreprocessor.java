@@ -0,0 +1,468 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Downscales and re-encodes inline images before they are uploaded.
+ *
+ * <p>Models downsample large images anyway, so sending a 12 megapixel photo only costs upload
+ * bandwidth and serialization time. The preprocessor limits the longest edge (globally or per model),
+ * re-encodes the pixels and thereby drops all metadata (EXIF, GPS, ICC profiles). By default an image
+ * keeps its format, so PNG screenshots and diagrams stay lossless and keep their transparency; a
+ * configured {@link Builder#format(Format)} applies to all images. Only JDK imaging
+ * ({@code javax.imageio}) is used; formats the JDK cannot decode (e.g. HEIC) are passed through
+ * unchanged, and WEBP output falls back to JPEG (PNG for images with transparency) unless an
+ * ImageIO WEBP writer plugin is on the classpath.
+ *
+ * <p>Results are cached by source content hash and settings, so re-attaching the same image
+ * (or building the next turn of a tool loop) does not process it again.
+ *
+ * <pre>{@code
+ * OpenRouterImagePreprocessor preprocessor = OpenRouterImagePreprocessor.builder()
+ *         .maxEdge(1568)
+ *         .modelMaxEdge("openai/", 2048)
+ *         .format(OpenRouterImagePreprocessor.Format.JPEG)
+ *         .quality(0.8f)
+ *         .build();
+ *
+ * client.chat().completion()
+ *         .imagePreprocessor(preprocessor)
+ *         .addImageByBase64(Path.of("photo.jpg"))
+ *         ...
+ * }</pre>
+ */
+public final class OpenRouterImagePreprocessor {
+
+    /**
+     * Output encodings supported by the preprocessor.
+     */
+    public enum Format {
+        JPEG("jpeg", "image/jpeg"),
+        WEBP("webp", "image/webp"),
+        PNG("png", "image/png");
+
+        private final String imageIoName;
+        private final String mimeType;
+
+        Format(String imageIoName, String mimeType) {
+            this.imageIoName = imageIoName;
+            this.mimeType = mimeType;
+        }
+
+        public String mimeType() {
+            return mimeType;
+        }
+
+        private static Format ofMimeType(String mimeType) {
+            for (Format f : values()) {
+                if (f.mimeType.equals(mimeType)) {
+                    return f;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final int maxEdge;
+    private final Map<String, Integer> modelMaxEdges;
+    private final Format format; // null: keep the format of the source
+    private final float quality;
+    private final boolean stripMetadata;
+    private final Map<String, OpenRouterImageData> cache;
+
+    private OpenRouterImagePreprocessor(Builder builder) {
+        this.maxEdge = builder.maxEdge;
+        this.modelMaxEdges = Map.copyOf(builder.modelMaxEdges);
+        this.format = builder.format;
+        this.quality = builder.quality;
+        this.stripMetadata = builder.stripMetadata;
+        int cacheSize = builder.cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OpenRouterImageData> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the maximum edge length applied for the given model: the longest matching
+     * {@link Builder#modelMaxEdge(String, int)} prefix, otherwise {@link Builder#maxEdge(int)}.
+     */
+    public int maxEdgeFor(String model) {
+        if (model == null) {
+            return maxEdge;
+        }
+        int result = maxEdge;
+        int bestMatch = -1;
+        for (var entry : modelMaxEdges.entrySet()) {
+            String prefix = entry.getKey();
+            if (model.startsWith(prefix) && prefix.length() > bestMatch) {
+                bestMatch = prefix.length();
+                result = entry.getValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Downscales and re-encodes the image for the given model. Returns the source itself if it
+     * cannot be decoded, or if it already fits and metadata stripping is disabled.
+     */
+    public OpenRouterImageData process(OpenRouterImageData source, String model) {
+        Objects.requireNonNull(source, "source must not be null");
+        int edge = maxEdgeFor(model);
+        String key = cacheKey(source, edge);
+
+        OpenRouterImageData cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        OpenRouterImageData result = doProcess(source, edge);
+        synchronized (cache) {
+            cache.put(key, result);
+            // A processed image must not be processed again (e.g. in the next turn of a tool loop)
+            cache.put(cacheKey(result, edge), result);
+        }
+        return result;
+    }
+
+    private String cacheKey(OpenRouterImageData image, int edge) {
+        return image.contentHash() + '|' + image.mimeType() + '|' + edge + '|' + format + '|' + quality + '|' + stripMetadata;
+    }
+
+    private OpenRouterImageData doProcess(OpenRouterImageData source, int edge) {
+        byte[] sourceBytes = toArray(source.content());
+        BufferedImage decoded;
+        try {
+            decoded = ImageIO.read(new ByteArrayInputStream(sourceBytes));
+        } catch (IOException | RuntimeException e) {
+            decoded = null;
+        }
+        if (decoded == null) {
+            return source;
+        }
+
+        int orientation = "image/jpeg".equals(source.mimeType()) ? ExifOrientation.read(sourceBytes) : 1;
+        boolean resize = Math.max(decoded.getWidth(), decoded.getHeight()) > edge;
+        if (!resize && orientation == 1 && !stripMetadata) {
+            return source;
+        }
+
+        BufferedImage oriented = ExifOrientation.apply(decoded, orientation);
+        Format target = targetFormat(source.mimeType(), decoded);
+        byte[] encoded = encode(resize ? downscale(oriented, edge) : oriented, target);
+        if (encoded == null) {
+            return source;
+        }
+        return OpenRouterImageData.of(ByteBuffer.wrap(encoded), target.mimeType());
+    }
+
+    /**
+     * The configured format, otherwise the format of the source. Images in other formats (e.g. GIF),
+     * or WEBP without a writer plugin, become PNG if they have transparency and JPEG otherwise.
+     */
+    private Format targetFormat(String sourceMimeType, BufferedImage image) {
+        Format target = format != null ? format : Format.ofMimeType(sourceMimeType);
+        if (target == null
+                || (target == Format.WEBP && !ImageIO.getImageWritersByFormatName(Format.WEBP.imageIoName).hasNext())) {
+            return image.getColorModel().hasAlpha() ? Format.PNG : Format.JPEG;
+        }
+        return target;
+    }
+
+    /**
+     * Halves the image repeatedly before the final bilinear step; a single large bilinear step
+     * skips most source pixels and produces visible aliasing.
+     */
+    private static BufferedImage downscale(BufferedImage image, int edge) {
+        int sourceEdge = Math.max(image.getWidth(), image.getHeight());
+        double factor = (double) edge / sourceEdge;
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * factor));
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = resize(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage result = new BufferedImage(width, height, type);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    private byte[] encode(BufferedImage image, Format target) {
+        BufferedImage pixels = target == Format.PNG ? image : withoutAlpha(image);
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(target.imageIoName);
+        if (!writers.hasNext()) {
+            return null;
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (target != Format.PNG && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes().length > 0) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            // No metadata is passed, so EXIF, GPS and ICC data of the source are dropped
+            writer.write(null, new IIOImage(pixels, null, null), param);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static BufferedImage withoutAlpha(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "OpenRouterImagePreprocessor[maxEdge=" + maxEdge
+                + ", format=" + (format != null ? format.name().toLowerCase(Locale.ROOT) : "source")
+                + ", quality=" + quality + "]";
+    }
+
+    public static final class Builder {
+        private int maxEdge = 1568;
+        private final Map<String, Integer> modelMaxEdges = new LinkedHashMap<>();
+        private Format format;
+        private float quality = 0.85f;
+        private boolean stripMetadata = true;
+        private int cacheSize = 256;
+
+        private Builder() {
+        }
+
+        /**
+         * Maximum length of the longest image edge in pixels (default 1568).
+         */
+        public Builder maxEdge(int pixels) {
+            if (pixels < 1) {
+                throw new IllegalArgumentException("maxEdge must be positive: " + pixels);
+            }
+            this.maxEdge = pixels;
+            return this;
+        }
+
+        /**
+         * Maximum edge length for models whose id starts with the given prefix,
+         * e.g. {@code modelMaxEdge("openai/", 2048)}. The longest matching prefix wins.
+         */
+        public Builder modelMaxEdge(String modelPrefix, int pixels) {
+            Objects.requireNonNull(modelPrefix, "modelPrefix must not be null");
+            if (pixels < 1) {
+                throw new IllegalArgumentException("maxEdge must be positive: " + pixels);
+            }
+            this.modelMaxEdges.put(modelPrefix, pixels);
+            return this;
+        }
+
+        /**
+         * Encodes all images in this format. By default every image keeps the format of its source.
+         * JPEG drops transparency (transparent areas become white).
+         */
+        public Builder format(Format f) {
+            this.format = Objects.requireNonNull(f, "format must not be null");
+            return this;
+        }
+
+        /**
+         * Compression quality between 0.0 and 1.0 (default 0.85). Ignored for PNG.
+         */
+        public Builder quality(float q) {
+            if (q < 0f || q > 1f) {
+                throw new IllegalArgumentException("quality must be between 0.0 and 1.0: " + q);
+            }
+            this.quality = q;
+            return this;
+        }
+
+        /**
+         * Whether images that need no downscaling are still re-encoded to drop their metadata
+         * (default true).
+         */
+        public Builder stripMetadata(boolean strip) {
+            this.stripMetadata = strip;
+            return this;
+        }
+
+        /**
+         * Maximum number of processed images kept in the cache (default 256).
+         */
+        public Builder cacheSize(int entries) {
+            this.cacheSize = Math.max(0, entries);
+            return this;
+        }
+
+        public OpenRouterImagePreprocessor build() {
+            return new OpenRouterImagePreprocessor(this);
+        }
+    }
+
+    /**
+     * Reads the EXIF orientation of a JPEG. ImageIO ignores it, and since the re-encoded image
+     * carries no EXIF data anymore the rotation has to be applied to the pixels.
+     */
+    static final class ExifOrientation {
+
+        private ExifOrientation() {
+        }
+
+        static int read(byte[] jpeg) {
+            if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) {
+                return 1;
+            }
+            int pos = 2;
+            while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+                int marker = jpeg[pos + 1] & 0xFF;
+                int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+                if (marker == 0xDA || length < 2) {
+                    return 1; // start of scan, no EXIF found
+                }
+                if (marker == 0xE1 && isExifHeader(jpeg, pos + 4)) {
+                    return readTiffOrientation(jpeg, pos + 10, Math.min(jpeg.length, pos + 2 + length));
+                }
+                pos += 2 + length;
+            }
+            return 1;
+        }
+
+        private static boolean isExifHeader(byte[] data, int pos) {
+            return pos + 6 <= data.length
+                    && data[pos] == 'E' && data[pos + 1] == 'x' && data[pos + 2] == 'i' && data[pos + 3] == 'f'
+                    && data[pos + 4] == 0 && data[pos + 5] == 0;
+        }
+
+        private static int readTiffOrientation(byte[] data, int tiff, int end) {
+            if (tiff + 8 > end) {
+                return 1;
+            }
+            boolean littleEndian = data[tiff] == 'I' && data[tiff + 1] == 'I';
+            int ifd = tiff + readInt(data, tiff + 4, littleEndian);
+            if (ifd + 2 > end || ifd < tiff) {
+                return 1;
+            }
+            int entries = readShort(data, ifd, littleEndian);
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (entry + 12 > end) {
+                    return 1;
+                }
+                if (readShort(data, entry, littleEndian) == 0x0112) {
+                    int value = readShort(data, entry + 8, littleEndian);
+                    return value >= 1 && value <= 8 ? value : 1;
+                }
+            }
+            return 1;
+        }
+
+        private static int readShort(byte[] data, int pos, boolean littleEndian) {
+            int a = data[pos] & 0xFF;
+            int b = data[pos + 1] & 0xFF;
+            return littleEndian ? (b << 8) | a : (a << 8) | b;
+        }
+
+        private static int readInt(byte[] data, int pos, boolean littleEndian) {
+            int hi = readShort(data, littleEndian ? pos + 2 : pos, littleEndian);
+            int lo = readShort(data, littleEndian ? pos : pos + 2, littleEndian);
+            return (hi << 16) | lo;
+        }
+
+        static BufferedImage apply(BufferedImage image, int orientation) {
+            if (orientation <= 1 || orientation > 8) {
+                return image;
+            }
+            int w = image.getWidth();
+            int h = image.getHeight();
+            boolean swap = orientation >= 5;
+            AffineTransform t = new AffineTransform();
+            switch (orientation) {
+                case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+                case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+                case 4 -> { t.translate(0, h); t.scale(1, -1); }
+                case 5 -> { t.rotate(Math.PI / 2); t.scale(1, -1); }
+                case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+                case 7 -> { t.scale(-1, 1); t.translate(-h, 0); t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+                case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+                default -> { return image; }
+            }
+            int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            BufferedImage result = new BufferedImage(swap ? h : w, swap ? w : h, type);
+            Graphics2D g = result.createGraphics();
+            try {
+                g.drawImage(image, t, null);
+            } finally {
+                g.dispose();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import org.json.JSONObject;
+
+/**
+ * The {@code image_url} object of a message part whose {@code url} is an {@link OpenRouterImageData}.
+ *
+ * <p>Readers see a regular {@code image_url} object: {@code getString("url")} and the other accessors
+ * return the {@code data:<mime>;base64,...} URL as a {@code String}, encoded on each read. The
+ * reference itself stays in the object, so {@link OpenRouterRequestBodyWriter} can encode the image
+ * straight into the request body via {@link #raw(String)}.
+ */
+final class OpenRouterInlineImageUrl extends JSONObject {
+
+    private OpenRouterInlineImageUrl() {
+    }
+
+    static OpenRouterInlineImageUrl of(OpenRouterImageData image) {
+        OpenRouterInlineImageUrl imageUrl = new OpenRouterInlineImageUrl();
+        imageUrl.put("url", image);
+        return imageUrl;
+    }
+
+    /**
+     * The inline image of an {@code image_url} object, or null if it has none.
+     */
+    static OpenRouterImageData imageOf(JSONObject imageUrl) {
+        return imageUrl instanceof OpenRouterInlineImageUrl inline
+                && inline.raw("url") instanceof OpenRouterImageData image ? image : null;
+    }
+
+    /**
+     * A copy with {@code image} as url and the other entries (e.g. {@code detail}) of this object.
+     */
+    OpenRouterInlineImageUrl withImage(OpenRouterImageData image) {
+        OpenRouterInlineImageUrl copy = new OpenRouterInlineImageUrl();
+        for (String key : keySet()) {
+            copy.put(key, raw(key));
+        }
+        copy.put("url", image);
+        return copy;
+    }
+
+    /**
+     * The stored value, without expanding an image to its data URL.
+     */
+    Object raw(String key) {
+        return super.opt(key);
+    }
+
+    @Override
+    public Object opt(String key) {
+        Object value = super.opt(key);
+        return value instanceof OpenRouterImageData image ? image.dataUrl() : value;
+    }
+}
@@ -0,0 +1,119 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A chat message as an immutable value.
+ *
+ * <p>Messages are records with immutable lists, so a conversation prefix can be shared between
+ * threads and requests without copying. {@link #toJson()} and {@link #fromJson(JSONObject)} convert
+ * from and to the {@code JSONObject} messages used by {@link OpenRouterChatCompletionRequest#messages()},
+ * {@link OpenRouterChatCompletionResponse#message()} and the tool loop.
+ */
+public sealed interface OpenRouterMessage {
+
+    /**
+     * "system", "user", "assistant" or "tool"
+     */
+    String role();
+
+    static SystemMessage system(String text) {
+        return new SystemMessage(List.of(OpenRouterContentPart.text(text)));
+    }
+
+    static UserMessage user(String text) {
+        return new UserMessage(List.of(OpenRouterContentPart.text(text)));
+    }
+
+    static UserMessage user(OpenRouterContentPart... parts) {
+        return new UserMessage(List.of(parts));
+    }
+
+    static AssistantMessage assistant(String text) {
+        return new AssistantMessage(text, null, List.of());
+    }
+
+    static ToolMessage tool(String toolCallId, String content) {
+        return new ToolMessage(toolCallId, content);
+    }
+
+    /**
+     * Converts the message into the {@code JSONObject} form.
+     */
+    default JSONObject toJson() {
+        return OpenRouterMessageCodec.toJson(this);
+    }
+
+    /**
+     * Converts a {@code JSONObject} message; fields the model does not know are dropped.
+     *
+     * @throws IllegalArgumentException if the role is unknown or a required field is missing
+     */
+    static OpenRouterMessage fromJson(JSONObject json) {
+        return OpenRouterMessageCodec.fromJson(json);
+    }
+
+    record SystemMessage(List<OpenRouterContentPart> content) implements OpenRouterMessage {
+        public SystemMessage {
+            content = List.copyOf(content);
+        }
+
+        @Override
+        public String role() {
+            return "system";
+        }
+    }
+
+    record UserMessage(List<OpenRouterContentPart> content) implements OpenRouterMessage {
+        public UserMessage {
+            content = List.copyOf(content);
+        }
+
+        @Override
+        public String role() {
+            return "user";
+        }
+    }
+
+    /**
+     * @param content          the text, or null if the message only holds tool calls
+     * @param refusal          the refusal message, or null
+     * @param toolCalls        the requested tool calls, empty if none
+     * @param reasoning        the reasoning text of a reasoning model, or null
+     * @param reasoningDetails the {@code reasoning_details} entries, empty if none; sent back unchanged
+     *                         so the model can continue its reasoning after tool calls
+     */
+    record AssistantMessage(String content, String refusal, List<OpenRouterToolCall> toolCalls,
+                            String reasoning, List<Map<String, Object>> reasoningDetails)
+            implements OpenRouterMessage {
+        public AssistantMessage {
+            toolCalls = toolCalls != null ? List.copyOf(toolCalls) : List.of();
+            reasoningDetails = reasoningDetails != null ? List.copyOf(reasoningDetails) : List.of();
+        }
+
+        public AssistantMessage(String content, String refusal, List<OpenRouterToolCall> toolCalls) {
+            this(content, refusal, toolCalls, null, List.of());
+        }
+
+        @Override
+        public String role() {
+            return "assistant";
+        }
+    }
+
+    record ToolMessage(String toolCallId, String content) implements OpenRouterMessage {
+        public ToolMessage {
+            Objects.requireNonNull(toolCallId, "toolCallId must not be null");
+            Objects.requireNonNull(content, "content must not be null");
+        }
+
+        @Override
+        public String role() {
+            return "tool";
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterCacheControl;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterMessage.AssistantMessage;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterMessage.SystemMessage;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterMessage.ToolMessage;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterMessage.UserMessage;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts {@link OpenRouterMessage}s to and from the {@code JSONObject} messages of the request
+ * builder and the response. Inline images stay {@link OpenRouterImageData} references in that
+ * form, they are only encoded when the request body is written.
+ */
+final class OpenRouterMessageCodec {
+
+    private OpenRouterMessageCodec() {
+    }
+
+    /**
+     * Converts the message into the {@code JSONObject} form used by the request builder.
+     */
+    static JSONObject toJson(OpenRouterMessage message) {
+        JSONObject json = new JSONObject().put("role", message.role());
+        switch (message) {
+            case SystemMessage m -> json.put("content", contentToJson(m.content()));
+            case UserMessage m -> json.put("content", contentToJson(m.content()));
+            case AssistantMessage m -> {
+                json.put("content", m.content() != null ? m.content() : JSONObject.NULL);
+                if (m.refusal() != null) {
+                    json.put("refusal", m.refusal());
+                }
+                if (m.reasoning() != null) {
+                    json.put("reasoning", m.reasoning());
+                }
+                if (!m.reasoningDetails().isEmpty()) {
+                    json.put("reasoning_details", new JSONArray(m.reasoningDetails()));
+                }
+                if (!m.toolCalls().isEmpty()) {
+                    JSONArray calls = new JSONArray();
+                    for (OpenRouterToolCall call : m.toolCalls()) {
+                        calls.put(new JSONObject()
+                                .putOpt("id", call.id())
+                                .put("type", "function")
+                                .put("function", new JSONObject()
+                                        .put("name", call.name())
+                                        .put("arguments", call.arguments())));
+                    }
+                    json.put("tool_calls", calls);
+                }
+            }
+            case ToolMessage m -> json.put("tool_call_id", m.toolCallId()).put("content", m.content());
+        }
+        return json;
+    }
+
+    /**
+     * Converts a {@code JSONObject} message, see {@link OpenRouterMessage#fromJson(JSONObject)}.
+     */
+    static OpenRouterMessage fromJson(JSONObject json) {
+        return fromJson(json, json.optString("role", null));
+    }
+
+    /**
+     * Converts the message of a response choice, whatever its role field says (some providers
+     * leave it out).
+     */
+    static AssistantMessage assistantFromJson(JSONObject json) {
+        return (AssistantMessage) fromJson(json, "assistant");
+    }
+
+    private static OpenRouterMessage fromJson(JSONObject json, String role) {
+        String contentText = null;
+        List<OpenRouterContentPart> parts = null;
+        Object content = json.opt("content");
+        if (content instanceof JSONArray array) {
+            parts = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject part = array.getJSONObject(i);
+                JSONObject imageUrl = part.optJSONObject("image_url");
+                JSONObject file = part.optJSONObject("file");
+                JSONObject cache = part.optJSONObject("cache_control");
+                OpenRouterCacheControl cacheControl = cache != null ? cacheControlOf(cache.optString("ttl", null)) : null;
+                OpenRouterImageData data = OpenRouterInlineImageUrl.imageOf(imageUrl);
+                if (data != null) {
+                    parts.add(new OpenRouterContentPart.InlineImage(data, cacheControl));
+                    continue;
+                }
+                parts.add(toPart(
+                        part.optString("type", null),
+                        part.optString("text", null),
+                        imageUrl != null ? imageUrl.optString("url", null) : null,
+                        imageUrl != null ? imageUrl.optString("detail", null) : null,
+                        file != null ? file.optString("filename", null) : null,
+                        file != null ? file.optString("file_data", null) : null,
+                        cacheControl));
+            }
+        } else if (content instanceof String s) {
+            contentText = s;
+        }
+
+        List<OpenRouterToolCall> toolCalls = new ArrayList<>();
+        JSONArray calls = json.optJSONArray("tool_calls");
+        if (calls != null) {
+            for (int i = 0; i < calls.length(); i++) {
+                JSONObject call = calls.getJSONObject(i);
+                JSONObject function = call.optJSONObject("function");
+                toolCalls.add(toolCallOf(
+                        call.optString("id", null),
+                        function != null ? function.optString("name", null) : null,
+                        function != null ? function.optString("arguments", null) : null));
+            }
+        }
+        if (role == null) {
+            throw new IllegalArgumentException("Message without role");
+        }
+        return switch (role) {
+            case "system" -> new SystemMessage(partsOf(contentText, parts));
+            case "user" -> new UserMessage(partsOf(contentText, parts));
+            case "assistant" -> new AssistantMessage(
+                    parts != null ? joinText(parts) : contentText,
+                    json.isNull("refusal") ? null : json.optString("refusal", null),
+                    toolCalls,
+                    json.isNull("reasoning") ? null : json.optString("reasoning", null),
+                    reasoningDetailsOf(json.optJSONArray("reasoning_details")));
+            case "tool" -> {
+                String toolCallId = json.optString("tool_call_id", null);
+                if (toolCallId == null) {
+                    throw new IllegalArgumentException("Tool message without tool_call_id");
+                }
+                yield new ToolMessage(toolCallId, parts != null ? joinText(parts) : contentText != null ? contentText : "");
+            }
+            default -> throw new IllegalArgumentException("Unknown message role: " + role);
+        };
+    }
+
+    private static Object contentToJson(List<OpenRouterContentPart> parts) {
+        if (isPlainText(parts)) {
+            return ((OpenRouterContentPart.Text) parts.get(0)).text();
+        }
+        JSONArray array = new JSONArray();
+        for (OpenRouterContentPart part : parts) {
+            JSONObject json = switch (part) {
+                case OpenRouterContentPart.Text p -> new JSONObject().put("type", "text").put("text", p.text());
+                case OpenRouterContentPart.ImageUrl p -> {
+                    JSONObject url = new JSONObject().put("url", p.url());
+                    if (p.detail() != null) {
+                        url.put("detail", p.detail());
+                    }
+                    yield new JSONObject().put("type", "image_url").put("image_url", url);
+                }
+                case OpenRouterContentPart.InlineImage p -> new JSONObject()
+                        .put("type", "image_url")
+                        .put("image_url", OpenRouterInlineImageUrl.of(p.data()));
+                case OpenRouterContentPart.File p -> new JSONObject()
+                        .put("type", "file")
+                        .put("file", new JSONObject().put("filename", p.filename()).put("file_data", p.fileData()));
+            };
+            if (part.cacheControl() != null) {
+                json.put("cache_control", part.cacheControl().toJson());
+            }
+            array.put(json);
+        }
+        return array;
+    }
+
+    private static boolean isPlainText(List<OpenRouterContentPart> parts) {
+        return parts.size() == 1 && parts.get(0) instanceof OpenRouterContentPart.Text text && text.cacheControl() == null;
+    }
+
+    private static List<OpenRouterContentPart> partsOf(String contentText, List<OpenRouterContentPart> parts) {
+        if (parts != null) {
+            return parts;
+        }
+        return contentText != null ? List.of(OpenRouterContentPart.text(contentText)) : List.of();
+    }
+
+    private static String joinText(List<OpenRouterContentPart> parts) {
+        StringBuilder text = new StringBuilder();
+        for (OpenRouterContentPart part : parts) {
+            if (part instanceof OpenRouterContentPart.Text t) {
+                text.append(t.text());
+            }
+        }
+        return text.toString();
+    }
+
+    private static OpenRouterContentPart toPart(String type, String text, String url, String detail,
+                                                String filename, String fileData, OpenRouterCacheControl cacheControl) {
+        if (type == null) {
+            throw new IllegalArgumentException("Content part without type");
+        }
+        return switch (type) {
+            case "text" -> new OpenRouterContentPart.Text(text != null ? text : "", cacheControl);
+            case "image_url" -> {
+                if (url == null) {
+                    throw new IllegalArgumentException("image_url part without url");
+                }
+                yield new OpenRouterContentPart.ImageUrl(url, detail, cacheControl);
+            }
+            case "file" -> {
+                if (filename == null || fileData == null) {
+                    throw new IllegalArgumentException("file part without filename or file_data");
+                }
+                yield new OpenRouterContentPart.File(filename, fileData, cacheControl);
+            }
+            default -> throw new IllegalArgumentException("Unknown content part type: " + type);
+        };
+    }
+
+    private static OpenRouterToolCall toolCallOf(String id, String name, String arguments) {
+        if (name == null) {
+            throw new IllegalArgumentException("Tool call without function name");
+        }
+        return new OpenRouterToolCall(id, name, arguments);
+    }
+
+    /**
+     * The {@code reasoning_details} entries as unmodifiable maps, so they can be sent back unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> reasoningDetailsOf(JSONArray array) {
+        if (array == null) {
+            return List.of();
+        }
+        List<Map<String, Object>> details = new ArrayList<>(array.length());
+        for (Object detail : array.toList()) {
+            if (detail instanceof Map<?, ?> map) {
+                details.add((Map<String, Object>) unmodifiable(map));
+            }
+        }
+        return details;
+    }
+
+    private static Object unmodifiable(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, entry) -> copy.put((String) key, unmodifiable(entry)));
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(entry -> copy.add(unmodifiable(entry)));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    private static OpenRouterCacheControl cacheControlOf(String ttl) {
+        return "1h".equals(ttl) ? OpenRouterCacheControl.oneHour() : OpenRouterCacheControl.ephemeral();
+    }
+}
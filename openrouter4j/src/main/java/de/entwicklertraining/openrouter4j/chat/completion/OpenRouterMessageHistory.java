@@ -0,0 +1,397 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of chat messages that shares its structure with the histories it was derived
+ * from.
+ *
+ * <p>{@link #append(JSONObject)} returns a new history and leaves this one unchanged; both share
+ * all but the last few elements. Appending a message and reading a message take effectively
+ * constant time (a trie with 32 children per node, as in persistent vectors), so deriving the
+ * request of the next turn of a tool loop, or forking a conversation into several candidates,
+ * copies nothing of the earlier conversation. This is the type of
+ * {@link OpenRouterChatCompletionRequest#messages()}.
+ *
+ * <p>The messages of a resumed conversation stay in their {@link OpenRouterConversationStore}: the
+ * history reads them through the store's view when they are needed (for example while the
+ * request body is written) instead of holding them, and the messages added afterwards go into
+ * the trie behind them.
+ *
+ * <p>The history holds the message objects themselves; like every {@code JSONObject} in a
+ * request, they must not be modified after they have been added. The mutating methods of
+ * {@link java.util.List} throw {@link UnsupportedOperationException}.
+ */
+public final class OpenRouterMessageHistory extends AbstractList<JSONObject> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final OpenRouterMessageHistory EMPTY =
+            new OpenRouterMessageHistory(null, 0, BITS, new Object[WIDTH], new Object[0], 0);
+
+    // Messages in front of the trie that are read through views, or null
+    private final Prefix prefix;
+    // Number of messages in the trie
+    private final int size;
+    private final long textLength;
+    private final int shift;
+    private final Object[] root;
+    // The last 1 to 32 elements, kept outside of the trie until the block is full
+    private final Object[] tail;
+
+    private OpenRouterMessageHistory(Prefix prefix, int size, int shift, Object[] root, Object[] tail, long textLength) {
+        this.prefix = prefix;
+        this.size = size;
+        this.textLength = textLength;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    public static OpenRouterMessageHistory empty() {
+        return EMPTY;
+    }
+
+    /**
+     * A history with the given messages; returns {@code messages} itself if it already is one.
+     */
+    public static OpenRouterMessageHistory copyOf(Collection<? extends JSONObject> messages) {
+        if (messages instanceof OpenRouterMessageHistory history) {
+            return history;
+        }
+        return EMPTY.appendAll(messages);
+    }
+
+    /**
+     * This history followed by {@code message}.
+     */
+    public OpenRouterMessageHistory append(JSONObject message) {
+        Objects.requireNonNull(message, "message must not be null");
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = message;
+            return new OpenRouterMessageHistory(prefix, size + 1, shift, root, newTail, textLength + textLengthOf(message));
+        }
+        // The tail is full: move it into the trie, adding a level if the trie is full as well
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new OpenRouterMessageHistory(prefix, size + 1, newShift, newRoot, new Object[]{message},
+                textLength + textLengthOf(message));
+    }
+
+    /**
+     * This history followed by {@code messages}. Appending to an empty history returns
+     * {@code messages} itself if it is a history.
+     */
+    public OpenRouterMessageHistory appendAll(Collection<? extends JSONObject> messages) {
+        if (isEmpty() && messages instanceof OpenRouterMessageHistory history) {
+            return history;
+        }
+        if (messages instanceof OpenRouterMessageHistory history && history.prefix != null) {
+            // Keep the messages read through views in their views
+            OpenRouterMessageHistory result = this;
+            for (List<JSONObject> part : history.prefix.parts) {
+                result = part instanceof OpenRouterMessageHistory eager ? result.appendAll(eager) : result.appendView(part);
+            }
+            for (int i = 0; i < history.size; i++) {
+                result = result.append(history.trieGet(i));
+            }
+            return result;
+        }
+        OpenRouterMessageHistory result = this;
+        for (JSONObject message : messages) {
+            result = result.append(message);
+        }
+        return result;
+    }
+
+    /**
+     * This history followed by the messages of {@code view}, which are read through the view
+     * whenever they are needed instead of being copied. The view must not change afterwards, like
+     * the snapshot returned by {@link OpenRouterConversationStore#messages(String)}.
+     */
+    OpenRouterMessageHistory appendView(List<JSONObject> view) {
+        if (view instanceof OpenRouterMessageHistory history) {
+            return appendAll(history);
+        }
+        if (view.isEmpty()) {
+            return this;
+        }
+        List<List<JSONObject>> parts = new ArrayList<>(prefix != null ? prefix.parts : List.of());
+        if (size > 0) {
+            parts.add(new OpenRouterMessageHistory(null, size, shift, root, tail, textLength));
+        }
+        parts.add(view);
+        return new OpenRouterMessageHistory(new Prefix(List.copyOf(parts)), 0, BITS, new Object[WIDTH], new Object[0], 0);
+    }
+
+    /**
+     * This history without the messages of the given role. Messages read through a view stay
+     * there unless the view holds a message of that role; each of them is read once to find out.
+     */
+    OpenRouterMessageHistory without(String role) {
+        OpenRouterMessageHistory result = EMPTY;
+        if (prefix != null) {
+            for (List<JSONObject> part : prefix.parts) {
+                if (part instanceof OpenRouterMessageHistory || part.stream().anyMatch(m -> hasRole(m, role))) {
+                    for (JSONObject message : part) {
+                        if (!hasRole(message, role)) {
+                            result = result.append(message);
+                        }
+                    }
+                } else {
+                    result = result.appendView(part);
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            JSONObject message = trieGet(i);
+            if (!hasRole(message, role)) {
+                result = result.append(message);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This history with the message at {@code index} replaced. Replacing a message that is read
+     * through a view copies the messages of the history first.
+     */
+    public OpenRouterMessageHistory with(int index, JSONObject message) {
+        Objects.checkIndex(index, size());
+        Objects.requireNonNull(message, "message must not be null");
+        int prefixSize = prefixSize();
+        if (index < prefixSize) {
+            List<List<JSONObject>> parts = new ArrayList<>(prefix.parts);
+            int offset = index;
+            for (int i = 0; i < parts.size(); i++) {
+                List<JSONObject> part = parts.get(i);
+                if (offset >= part.size()) {
+                    offset -= part.size();
+                } else if (part instanceof OpenRouterMessageHistory eager) {
+                    parts.set(i, eager.with(offset, message));
+                    return new OpenRouterMessageHistory(new Prefix(List.copyOf(parts)), size, shift, root, tail, textLength);
+                } else {
+                    break;
+                }
+            }
+            return EMPTY.appendAll(new ArrayList<>(this)).with(index, message);
+        }
+        int trieIndex = index - prefixSize;
+        long newTextLength = textLength - textLengthOf(trieGet(trieIndex)) + textLengthOf(message);
+        if (trieIndex >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[trieIndex & MASK] = message;
+            return new OpenRouterMessageHistory(prefix, size, shift, root, newTail, newTextLength);
+        }
+        return new OpenRouterMessageHistory(prefix, size, shift, replace(shift, root, trieIndex, message), tail, newTextLength);
+    }
+
+    @Override
+    public JSONObject get(int index) {
+        Objects.checkIndex(index, size());
+        int prefixSize = prefixSize();
+        return index < prefixSize ? prefix.get(index) : trieGet(index - prefixSize);
+    }
+
+    @Override
+    public int size() {
+        return prefixSize() + size;
+    }
+
+    /**
+     * Number of text characters in all messages (string contents, text parts and tool call
+     * arguments), kept up to date as messages are added; used to estimate the prompt size. The
+     * messages read through a view are counted the first time this is called.
+     */
+    public long textLength() {
+        return (prefix != null ? prefix.textLength() : 0) + textLength;
+    }
+
+    @Override
+    public Iterator<JSONObject> iterator() {
+        int prefixSize = prefixSize();
+        return new Iterator<>() {
+            private int index;
+            private Object[] block;
+
+            @Override
+            public boolean hasNext() {
+                return index < prefixSize + size;
+            }
+
+            @Override
+            public JSONObject next() {
+                if (index >= prefixSize + size) {
+                    throw new NoSuchElementException();
+                }
+                if (index < prefixSize) {
+                    return prefix.get(index++);
+                }
+                int trieIndex = index++ - prefixSize;
+                if ((trieIndex & MASK) == 0 || block == null) {
+                    block = blockOf(trieIndex);
+                }
+                return (JSONObject) block[trieIndex & MASK];
+            }
+        };
+    }
+
+    private int prefixSize() {
+        return prefix != null ? prefix.size : 0;
+    }
+
+    private JSONObject trieGet(int index) {
+        return (JSONObject) blockOf(index)[index & MASK];
+    }
+
+    private static boolean hasRole(JSONObject message, String role) {
+        return role.equals(message.optString("role"));
+    }
+
+    private static long textLengthOf(JSONObject message) {
+        long length = 0;
+        Object content = message.opt("content");
+        if (content instanceof String text) {
+            length += text.length();
+        } else if (content instanceof JSONArray parts) {
+            for (int i = 0; i < parts.length(); i++) {
+                JSONObject part = parts.optJSONObject(i);
+                if (part != null && part.opt("text") instanceof String text) {
+                    length += text.length();
+                }
+            }
+        }
+        JSONArray toolCalls = message.optJSONArray("tool_calls");
+        if (toolCalls != null) {
+            for (int i = 0; i < toolCalls.length(); i++) {
+                JSONObject call = toolCalls.optJSONObject(i);
+                JSONObject function = call != null ? call.optJSONObject("function") : null;
+                if (function != null && function.opt("arguments") instanceof String arguments) {
+                    length += arguments.length();
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Index of the first element in the tail.
+     */
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * The block of 32 elements that holds {@code index}.
+     */
+    private Object[] blockOf(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] block) {
+        int slot = ((size - 1) >>> level) & MASK;
+        Object[] result = parent.clone();
+        Object child;
+        if (level == BITS) {
+            child = block;
+        } else {
+            Object[] existing = (Object[]) parent[slot];
+            child = existing != null ? pushTail(level - BITS, existing, block) : newPath(level - BITS, block);
+        }
+        result[slot] = child;
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] block) {
+        if (level == 0) {
+            return block;
+        }
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, block);
+        return node;
+    }
+
+    private static Object[] replace(int level, Object[] node, int index, JSONObject message) {
+        Object[] result = node.clone();
+        if (level == 0) {
+            result[index & MASK] = message;
+        } else {
+            int slot = (index >>> level) & MASK;
+            result[slot] = replace(level - BITS, (Object[]) node[slot], index, message);
+        }
+        return result;
+    }
+
+    /**
+     * The messages in front of the trie: histories without a prefix of their own, and views.
+     */
+    private static final class Prefix {
+
+        final List<List<JSONObject>> parts;
+        final int size;
+        // Text length of all parts, counted on first use; -1 until then
+        private volatile long textLength = -1;
+
+        Prefix(List<List<JSONObject>> parts) {
+            this.parts = parts;
+            this.size = parts.stream().mapToInt(List::size).sum();
+        }
+
+        JSONObject get(int index) {
+            for (List<JSONObject> part : parts) {
+                if (index < part.size()) {
+                    return part.get(index);
+                }
+                index -= part.size();
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        long textLength() {
+            long length = textLength;
+            if (length < 0) {
+                length = 0;
+                for (List<JSONObject> part : parts) {
+                    if (part instanceof OpenRouterMessageHistory eager) {
+                        length += eager.textLength();
+                    } else {
+                        for (JSONObject message : part) {
+                            length += textLengthOf(message);
+                        }
+                    }
+                }
+                textLength = length;
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Learns the latency and failure rate of models from the requests that use it and orders
+ * {@code models} fallback lists so that the model expected to answer fastest is tried first.
+ *
+ * <p>Both values are exponentially weighted moving averages, so the router follows changes
+ * quickly. A model's expected cost is its average latency plus its failure rate times the
+ * failure penalty, which stands for the time lost when OpenRouter has to fall back. Models with
+ * fewer than {@code minSamples} observations keep their position in the list.
+ *
+ * <p>Models behind a healthy first model would never be asked and never collect samples. A small
+ * share of requests ({@link Builder#exploration(double)}) therefore puts the least sampled model
+ * of the list first, so every model gets observations and stale averages are refreshed.
+ *
+ * <p>Outcomes are attributed from the response: if the n-th model of the list answered, the
+ * models before it are counted as failures. Non-streaming requests report the time until the
+ * complete response, streaming requests the time until the first chunk. One router is meant to
+ * be shared by all requests of an application; it is thread-safe.
+ */
+public final class OpenRouterModelRouter {
+
+    private final double alpha;
+    private final long failurePenaltyNanos;
+    private final int minSamples;
+    private final double exploration;
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+
+    private OpenRouterModelRouter(Builder builder) {
+        this.alpha = builder.alpha;
+        this.failurePenaltyNanos = builder.failurePenalty.toNanos();
+        this.minSamples = builder.minSamples;
+        this.exploration = builder.exploration;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A router with default settings.
+     */
+    public static OpenRouterModelRouter create() {
+        return builder().build();
+    }
+
+    /**
+     * Observed values of one model.
+     *
+     * @param samples      number of outcomes recorded
+     * @param latency      average latency of successful requests, zero if there was none
+     * @param failureRate  average failure rate between 0.0 and 1.0
+     * @param expectedCost latency plus failure rate times failure penalty, the sort key
+     */
+    public record Entry(long samples, Duration latency, double failureRate, Duration expectedCost) {
+    }
+
+    /**
+     * Returns the models ordered by expected cost. Models with too few samples keep their position.
+     * For the exploration share of calls, the least sampled model is moved to the front instead.
+     */
+    public List<String> order(List<String> models) {
+        List<Integer> slots = new ArrayList<>();
+        List<String> known = new ArrayList<>();
+        // Costs are read once: other threads keep recording while the list is sorted
+        Map<String, Double> costs = new HashMap<>();
+        for (int i = 0; i < models.size(); i++) {
+            ModelStats s = stats.get(models.get(i));
+            if (s != null && s.samples() >= minSamples) {
+                slots.add(i);
+                known.add(models.get(i));
+                costs.put(models.get(i), s.expectedCostNanos(failurePenaltyNanos));
+            }
+        }
+        known.sort(Comparator.comparingDouble(costs::get));
+
+        List<String> result = new ArrayList<>(models);
+        for (int i = 0; i < slots.size(); i++) {
+            result.set(slots.get(i), known.get(i));
+        }
+        if (result.size() > 1 && exploration > 0 && ThreadLocalRandom.current().nextDouble() < exploration) {
+            result.addFirst(result.remove(leastSampled(result)));
+        }
+        return result;
+    }
+
+    private int leastSampled(List<String> models) {
+        int result = 1;
+        long fewest = Long.MAX_VALUE;
+        for (int i = 1; i < models.size(); i++) {
+            ModelStats s = stats.get(models.get(i));
+            long samples = s != null ? s.samples() : 0;
+            if (samples < fewest) {
+                fewest = samples;
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    public void recordSuccess(String model, Duration latency) {
+        stats(model).record(false, latency.toNanos(), alpha);
+    }
+
+    public void recordFailure(String model) {
+        stats(model).record(true, 0, alpha);
+    }
+
+    /**
+     * Statistics of every model seen so far, sorted by model id.
+     */
+    public Map<String, Entry> snapshot() {
+        Map<String, Entry> result = new TreeMap<>();
+        stats.forEach((model, s) -> result.put(model, s.entry(failurePenaltyNanos)));
+        return result;
+    }
+
+    /**
+     * Attributes the outcome of a request: the model that answered succeeded, the models
+     * listed before it failed.
+     */
+    void record(OpenRouterChatCompletionRequest request, String servedModel, long latencyNanos) {
+        List<String> tried = request.models().isEmpty() ? List.of(request.model()) : request.models();
+        int served = OpenRouterChatCompletionResponse.indexOfModel(tried, servedModel);
+        if (served < 0) {
+            // Unknown model id in the response: credit the primary model
+            served = 0;
+        }
+        for (int i = 0; i < served; i++) {
+            recordFailure(tried.get(i));
+        }
+        recordSuccess(tried.get(served), Duration.ofNanos(latencyNanos));
+    }
+
+    /**
+     * Counts a failed request (every model of the list failed) against all its models.
+     */
+    void recordFailure(OpenRouterChatCompletionRequest request) {
+        List<String> tried = request.models().isEmpty() ? List.of(request.model()) : request.models();
+        tried.forEach(this::recordFailure);
+    }
+
+    private ModelStats stats(String model) {
+        Objects.requireNonNull(model, "model must not be null");
+        return stats.computeIfAbsent(model, m -> new ModelStats());
+    }
+
+    private static final class ModelStats {
+        private long samples;
+        private long successes;
+        private double latencyNanos;
+        private double failureRate;
+
+        synchronized void record(boolean failed, long nanos, double alpha) {
+            failureRate = samples == 0 ? (failed ? 1.0 : 0.0) : failureRate + alpha * ((failed ? 1.0 : 0.0) - failureRate);
+            if (!failed) {
+                latencyNanos = successes == 0 ? nanos : latencyNanos + alpha * (nanos - latencyNanos);
+                successes++;
+            }
+            samples++;
+        }
+
+        synchronized long samples() {
+            return samples;
+        }
+
+        synchronized double expectedCostNanos(long failurePenaltyNanos) {
+            // A model that never answered is assumed to take as long as a fallback
+            double latency = successes == 0 ? failurePenaltyNanos : latencyNanos;
+            return latency + failureRate * failurePenaltyNanos;
+        }
+
+        synchronized Entry entry(long failurePenaltyNanos) {
+            return new Entry(
+                    samples,
+                    Duration.ofNanos(Math.round(latencyNanos)),
+                    failureRate,
+                    Duration.ofNanos(Math.round(expectedCostNanos(failurePenaltyNanos)))
+            );
+        }
+    }
+
+    public static final class Builder {
+        private double alpha = 0.2;
+        private Duration failurePenalty = Duration.ofSeconds(5);
+        private int minSamples = 3;
+        private double exploration = 0.05;
+
+        private Builder() {
+        }
+
+        /**
+         * Weight of a new observation in the moving averages, between 0 (exclusive) and 1 (default 0.2).
+         */
+        public Builder smoothing(double alpha) {
+            if (!(alpha > 0.0 && alpha <= 1.0)) {
+                throw new IllegalArgumentException("smoothing must be in (0, 1]: " + alpha);
+            }
+            this.alpha = alpha;
+            return this;
+        }
+
+        /**
+         * Time a failure is assumed to cost (default 5 seconds).
+         */
+        public Builder failurePenalty(Duration penalty) {
+            Objects.requireNonNull(penalty, "failurePenalty must not be null");
+            if (penalty.isNegative()) {
+                throw new IllegalArgumentException("failurePenalty must not be negative: " + penalty);
+            }
+            this.failurePenalty = penalty;
+            return this;
+        }
+
+        /**
+         * Observations needed before a model is moved within the list (default 3).
+         */
+        public Builder minSamples(int samples) {
+            if (samples < 1) {
+                throw new IllegalArgumentException("minSamples must be at least 1: " + samples);
+            }
+            this.minSamples = samples;
+            return this;
+        }
+
+        /**
+         * Share of {@link #order(List)} calls, between 0 and 1, that put the least sampled model of
+         * the list first instead of the expected fastest one (default 0.05). 0 disables exploration.
+         */
+        public Builder exploration(double share) {
+            if (!(share >= 0.0 && share <= 1.0)) {
+                throw new IllegalArgumentException("exploration must be in [0, 1]: " + share);
+            }
+            this.exploration = share;
+            return this;
+        }
+
+        public OpenRouterModelRouter build() {
+            return new OpenRouterModelRouter(this);
+        }
+    }
+}
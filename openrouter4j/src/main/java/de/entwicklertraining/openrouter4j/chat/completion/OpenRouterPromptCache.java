@@ -0,0 +1,119 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterCacheControl;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Places {@code cache_control} breakpoints in request bodies.
+ *
+ * <p>Breakpoints sit on content parts, so a message with plain string content is rewritten to a
+ * single text part. Messages are never modified in place; a marked copy is returned instead,
+ * because the same message objects are shared by all requests of a tool loop.
+ */
+final class OpenRouterPromptCache {
+
+    private OpenRouterPromptCache() {
+    }
+
+    /**
+     * Returns a copy of {@code message} with a breakpoint on its last content part.
+     * Messages without content (assistant messages with only tool calls) are returned as they are.
+     */
+    static JSONObject withBreakpoint(JSONObject message, OpenRouterCacheControl control) {
+        if (!canHoldBreakpoint(message)) {
+            return message;
+        }
+        JSONArray parts = new JSONArray();
+        if (message.get("content") instanceof JSONArray array) {
+            for (int i = 0; i < array.length(); i++) {
+                parts.put(array.get(i));
+            }
+            parts.put(parts.length() - 1, shallowCopy(parts.getJSONObject(parts.length() - 1)));
+        } else {
+            parts.put(new JSONObject().put("type", "text").put("text", message.getString("content")));
+        }
+        parts.getJSONObject(parts.length() - 1).put("cache_control", control.toJson());
+        return shallowCopy(message).put("content", parts);
+    }
+
+    /**
+     * True if the message has text or content parts a breakpoint can be attached to.
+     */
+    static boolean canHoldBreakpoint(JSONObject message) {
+        Object content = message.opt("content");
+        if (content instanceof String text) {
+            return !text.isEmpty();
+        }
+        return content instanceof JSONArray array && !array.isEmpty()
+                && array.optJSONObject(array.length() - 1) != null;
+    }
+
+    static boolean hasBreakpoint(JSONObject message) {
+        JSONArray parts = message.optJSONArray("content");
+        if (parts == null) {
+            return false;
+        }
+        for (int i = 0; i < parts.length(); i++) {
+            JSONObject part = parts.optJSONObject(i);
+            if (part != null && part.has("cache_control")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the automatic breakpoints to a request body: after the last system message, after the
+     * last tool, and on the last message that has content, which is the prefix every later turn of
+     * a tool loop starts with. Positions that already carry a breakpoint are skipped, and no more
+     * breakpoints are added than {@link OpenRouterCacheControl#MAX_BREAKPOINTS} allows.
+     */
+    static void applyAutomatic(JSONArray messages, JSONArray tools, OpenRouterCacheControl control) {
+        int used = 0;
+        int lastSystem = -1;
+        int lastWithContent = -1;
+        for (int i = 0; i < messages.length(); i++) {
+            JSONObject message = messages.getJSONObject(i);
+            if (hasBreakpoint(message)) {
+                used++;
+            }
+            if ("system".equals(message.optString("role"))) {
+                lastSystem = i;
+            }
+            if (canHoldBreakpoint(message)) {
+                lastWithContent = i;
+            }
+        }
+        boolean toolsMarked = false;
+        for (int i = 0; tools != null && i < tools.length(); i++) {
+            if (tools.getJSONObject(i).has("cache_control")) {
+                used++;
+                toolsMarked = true;
+            }
+        }
+
+        if (lastSystem >= 0 && used < OpenRouterCacheControl.MAX_BREAKPOINTS
+                && !hasBreakpoint(messages.getJSONObject(lastSystem))) {
+            messages.put(lastSystem, withBreakpoint(messages.getJSONObject(lastSystem), control));
+            used++;
+        }
+        if (tools != null && !tools.isEmpty() && !toolsMarked && used < OpenRouterCacheControl.MAX_BREAKPOINTS) {
+            int last = tools.length() - 1;
+            tools.put(last, shallowCopy(tools.getJSONObject(last)).put("cache_control", control.toJson()));
+            used++;
+        }
+        if (lastWithContent > lastSystem && used < OpenRouterCacheControl.MAX_BREAKPOINTS
+                && !hasBreakpoint(messages.getJSONObject(lastWithContent))) {
+            messages.put(lastWithContent, withBreakpoint(messages.getJSONObject(lastWithContent), control));
+        }
+    }
+
+    private static JSONObject shallowCopy(JSONObject source) {
+        JSONObject copy = new JSONObject();
+        for (String key : source.keySet()) {
+            copy.put(key, source.get(key));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,415 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterJsonSchema;
+import de.entwicklertraining.openrouter4j.StreamingCandidateHandler;
+import de.entwicklertraining.openrouter4j.StreamingToolCallHandler;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Sends the same chat completion request to several models (or providers) concurrently and
+ * returns the first response that passes a validator. The other requests are cancelled as soon
+ * as a winner is found.
+ *
+ * <pre>{@code
+ * OpenRouterRace race = OpenRouterRace.builder(client)
+ *         .addContender("google/gemini-2.5-flash")
+ *         .addContender("openai/gpt-4o-mini")
+ *         .addContender("anthropic/claude-3.5-haiku")
+ *         .policy(OpenRouterRacePolicy.hedged(Duration.ofMillis(800)))
+ *         .build();
+ *
+ * OpenRouterChatCompletionResponse response = race.run(client.chat().completion()
+ *         .responseSchema(schema)
+ *         .addMessage("user", "...")
+ *         .build());
+ * }</pre>
+ *
+ * <p>The default validator rejects refusals. If the request has a {@code responseSchema}, the
+ * content must also match it. The model (and providers) of the request are replaced by those of
+ * the contender, all other settings are kept. Which contender won how often is recorded in
+ * {@link #stats()}. A race object is thread-safe and meant to be reused.
+ */
+public final class OpenRouterRace {
+
+    private final OpenRouterClient client;
+    private final List<Contender> contenders;
+    private final Predicate<OpenRouterChatCompletionResponse> validator;
+    private final OpenRouterRacePolicy policy;
+    private final boolean useExponentialBackoff;
+    private final OpenRouterRaceStats stats = new OpenRouterRaceStats();
+
+    private OpenRouterRace(Builder builder) {
+        this.client = builder.client;
+        this.contenders = List.copyOf(builder.contenders);
+        this.validator = builder.validator;
+        this.policy = builder.policy;
+        this.useExponentialBackoff = builder.useExponentialBackoff;
+    }
+
+    public static Builder builder(OpenRouterClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * A model, optionally pinned to providers (OpenRouter {@code provider.order}).
+     */
+    public record Contender(String model, List<String> providers) {
+
+        public Contender {
+            Objects.requireNonNull(model, "model must not be null");
+            providers = List.copyOf(providers);
+        }
+
+        /**
+         * Identifies the contender in {@link OpenRouterRaceStats}: the model, followed by
+         * {@code @provider,...} if providers are set.
+         */
+        public String key() {
+            return providers.isEmpty() ? model : model + "@" + String.join(",", providers);
+        }
+    }
+
+    public List<Contender> contenders() {
+        return contenders;
+    }
+
+    public OpenRouterRacePolicy policy() {
+        return policy;
+    }
+
+    public OpenRouterRaceStats stats() {
+        return stats;
+    }
+
+    /**
+     * Races the request and returns the first valid response.
+     *
+     * @throws ApiClient.ApiResponseUnusableException if no contender produced a valid response
+     */
+    public OpenRouterChatCompletionResponse run(OpenRouterChatCompletionRequest request) {
+        return race(request, null);
+    }
+
+    /**
+     * Races the request as streaming requests. Validation needs the complete response, so the
+     * deltas of each contender are buffered and only the winner's are delivered to
+     * {@code handler}, followed by {@code onComplete()}. Tool lifecycle events of the
+     * contenders are not forwarded.
+     */
+    public OpenRouterChatCompletionResponse stream(
+            OpenRouterChatCompletionRequest request,
+            StreamingResponseHandler<String> handler
+    ) {
+        return race(request, Objects.requireNonNull(handler, "handler must not be null"));
+    }
+
+    // --- Validators ---
+
+    /**
+     * Rejects responses whose first choice is a refusal. This is the default validator.
+     */
+    public static Predicate<OpenRouterChatCompletionResponse> noRefusal() {
+        return response -> !response.hasRefusal();
+    }
+
+    /**
+     * Requires non-blank content or tool calls in the first choice.
+     */
+    public static Predicate<OpenRouterChatCompletionResponse> hasContent() {
+        return response -> response.hasToolCalls()
+                || (response.assistantMessage() != null && !response.assistantMessage().isBlank());
+    }
+
+    /**
+     * Requires the content of the first choice to be JSON that matches the schema.
+     */
+    public static Predicate<OpenRouterChatCompletionResponse> matchesSchema(OpenRouterJsonSchema schema) {
+        Objects.requireNonNull(schema, "schema must not be null");
+        return response -> {
+            String content = response.assistantMessage();
+            if (content == null || content.isBlank()) {
+                return false;
+            }
+            try {
+                return schema.matches(new JSONTokener(content).nextValue());
+            } catch (JSONException e) {
+                return false;
+            }
+        };
+    }
+
+    // --- Race ---
+
+    private OpenRouterChatCompletionResponse race(
+            OpenRouterChatCompletionRequest request,
+            StreamingResponseHandler<String> userHandler
+    ) {
+        stats.raceStarted();
+        Predicate<OpenRouterChatCompletionResponse> accept = request.responseSchema() != null
+                ? validator.and(matchesSchema(request.responseSchema()))
+                : validator;
+
+        AtomicBoolean decided = new AtomicBoolean();
+        Supplier<Boolean> outerCancel = request.getIsCanceledSupplier();
+        Supplier<Boolean> cancel = () -> decided.get() || (outerCancel != null && Boolean.TRUE.equals(outerCancel.get()));
+
+        int limit = policy.maxContenders() > 0 ? Math.min(policy.maxContenders(), contenders.size()) : contenders.size();
+        long hedgeNanos = policy.hedgeDelay().toNanos();
+        BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        Map<Integer, Boolean> pending = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        long raceStart = System.nanoTime();
+        long nextStart = raceStart;
+        int started = 0;
+        RuntimeException lastFailure = null;
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                while (started < limit && now - nextStart >= 0) {
+                    int index = started++;
+                    pending.put(index, Boolean.TRUE);
+                    stats.started(contenders.get(index).key());
+                    OpenRouterChatCompletionRequest contenderRequest = contenderRequest(request, contenders.get(index), cancel);
+                    executor.execute(() -> outcomes.add(runContender(index, contenderRequest, userHandler, cancel)));
+                    nextStart = now + hedgeNanos;
+                }
+                if (pending.isEmpty() && started == limit) {
+                    break;
+                }
+
+                Outcome outcome = started < limit
+                        ? outcomes.poll(Math.max(0, nextStart - now), TimeUnit.NANOSECONDS)
+                        : outcomes.take();
+                if (outcome == null) {
+                    continue;
+                }
+                pending.remove(outcome.index);
+                String key = contenders.get(outcome.index).key();
+
+                if (outcome.failure != null) {
+                    stats.failed(key);
+                    lastFailure = outcome.failure;
+                } else if (isValid(accept, outcome.response)) {
+                    decided.set(true);
+                    stats.won(key, System.nanoTime() - raceStart);
+                    pending.keySet().forEach(i -> stats.cancelled(contenders.get(i).key()));
+                    if (outcome.buffer != null) {
+                        outcome.buffer.replay();
+                    }
+                    return outcome.response;
+                } else {
+                    stats.rejected(key);
+                }
+                if (policy.startNextOnFailure()) {
+                    nextStart = System.nanoTime();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiClient.ApiClientException("Interrupted while racing " + contenders.size() + " contenders");
+        } finally {
+            decided.set(true);
+            executor.shutdownNow();
+        }
+
+        stats.raceUndecided();
+        String message = "None of the " + started + " contenders produced a valid response"
+                + (lastFailure != null ? "; last failure: " + lastFailure.getMessage() : "");
+        throw lastFailure != null
+                ? new ApiClient.ApiResponseUnusableException(message, lastFailure)
+                : new ApiClient.ApiResponseUnusableException(message);
+    }
+
+    private OpenRouterChatCompletionRequest contenderRequest(
+            OpenRouterChatCompletionRequest request,
+            Contender contender,
+            Supplier<Boolean> cancel
+    ) {
+        var builder = new OpenRouterChatCompletionCallHandler(client).copyOf(request, request.messages())
+                .model(contender.model())
+                .n(request.n())
+                .stream(request.stream())
+                .setCancelSupplier(cancel);
+        if (!contender.providers().isEmpty()) {
+            builder.provider(contender.providers().toArray(new String[0]));
+        }
+        return builder.build();
+    }
+
+    private Outcome runContender(
+            int index,
+            OpenRouterChatCompletionRequest request,
+            StreamingResponseHandler<String> userHandler,
+            Supplier<Boolean> cancel
+    ) {
+        var handler = new OpenRouterChatCompletionCallHandler(client);
+        try {
+            if (userHandler == null) {
+                return new Outcome(index, handler.handleRequest(request, useExponentialBackoff), null, null);
+            }
+            BufferingHandler buffer = new BufferingHandler(userHandler, cancel);
+            OpenRouterChatCompletionResponse response =
+                    handler.handleStreamingRequest(request, buffer, useExponentialBackoff).join();
+            return new Outcome(index, response, buffer, null);
+        } catch (CompletionException e) {
+            return new Outcome(index, null, null,
+                    e.getCause() instanceof RuntimeException re ? re : new ApiClient.ApiClientException(String.valueOf(e.getCause())));
+        } catch (RuntimeException e) {
+            return new Outcome(index, null, null, e);
+        }
+    }
+
+    private static boolean isValid(
+            Predicate<OpenRouterChatCompletionResponse> accept,
+            OpenRouterChatCompletionResponse response
+    ) {
+        try {
+            return accept.test(response);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private record Outcome(
+            int index,
+            OpenRouterChatCompletionResponse response,
+            BufferingHandler buffer,
+            RuntimeException failure
+    ) {
+    }
+
+    /**
+     * Collects the content deltas of one contender until the race is decided.
+     */
+    private static final class BufferingHandler implements StreamingCandidateHandler {
+        private final StreamingResponseHandler<String> target;
+        private final Supplier<Boolean> cancel;
+        private final List<Map.Entry<Integer, String>> deltas = Collections.synchronizedList(new ArrayList<>());
+
+        BufferingHandler(StreamingResponseHandler<String> target, Supplier<Boolean> cancel) {
+            this.target = target;
+            this.cancel = cancel;
+        }
+
+        @Override
+        public void onCandidateData(int candidate, String delta) {
+            deltas.add(Map.entry(candidate, delta));
+        }
+
+        @Override
+        public void onData(String data) {
+            onCandidateData(0, data);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Surfaces as the contender's failure
+        }
+
+        @Override
+        public boolean shouldCancel() {
+            return cancel.get() || target.shouldCancel();
+        }
+
+        void replay() {
+            target.onStreamStart();
+            synchronized (deltas) {
+                for (Map.Entry<Integer, String> delta : deltas) {
+                    if (target instanceof StreamingCandidateHandler candidateHandler) {
+                        candidateHandler.onCandidateData(delta.getKey(), delta.getValue());
+                    } else if (delta.getKey() == 0) {
+                        target.onData(delta.getValue());
+                    }
+                }
+            }
+            if (target instanceof StreamingToolCallHandler stch) {
+                stch.onFinalComplete();
+            }
+            target.onComplete();
+        }
+    }
+
+    public static final class Builder {
+        private final OpenRouterClient client;
+        private final List<Contender> contenders = new ArrayList<>();
+        private Predicate<OpenRouterChatCompletionResponse> validator = noRefusal();
+        private OpenRouterRacePolicy policy = OpenRouterRacePolicy.allAtOnce();
+        private boolean useExponentialBackoff;
+
+        private Builder(OpenRouterClient client) {
+            this.client = Objects.requireNonNull(client, "client must not be null");
+        }
+
+        /**
+         * Adds a contender. Contenders are started in the order they were added.
+         */
+        public Builder addContender(String model, String... providers) {
+            contenders.add(new Contender(model, Arrays.asList(providers)));
+            return this;
+        }
+
+        /**
+         * Adds one contender per model.
+         */
+        public Builder models(List<String> models) {
+            models.forEach(this::addContender);
+            return this;
+        }
+
+        /**
+         * The check a response must pass to win. Default: {@link #noRefusal()}.
+         * Combine validators with {@link Predicate#and(Predicate)}.
+         */
+        public Builder validator(Predicate<OpenRouterChatCompletionResponse> validator) {
+            this.validator = Objects.requireNonNull(validator, "validator must not be null");
+            return this;
+        }
+
+        public Builder policy(OpenRouterRacePolicy policy) {
+            this.policy = Objects.requireNonNull(policy, "policy must not be null");
+            return this;
+        }
+
+        /**
+         * Retries each contender with exponential backoff on transient errors (default false,
+         * a failed contender simply loses).
+         */
+        public Builder useExponentialBackoff(boolean useBackoff) {
+            this.useExponentialBackoff = useBackoff;
+            return this;
+        }
+
+        public OpenRouterRace build() {
+            if (contenders.isEmpty()) {
+                throw new IllegalStateException("At least one contender is required");
+            }
+            return new OpenRouterRace(this);
+        }
+    }
+}
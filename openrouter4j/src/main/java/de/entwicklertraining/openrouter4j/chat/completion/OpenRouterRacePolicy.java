@@ -0,0 +1,109 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Caps the extra cost of an {@link OpenRouterRace}.
+ *
+ * <p>Every contender that is started costs at least its prompt tokens, even if it loses and is
+ * cancelled. The policy limits how many contenders may be started at all and, with a hedge delay,
+ * starts the next contender only if the running ones have not produced a valid response in time.
+ * With a hedge delay close to the typical latency of the first contender, the extra requests are
+ * only paid for on slow calls.
+ */
+public final class OpenRouterRacePolicy {
+
+    private final int maxContenders;
+    private final Duration hedgeDelay;
+    private final boolean startNextOnFailure;
+
+    private OpenRouterRacePolicy(Builder builder) {
+        this.maxContenders = builder.maxContenders;
+        this.hedgeDelay = builder.hedgeDelay;
+        this.startNextOnFailure = builder.startNextOnFailure;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts all contenders at once.
+     */
+    public static OpenRouterRacePolicy allAtOnce() {
+        return builder().build();
+    }
+
+    /**
+     * Starts one contender and adds the next one every {@code delay} until a valid response arrives.
+     */
+    public static OpenRouterRacePolicy hedged(Duration delay) {
+        return builder().hedgeDelay(delay).build();
+    }
+
+    /**
+     * Maximum number of contenders started per race, 0 for all.
+     */
+    public int maxContenders() {
+        return maxContenders;
+    }
+
+    /**
+     * Time between the starts of two contenders; zero starts them all at once.
+     */
+    public Duration hedgeDelay() {
+        return hedgeDelay;
+    }
+
+    /**
+     * Whether a failed or rejected contender starts the next one without waiting for the hedge delay.
+     */
+    public boolean startNextOnFailure() {
+        return startNextOnFailure;
+    }
+
+    public static final class Builder {
+        private int maxContenders;
+        private Duration hedgeDelay = Duration.ZERO;
+        private boolean startNextOnFailure = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Limits the number of contenders started per race. 0 (default) allows all.
+         */
+        public Builder maxContenders(int max) {
+            if (max < 0) {
+                throw new IllegalArgumentException("maxContenders must not be negative: " + max);
+            }
+            this.maxContenders = max;
+            return this;
+        }
+
+        /**
+         * Delay between the starts of two contenders (default zero: all at once).
+         */
+        public Builder hedgeDelay(Duration delay) {
+            Objects.requireNonNull(delay, "hedgeDelay must not be null");
+            if (delay.isNegative()) {
+                throw new IllegalArgumentException("hedgeDelay must not be negative: " + delay);
+            }
+            this.hedgeDelay = delay;
+            return this;
+        }
+
+        /**
+         * Starts the next contender as soon as a running one fails or is rejected (default true).
+         */
+        public Builder startNextOnFailure(boolean startNext) {
+            this.startNextOnFailure = startNext;
+            return this;
+        }
+
+        public OpenRouterRacePolicy build() {
+            return new OpenRouterRacePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts per contender how often it was started, won, lost and why, across all races run by
+ * one {@link OpenRouterRace}. Contenders are identified by {@link OpenRouterRace.Contender#key()}.
+ */
+public final class OpenRouterRaceStats {
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private final LongAdder races = new LongAdder();
+    private final LongAdder undecided = new LongAdder();
+
+    OpenRouterRaceStats() {
+    }
+
+    /**
+     * Statistics of one contender.
+     *
+     * @param started           races in which a request was sent to the contender
+     * @param won               races the contender won
+     * @param rejected          responses that failed the validator
+     * @param failed            requests that ended with an exception
+     * @param cancelled         requests cancelled because another contender won
+     * @param averageWinLatency average time from the start of the race to a win
+     */
+    public record Entry(long started, long won, long rejected, long failed, long cancelled, Duration averageWinLatency) {
+
+        /**
+         * Share of started races that the contender won, between 0.0 and 1.0.
+         */
+        public double winRate() {
+            return started == 0 ? 0.0 : (double) won / started;
+        }
+    }
+
+    /**
+     * Number of races run.
+     */
+    public long races() {
+        return races.sum();
+    }
+
+    /**
+     * Number of races in which no contender produced a valid response.
+     */
+    public long undecidedRaces() {
+        return undecided.sum();
+    }
+
+    /**
+     * Number of races the contender with the given key won.
+     */
+    public long wins(String contenderKey) {
+        Counters c = counters.get(contenderKey);
+        return c != null ? c.won.sum() : 0;
+    }
+
+    /**
+     * A snapshot of all contenders, sorted by key.
+     */
+    public Map<String, Entry> snapshot() {
+        Map<String, Entry> result = new TreeMap<>();
+        counters.forEach((key, c) -> {
+            long won = c.won.sum();
+            result.put(key, new Entry(
+                    c.started.sum(),
+                    won,
+                    c.rejected.sum(),
+                    c.failed.sum(),
+                    c.cancelled.sum(),
+                    Duration.ofNanos(won == 0 ? 0 : c.winNanos.sum() / won)
+            ));
+        });
+        return result;
+    }
+
+    void raceStarted() {
+        races.increment();
+    }
+
+    void raceUndecided() {
+        undecided.increment();
+    }
+
+    void started(String key) {
+        counters(key).started.increment();
+    }
+
+    void won(String key, long nanos) {
+        Counters c = counters(key);
+        c.won.increment();
+        c.winNanos.add(nanos);
+    }
+
+    void rejected(String key) {
+        counters(key).rejected.increment();
+    }
+
+    void failed(String key) {
+        counters(key).failed.increment();
+    }
+
+    void cancelled(String key) {
+        counters(key).cancelled.increment();
+    }
+
+    private Counters counters(String key) {
+        return counters.computeIfAbsent(key, k -> new Counters());
+    }
+
+    private static final class Counters {
+        final LongAdder started = new LongAdder();
+        final LongAdder won = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder cancelled = new LongAdder();
+        final LongAdder winNanos = new LongAdder();
+    }
+}
@@ -0,0 +1,150 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes a request body JSON tree into a single, exactly sized byte array.
+ *
+ * <p>Regular values are written like {@link JSONObject#toString()} does. {@link OpenRouterImageData}
+ * values are not materialized as strings: the writer reserves a slot of the encoded length and
+ * base64-encodes each distinct image directly into that slot, in parallel when several images are
+ * attached. An image that occurs more than once is encoded once and copied into the other slots.
+ */
+final class OpenRouterRequestBodyWriter {
+
+    private final List<String> texts = new ArrayList<>();
+    private final List<OpenRouterImageData> images = new ArrayList<>();
+    private StringBuilder current = new StringBuilder(256);
+
+    private OpenRouterRequestBodyWriter() {
+    }
+
+    static byte[] write(JSONObject root) {
+        OpenRouterRequestBodyWriter writer = new OpenRouterRequestBodyWriter();
+        writer.writeValue(root);
+        return writer.toBytes();
+    }
+
+    /**
+     * Returns true if the tree contains at least one {@link OpenRouterImageData} value.
+     */
+    static boolean containsImageData(Object value) {
+        if (value instanceof OpenRouterImageData) {
+            return true;
+        }
+        if (value instanceof JSONObject obj) {
+            for (String key : obj.keySet()) {
+                if (containsImageData(valueOf(obj, key))) {
+                    return true;
+                }
+            }
+        } else if (value instanceof JSONArray arr) {
+            for (int i = 0; i < arr.length(); i++) {
+                if (containsImageData(arr.opt(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void writeValue(Object value) {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            current.append("null");
+        } else if (value instanceof OpenRouterImageData image) {
+            current.append('"').append(image.dataUrlPrefix());
+            texts.add(current.toString());
+            images.add(image);
+            current = new StringBuilder(256);
+            current.append('"');
+        } else if (value instanceof JSONObject obj) {
+            current.append('{');
+            boolean first = true;
+            for (String key : obj.keySet()) {
+                if (!first) {
+                    current.append(',');
+                }
+                first = false;
+                current.append(JSONObject.quote(key)).append(':');
+                writeValue(valueOf(obj, key));
+            }
+            current.append('}');
+        } else if (value instanceof JSONArray arr) {
+            current.append('[');
+            for (int i = 0; i < arr.length(); i++) {
+                if (i > 0) {
+                    current.append(',');
+                }
+                writeValue(arr.opt(i));
+            }
+            current.append(']');
+        } else {
+            current.append(JSONObject.valueToString(value));
+        }
+    }
+
+    /**
+     * The value stored under {@code key}, an inline image as its {@link OpenRouterImageData}.
+     */
+    private static Object valueOf(JSONObject obj, String key) {
+        return obj instanceof OpenRouterInlineImageUrl inline ? inline.raw(key) : obj.opt(key);
+    }
+
+    private byte[] toBytes() {
+        texts.add(current.toString());
+
+        List<byte[]> encodedTexts = new ArrayList<>(texts.size());
+        long total = 0;
+        for (String text : texts) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            encodedTexts.add(bytes);
+            total += bytes.length;
+        }
+        for (OpenRouterImageData image : images) {
+            total += image.encodedLength();
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Request body too large: " + total + " bytes");
+        }
+
+        byte[] body = new byte[(int) total];
+        int[] imageOffsets = new int[images.size()];
+        int pos = 0;
+        for (int i = 0; i < encodedTexts.size(); i++) {
+            byte[] text = encodedTexts.get(i);
+            System.arraycopy(text, 0, body, pos, text.length);
+            pos += text.length;
+            if (i < images.size()) {
+                imageOffsets[i] = pos;
+                pos += images.get(i).encodedLength();
+            }
+        }
+
+        // Encode every distinct image once, remember where its first copy lives
+        Map<OpenRouterImageData, Integer> firstSlot = new IdentityHashMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            firstSlot.putIfAbsent(images.get(i), i);
+        }
+        List<Integer> distinctSlots = new ArrayList<>(firstSlot.values());
+        if (distinctSlots.size() > 1) {
+            distinctSlots.parallelStream().forEach(slot -> images.get(slot).encodeTo(body, imageOffsets[slot]));
+        } else {
+            distinctSlots.forEach(slot -> images.get(slot).encodeTo(body, imageOffsets[slot]));
+        }
+
+        for (int i = 0; i < images.size(); i++) {
+            int first = firstSlot.get(images.get(i));
+            if (first != i) {
+                System.arraycopy(body, imageOffsets[first], body, imageOffsets[i], images.get(i).encodedLength());
+            }
+        }
+        return body;
+    }
+}
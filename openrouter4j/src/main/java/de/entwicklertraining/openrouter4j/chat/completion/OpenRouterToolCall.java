@@ -0,0 +1,18 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import java.util.Objects;
+
+/**
+ * A function call requested by the model in an {@link OpenRouterMessage.AssistantMessage}.
+ *
+ * @param id        id the tool result refers to ({@code tool_call_id}), or null if the provider sent none
+ * @param name      name of the function
+ * @param arguments arguments as the JSON text the model produced
+ */
+public record OpenRouterToolCall(String id, String name, String arguments) {
+
+    public OpenRouterToolCall {
+        Objects.requireNonNull(name, "name must not be null");
+        arguments = arguments != null ? arguments : "{}";
+    }
+}
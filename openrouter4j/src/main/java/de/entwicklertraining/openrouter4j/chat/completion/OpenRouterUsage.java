@@ -0,0 +1,89 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Token usage (and cost, if OpenRouter reported it) of one request or the sum of several.
+ *
+ * @param promptTokens     prompt tokens, including cached ones
+ * @param completionTokens completion tokens, including reasoning ones
+ * @param totalTokens      prompt plus completion tokens
+ * @param reasoningTokens  tokens the model spent on reasoning (completion_tokens_details.reasoning_tokens)
+ * @param cachedTokens     prompt tokens read from the prompt cache (prompt_tokens_details.cached_tokens)
+ * @param cost             cost in credits, or null if not reported
+ */
+public record OpenRouterUsage(
+        int promptTokens,
+        int completionTokens,
+        int totalTokens,
+        int reasoningTokens,
+        int cachedTokens,
+        Double cost
+) {
+
+    public static final OpenRouterUsage ZERO = new OpenRouterUsage(0, 0, 0, 0, 0, null);
+
+    /**
+     * Reads an OpenRouter {@code usage} object. Missing fields count as zero.
+     */
+    public static OpenRouterUsage fromJson(JSONObject usage) {
+        if (usage == null) {
+            return ZERO;
+        }
+        JSONObject promptDetails = usage.optJSONObject("prompt_tokens_details");
+        JSONObject completionDetails = usage.optJSONObject("completion_tokens_details");
+        return new OpenRouterUsage(
+                usage.optInt("prompt_tokens"),
+                usage.optInt("completion_tokens"),
+                usage.optInt("total_tokens"),
+                completionDetails != null ? completionDetails.optInt("reasoning_tokens") : 0,
+                promptDetails != null ? promptDetails.optInt("cached_tokens") : 0,
+                usage.has("cost") && !usage.isNull("cost") ? usage.optDouble("cost") : null
+        );
+    }
+
+    public static OpenRouterUsage sum(List<OpenRouterUsage> usages) {
+        OpenRouterUsage total = ZERO;
+        for (OpenRouterUsage usage : usages) {
+            total = total.plus(usage);
+        }
+        return total;
+    }
+
+    public OpenRouterUsage plus(OpenRouterUsage other) {
+        Double totalCost = cost;
+        if (other.cost != null) {
+            totalCost = cost != null ? cost + other.cost : other.cost;
+        }
+        return new OpenRouterUsage(
+                promptTokens + other.promptTokens,
+                completionTokens + other.completionTokens,
+                totalTokens + other.totalTokens,
+                reasoningTokens + other.reasoningTokens,
+                cachedTokens + other.cachedTokens,
+                totalCost
+        );
+    }
+
+    /**
+     * Writes the usage in OpenRouter's format. Details and cost are only written when present.
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject()
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", totalTokens);
+        if (cachedTokens > 0) {
+            json.put("prompt_tokens_details", new JSONObject().put("cached_tokens", cachedTokens));
+        }
+        if (reasoningTokens > 0) {
+            json.put("completion_tokens_details", new JSONObject().put("reasoning_tokens", reasoningTokens));
+        }
+        if (cost != null) {
+            json.put("cost", cost);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,564 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Extracts the fields a streaming chat completion needs from a raw chunk
+ * ({@code {"choices":[{"index":0,"delta":{...},"finish_reason":...}]}}) without building a JSON tree.
+ *
+ * <p>The parser walks the UTF-8 bytes once, skips everything it does not need and decodes strings
+ * into a single reused {@link StringBuilder}. Values are reported to a {@link Listener} as
+ * {@link CharSequence}s that are only valid during the callback. The {@code usage} object, which
+ * arrives once at the end of a stream, is handed over as a raw byte range instead. Malformed input results in an
+ * {@link IllegalArgumentException}; callbacks made before the error are not undone.
+ */
+final class StreamingChunkParser {
+
+    interface Listener {
+        /**
+         * The {@code id} of the chunk, i.e. the generation id.
+         */
+        void onId(CharSequence id);
+
+        void onModel(CharSequence model);
+
+        /**
+         * A top-level field that describes the whole completion: {@code created} (as the literal
+         * number), {@code provider} or {@code system_fingerprint}.
+         */
+        void onMetadata(String name, CharSequence value);
+
+        void onRole(int choice, CharSequence role);
+
+        void onContent(int choice, CharSequence content);
+
+        void onFinishReason(int choice, CharSequence finishReason);
+
+        void onToolCallId(int choice, int toolCall, CharSequence id);
+
+        void onToolCallType(int choice, int toolCall, CharSequence type);
+
+        void onToolCallName(int choice, int toolCall, CharSequence name);
+
+        void onToolCallArguments(int choice, int toolCall, CharSequence arguments);
+
+        /**
+         * The {@code usage} object of the chunk as a range of the parsed buffer.
+         */
+        void onUsage(byte[] data, int offset, int length);
+    }
+
+    private static final int KEY_UNKNOWN = -1;
+    private static final int KEY_CHOICES = 0;
+    private static final int KEY_INDEX = 1;
+    private static final int KEY_DELTA = 2;
+    private static final int KEY_FINISH_REASON = 3;
+    private static final int KEY_ROLE = 4;
+    private static final int KEY_CONTENT = 5;
+    private static final int KEY_TOOL_CALLS = 6;
+    private static final int KEY_ID = 7;
+    private static final int KEY_TYPE = 8;
+    private static final int KEY_FUNCTION = 9;
+    private static final int KEY_NAME = 10;
+    private static final int KEY_ARGUMENTS = 11;
+    private static final int KEY_MODEL = 12;
+    private static final int KEY_USAGE = 13;
+    private static final int KEY_CREATED = 14;
+    private static final int KEY_PROVIDER = 15;
+    private static final int KEY_SYSTEM_FINGERPRINT = 16;
+
+    private static final String[] KEY_NAMES = {
+            "choices", "index", "delta", "finish_reason", "role",
+            "content", "tool_calls", "id", "type", "function",
+            "name", "arguments", "model", "usage", "created",
+            "provider", "system_fingerprint"
+    };
+    private static final byte[][] KEYS = new byte[KEY_NAMES.length][];
+
+    static {
+        for (int k = 0; k < KEY_NAMES.length; k++) {
+            KEYS[k] = bytes(KEY_NAMES[k]);
+        }
+    }
+
+    private final Listener listener;
+    private final StringBuilder text = new StringBuilder(256);
+    private byte[] buf;
+    private int pos;
+    private int end;
+
+    StreamingChunkParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    void parse(byte[] data, int offset, int length) {
+        this.buf = data;
+        this.pos = offset;
+        this.end = offset + length;
+        this.level = 0;
+        this.openCounts = 0;
+        try {
+            skipWhitespace();
+            beginObject();
+            while (nextMember()) {
+                int key = readKey();
+                switch (key) {
+                    case KEY_CHOICES -> {
+                        if (isNull()) {
+                            skipValue();
+                        } else {
+                            parseChoices();
+                        }
+                    }
+                    case KEY_ID -> {
+                        if (readStringOrNull()) {
+                            listener.onId(text);
+                        }
+                    }
+                    case KEY_MODEL -> {
+                        if (readStringOrNull()) {
+                            listener.onModel(text);
+                        }
+                    }
+                    case KEY_CREATED, KEY_PROVIDER, KEY_SYSTEM_FINGERPRINT -> readMetadata(KEY_NAMES[key]);
+                    case KEY_USAGE -> {
+                        if (isNull()) {
+                            skipValue();
+                        } else {
+                            int start = pos;
+                            skipValue();
+                            listener.onUsage(buf, start, pos - start);
+                        }
+                    }
+                    default -> skipValue();
+                }
+            }
+            skipWhitespace();
+            if (pos != end) {
+                throw error("Unexpected trailing data");
+            }
+        } finally {
+            this.buf = null;
+        }
+    }
+
+    // --- Structure ---
+
+    private void parseChoices() {
+        beginArray();
+        int position = 0;
+        while (nextElement()) {
+            parseChoice(position++);
+        }
+    }
+
+    private void parseChoice(int position) {
+        int start = pos;
+        int choice = findIndex(position);
+        pos = start;
+        beginObject();
+        while (nextMember()) {
+            switch (readKey()) {
+                case KEY_FINISH_REASON -> {
+                    if (readStringOrNull()) {
+                        listener.onFinishReason(choice, text);
+                    }
+                }
+                case KEY_DELTA -> parseDelta(choice);
+                default -> skipValue();
+            }
+        }
+    }
+
+    private void parseDelta(int choice) {
+        if (isNull()) {
+            skipValue();
+            return;
+        }
+        beginObject();
+        while (nextMember()) {
+            switch (readKey()) {
+                case KEY_ROLE -> {
+                    if (readStringOrNull()) {
+                        listener.onRole(choice, text);
+                    }
+                }
+                case KEY_CONTENT -> {
+                    if (readStringOrNull()) {
+                        listener.onContent(choice, text);
+                    }
+                }
+                case KEY_TOOL_CALLS -> {
+                    if (isNull()) {
+                        skipValue();
+                    } else {
+                        beginArray();
+                        int position = 0;
+                        while (nextElement()) {
+                            parseToolCall(choice, position++);
+                        }
+                    }
+                }
+                default -> skipValue();
+            }
+        }
+    }
+
+    private void parseToolCall(int choice, int position) {
+        int start = pos;
+        int toolCall = findIndex(position);
+        pos = start;
+        beginObject();
+        while (nextMember()) {
+            switch (readKey()) {
+                case KEY_ID -> {
+                    if (readStringOrNull()) {
+                        listener.onToolCallId(choice, toolCall, text);
+                    }
+                }
+                case KEY_TYPE -> {
+                    if (readStringOrNull()) {
+                        listener.onToolCallType(choice, toolCall, text);
+                    }
+                }
+                case KEY_FUNCTION -> {
+                    if (isNull()) {
+                        skipValue();
+                        break;
+                    }
+                    beginObject();
+                    while (nextMember()) {
+                        int key = readKey();
+                        if (key == KEY_NAME && readStringOrNull()) {
+                            listener.onToolCallName(choice, toolCall, text);
+                        } else if (key == KEY_ARGUMENTS && readStringOrNull()) {
+                            listener.onToolCallArguments(choice, toolCall, text);
+                        } else if (key != KEY_NAME && key != KEY_ARGUMENTS) {
+                            skipValue();
+                        }
+                    }
+                }
+                default -> skipValue();
+            }
+        }
+    }
+
+    /**
+     * Reads the {@code index} member of the object at the current position without reporting anything.
+     * The members of an object may come in any order, so this runs before the object is parsed.
+     */
+    private int findIndex(int fallback) {
+        int index = fallback;
+        beginObject();
+        while (nextMember()) {
+            if (readKey() == KEY_INDEX && !isNull()) {
+                index = readInt();
+            } else {
+                skipValue();
+            }
+        }
+        return index;
+    }
+
+    // --- Tokens ---
+
+    // One bit per nesting level: whether the current object/array already had a member (up to 63 levels)
+    private long openCounts;
+    private int level;
+
+    private void beginObject() {
+        skipWhitespace();
+        expect('{');
+        push();
+    }
+
+    private void beginArray() {
+        skipWhitespace();
+        expect('[');
+        push();
+    }
+
+    private void push() {
+        level++;
+        if (level > 63) {
+            throw error("Chunk nested too deeply");
+        }
+        openCounts &= ~(1L << level);
+    }
+
+    /**
+     * Advances to the next member of the current object. Returns false (and leaves the object)
+     * when the closing brace is reached.
+     */
+    private boolean nextMember() {
+        return next('}');
+    }
+
+    private boolean nextElement() {
+        return next(']');
+    }
+
+    private boolean next(char close) {
+        skipWhitespace();
+        if (at(pos) == close) {
+            pos++;
+            level--;
+            return false;
+        }
+        long bit = 1L << level;
+        if ((openCounts & bit) != 0) {
+            expect(',');
+            skipWhitespace();
+        } else {
+            openCounts |= bit;
+        }
+        return true;
+    }
+
+    private int readKey() {
+        skipWhitespace();
+        expect('"');
+        int start = pos;
+        boolean escaped = false;
+        while (at(pos) != '"') {
+            if (at(pos) == '\\') {
+                escaped = true;
+                pos++;
+            }
+            pos++;
+        }
+        int length = pos - start;
+        pos++;
+        skipWhitespace();
+        expect(':');
+        if (escaped) {
+            // Escaped key names are legal but never used by OpenRouter; treat them as unknown
+            return KEY_UNKNOWN;
+        }
+        for (int k = 0; k < KEYS.length; k++) {
+            byte[] key = KEYS[k];
+            if (key.length == length && regionEquals(start, key)) {
+                return k;
+            }
+        }
+        return KEY_UNKNOWN;
+    }
+
+    private boolean isNull() {
+        skipWhitespace();
+        return at(pos) == 'n';
+    }
+
+    /**
+     * Reads a string value into {@link #text}. Returns false (and skips the value) for {@code null}.
+     */
+    private boolean readStringOrNull() {
+        skipWhitespace();
+        if (at(pos) == 'n') {
+            skipLiteral();
+            return false;
+        }
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            int b = at(pos++);
+            if (b == '"') {
+                return true;
+            }
+            if (b == '\\') {
+                readEscape();
+            } else if (b >= 0) {
+                text.append((char) b);
+            } else {
+                readMultiByte(b);
+            }
+        }
+    }
+
+    private void readEscape() {
+        int c = at(pos++);
+        switch (c) {
+            case '"', '\\', '/' -> text.append((char) c);
+            case 'b' -> text.append('\b');
+            case 'f' -> text.append('\f');
+            case 'n' -> text.append('\n');
+            case 'r' -> text.append('\r');
+            case 't' -> text.append('\t');
+            case 'u' -> {
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    code = (code << 4) | hexValue(at(pos++));
+                }
+                text.append((char) code);
+            }
+            default -> throw error("Invalid escape sequence");
+        }
+    }
+
+    private void readMultiByte(int first) {
+        int codePoint;
+        int continuation;
+        if ((first & 0xE0) == 0xC0) {
+            codePoint = first & 0x1F;
+            continuation = 1;
+        } else if ((first & 0xF0) == 0xE0) {
+            codePoint = first & 0x0F;
+            continuation = 2;
+        } else if ((first & 0xF8) == 0xF0) {
+            codePoint = first & 0x07;
+            continuation = 3;
+        } else {
+            throw error("Invalid UTF-8");
+        }
+        for (int i = 0; i < continuation; i++) {
+            int b = at(pos++);
+            if ((b & 0xC0) != 0x80) {
+                throw error("Invalid UTF-8");
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        text.appendCodePoint(codePoint);
+    }
+
+    /**
+     * Reports a string or literal (number) value; {@code null} is skipped.
+     */
+    private void readMetadata(String name) {
+        skipWhitespace();
+        if (at(pos) == '"') {
+            readStringOrNull();
+        } else if (at(pos) == 'n') {
+            skipLiteral();
+            return;
+        } else {
+            int start = pos;
+            skipLiteral();
+            text.setLength(0);
+            for (int i = start; i < pos; i++) {
+                text.append((char) buf[i]);
+            }
+        }
+        listener.onMetadata(name, text);
+    }
+
+    private int readInt() {
+        skipWhitespace();
+        boolean negative = at(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        int value = 0;
+        int start = pos;
+        while (pos < end && at(pos) >= '0' && at(pos) <= '9') {
+            value = value * 10 + (at(pos++) - '0');
+        }
+        if (pos == start) {
+            throw error("Number expected");
+        }
+        return negative ? -value : value;
+    }
+
+    private void skipValue() {
+        skipWhitespace();
+        byte b = at(pos);
+        if (b == '"') {
+            skipString();
+        } else if (b == '{' || b == '[') {
+            int depth = 0;
+            do {
+                byte c = at(pos);
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0);
+        } else {
+            skipLiteral();
+        }
+    }
+
+    private void skipString() {
+        pos++;
+        while (at(pos) != '"') {
+            if (at(pos) == '\\') {
+                pos++;
+            }
+            pos++;
+        }
+        pos++;
+    }
+
+    private void skipLiteral() {
+        int start = pos;
+        while (pos < end) {
+            byte b = at(pos);
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Value expected");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = at(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void expect(char c) {
+        if (at(pos) != c) {
+            throw error("'" + c + "' expected");
+        }
+        pos++;
+    }
+
+    private byte at(int index) {
+        if (index >= end) {
+            throw error("Unexpected end of chunk");
+        }
+        return buf[index];
+    }
+
+    private boolean regionEquals(int start, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        throw error("Invalid unicode escape");
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,31 +1,69 @@
 package de.entwicklertraining.openrouter4j.chat.completion;
 
 import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingSchemaValidator;
+import de.entwicklertraining.openrouter4j.StreamingCandidateHandler;
+import de.entwicklertraining.openrouter4j.streaming.OpenRouterChunkSink;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
 
 /**
  * Internal wrapper handler that receives raw SSE JSON chunks (via RAW_JSON
- * extractor) and splits them into content (forwarded to user handler) and
- * tool_calls (accumulated internally for the CallHandler to process).
+ * extractor, or as bytes via {@link OpenRouterChunkSink}) and splits them into
+ * content (forwarded to user handler) and tool_calls (accumulated internally
+ * for the CallHandler to process).
+ *
+ * <p>State is kept per choice, so a stream with several choices ({@code n > 1}) is
+ * accumulated completely. Content deltas are routed by candidate index
+ * ({@code candidateOffset + choice}) to a {@link StreamingCandidateHandler}; other
+ * handlers only receive candidate 0.
+ *
+ * <p>With a {@link OpenRouterStreamingSchemaValidator}, the content of choice 0 is validated as it
+ * arrives; the first violation cancels the stream and is not forwarded. When the turn may call tools,
+ * content before the tool calls (e.g. "Let me look that up") is not an answer: a violation then only
+ * counts if the turn ends without tool calls, and validation stops at the first tool call delta.
  */
-final class StreamingToolCallAccumulator implements StreamingResponseHandler<String> {
+final class StreamingToolCallAccumulator
+        implements StreamingResponseHandler<String>, OpenRouterChunkSink, StreamingChunkParser.Listener {
 
     private static final Logger logger = LoggerFactory.getLogger(StreamingToolCallAccumulator.class);
 
     private final StreamingResponseHandler<String> userHandler;
-    private String finishReason;
-    private String role;
-    private final StringBuilder contentBuilder = new StringBuilder();
-    private final TreeMap<Integer, ToolCallData> toolCallsByIndex = new TreeMap<>();
+    private final int candidateOffset;
+    private String id;
+    private String model;
+    private final Map<String, Object> metadata = new HashMap<>();
+    private long firstChunkNanos;
+    private JSONObject usage;
+    private volatile BooleanSupplier cancelCondition;
+    private OpenRouterStreamingSchemaValidator validator;
+    private boolean deferViolation;
+    private String deferredViolation;
+    private volatile String schemaViolation;
+    private final TreeMap<Integer, ChoiceData> choicesByIndex = new TreeMap<>();
+    private final StreamingChunkParser parser = new StreamingChunkParser(this);
 
     StreamingToolCallAccumulator(StreamingResponseHandler<String> userHandler) {
+        this(userHandler, 0);
+    }
+
+    /**
+     * @param candidateOffset added to the choice index of every delta before it is passed to a
+     *                        {@link StreamingCandidateHandler}; used when candidate i is requested
+     *                        separately and streams as choice 0
+     */
+    StreamingToolCallAccumulator(StreamingResponseHandler<String> userHandler, int candidateOffset) {
         this.userHandler = userHandler;
+        this.candidateOffset = candidateOffset;
     }
 
     @Override
@@ -35,58 +73,124 @@ final class StreamingToolCallAccumulator implements StreamingResponseHandler<Str
 
     @Override
     public void onData(String rawJson) {
+        byte[] bytes = rawJson.getBytes(StandardCharsets.UTF_8);
+        onChunk(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void onChunk(byte[] data, int offset, int length) {
+        if (firstChunkNanos == 0) {
+            firstChunkNanos = System.nanoTime();
+        }
         try {
-            JSONObject json = new JSONObject(rawJson);
-            JSONArray choices = json.optJSONArray("choices");
-            if (choices == null || choices.isEmpty()) return;
+            parser.parse(data, offset, length);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Failed to parse streaming chunk: {}", e.getMessage());
+        }
+    }
 
-            JSONObject choice = choices.getJSONObject(0);
+    // --- StreamingChunkParser.Listener ---
 
-            if (choice.has("finish_reason") && !choice.isNull("finish_reason")) {
-                this.finishReason = choice.getString("finish_reason");
-            }
+    @Override
+    public void onId(CharSequence id) {
+        if (this.id == null) {
+            this.id = id.toString();
+        }
+    }
 
-            JSONObject delta = choice.optJSONObject("delta");
-            if (delta == null) return;
+    @Override
+    public void onModel(CharSequence model) {
+        if (this.model == null) {
+            this.model = model.toString();
+        }
+    }
 
-            if (delta.has("role")) {
-                this.role = delta.getString("role");
+    @Override
+    public void onMetadata(String name, CharSequence value) {
+        if (!metadata.containsKey(name)) {
+            if (!name.equals("created")) {
+                metadata.put(name, value.toString());
+            } else {
+                try {
+                    metadata.put(name, Long.parseLong(value, 0, value.length(), 10));
+                } catch (NumberFormatException e) {
+                    logger.debug("Ignoring non-integer created timestamp: {}", value);
+                }
             }
+        }
+    }
 
-            if (delta.has("content") && !delta.isNull("content")) {
-                String content = delta.getString("content");
-                contentBuilder.append(content);
-                userHandler.onData(content);
-            }
+    @Override
+    public void onRole(int choice, CharSequence role) {
+        choice(choice).role = role.toString();
+    }
 
-            if (delta.has("tool_calls")) {
-                JSONArray toolCalls = delta.getJSONArray("tool_calls");
-                for (int i = 0; i < toolCalls.length(); i++) {
-                    JSONObject tc = toolCalls.getJSONObject(i);
-                    int index = tc.getInt("index");
-
-                    ToolCallData data = toolCallsByIndex.computeIfAbsent(index, k -> new ToolCallData());
-
-                    if (tc.has("id")) {
-                        data.id = tc.getString("id");
-                    }
-                    if (tc.has("type")) {
-                        data.type = tc.getString("type");
-                    }
-                    if (tc.has("function")) {
-                        JSONObject fn = tc.getJSONObject("function");
-                        if (fn.has("name")) {
-                            data.name = fn.getString("name");
-                        }
-                        if (fn.has("arguments")) {
-                            data.argumentsBuilder.append(fn.getString("arguments"));
-                        }
-                    }
-                }
+    @Override
+    public void onContent(int choice, CharSequence content) {
+        if (schemaViolation != null) {
+            return;
+        }
+        if (validator != null && choice == 0) {
+            String violation = validator.accept(content);
+            if (violation != null && deferViolation) {
+                // Possibly the preamble of a tool call; decided at the end of the turn
+                deferredViolation = violation;
+                validator = null;
+            } else if (violation != null) {
+                schemaViolation = violation;
+                logger.debug("Streamed content violates the response schema: {}", schemaViolation);
+                return;
             }
-        } catch (Exception e) {
-            logger.warn("Failed to parse streaming chunk: {}", e.getMessage());
         }
+        choice(choice).contentBuilder.append(content);
+        int candidate = candidateOffset + choice;
+        if (userHandler instanceof StreamingCandidateHandler candidateHandler) {
+            candidateHandler.onCandidateData(candidate, content.toString());
+        } else if (candidate == 0) {
+            userHandler.onData(content.toString());
+        }
+    }
+
+    @Override
+    public void onFinishReason(int choice, CharSequence finishReason) {
+        choice(choice).finishReason = finishReason.toString();
+    }
+
+    @Override
+    public void onToolCallId(int choice, int toolCall, CharSequence id) {
+        toolCall(choice, toolCall).id = id.toString();
+    }
+
+    @Override
+    public void onToolCallType(int choice, int toolCall, CharSequence type) {
+        toolCall(choice, toolCall).type = type.toString();
+    }
+
+    @Override
+    public void onToolCallName(int choice, int toolCall, CharSequence name) {
+        toolCall(choice, toolCall).name = name.toString();
+    }
+
+    @Override
+    public void onToolCallArguments(int choice, int toolCall, CharSequence arguments) {
+        toolCall(choice, toolCall).argumentsBuilder.append(arguments);
+    }
+
+    @Override
+    public void onUsage(byte[] data, int offset, int length) {
+        usage = new JSONObject(new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+
+    private ChoiceData choice(int index) {
+        return choicesByIndex.computeIfAbsent(index, k -> new ChoiceData());
+    }
+
+    private ToolCallData toolCall(int choice, int toolCall) {
+        if (choice == 0) {
+            // Content next to tool calls is not the answer the schema describes
+            validator = null;
+        }
+        return choice(choice).toolCall(toolCall);
     }
 
     @Override
@@ -106,20 +210,110 @@ final class StreamingToolCallAccumulator implements StreamingResponseHandler<Str
 
     @Override
     public boolean shouldCancel() {
-        return userHandler.shouldCancel();
+        return userHandler.shouldCancel() || schemaViolation != null
+                || (cancelCondition != null && cancelCondition.getAsBoolean());
+    }
+
+    /**
+     * Makes {@link #shouldCancel()} also return true once {@code condition} does.
+     */
+    void cancelWhen(BooleanSupplier condition) {
+        this.cancelCondition = condition;
+    }
+
+    /**
+     * Validates the content of choice 0 with {@code validator}.
+     *
+     * @param toolsDeclared whether the turn may call tools; a violation then does not cancel the
+     *                      stream and only counts if the turn ends without tool calls
+     */
+    void validateWith(OpenRouterStreamingSchemaValidator validator, boolean toolsDeclared) {
+        this.validator = validator;
+        this.deferViolation = toolsDeclared;
+    }
+
+    /**
+     * The schema violation of the turn, or null: the one that canceled the stream or, with tools
+     * declared, the one found in a turn that ended without tool calls.
+     */
+    String getSchemaViolation() {
+        if (schemaViolation == null && deferredViolation != null && !hasToolCalls()) {
+            return deferredViolation;
+        }
+        return schemaViolation;
+    }
+
+    /**
+     * Indices of the choices seen in the stream, in ascending order.
+     */
+    Set<Integer> choiceIndices() {
+        return choicesByIndex.keySet();
+    }
+
+    /**
+     * The generation id, as reported in the chunks, or null if none was reported.
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * The model that served the stream, as reported in the chunks, or null if none was reported.
+     */
+    String getModel() {
+        return model;
+    }
+
+    /**
+     * The first {@code created}, {@code provider} and {@code system_fingerprint} values of the stream.
+     */
+    Map<String, Object> getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * The usage reported at the end of the stream, or null if none was reported.
+     */
+    JSONObject getUsage() {
+        return usage;
+    }
+
+    /**
+     * {@link System#nanoTime()} when the first chunk arrived, 0 if none arrived yet.
+     */
+    long getFirstChunkNanos() {
+        return firstChunkNanos;
     }
 
     String getFinishReason() {
-        return finishReason;
+        return getFinishReason(0);
+    }
+
+    String getFinishReason(int choice) {
+        ChoiceData data = choicesByIndex.get(choice);
+        return data != null ? data.finishReason : null;
     }
 
     boolean hasToolCalls() {
-        return "tool_calls".equals(finishReason) && !toolCallsByIndex.isEmpty();
+        return hasToolCalls(0);
+    }
+
+    boolean hasToolCalls(int choice) {
+        ChoiceData data = choicesByIndex.get(choice);
+        return data != null && "tool_calls".equals(data.finishReason) && !data.toolCallsByIndex.isEmpty();
     }
 
     JSONArray getAccumulatedToolCalls() {
+        return getAccumulatedToolCalls(0);
+    }
+
+    JSONArray getAccumulatedToolCalls(int choice) {
         JSONArray result = new JSONArray();
-        for (var entry : toolCallsByIndex.entrySet()) {
+        ChoiceData choiceData = choicesByIndex.get(choice);
+        if (choiceData == null) {
+            return result;
+        }
+        for (var entry : choiceData.toolCallsByIndex.entrySet()) {
             ToolCallData data = entry.getValue();
             JSONObject tc = new JSONObject();
             tc.put("id", data.id);
@@ -134,22 +328,60 @@ final class StreamingToolCallAccumulator implements StreamingResponseHandler<Str
     }
 
     JSONObject buildAssistantMessage() {
+        return buildAssistantMessage(0);
+    }
+
+    JSONObject buildAssistantMessage(int choice) {
+        ChoiceData data = choicesByIndex.get(choice);
         JSONObject msg = new JSONObject();
-        msg.put("role", role != null ? role : "assistant");
-        if (hasToolCalls()) {
+        msg.put("role", data != null && data.role != null ? data.role : "assistant");
+        if (hasToolCalls(choice)) {
             msg.put("content", JSONObject.NULL);
-            msg.put("tool_calls", getAccumulatedToolCalls());
+            msg.put("tool_calls", getAccumulatedToolCalls(choice));
         } else {
-            msg.put("content", contentBuilder.toString());
+            msg.put("content", data != null ? data.contentBuilder.toString() : "");
         }
         return msg;
     }
 
+    /**
+     * Builds a complete choice object ({@code message} and {@code finish_reason}) for the response.
+     */
+    JSONObject buildChoice(int choice) {
+        String finishReason = getFinishReason(choice);
+        return new JSONObject()
+                .put("index", choice)
+                .put("message", buildAssistantMessage(choice))
+                .put("finish_reason", finishReason != null ? finishReason : "stop");
+    }
+
+    /**
+     * Returns to the state of a new accumulator, including the cancel condition and the schema
+     * validation, which have to be set up again for the next stream.
+     */
     void reset() {
-        finishReason = null;
-        toolCallsByIndex.clear();
-        role = null;
-        contentBuilder.setLength(0);
+        id = null;
+        model = null;
+        metadata.clear();
+        firstChunkNanos = 0;
+        usage = null;
+        cancelCondition = null;
+        validator = null;
+        deferViolation = false;
+        deferredViolation = null;
+        schemaViolation = null;
+        choicesByIndex.clear();
+    }
+
+    static final class ChoiceData {
+        String finishReason;
+        String role;
+        final StringBuilder contentBuilder = new StringBuilder();
+        final TreeMap<Integer, ToolCallData> toolCallsByIndex = new TreeMap<>();
+
+        ToolCallData toolCall(int index) {
+            return toolCallsByIndex.computeIfAbsent(index, k -> new ToolCallData());
+        }
     }
 
     static final class ToolCallData {
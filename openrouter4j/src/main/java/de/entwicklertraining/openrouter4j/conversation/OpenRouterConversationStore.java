@@ -0,0 +1,66 @@
+package de.entwicklertraining.openrouter4j.conversation;
+
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persists the messages of conversations (sessions), so that a long-running tool loop can be
+ * resumed after a crash or redeploy.
+ *
+ * <p>Messages are appended as the tool loop produces them and become durable in groups: a
+ * {@link #commit(String)} marks the end of a completed turn (the assistant message and the results
+ * of its tool calls, or the final answer). After a restart, {@link #messages(String)} returns the
+ * conversation up to the last commit; messages of a turn that was interrupted are dropped.
+ *
+ * <p>Attach a store to a request with
+ * {@link de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest.Builder#conversation(OpenRouterConversationStore, String)}.
+ * Implementations must be thread-safe; a single session is written by one tool loop at a time.
+ */
+public interface OpenRouterConversationStore extends Closeable {
+
+    /**
+     * Appends a message to the session, creating the session if it does not exist.
+     */
+    void append(String sessionId, JSONObject message);
+
+    /**
+     * Appends several messages to the session.
+     */
+    default void appendAll(String sessionId, List<JSONObject> messages) {
+        for (JSONObject message : messages) {
+            append(sessionId, message);
+        }
+    }
+
+    /**
+     * Marks all messages appended so far as a completed turn.
+     */
+    void commit(String sessionId);
+
+    /**
+     * The committed messages of the session, in order; empty if the session does not exist.
+     * The list is a read-only snapshot; implementations may load its elements lazily.
+     */
+    List<JSONObject> messages(String sessionId);
+
+    /**
+     * Number of committed messages of the session.
+     */
+    int size(String sessionId);
+
+    /**
+     * Ids of all sessions in the store.
+     */
+    Set<String> sessions();
+
+    /**
+     * Removes the session and all its messages.
+     */
+    void delete(String sessionId);
+
+    @Override
+    void close();
+}
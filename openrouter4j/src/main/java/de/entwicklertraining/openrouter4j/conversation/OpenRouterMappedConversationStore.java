@@ -0,0 +1,385 @@
+package de.entwicklertraining.openrouter4j.conversation;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link OpenRouterConversationStore} that keeps every session in an append-only log file and
+ * reads it back through a memory mapping.
+ *
+ * <p>The store is a directory with one {@code <hex session id>.log} file per session; session ids
+ * longer than {@value #MAX_HEX_ID_BYTES} bytes are named {@code sha256-<hex hash>.log} instead and
+ * keep their id in the first record. A log is a sequence of records, each a header (payload length,
+ * kind, CRC-32 of the payload) followed by the payload: a message as UTF-8 JSON, an empty commit
+ * marker, or the session id. When a session is opened, the log is checked up to the last intact
+ * commit marker and truncated there, which removes both the messages of an interrupted turn and a
+ * record torn by a crash. A log is limited to 2 GiB; a write beyond that fails and drops the
+ * uncommitted messages of the turn.
+ *
+ * <p>Only the positions of the messages are kept on the heap. {@link #messages(String)} returns a
+ * list that decodes a message from the mapped file each time it is accessed, so the history of a
+ * session with thousands of turns lives in the page cache rather than in the heap. With
+ * {@link #open(Path, boolean)} and {@code sync = true}, every commit is forced to the storage
+ * device before it returns.
+ */
+public final class OpenRouterMappedConversationStore implements OpenRouterConversationStore {
+
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_SIZE = 9;
+    private static final byte KIND_MESSAGE = 1;
+    private static final byte KIND_COMMIT = 2;
+    private static final byte KIND_SESSION_ID = 3;
+    private static final int MAX_HEX_ID_BYTES = 100; // keeps file names within the usual 255-byte limit
+    private static final String HASH_PREFIX = "sha256-";
+
+    private final Path directory;
+    private final boolean sync;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private OpenRouterMappedConversationStore(Path directory, boolean sync) throws IOException {
+        this.directory = directory;
+        this.sync = sync;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Opens the store in {@code directory}, creating it if it does not exist. Commits are written
+     * to the operating system but not forced to disk.
+     */
+    public static OpenRouterMappedConversationStore open(Path directory) {
+        return open(directory, false);
+    }
+
+    /**
+     * Opens the store in {@code directory}, creating it if it does not exist.
+     *
+     * @param sync whether every commit is forced to the storage device
+     */
+    public static OpenRouterMappedConversationStore open(Path directory, boolean sync) {
+        try {
+            return new OpenRouterMappedConversationStore(directory, sync);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open conversation store: " + directory + " => " + e.getMessage(), e);
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    @Override
+    public void append(String sessionId, JSONObject message) {
+        byte[] payload = message.toString().getBytes(StandardCharsets.UTF_8);
+        session(sessionId).write(KIND_MESSAGE, payload);
+    }
+
+    @Override
+    public void commit(String sessionId) {
+        session(sessionId).write(KIND_COMMIT, new byte[0]);
+    }
+
+    @Override
+    public List<JSONObject> messages(String sessionId) {
+        if (!exists(sessionId)) {
+            return List.of();
+        }
+        return session(sessionId).view();
+    }
+
+    @Override
+    public int size(String sessionId) {
+        return exists(sessionId) ? session(sessionId).committedCount() : 0;
+    }
+
+    @Override
+    public Set<String> sessions() {
+        Set<String> result = new TreeSet<>(sessions.keySet());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                result.add(name.startsWith(HASH_PREFIX)
+                        ? sessionIdOf(file)
+                        : new String(HexFormat.of().parseHex(name.substring(0, name.length() - SUFFIX.length())),
+                                StandardCharsets.UTF_8));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new RuntimeException("Failed to list conversation store: " + directory + " => " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    @Override
+    public void delete(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            session.close();
+        }
+        try {
+            Files.deleteIfExists(fileOf(sessionId));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete session " + sessionId + " => " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        sessions.values().forEach(Session::close);
+        sessions.clear();
+    }
+
+    private boolean exists(String sessionId) {
+        return sessions.containsKey(sessionId) || Files.exists(fileOf(sessionId));
+    }
+
+    private Session session(String sessionId) {
+        return sessions.computeIfAbsent(sessionId, id -> {
+            try {
+                return new Session(fileOf(id), id);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open session " + id + " => " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private Path fileOf(String sessionId) {
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        if (id.length <= MAX_HEX_ID_BYTES) {
+            return directory.resolve(HexFormat.of().formatHex(id) + SUFFIX);
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(id);
+            return directory.resolve(HASH_PREFIX + HexFormat.of().formatHex(hash) + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Reads the session id from the first record of a log with a hashed name.
+     */
+    private static String sessionIdOf(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.get(4) != KIND_SESSION_ID) {
+                throw new IOException("No session id in " + file);
+            }
+            ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+            while (payload.hasRemaining() && channel.read(payload) >= 0) {
+                // read the whole id
+            }
+            return new String(payload.array(), 0, payload.position(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int crcOf(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private final class Session {
+        private final Path file;
+        private FileChannel channel;
+        private long[] offsets = new long[16];
+        private int count;
+        private int committedCount;
+        private long size;
+        private long committedSize;
+        private MappedByteBuffer mapped;
+
+        Session(Path file, String sessionId) throws IOException {
+            this.file = file;
+            this.channel = openChannel();
+            recover();
+            if (size == 0 && file.getFileName().toString().startsWith(HASH_PREFIX)) {
+                write(KIND_SESSION_ID, sessionId.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private FileChannel openChannel() throws IOException {
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        synchronized void write(byte kind, byte[] payload) {
+            if (size + HEADER_SIZE + payload.length > Integer.MAX_VALUE) {
+                dropUncommitted();
+                throw new IllegalStateException("Session log would exceed 2 GiB, the uncommitted turn is dropped: " + file);
+            }
+            ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                    .putInt(payload.length)
+                    .put(kind)
+                    .putInt(crcOf(payload, 0, payload.length))
+                    .put(payload)
+                    .flip();
+            try {
+                // An interrupted writer closes the channel; later writes open it again
+                if (!channel.isOpen()) {
+                    channel = openChannel();
+                }
+                long position = size;
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+                if (kind == KIND_MESSAGE) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = size;
+                } else {
+                    committedCount = count;
+                    committedSize = position;
+                    if (sync) {
+                        channel.force(false);
+                    }
+                }
+                size = position;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write to " + file + " => " + e.getMessage(), e);
+            }
+        }
+
+        private void dropUncommitted() {
+            count = committedCount;
+            size = committedSize;
+            try {
+                if (channel.isOpen()) {
+                    channel.truncate(committedSize);
+                }
+            } catch (IOException e) {
+                // Recovery truncates the uncommitted records when the session is opened again
+            }
+        }
+
+        synchronized int committedCount() {
+            return committedCount;
+        }
+
+        /**
+         * A snapshot of the committed messages backed by a mapping of the log.
+         */
+        synchronized List<JSONObject> view() {
+            if (committedCount == 0) {
+                return List.of();
+            }
+            long end = committedCount < count ? offsets[committedCount] : size;
+            try {
+                if (mapped == null || mapped.capacity() < end) {
+                    if (size > Integer.MAX_VALUE) {
+                        throw new IllegalStateException("Session log exceeds 2 GiB: " + file);
+                    }
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to map " + file + " => " + e.getMessage(), e);
+            }
+            return new MappedMessages(mapped, Arrays.copyOf(offsets, committedCount));
+        }
+
+        synchronized void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to close " + file + " => " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Reads the log up to the last intact commit and truncates everything after it.
+         */
+        private void recover() throws IOException {
+            long length = channel.size();
+            if (length == 0) {
+                return;
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Session log exceeds 2 GiB: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            long committedEnd = 0;
+            int position = 0;
+            while (position + HEADER_SIZE <= length) {
+                int payloadLength = buffer.getInt(position);
+                byte kind = buffer.get(position + 4);
+                int crc = buffer.getInt(position + 5);
+                if (payloadLength < 0 || position + HEADER_SIZE + (long) payloadLength > length) {
+                    break;
+                }
+                byte[] payload = new byte[payloadLength];
+                buffer.get(position + HEADER_SIZE, payload);
+                if (crcOf(payload, 0, payloadLength) != crc
+                        || (kind != KIND_MESSAGE && kind != KIND_COMMIT && kind != KIND_SESSION_ID)) {
+                    break;
+                }
+                if (kind == KIND_MESSAGE) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = position;
+                }
+                position += HEADER_SIZE + payloadLength;
+                if (kind != KIND_MESSAGE) {
+                    committedCount = count;
+                    committedEnd = position;
+                }
+            }
+            count = committedCount;
+            size = committedEnd;
+            committedSize = committedEnd;
+            if (committedEnd < length) {
+                channel.truncate(committedEnd);
+            }
+        }
+    }
+
+    /**
+     * Read-only list that decodes each message from the mapped log when it is accessed.
+     */
+    private static final class MappedMessages extends AbstractList<JSONObject> implements RandomAccess {
+        private final ByteBuffer buffer;
+        private final long[] offsets;
+
+        MappedMessages(ByteBuffer buffer, long[] offsets) {
+            this.buffer = buffer;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public JSONObject get(int index) {
+            int position = (int) offsets[index];
+            int length = buffer.getInt(position);
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            return new JSONObject(new String(payload, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int size() {
+            return offsets.length;
+        }
+    }
+}
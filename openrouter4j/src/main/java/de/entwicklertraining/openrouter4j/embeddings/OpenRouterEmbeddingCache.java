@@ -0,0 +1,31 @@
+package de.entwicklertraining.openrouter4j.embeddings;
+
+/**
+ * Keeps embedding vectors between requests, so that inputs that were embedded before are not sent
+ * again.
+ *
+ * <p>Entries are keyed by the model and the SHA-256 hash of the input text. When a request asks for
+ * a reduced number of dimensions, the model key is {@code model + "#" + dimensions}. Attach a cache
+ * with {@link OpenRouterEmbeddingsRequest.Builder#cache(OpenRouterEmbeddingCache)}; implementations
+ * must be thread-safe, as the batches of a request are sent in parallel.
+ */
+public interface OpenRouterEmbeddingCache {
+
+    /**
+     * The cached vector, or null. The caller does not modify the returned array.
+     */
+    float[] get(String model, String contentHash);
+
+    /**
+     * Stores a vector; the cache may keep the array itself.
+     */
+    void put(String model, String contentHash, float[] embedding);
+
+    /**
+     * A cache that keeps up to {@code maxEntries} vectors in memory and evicts the least recently
+     * used ones.
+     */
+    static OpenRouterEmbeddingCache inMemory(int maxEntries) {
+        return new OpenRouterMemoryEmbeddingCache(maxEntries);
+    }
+}
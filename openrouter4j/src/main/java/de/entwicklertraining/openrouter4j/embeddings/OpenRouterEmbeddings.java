@@ -0,0 +1,123 @@
+package de.entwicklertraining.openrouter4j.embeddings;
+
+import de.entwicklertraining.api.base.ApiClient;
+
+import java.nio.FloatBuffer;
+import java.util.Objects;
+
+/**
+ * The embedding vectors of a request, in the order of its inputs.
+ *
+ * <p>All vectors are kept in one {@code float[]} (row by row), so a million embeddings are one
+ * array rather than a million boxed lists. The structure is immutable; {@link #vector(int)} returns
+ * a copy and {@link #buffer(int)} a read-only view.
+ */
+public final class OpenRouterEmbeddings {
+
+    /**
+     * Largest number of values of one result, the largest array size the JVM allocates.
+     */
+    static final int MAX_VALUES = Integer.MAX_VALUE - 8;
+
+    private final float[] data;
+    private final int count;
+    private final int dimensions;
+
+    OpenRouterEmbeddings(float[] data, int count, int dimensions) {
+        if ((long) count * dimensions != data.length) {
+            throw new IllegalArgumentException(
+                    "Expected " + count + " x " + dimensions + " values, got " + data.length);
+        }
+        this.data = data;
+        this.count = count;
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * Copies the vectors into one array.
+     *
+     * @throws ApiClient.ApiClientException if the vectors differ in length
+     * @throws IllegalArgumentException     if the vectors do not fit into one array
+     */
+    static OpenRouterEmbeddings of(float[][] vectors) {
+        int dimensions = vectors.length > 0 ? vectors[0].length : 0;
+        long size = (long) vectors.length * dimensions;
+        if (size > MAX_VALUES) {
+            throw new IllegalArgumentException(vectors.length + " embeddings of " + dimensions
+                    + " dimensions exceed the maximum of " + MAX_VALUES + " values; embed fewer inputs per request");
+        }
+        float[] data = new float[(int) size];
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i].length != dimensions) {
+                throw new ApiClient.ApiClientException(
+                        "Embedding " + i + " has " + vectors[i].length + " dimensions, expected " + dimensions);
+            }
+            System.arraycopy(vectors[i], 0, data, i * dimensions, dimensions);
+        }
+        return new OpenRouterEmbeddings(data, vectors.length, dimensions);
+    }
+
+    /**
+     * Number of vectors, i.e. of inputs.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Length of every vector.
+     */
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Value {@code dimension} of vector {@code index}.
+     */
+    public float get(int index, int dimension) {
+        Objects.checkIndex(index, count);
+        Objects.checkIndex(dimension, dimensions);
+        return data[index * dimensions + dimension];
+    }
+
+    /**
+     * A copy of vector {@code index}.
+     */
+    public float[] vector(int index) {
+        float[] vector = new float[dimensions];
+        copyInto(index, vector, 0);
+        return vector;
+    }
+
+    /**
+     * Copies vector {@code index} into {@code target}, starting at {@code offset}.
+     */
+    public void copyInto(int index, float[] target, int offset) {
+        Objects.checkIndex(index, count);
+        System.arraycopy(data, index * dimensions, target, offset, dimensions);
+    }
+
+    /**
+     * A read-only view of vector {@code index}.
+     */
+    public FloatBuffer buffer(int index) {
+        Objects.checkIndex(index, count);
+        return FloatBuffer.wrap(data, index * dimensions, dimensions).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Dot product of the vectors {@code a} and {@code b}; their cosine similarity if the model
+     * returns normalized vectors.
+     */
+    public double dot(int a, int b) {
+        Objects.checkIndex(a, count);
+        Objects.checkIndex(b, count);
+        int offsetA = a * dimensions;
+        int offsetB = b * dimensions;
+        double sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += data[offsetA + i] * data[offsetB + i];
+        }
+        return sum;
+    }
+}
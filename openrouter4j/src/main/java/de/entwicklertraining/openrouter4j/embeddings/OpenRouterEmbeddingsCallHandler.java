@@ -0,0 +1,192 @@
+package de.entwicklertraining.openrouter4j.embeddings;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executes an {@link OpenRouterEmbeddingsRequest}: takes what it can from the cache, splits the
+ * remaining inputs into batches, sends them with bounded parallelism and reassembles the vectors
+ * in input order.
+ */
+final class OpenRouterEmbeddingsCallHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenRouterEmbeddingsCallHandler.class);
+
+    private final OpenRouterClient client;
+
+    OpenRouterEmbeddingsCallHandler(OpenRouterClient client) {
+        this.client = client;
+    }
+
+    OpenRouterEmbeddingsResponse handle(OpenRouterEmbeddingsRequest.Builder builder, boolean useExponentialBackoff) {
+        OpenRouterEmbeddingsRequest request = builder.build();
+        List<String> inputs = request.inputs();
+        float[][] vectors = new float[inputs.size()][];
+        OpenRouterEmbeddingCache cache = request.cache();
+        String cacheModel = request.dimensions() != null ? request.model() + "#" + request.dimensions() : request.model();
+        String[] hashes = cache != null ? new String[inputs.size()] : null;
+
+        int[] missing = new int[inputs.size()];
+        int missingCount = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            if (cache != null) {
+                hashes[i] = sha256(inputs.get(i));
+                vectors[i] = cache.get(cacheModel, hashes[i]);
+            }
+            if (vectors[i] == null) {
+                missing[missingCount++] = i;
+            }
+        }
+        List<int[]> batches = split(inputs, Arrays.copyOf(missing, missingCount),
+                request.maxBatchInputs(), request.maxBatchTokens());
+
+        List<BatchResult> results = run(batches, request.parallelism(), batch -> {
+            List<String> batchInputs = new ArrayList<>(batch.length);
+            for (int index : batch) {
+                batchInputs.add(inputs.get(index));
+            }
+            OpenRouterEmbeddingsResponse response = client.dispatch(builder.batch(batchInputs), useExponentialBackoff);
+            float[][] batchVectors = response.vectors();
+            if (batchVectors.length != batch.length) {
+                throw new ApiClient.ApiClientException(
+                        "Expected " + batch.length + " embeddings, got " + batchVectors.length);
+            }
+            for (int k = 0; k < batch.length; k++) {
+                vectors[batch[k]] = batchVectors[k];
+                if (cache != null) {
+                    put(cache, cacheModel, hashes[batch[k]], batchVectors[k]);
+                }
+            }
+            return new BatchResult(response.model(), response.promptTokens());
+        });
+
+        String model = request.model();
+        int promptTokens = 0;
+        for (BatchResult result : results) {
+            promptTokens += result.promptTokens();
+            if (result.model() != null) {
+                model = result.model();
+            }
+        }
+        JSONObject json = new JSONObject()
+                .put("object", "list")
+                .put("model", model)
+                .put("usage", new JSONObject().put("prompt_tokens", promptTokens).put("total_tokens", promptTokens));
+        return new OpenRouterEmbeddingsResponse(json, request, OpenRouterEmbeddings.of(vectors), inputs.size() - missingCount);
+    }
+
+    /**
+     * Groups the inputs at {@code indices} into consecutive batches of at most {@code maxInputs}
+     * inputs and {@code maxTokens} tokens.
+     */
+    static List<int[]> split(List<String> inputs, int[] indices, int maxInputs, int maxTokens) {
+        List<int[]> batches = new ArrayList<>();
+        int start = 0;
+        long tokens = 0;
+        for (int i = 0; i < indices.length; i++) {
+            int inputTokens = Tokenizer.ENCODING.countTokensOrdinary(inputs.get(indices[i]));
+            if (i > start && (i - start == maxInputs || tokens + inputTokens > maxTokens)) {
+                batches.add(Arrays.copyOfRange(indices, start, i));
+                start = i;
+                tokens = 0;
+            }
+            tokens += inputTokens;
+        }
+        if (start < indices.length) {
+            batches.add(Arrays.copyOfRange(indices, start, indices.length));
+        }
+        return batches;
+    }
+
+    private static List<BatchResult> run(List<int[]> batches, int parallelism, BatchTask task) {
+        if (batches.size() <= 1) {
+            return batches.isEmpty() ? List.of() : List.of(task.run(batches.get(0)));
+        }
+        Semaphore permits = new Semaphore(parallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<BatchResult>> futures = new ArrayList<>(batches.size());
+            for (int[] batch : batches) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return task.run(batch);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<BatchResult> results = new ArrayList<>(batches.size());
+            for (Future<BatchResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    if (e.getCause() instanceof RuntimeException re) {
+                        throw re;
+                    }
+                    throw new ApiClient.ApiClientException("Embeddings batch failed: " + e.getCause(), e.getCause());
+                } catch (InterruptedException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    Thread.currentThread().interrupt();
+                    throw new ApiClient.ApiClientException("Interrupted while waiting for embeddings", e);
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Stores a vector; a cache that cannot be written costs a cache hit next time, not the batch.
+     */
+    private static void put(OpenRouterEmbeddingCache cache, String model, String contentHash, float[] embedding) {
+        try {
+            cache.put(model, contentHash, embedding);
+        } catch (UncheckedIOException e) {
+            logger.warn("Skipping embedding cache entry {}: {}", contentHash, e.getMessage());
+        }
+    }
+
+    static String sha256(String input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchTask {
+        BatchResult run(int[] batch);
+    }
+
+    private record BatchResult(String model, int promptTokens) {
+    }
+
+    /**
+     * The tokenizer used to bound batches, loaded on first use.
+     */
+    private static final class Tokenizer {
+        static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    }
+}
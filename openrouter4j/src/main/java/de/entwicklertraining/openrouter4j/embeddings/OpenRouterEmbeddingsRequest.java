@@ -0,0 +1,234 @@
+package de.entwicklertraining.openrouter4j.embeddings;
+
+import de.entwicklertraining.api.base.ApiRequestBuilderBase;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A request for the embeddings of one or more texts:
+ * POST https://openrouter.ai/api/v1/embeddings
+ *
+ * Executing the builder splits the inputs into batches of at most
+ * {@link Builder#maxBatchInputs(int)} inputs and {@link Builder#maxBatchTokens(int)} tokens, sends
+ * up to {@link Builder#parallelism(int)} of them at the same time and reassembles the vectors in
+ * the order of the inputs. With a {@link Builder#cache(OpenRouterEmbeddingCache)}, inputs that were
+ * embedded before are taken from the cache and not sent.
+ */
+public final class OpenRouterEmbeddingsRequest extends OpenRouterRequest<OpenRouterEmbeddingsResponse> {
+
+    private final String model;
+    private final List<String> inputs;
+    private final Integer dimensions;
+    private final boolean base64Encoding;
+    private final int maxBatchInputs;
+    private final int maxBatchTokens;
+    private final int parallelism;
+    private final OpenRouterEmbeddingCache cache;
+
+    OpenRouterEmbeddingsRequest(Builder builder, List<String> inputs) {
+        super(builder);
+        this.model = Objects.requireNonNull(builder.model, "model must not be null");
+        this.inputs = inputs;
+        this.dimensions = builder.dimensions;
+        this.base64Encoding = builder.base64Encoding;
+        this.maxBatchInputs = builder.maxBatchInputs;
+        this.maxBatchTokens = builder.maxBatchTokens;
+        this.parallelism = builder.parallelism;
+        this.cache = builder.cache;
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    public List<String> inputs() {
+        return inputs;
+    }
+
+    /**
+     * Requested vector length, or null for the model's default.
+     */
+    public Integer dimensions() {
+        return dimensions;
+    }
+
+    public boolean base64Encoding() {
+        return base64Encoding;
+    }
+
+    public int maxBatchInputs() {
+        return maxBatchInputs;
+    }
+
+    public int maxBatchTokens() {
+        return maxBatchTokens;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    public OpenRouterEmbeddingCache cache() {
+        return cache;
+    }
+
+    @Override
+    public String getRelativeUrl() {
+        return "/embeddings";
+    }
+
+    @Override
+    public String getHttpMethod() {
+        return "POST";
+    }
+
+    @Override
+    public String getBody() {
+        JSONObject body = new JSONObject()
+                .put("model", model)
+                .put("input", new JSONArray(inputs));
+        if (dimensions != null) {
+            body.put("dimensions", dimensions);
+        }
+        if (base64Encoding) {
+            body.put("encoding_format", "base64");
+        }
+        return body.toString();
+    }
+
+    @Override
+    public OpenRouterEmbeddingsResponse createResponse(String responseBody) {
+        return new OpenRouterEmbeddingsResponse(new JSONObject(responseBody), this);
+    }
+
+    public static Builder builder(OpenRouterClient client) {
+        return new Builder(client);
+    }
+
+    public static final class Builder extends ApiRequestBuilderBase<Builder, OpenRouterEmbeddingsRequest> {
+        private final OpenRouterClient client;
+        private String model;
+        private final List<String> inputs = new ArrayList<>();
+        private Integer dimensions;
+        private boolean base64Encoding;
+        private int maxBatchInputs = 256;
+        private int maxBatchTokens = 100_000;
+        private int parallelism = 4;
+        private OpenRouterEmbeddingCache cache;
+
+        public Builder(OpenRouterClient client) {
+            super(client);
+            this.client = client;
+        }
+
+        public Builder model(String model) {
+            this.model = model;
+            return this;
+        }
+
+        public Builder addInput(String input) {
+            inputs.add(Objects.requireNonNull(input, "input must not be null"));
+            return this;
+        }
+
+        public Builder addInputs(Collection<String> inputs) {
+            for (String input : inputs) {
+                addInput(input);
+            }
+            return this;
+        }
+
+        /**
+         * Asks the model for shorter vectors, if it supports that.
+         */
+        public Builder dimensions(int dimensions) {
+            if (dimensions < 1) {
+                throw new IllegalArgumentException("dimensions must be at least 1: " + dimensions);
+            }
+            this.dimensions = dimensions;
+            return this;
+        }
+
+        /**
+         * Lets the server send every vector as base64-encoded little-endian floats instead of a
+         * JSON number array, which is about a quarter of the size and much cheaper to parse.
+         * Not every provider supports it (default off).
+         */
+        public Builder base64Encoding(boolean base64Encoding) {
+            this.base64Encoding = base64Encoding;
+            return this;
+        }
+
+        /**
+         * Largest number of inputs per request (default 256).
+         */
+        public Builder maxBatchInputs(int max) {
+            if (max < 1) {
+                throw new IllegalArgumentException("maxBatchInputs must be at least 1: " + max);
+            }
+            this.maxBatchInputs = max;
+            return this;
+        }
+
+        /**
+         * Largest number of input tokens per request, counted with the cl100k tokenizer
+         * (default 100,000). An input that is longer on its own is sent alone.
+         */
+        public Builder maxBatchTokens(int max) {
+            if (max < 1) {
+                throw new IllegalArgumentException("maxBatchTokens must be at least 1: " + max);
+            }
+            this.maxBatchTokens = max;
+            return this;
+        }
+
+        /**
+         * Number of batches sent at the same time (default 4). The connection settings of the
+         * client (concurrency limits, schedulers) apply to every batch as well.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder cache(OpenRouterEmbeddingCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public OpenRouterEmbeddingsRequest build() {
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("At least one input is required");
+            }
+            return new OpenRouterEmbeddingsRequest(this, List.copyOf(inputs));
+        }
+
+        /**
+         * A request for a part of the inputs, with the settings of this builder.
+         */
+        OpenRouterEmbeddingsRequest batch(List<String> batchInputs) {
+            return new OpenRouterEmbeddingsRequest(this, batchInputs);
+        }
+
+        @Override
+        public OpenRouterEmbeddingsResponse execute() {
+            return new OpenRouterEmbeddingsCallHandler(client).handle(this, false);
+        }
+
+        @Override
+        public OpenRouterEmbeddingsResponse executeWithExponentialBackoff() {
+            return new OpenRouterEmbeddingsCallHandler(client).handle(this, true);
+        }
+    }
+}
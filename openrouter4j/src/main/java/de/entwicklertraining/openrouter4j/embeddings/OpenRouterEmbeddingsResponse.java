@@ -0,0 +1,112 @@
+package de.entwicklertraining.openrouter4j.embeddings;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+/**
+ * Wraps the JSON response of the embeddings endpoint.
+ *
+ * OpenRouter Response Format:
+ * {
+ *   "object": "list",
+ *   "model": "openai/text-embedding-3-small",
+ *   "data": [
+ *     { "object": "embedding", "index": 0, "embedding": [0.0023, -0.0093, ...] }
+ *   ],
+ *   "usage": { "prompt_tokens": 8, "total_tokens": 8 }
+ * }
+ *
+ * The response of an executed builder combines all batches: {@link #embeddings()} holds the
+ * vectors of all inputs, {@link #getJson()} only the model and the summed usage.
+ */
+public final class OpenRouterEmbeddingsResponse extends OpenRouterResponse<OpenRouterEmbeddingsRequest> {
+
+    private final int cacheHits;
+    private volatile OpenRouterEmbeddings embeddings;
+
+    public OpenRouterEmbeddingsResponse(JSONObject json, OpenRouterEmbeddingsRequest request) {
+        super(json, request);
+        this.cacheHits = 0;
+    }
+
+    OpenRouterEmbeddingsResponse(JSONObject json, OpenRouterEmbeddingsRequest request,
+                                 OpenRouterEmbeddings embeddings, int cacheHits) {
+        super(json, request);
+        this.embeddings = embeddings;
+        this.cacheHits = cacheHits;
+    }
+
+    /**
+     * The vectors, in the order of the inputs.
+     */
+    public OpenRouterEmbeddings embeddings() {
+        OpenRouterEmbeddings result = embeddings;
+        if (result == null) {
+            result = OpenRouterEmbeddings.of(vectors());
+            embeddings = result;
+        }
+        return result;
+    }
+
+    public String model() {
+        return getJson().optString("model", null);
+    }
+
+    /**
+     * Number of input tokens billed, summed over all batches.
+     */
+    public int promptTokens() {
+        JSONObject usage = getJson().optJSONObject("usage");
+        return usage != null ? usage.optInt("prompt_tokens") : 0;
+    }
+
+    /**
+     * Number of inputs taken from the cache instead of being sent.
+     */
+    public int cacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * The vectors of this (single batch) response, indexed by the {@code index} of each entry.
+     */
+    float[][] vectors() {
+        JSONArray data = getJson().optJSONArray("data");
+        if (data == null) {
+            throw new ApiClient.ApiClientException("Embeddings response without data");
+        }
+        float[][] vectors = new float[data.length()][];
+        for (int i = 0; i < data.length(); i++) {
+            JSONObject entry = data.getJSONObject(i);
+            int index = entry.optInt("index", i);
+            if (index < 0 || index >= vectors.length || vectors[index] != null) {
+                throw new ApiClient.ApiClientException("Invalid embedding index " + index);
+            }
+            vectors[index] = toFloats(entry.get("embedding"));
+        }
+        return vectors;
+    }
+
+    private static float[] toFloats(Object embedding) {
+        if (embedding instanceof String base64) {
+            ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(base64)).order(ByteOrder.LITTLE_ENDIAN);
+            float[] vector = new float[bytes.remaining() / Float.BYTES];
+            bytes.asFloatBuffer().get(vector);
+            return vector;
+        }
+        if (!(embedding instanceof JSONArray values)) {
+            throw new ApiClient.ApiClientException("Unexpected embedding format");
+        }
+        float[] vector = new float[values.length()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = values.getFloat(i);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,71 @@
+package de.entwicklertraining.openrouter4j.embeddings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * {@link OpenRouterEmbeddingCache} that keeps every vector in a file of its own below a directory:
+ * {@code <directory>/<model>/<first two hash characters>/<hash>.f32}, holding the raw
+ * little-endian floats.
+ *
+ * <p>Files are written to a temporary file first and then moved into place, so concurrent writers
+ * and crashes never leave a partial vector behind. Several processes may share the directory.
+ */
+public final class OpenRouterFileEmbeddingCache implements OpenRouterEmbeddingCache {
+
+    private final Path directory;
+
+    public OpenRouterFileEmbeddingCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    @Override
+    public float[] get(String model, String contentHash) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(fileOf(model, contentHash));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cached embedding " + contentHash, e);
+        }
+        float[] embedding = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+
+    @Override
+    public void put(String model, String contentHash, float[] embedding) {
+        Path file = fileOf(model, contentHash);
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), contentHash, ".tmp");
+            try {
+                Files.write(temp, buffer.array());
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write cached embedding " + contentHash, e);
+        }
+    }
+
+    private Path fileOf(String model, String contentHash) {
+        return directory.resolve(model.replaceAll("[^A-Za-z0-9._#-]", "_"))
+                .resolve(contentHash.substring(0, 2))
+                .resolve(contentHash + ".f32");
+    }
+}
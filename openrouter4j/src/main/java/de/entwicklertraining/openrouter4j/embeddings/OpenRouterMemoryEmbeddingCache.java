@@ -0,0 +1,34 @@
+package de.entwicklertraining.openrouter4j.embeddings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory {@link OpenRouterEmbeddingCache} with least-recently-used eviction.
+ */
+final class OpenRouterMemoryEmbeddingCache implements OpenRouterEmbeddingCache {
+
+    private final Map<String, float[]> entries;
+
+    OpenRouterMemoryEmbeddingCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized float[] get(String model, String contentHash) {
+        return entries.get(model + '\n' + contentHash);
+    }
+
+    @Override
+    public synchronized void put(String model, String contentHash, float[] embedding) {
+        entries.put(model + '\n' + contentHash, embedding);
+    }
+}
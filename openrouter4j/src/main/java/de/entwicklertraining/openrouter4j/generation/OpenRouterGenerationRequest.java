@@ -0,0 +1,94 @@
+package de.entwicklertraining.openrouter4j.generation;
+
+import de.entwicklertraining.api.base.ApiRequestBuilderBase;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterPriority;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import org.json.JSONObject;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A request for the statistics of a completed generation:
+ * GET https://openrouter.ai/api/v1/generation?id=...
+ *
+ * The id is the {@code id} of a chat completion response. The statistics become available shortly
+ * after the generation has finished; until then the endpoint answers 404. Lookups are accounting
+ * work and are scheduled with {@link OpenRouterPriority#BATCH}.
+ */
+public final class OpenRouterGenerationRequest extends OpenRouterRequest<OpenRouterGenerationResponse> {
+
+    private final String id;
+
+    OpenRouterGenerationRequest(Builder builder, String id) {
+        super(builder);
+        this.id = id;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String getRelativeUrl() {
+        return "/generation?id=" + URLEncoder.encode(id, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getHttpMethod() {
+        return "GET";
+    }
+
+    @Override
+    public String getBody() {
+        return null;
+    }
+
+    @Override
+    public OpenRouterPriority priority() {
+        return OpenRouterPriority.BATCH;
+    }
+
+    @Override
+    public OpenRouterGenerationResponse createResponse(String responseBody) {
+        return new OpenRouterGenerationResponse(new JSONObject(responseBody), this);
+    }
+
+    public static Builder builder(OpenRouterClient client) {
+        return new Builder(client);
+    }
+
+    public static final class Builder extends ApiRequestBuilderBase<Builder, OpenRouterGenerationRequest> {
+        private final OpenRouterClient client;
+        private String id;
+
+        public Builder(OpenRouterClient client) {
+            super(client);
+            this.client = client;
+        }
+
+        /**
+         * The generation id, i.e. the {@code id} of the chat completion response.
+         */
+        public Builder id(String id) {
+            this.id = id;
+            return this;
+        }
+
+        public OpenRouterGenerationRequest build() {
+            return new OpenRouterGenerationRequest(this, Objects.requireNonNull(id, "id must not be null"));
+        }
+
+        @Override
+        public OpenRouterGenerationResponse execute() {
+            return client.dispatch(build(), false);
+        }
+
+        @Override
+        public OpenRouterGenerationResponse executeWithExponentialBackoff() {
+            return client.dispatch(build(), true);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package de.entwicklertraining.openrouter4j.generation;
+
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import org.json.JSONObject;
+
+/**
+ * Wraps the JSON response of the generation endpoint.
+ *
+ * OpenRouter Response Format:
+ * {
+ *   "data": {
+ *     "id": "gen-...",
+ *     "model": "openai/gpt-4o",
+ *     "provider_name": "OpenAI",
+ *     "total_cost": 0.00123,
+ *     "latency": 412,
+ *     "generation_time": 1840,
+ *     "tokens_prompt": 120,
+ *     "tokens_completion": 80,
+ *     "native_tokens_prompt": 118,
+ *     "native_tokens_completion": 84,
+ *     "native_tokens_reasoning": 0,
+ *     "finish_reason": "stop",
+ *     ...
+ *   }
+ * }
+ */
+public final class OpenRouterGenerationResponse extends OpenRouterResponse<OpenRouterGenerationRequest> {
+
+    public OpenRouterGenerationResponse(JSONObject json, OpenRouterGenerationRequest request) {
+        super(json, request);
+    }
+
+    /**
+     * Returns the statistics of the generation.
+     */
+    public OpenRouterGenerationStats stats() {
+        JSONObject data = getJson().optJSONObject("data");
+        return OpenRouterGenerationStats.fromJson(data != null ? data : new JSONObject());
+    }
+}
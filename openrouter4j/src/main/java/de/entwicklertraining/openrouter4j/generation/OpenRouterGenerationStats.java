@@ -0,0 +1,72 @@
+package de.entwicklertraining.openrouter4j.generation;
+
+import org.json.JSONObject;
+
+/**
+ * Cost and timing of one generation as recorded by OpenRouter.
+ *
+ * @param id                     the generation id
+ * @param model                  the model that served the generation
+ * @param providerName           the provider that served it
+ * @param totalCost              cost in credits, or null if not reported
+ * @param cacheDiscount          credits saved by prompt caching, or null if not reported
+ * @param latencyMillis          time until the first token, or null if not reported
+ * @param generationTimeMillis   time the generation took, or null if not reported
+ * @param promptTokens           prompt tokens as counted by OpenRouter
+ * @param completionTokens       completion tokens as counted by OpenRouter
+ * @param nativePromptTokens     prompt tokens as counted by the provider's tokenizer (billed)
+ * @param nativeCompletionTokens completion tokens as counted by the provider's tokenizer (billed)
+ * @param nativeReasoningTokens  reasoning tokens as counted by the provider's tokenizer
+ * @param finishReason           the finish reason
+ * @param streamed               whether the generation was streamed
+ * @param cancelled              whether the generation was cancelled
+ */
+public record OpenRouterGenerationStats(
+        String id,
+        String model,
+        String providerName,
+        Double totalCost,
+        Double cacheDiscount,
+        Integer latencyMillis,
+        Integer generationTimeMillis,
+        int promptTokens,
+        int completionTokens,
+        int nativePromptTokens,
+        int nativeCompletionTokens,
+        int nativeReasoningTokens,
+        String finishReason,
+        boolean streamed,
+        boolean cancelled
+) {
+
+    /**
+     * Reads the {@code data} object of the generation endpoint. Missing counts are zero.
+     */
+    public static OpenRouterGenerationStats fromJson(JSONObject data) {
+        return new OpenRouterGenerationStats(
+                data.optString("id", null),
+                data.optString("model", null),
+                data.optString("provider_name", null),
+                optDouble(data, "total_cost"),
+                optDouble(data, "cache_discount"),
+                optInteger(data, "latency"),
+                optInteger(data, "generation_time"),
+                data.optInt("tokens_prompt"),
+                data.optInt("tokens_completion"),
+                data.optInt("native_tokens_prompt"),
+                data.optInt("native_tokens_completion"),
+                data.optInt("native_tokens_reasoning"),
+                data.optString("finish_reason", null),
+                data.optBoolean("streamed"),
+                data.optBoolean("cancelled")
+        );
+    }
+
+    private static Double optDouble(JSONObject data, String key) {
+        return data.has(key) && !data.isNull(key) ? data.optDouble(key) : null;
+    }
+
+    private static Integer optInteger(JSONObject data, String key) {
+        return data.has(key) && !data.isNull(key) ? Integer.valueOf(data.optInt(key)) : null;
+    }
+}
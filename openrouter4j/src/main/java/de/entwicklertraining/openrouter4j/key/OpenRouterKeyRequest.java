@@ -0,0 +1,67 @@
+package de.entwicklertraining.openrouter4j.key;
+
+import de.entwicklertraining.api.base.ApiRequestBuilderBase;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import org.json.JSONObject;
+
+/**
+ * A request for information about the API key in use:
+ * GET https://openrouter.ai/api/v1/key
+ *
+ * The response is small and the call is free, which also makes it the request used by
+ * {@link OpenRouterClient#warmUp()} to establish connections ahead of time.
+ */
+public final class OpenRouterKeyRequest extends OpenRouterRequest<OpenRouterKeyResponse> {
+
+    OpenRouterKeyRequest(Builder builder) {
+        super(builder);
+    }
+
+    @Override
+    public String getRelativeUrl() {
+        return "/key";
+    }
+
+    @Override
+    public String getHttpMethod() {
+        return "GET";
+    }
+
+    @Override
+    public String getBody() {
+        return null;
+    }
+
+    @Override
+    public OpenRouterKeyResponse createResponse(String responseBody) {
+        return new OpenRouterKeyResponse(new JSONObject(responseBody), this);
+    }
+
+    public static Builder builder(OpenRouterClient client) {
+        return new Builder(client);
+    }
+
+    public static final class Builder extends ApiRequestBuilderBase<Builder, OpenRouterKeyRequest> {
+        private final OpenRouterClient client;
+
+        public Builder(OpenRouterClient client) {
+            super(client);
+            this.client = client;
+        }
+
+        public OpenRouterKeyRequest build() {
+            return new OpenRouterKeyRequest(this);
+        }
+
+        @Override
+        public OpenRouterKeyResponse execute() {
+            return client.dispatch(build(), false);
+        }
+
+        @Override
+        public OpenRouterKeyResponse executeWithExponentialBackoff() {
+            return client.dispatch(build(), true);
+        }
+    }
+}
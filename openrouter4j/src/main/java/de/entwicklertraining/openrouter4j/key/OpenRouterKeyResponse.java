@@ -0,0 +1,68 @@
+package de.entwicklertraining.openrouter4j.key;
+
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import org.json.JSONObject;
+
+/**
+ * Wraps the JSON response of the key endpoint.
+ *
+ * OpenRouter Response Format:
+ * {
+ *   "data": {
+ *     "label": "sk-or-v1-abc...",
+ *     "usage": 12.5,
+ *     "limit": 100,
+ *     "limit_remaining": 87.5,
+ *     "is_free_tier": false
+ *   }
+ * }
+ */
+public final class OpenRouterKeyResponse extends OpenRouterResponse<OpenRouterKeyRequest> {
+
+    public OpenRouterKeyResponse(JSONObject json, OpenRouterKeyRequest request) {
+        super(json, request);
+    }
+
+    private JSONObject data() {
+        JSONObject data = getJson().optJSONObject("data");
+        return data != null ? data : new JSONObject();
+    }
+
+    /**
+     * Returns the label of the key.
+     */
+    public String label() {
+        return data().optString("label", null);
+    }
+
+    /**
+     * Returns the credits used by this key so far.
+     */
+    public Double usage() {
+        JSONObject data = data();
+        return data.has("usage") && !data.isNull("usage") ? data.getDouble("usage") : null;
+    }
+
+    /**
+     * Returns the credit limit of the key, or null if the key is unlimited.
+     */
+    public Double limit() {
+        JSONObject data = data();
+        return data.has("limit") && !data.isNull("limit") ? data.getDouble("limit") : null;
+    }
+
+    /**
+     * Returns the remaining credits, or null if the key is unlimited.
+     */
+    public Double limitRemaining() {
+        JSONObject data = data();
+        return data.has("limit_remaining") && !data.isNull("limit_remaining") ? data.getDouble("limit_remaining") : null;
+    }
+
+    /**
+     * Whether the key belongs to the free tier.
+     */
+    public boolean isFreeTier() {
+        return data().optBoolean("is_free_tier", false);
+    }
+}
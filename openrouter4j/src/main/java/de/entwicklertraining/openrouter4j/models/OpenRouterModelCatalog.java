@@ -0,0 +1,280 @@
+package de.entwicklertraining.openrouter4j.models;
+
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The models available on OpenRouter, fetched from GET /models and kept in memory and optionally
+ * in a file.
+ *
+ * <p>Every client has a catalog ({@link OpenRouterClient#models()}). It is loaded on first use:
+ * from the cache file if one is configured and present, otherwise with a request. Once the data
+ * is older than the refresh interval, it is refreshed in the background while the old data stays
+ * in use. With a cache file ({@code OpenRouterConnectionSettings.Builder.modelCatalog(...)}), the
+ * client loads the file when it is created and refreshes it in the background if needed.
+ *
+ * <p>While the catalog is loaded, {@code OpenRouterChatCompletionRequest.Builder.build()} checks
+ * each request with {@link #validate(String, Collection, long, Integer)}: unknown models,
+ * parameters that change what the model returns but that it does not accept ({@link #REQUIRED_PARAMETERS})
+ * and requests that cannot fit into the context window are rejected locally instead of by the API.
+ * Unsupported sampling parameters such as {@code temperature} are only logged, as providers ignore
+ * them. A catalog that has not been loaded accepts everything;
+ * building a request never fetches the catalog.
+ */
+public final class OpenRouterModelCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenRouterModelCatalog.class);
+
+    /**
+     * Characters per token used to estimate the prompt size. Tokens are usually shorter, so the
+     * estimate stays below the actual count and only requests that clearly do not fit are rejected.
+     */
+    public static final int CHARACTERS_PER_TOKEN = 6;
+
+    /**
+     * Parameters that change the shape of the response; a model that does not support one of them
+     * cannot serve the request.
+     */
+    public static final Set<String> REQUIRED_PARAMETERS =
+            Set.of("tools", "tool_choice", "response_format", "structured_outputs");
+
+    private static final long RETRY_AFTER_FAILURE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final OpenRouterClient client;
+    private final Path cacheFile;
+    private final Duration refreshInterval;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicLong nextAttemptMillis = new AtomicLong();
+    private volatile Snapshot snapshot;
+    // Model and parameter pairs already warned about; later requests with them log at debug level
+    private final Set<String> warned = ConcurrentHashMap.newKeySet();
+
+    private record Snapshot(Map<String, OpenRouterModelInfo> models, long fetchedAtMillis) {
+    }
+
+    /**
+     * @param client          client the catalog is fetched with
+     * @param cacheFile       file the catalog is kept in between runs, or null
+     * @param refreshInterval age after which the catalog is refreshed in the background
+     */
+    public OpenRouterModelCatalog(OpenRouterClient client, Path cacheFile, Duration refreshInterval) {
+        this.client = client;
+        this.cacheFile = cacheFile;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Loads the cache file, if there is one, and starts a background refresh if it is missing
+     * or out of date. Called by the client when it is created with a cache file.
+     */
+    public void preload() {
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = readCacheFile();
+            }
+        }
+        refreshIfStale(true);
+    }
+
+    /**
+     * All models, loading the catalog first if necessary.
+     */
+    public List<OpenRouterModelInfo> list() {
+        return List.copyOf(loaded().models().values());
+    }
+
+    /**
+     * The model with the given id (a variant suffix such as {@code ":free"} is ignored if the
+     * variant is not listed itself), or null if there is none. Loads the catalog first if necessary.
+     */
+    public OpenRouterModelInfo get(String id) {
+        return lookup(loaded(), id);
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * When the data in use was fetched from OpenRouter, or null if the catalog is not loaded.
+     */
+    public Instant fetchedAt() {
+        Snapshot current = snapshot;
+        return current != null ? Instant.ofEpochMilli(current.fetchedAtMillis()) : null;
+    }
+
+    /**
+     * Fetches the catalog now and writes it to the cache file.
+     */
+    public void refresh() {
+        OpenRouterModelsResponse response = OpenRouterModelsRequest.builder(client).executeWithExponentialBackoff();
+        JSONArray data = response.getJson().optJSONArray("data");
+        long now = System.currentTimeMillis();
+        snapshot = new Snapshot(index(response.models()), now);
+        if (cacheFile != null) {
+            writeCacheFile(new JSONObject()
+                    .put("fetched_at", now)
+                    .put("data", data != null ? data : new JSONArray()));
+        }
+    }
+
+    /**
+     * Checks a request against the catalog; does nothing if the catalog is not loaded.
+     *
+     * @param model            the model the request is sent to
+     * @param parameters       request parameters the request uses, named like in {@code supported_parameters}
+     * @param promptCharacters characters of text in the messages
+     * @param maxTokens        the requested {@code max_tokens}, or null
+     * @throws IllegalArgumentException if the model is unknown, does not support one of the
+     *                                  {@link #REQUIRED_PARAMETERS}, or the request cannot fit into its
+     *                                  limits; other unsupported parameters are logged, as a warning
+     *                                  the first time for each model
+     */
+    public void validate(String model, Collection<String> parameters, long promptCharacters, Integer maxTokens) {
+        Snapshot current = snapshot;
+        if (current == null || model == null) {
+            return;
+        }
+        refreshIfStale(false);
+        OpenRouterModelInfo info = lookup(current, model);
+        if (info == null) {
+            throw new IllegalArgumentException("Unknown model: " + model
+                    + " (model catalog of " + Instant.ofEpochMilli(current.fetchedAtMillis()) + ")");
+        }
+        for (String parameter : parameters) {
+            if (info.supports(parameter)) {
+                continue;
+            }
+            if (REQUIRED_PARAMETERS.contains(parameter)) {
+                throw new IllegalArgumentException("Model " + model + " does not support the parameter " + parameter);
+            }
+            if (warned.add(model + " " + parameter)) {
+                logger.warn("Model {} does not support the parameter {}, it is likely ignored", model, parameter);
+            } else {
+                logger.debug("Model {} does not support the parameter {}, it is likely ignored", model, parameter);
+            }
+        }
+        if (maxTokens != null && info.maxCompletionTokens() != null && maxTokens > info.maxCompletionTokens()) {
+            throw new IllegalArgumentException("max_tokens " + maxTokens + " exceeds the maximum of "
+                    + info.maxCompletionTokens() + " completion tokens of " + model);
+        }
+        long minimumTokens = promptCharacters / CHARACTERS_PER_TOKEN + (maxTokens != null ? maxTokens : 0);
+        if (info.contextLength() > 0 && minimumTokens > info.contextLength()) {
+            throw new IllegalArgumentException("Request needs at least " + minimumTokens
+                    + " tokens (prompt estimate plus max_tokens), the context length of " + model
+                    + " is " + info.contextLength());
+        }
+    }
+
+    private Snapshot loaded() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    snapshot = readCacheFile();
+                }
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        refreshIfStale(false);
+        return current;
+    }
+
+    /**
+     * Starts a background refresh if the data is out of date (or, with {@code ifMissing}, not
+     * loaded at all) and no refresh is running. After a failure, the next attempt waits a minute.
+     */
+    private void refreshIfStale(boolean ifMissing) {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        boolean stale = current != null
+                ? now - current.fetchedAtMillis() >= refreshInterval.toMillis()
+                : ifMissing;
+        if (!stale || now < nextAttemptMillis.get() || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("openrouter-models-refresh").start(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                nextAttemptMillis.set(System.currentTimeMillis() + RETRY_AFTER_FAILURE_MILLIS);
+                logger.debug("Refreshing the OpenRouter model catalog failed: {}", e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private static OpenRouterModelInfo lookup(Snapshot current, String id) {
+        OpenRouterModelInfo info = current.models().get(id);
+        int variant = id.indexOf(':');
+        if (info == null && variant > 0) {
+            info = current.models().get(id.substring(0, variant));
+        }
+        return info;
+    }
+
+    private static Map<String, OpenRouterModelInfo> index(List<OpenRouterModelInfo> models) {
+        Map<String, OpenRouterModelInfo> result = new LinkedHashMap<>();
+        for (OpenRouterModelInfo model : models) {
+            result.put(model.id(), model);
+        }
+        return result;
+    }
+
+    private Snapshot readCacheFile() {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(Files.readString(cacheFile, StandardCharsets.UTF_8));
+            return new Snapshot(
+                    index(new OpenRouterModelsResponse(json, null).models()),
+                    json.optLong("fetched_at", 0)
+            );
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable model catalog {}: {}", cacheFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCacheFile(JSONObject json) {
+        try {
+            Path directory = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+            Files.writeString(temp, json.toString(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write model catalog {}: {}", cacheFile, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package de.entwicklertraining.openrouter4j.models;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * What OpenRouter reports about a model: limits, prices and the request parameters it accepts.
+ *
+ * @param id                  model id, e.g. {@code "openai/gpt-4o"}
+ * @param name                display name
+ * @param contextLength       context window in tokens, 0 if unknown
+ * @param maxCompletionTokens largest {@code max_tokens} of the top provider, or null if unknown
+ * @param promptPrice         USD per prompt token, or null if unknown or variable
+ * @param completionPrice     USD per completion token, or null if unknown or variable
+ * @param supportedParameters request parameters the model accepts ({@code "tools"}, {@code "response_format"},
+ *                            {@code "reasoning"}, ...); empty if OpenRouter does not report them
+ * @param inputModalities     accepted input ({@code "text"}, {@code "image"}, {@code "file"}, ...)
+ */
+public record OpenRouterModelInfo(
+        String id,
+        String name,
+        int contextLength,
+        Integer maxCompletionTokens,
+        Double promptPrice,
+        Double completionPrice,
+        Set<String> supportedParameters,
+        Set<String> inputModalities
+) {
+
+    public OpenRouterModelInfo {
+        Objects.requireNonNull(id, "id must not be null");
+        supportedParameters = Set.copyOf(supportedParameters);
+        inputModalities = Set.copyOf(inputModalities);
+    }
+
+    /**
+     * Reads an entry of the {@code data} array of GET /models.
+     */
+    public static OpenRouterModelInfo fromJson(JSONObject json) {
+        JSONObject pricing = json.optJSONObject("pricing");
+        JSONObject topProvider = json.optJSONObject("top_provider");
+        JSONObject architecture = json.optJSONObject("architecture");
+        int contextLength = json.optInt("context_length", 0);
+        if (contextLength == 0 && topProvider != null) {
+            contextLength = topProvider.optInt("context_length", 0);
+        }
+        return new OpenRouterModelInfo(
+                json.getString("id"),
+                json.optString("name", json.getString("id")),
+                contextLength,
+                topProvider != null && topProvider.has("max_completion_tokens") && !topProvider.isNull("max_completion_tokens")
+                        ? Integer.valueOf(topProvider.optInt("max_completion_tokens"))
+                        : null,
+                price(pricing, "prompt"),
+                price(pricing, "completion"),
+                strings(json.optJSONArray("supported_parameters")),
+                strings(architecture != null ? architecture.optJSONArray("input_modalities") : null)
+        );
+    }
+
+    /**
+     * Whether the model accepts the request parameter; true if OpenRouter does not report its parameters.
+     */
+    public boolean supports(String parameter) {
+        return supportedParameters.isEmpty() || supportedParameters.contains(parameter);
+    }
+
+    /**
+     * Whether the model accepts the input modality; true if OpenRouter does not report its modalities.
+     */
+    public boolean accepts(String modality) {
+        return inputModalities.isEmpty() || inputModalities.contains(modality);
+    }
+
+    /**
+     * Cost of a request in USD by the listed prices, or null if a price is unknown.
+     */
+    public Double cost(long promptTokens, long completionTokens) {
+        if (promptPrice == null || completionPrice == null) {
+            return null;
+        }
+        return promptTokens * promptPrice + completionTokens * completionPrice;
+    }
+
+    private static Double price(JSONObject pricing, String key) {
+        if (pricing == null || pricing.isNull(key)) {
+            return null;
+        }
+        try {
+            double price = Double.parseDouble(pricing.get(key).toString());
+            // Routers such as openrouter/auto report -1: the price depends on the model chosen
+            return price >= 0 ? price : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Set<String> strings(JSONArray array) {
+        Set<String> result = new LinkedHashSet<>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                String value = array.optString(i, null);
+                if (value != null) {
+                    result.add(value);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package de.entwicklertraining.openrouter4j.models;
+
+import de.entwicklertraining.api.base.ApiRequestBuilderBase;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import org.json.JSONObject;
+
+/**
+ * A request for the list of available models:
+ * GET https://openrouter.ai/api/v1/models
+ *
+ * Usually not sent directly: {@link OpenRouterClient#models()} keeps the result in an
+ * {@link OpenRouterModelCatalog}.
+ */
+public final class OpenRouterModelsRequest extends OpenRouterRequest<OpenRouterModelsResponse> {
+
+    OpenRouterModelsRequest(Builder builder) {
+        super(builder);
+    }
+
+    @Override
+    public String getRelativeUrl() {
+        return "/models";
+    }
+
+    @Override
+    public String getHttpMethod() {
+        return "GET";
+    }
+
+    @Override
+    public String getBody() {
+        return null;
+    }
+
+    @Override
+    public OpenRouterModelsResponse createResponse(String responseBody) {
+        return new OpenRouterModelsResponse(new JSONObject(responseBody), this);
+    }
+
+    public static Builder builder(OpenRouterClient client) {
+        return new Builder(client);
+    }
+
+    public static final class Builder extends ApiRequestBuilderBase<Builder, OpenRouterModelsRequest> {
+        private final OpenRouterClient client;
+
+        public Builder(OpenRouterClient client) {
+            super(client);
+            this.client = client;
+        }
+
+        public OpenRouterModelsRequest build() {
+            return new OpenRouterModelsRequest(this);
+        }
+
+        @Override
+        public OpenRouterModelsResponse execute() {
+            return client.dispatch(build(), false);
+        }
+
+        @Override
+        public OpenRouterModelsResponse executeWithExponentialBackoff() {
+            return client.dispatch(build(), true);
+        }
+    }
+}
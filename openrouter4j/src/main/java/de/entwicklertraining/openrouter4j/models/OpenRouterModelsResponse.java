@@ -0,0 +1,51 @@
+package de.entwicklertraining.openrouter4j.models;
+
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps the JSON response of the models endpoint.
+ *
+ * OpenRouter Response Format:
+ * {
+ *   "data": [
+ *     {
+ *       "id": "openai/gpt-4o",
+ *       "name": "OpenAI: GPT-4o",
+ *       "context_length": 128000,
+ *       "architecture": { "input_modalities": ["text", "image"], "output_modalities": ["text"] },
+ *       "pricing": { "prompt": "0.0000025", "completion": "0.00001" },
+ *       "top_provider": { "context_length": 128000, "max_completion_tokens": 16384 },
+ *       "supported_parameters": ["tools", "tool_choice", "max_tokens", "temperature", ...]
+ *     }
+ *   ]
+ * }
+ */
+public final class OpenRouterModelsResponse extends OpenRouterResponse<OpenRouterModelsRequest> {
+
+    public OpenRouterModelsResponse(JSONObject json, OpenRouterModelsRequest request) {
+        super(json, request);
+    }
+
+    /**
+     * Returns the models of the response; entries without an id are skipped.
+     */
+    public List<OpenRouterModelInfo> models() {
+        JSONArray data = getJson().optJSONArray("data");
+        if (data == null) {
+            return List.of();
+        }
+        List<OpenRouterModelInfo> models = new ArrayList<>(data.length());
+        for (int i = 0; i < data.length(); i++) {
+            JSONObject model = data.optJSONObject(i);
+            if (model != null && model.optString("id", null) != null) {
+                models.add(OpenRouterModelInfo.fromJson(model));
+            }
+        }
+        return models;
+    }
+}
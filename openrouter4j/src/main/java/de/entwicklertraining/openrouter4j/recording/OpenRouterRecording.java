@@ -0,0 +1,87 @@
+package de.entwicklertraining.openrouter4j.recording;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recorded request/response pair.
+ *
+ * @param key            the lookup key, see {@link OpenRouterRecordingStore#keyOf(de.entwicklertraining.openrouter4j.OpenRouterRequest)}
+ * @param method         HTTP method of the request
+ * @param relativeUrl    relative URL of the request, e.g. {@code /chat/completions}
+ * @param requestBody    canonicalized request body, or null for requests without body
+ * @param responseBody   JSON response body; null for streamed responses
+ * @param latencyNanos   time from sending the request until the response (or the end of the stream) was received
+ * @param chunks         SSE data chunks of a streamed response, empty for regular responses
+ */
+public record OpenRouterRecording(
+        String key,
+        String method,
+        String relativeUrl,
+        String requestBody,
+        String responseBody,
+        long latencyNanos,
+        List<Chunk> chunks
+) {
+
+    /**
+     * A single SSE data chunk.
+     *
+     * @param offsetNanos time from sending the request until the chunk was received
+     * @param data        the raw JSON chunk
+     */
+    public record Chunk(long offsetNanos, String data) {
+    }
+
+    public OpenRouterRecording {
+        chunks = List.copyOf(chunks);
+    }
+
+    public boolean isStreamed() {
+        return responseBody == null;
+    }
+
+    /**
+     * Time until the first chunk arrived (time to first token), or the complete latency
+     * for regular responses.
+     */
+    public long firstByteNanos() {
+        return chunks.isEmpty() ? latencyNanos : chunks.getFirst().offsetNanos();
+    }
+
+    JSONObject toJson() {
+        JSONArray chunkArray = new JSONArray();
+        for (Chunk chunk : chunks) {
+            chunkArray.put(new JSONObject().put("t", chunk.offsetNanos()).put("d", chunk.data()));
+        }
+        return new JSONObject()
+                .put("key", key)
+                .put("method", method)
+                .put("url", relativeUrl)
+                .put("request", requestBody != null ? requestBody : JSONObject.NULL)
+                .put("response", responseBody != null ? responseBody : JSONObject.NULL)
+                .put("latency", latencyNanos)
+                .put("chunks", chunkArray);
+    }
+
+    static OpenRouterRecording fromJson(JSONObject json) {
+        JSONArray chunkArray = json.getJSONArray("chunks");
+        List<Chunk> chunks = new ArrayList<>(chunkArray.length());
+        for (int i = 0; i < chunkArray.length(); i++) {
+            JSONObject chunk = chunkArray.getJSONObject(i);
+            chunks.add(new Chunk(chunk.getLong("t"), chunk.getString("d")));
+        }
+        return new OpenRouterRecording(
+                json.getString("key"),
+                json.getString("method"),
+                json.getString("url"),
+                json.isNull("request") ? null : json.getString("request"),
+                json.isNull("response") ? null : json.getString("response"),
+                json.getLong("latency"),
+                chunks
+        );
+    }
+}
@@ -0,0 +1,279 @@
+package de.entwicklertraining.openrouter4j.recording;
+
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An append-only, indexed on-disk store for {@link OpenRouterRecording}s.
+ *
+ * <p>The store is a directory with two files: {@code recordings.log} holds one JSON document per
+ * line, {@code recordings.idx} maps each request key to the position of its recordings in the log.
+ * Lookups read only the matching record. If the index lags behind the log (e.g. after a crash),
+ * the missing entries are rebuilt from the log when the store is opened.
+ *
+ * <p>A key may have several recordings (the same request sent repeatedly);
+ * {@link #next(String)} cycles through them in recording order.
+ */
+public final class OpenRouterRecordingStore implements Closeable {
+
+    private static final String LOG_FILE = "recordings.log";
+    private static final String INDEX_FILE = "recordings.idx";
+
+    private final Path directory;
+    private final FileChannel log;
+    private final FileChannel index;
+    private final Map<String, List<long[]>> entries = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+    private OpenRouterRecordingStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.log = FileChannel.open(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadIndex();
+    }
+
+    /**
+     * Opens the store in {@code directory}, creating it if it does not exist.
+     */
+    public static OpenRouterRecordingStore open(Path directory) {
+        try {
+            return new OpenRouterRecordingStore(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open recording store: " + directory + " => " + e.getMessage(), e);
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Number of distinct request keys in the store.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Appends a recording to the store.
+     */
+    public synchronized void append(OpenRouterRecording recording) {
+        byte[] line = (recording.toJson().toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            long offset = log.size();
+            writeFully(log, ByteBuffer.wrap(line), offset);
+            long length = line.length - 1;
+            String indexLine = recording.key() + " " + offset + " " + length + "\n";
+            writeFully(index, ByteBuffer.wrap(indexLine.getBytes(StandardCharsets.US_ASCII)), index.size());
+            addEntry(recording.key(), offset, length);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write recording to " + directory + " => " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns all recordings for a key, in recording order.
+     */
+    public List<OpenRouterRecording> find(String key) {
+        List<long[]> positions = entries.get(key);
+        if (positions == null) {
+            return List.of();
+        }
+        List<OpenRouterRecording> result = new ArrayList<>(positions.size());
+        for (long[] position : positions) {
+            result.add(read(position));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the next recording for a key, cycling through the recordings of that key.
+     */
+    public Optional<OpenRouterRecording> next(String key) {
+        List<long[]> positions = entries.get(key);
+        if (positions == null || positions.isEmpty()) {
+            return Optional.empty();
+        }
+        int i = cursors.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+        return Optional.of(read(positions.get(Math.floorMod(i, positions.size()))));
+    }
+
+    /**
+     * Restarts {@link #next(String)} at the first recording of every key.
+     */
+    public void rewind() {
+        cursors.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            log.close();
+            index.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close recording store: " + directory + " => " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Computes the lookup key of a request: a SHA-256 hash over method, relative URL and the
+     * canonicalized body (object keys sorted), so that semantically equal bodies map to the same key.
+     */
+    public static String keyOf(OpenRouterRequest<?> request) {
+        return keyOf(request.getHttpMethod(), request.getRelativeUrl(), canonicalize(request.getBody()));
+    }
+
+    static String keyOf(String method, String relativeUrl, String canonicalBody) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((method + " " + relativeUrl + "\n").getBytes(StandardCharsets.UTF_8));
+            if (canonicalBody != null) {
+                digest.update(canonicalBody.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the body with all object keys sorted and without insignificant whitespace.
+     * Bodies that are not JSON objects are returned unchanged.
+     */
+    public static String canonicalize(String body) {
+        if (body == null || body.isBlank()) {
+            return null;
+        }
+        try {
+            StringBuilder sb = new StringBuilder(body.length());
+            writeCanonical(new JSONObject(body), sb);
+            return sb.toString();
+        } catch (JSONException e) {
+            return body;
+        }
+    }
+
+    private static void writeCanonical(Object value, StringBuilder sb) {
+        if (value instanceof JSONObject obj) {
+            sb.append('{');
+            boolean first = true;
+            for (String key : new TreeSet<>(obj.keySet())) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append(JSONObject.quote(key)).append(':');
+                writeCanonical(obj.opt(key), sb);
+            }
+            sb.append('}');
+        } else if (value instanceof JSONArray arr) {
+            sb.append('[');
+            for (int i = 0; i < arr.length(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                writeCanonical(arr.opt(i), sb);
+            }
+            sb.append(']');
+        } else {
+            sb.append(JSONObject.valueToString(value));
+        }
+    }
+
+    private OpenRouterRecording read(long[] position) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) position[1]);
+        try {
+            while (buffer.hasRemaining()) {
+                if (log.read(buffer, position[0] + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of recording log");
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read recording from " + directory + " => " + e.getMessage(), e);
+        }
+        return OpenRouterRecording.fromJson(new JSONObject(new String(buffer.array(), StandardCharsets.UTF_8)));
+    }
+
+    private void loadIndex() throws IOException {
+        long indexed = 0;
+        for (String line : Files.readAllLines(directory.resolve(INDEX_FILE), StandardCharsets.US_ASCII)) {
+            String[] parts = line.split(" ");
+            if (parts.length != 3) {
+                continue;
+            }
+            long offset = Long.parseLong(parts[1]);
+            long length = Long.parseLong(parts[2]);
+            addEntry(parts[0], offset, length);
+            indexed = Math.max(indexed, offset + length + 1);
+        }
+        if (indexed < log.size()) {
+            rebuildIndexFrom(indexed);
+        }
+    }
+
+    private void rebuildIndexFrom(long start) throws IOException {
+        ByteBuffer tail = ByteBuffer.allocate((int) (log.size() - start));
+        while (tail.hasRemaining() && log.read(tail, start + tail.position()) >= 0) {
+            // read the unindexed part of the log
+        }
+        byte[] bytes = tail.array();
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            try {
+                String key = new JSONObject(new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8)).getString("key");
+                String indexLine = key + " " + (start + lineStart) + " " + (i - lineStart) + "\n";
+                writeFully(index, ByteBuffer.wrap(indexLine.getBytes(StandardCharsets.US_ASCII)), index.size());
+                addEntry(key, start + lineStart, i - lineStart);
+            } catch (JSONException e) {
+                // incomplete record from an interrupted write, skip it
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart < bytes.length) {
+            // drop a trailing, unterminated record so that the next append starts on a new line
+            log.truncate(start + lineStart);
+        }
+    }
+
+    private void addEntry(String key, long offset, long length) {
+        entries.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(new long[]{offset, length});
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
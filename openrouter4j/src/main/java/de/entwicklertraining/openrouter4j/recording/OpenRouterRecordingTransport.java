@@ -0,0 +1,127 @@
+package de.entwicklertraining.openrouter4j.recording;
+
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingExchange;
+import de.entwicklertraining.openrouter4j.OpenRouterTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A transport that passes requests on to a delegate (usually the live transport) and saves every
+ * successful request/response pair in an {@link OpenRouterRecordingStore}, including the arrival
+ * time of each SSE chunk. Failed requests are not recorded.
+ *
+ * <pre>{@code
+ * OpenRouterRecordingStore store = OpenRouterRecordingStore.open(Path.of("recordings"));
+ * client.setTransport(new OpenRouterRecordingTransport(client.liveTransport(), store));
+ * }</pre>
+ */
+public final class OpenRouterRecordingTransport implements OpenRouterTransport {
+
+    private final OpenRouterTransport delegate;
+    private final OpenRouterRecordingStore store;
+
+    public OpenRouterRecordingTransport(OpenRouterTransport delegate, OpenRouterRecordingStore store) {
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    @Override
+    public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+        long start = System.nanoTime();
+        T response = delegate.send(request, useExponentialBackoff);
+        long latency = System.nanoTime() - start;
+
+        String body = OpenRouterRecordingStore.canonicalize(request.getBody());
+        store.append(new OpenRouterRecording(
+                OpenRouterRecordingStore.keyOf(request.getHttpMethod(), request.getRelativeUrl(), body),
+                request.getHttpMethod(),
+                request.getRelativeUrl(),
+                body,
+                response.getJson().toString(),
+                latency,
+                List.of()
+        ));
+        return response;
+    }
+
+    @Override
+    public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+        long start = System.nanoTime();
+        RecordingHandler tap = new RecordingHandler(exchange.handler(), start);
+        OpenRouterStreamingExchange recorded = exchange.withHandler(tap);
+        delegate.stream(recorded, useRetry);
+        long latency = System.nanoTime() - start;
+
+        if (tap.failed) {
+            return;
+        }
+        OpenRouterRequest<?> request = recorded.request();
+        String body = OpenRouterRecordingStore.canonicalize(request.getBody());
+        store.append(new OpenRouterRecording(
+                OpenRouterRecordingStore.keyOf(request.getHttpMethod(), request.getRelativeUrl(), body),
+                request.getHttpMethod(),
+                request.getRelativeUrl(),
+                body,
+                null,
+                latency,
+                tap.chunks()
+        ));
+    }
+
+    private static final class RecordingHandler implements StreamingResponseHandler<String> {
+        private final StreamingResponseHandler<String> target;
+        private final long start;
+        private final List<OpenRouterRecording.Chunk> chunks = new ArrayList<>();
+        private volatile boolean failed;
+
+        RecordingHandler(StreamingResponseHandler<String> target, long start) {
+            this.target = target;
+            this.start = start;
+        }
+
+        @Override
+        public void onStreamStart() {
+            target.onStreamStart();
+        }
+
+        @Override
+        public void onData(String data) {
+            synchronized (chunks) {
+                chunks.add(new OpenRouterRecording.Chunk(System.nanoTime() - start, data));
+            }
+            target.onData(data);
+        }
+
+        @Override
+        public void onComplete() {
+            target.onComplete();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failed = true;
+            target.onError(throwable);
+        }
+
+        @Override
+        public void onMetadata(Map<String, Object> metadata) {
+            target.onMetadata(metadata);
+        }
+
+        @Override
+        public boolean shouldCancel() {
+            return target.shouldCancel();
+        }
+
+        List<OpenRouterRecording.Chunk> chunks() {
+            synchronized (chunks) {
+                return List.copyOf(chunks);
+            }
+        }
+    }
+}
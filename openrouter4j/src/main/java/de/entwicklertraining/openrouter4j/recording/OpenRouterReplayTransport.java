@@ -0,0 +1,114 @@
+package de.entwicklertraining.openrouter4j.recording;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingExchange;
+import de.entwicklertraining.openrouter4j.OpenRouterTransport;
+
+import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A transport that answers requests from an {@link OpenRouterRecordingStore} without any network access.
+ *
+ * <p>With {@link Pacing#RECORDED} responses are delivered with the recorded latency and streamed
+ * chunks with the recorded cadence; {@link Pacing#FAST} delivers everything immediately. Requests
+ * without a recording are passed to the fallback transport, or fail with an
+ * {@link ApiClient.ApiClientException} if there is none.
+ *
+ * <pre>{@code
+ * client.setTransport(new OpenRouterReplayTransport(store, OpenRouterReplayTransport.Pacing.FAST));
+ * }</pre>
+ */
+public final class OpenRouterReplayTransport implements OpenRouterTransport {
+
+    public enum Pacing {
+        /** Reproduce the recorded latency and chunk timing. */
+        RECORDED,
+        /** Deliver responses and chunks as fast as possible. */
+        FAST
+    }
+
+    private final OpenRouterRecordingStore store;
+    private final Pacing pacing;
+    private final OpenRouterTransport fallback;
+
+    public OpenRouterReplayTransport(OpenRouterRecordingStore store, Pacing pacing) {
+        this(store, pacing, null);
+    }
+
+    /**
+     * @param fallback transport for requests without recording, or null to fail them
+     */
+    public OpenRouterReplayTransport(OpenRouterRecordingStore store, Pacing pacing, OpenRouterTransport fallback) {
+        this.store = store;
+        this.pacing = pacing;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+        long start = System.nanoTime();
+        Optional<OpenRouterRecording> recording = store.next(OpenRouterRecordingStore.keyOf(request));
+        if (recording.isEmpty() || recording.get().isStreamed()) {
+            if (fallback != null) {
+                return fallback.send(request, useExponentialBackoff);
+            }
+            throw noRecording(request);
+        }
+        waitUntil(start, recording.get().latencyNanos());
+        return request.createResponse(recording.get().responseBody());
+    }
+
+    @Override
+    public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+        long start = System.nanoTime();
+        OpenRouterRequest<?> request = exchange.request();
+        Optional<OpenRouterRecording> recording = store.next(OpenRouterRecordingStore.keyOf(request));
+        if (recording.isEmpty() || !recording.get().isStreamed()) {
+            if (fallback != null) {
+                fallback.stream(exchange, useRetry);
+                return;
+            }
+            throw noRecording(request);
+        }
+
+        StreamingResponseHandler<String> handler = exchange.handler();
+        handler.onStreamStart();
+        for (OpenRouterRecording.Chunk chunk : recording.get().chunks()) {
+            waitUntil(start, chunk.offsetNanos());
+            if (handler.shouldCancel() || isCanceled(request)) {
+                return;
+            }
+            handler.onData(chunk.data());
+        }
+        waitUntil(start, recording.get().latencyNanos());
+        handler.onComplete();
+    }
+
+    private void waitUntil(long start, long offsetNanos) {
+        if (pacing == Pacing.FAST) {
+            return;
+        }
+        long remaining;
+        while ((remaining = start + offsetNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new ApiClient.ApiClientException("Interrupted while replaying a recorded response");
+            }
+        }
+    }
+
+    private static boolean isCanceled(OpenRouterRequest<?> request) {
+        var supplier = request.getIsCanceledSupplier();
+        return supplier != null && Boolean.TRUE.equals(supplier.get());
+    }
+
+    private static ApiClient.ApiClientException noRecording(OpenRouterRequest<?> request) {
+        return new ApiClient.ApiClientException("No recording for " + request.getHttpMethod() + " "
+                + request.getRelativeUrl() + " (key " + OpenRouterRecordingStore.keyOf(request) + ")");
+    }
+}
@@ -0,0 +1,18 @@
+package de.entwicklertraining.openrouter4j.streaming;
+
+/**
+ * Receives the payload of SSE {@code data:} events as raw UTF-8 bytes.
+ *
+ * <p>Streaming handlers that implement this interface in addition to
+ * {@code StreamingResponseHandler<String>} are fed by {@link OpenRouterSseFramer} without decoding
+ * every chunk into a {@code String} first.
+ */
+@FunctionalInterface
+public interface OpenRouterChunkSink {
+
+    /**
+     * Called once per SSE event. The bytes are only valid during the call; the array is reused
+     * for later events and must not be retained.
+     */
+    void onChunk(byte[] data, int offset, int length);
+}
@@ -0,0 +1,199 @@
+package de.entwicklertraining.openrouter4j.streaming;
+
+import java.util.Arrays;
+
+/**
+ * Splits a server-sent event stream into events, working directly on the received bytes.
+ *
+ * <p>Input is pushed with {@link #feed(byte[], int, int)} in arbitrary pieces. The payload of each
+ * event is handed to an {@link OpenRouterChunkSink} as a byte slice: straight out of the input array
+ * when the event is complete within one piece (the usual case), otherwise out of an internal buffer
+ * that is reused for all events. Comments such as OpenRouter's {@code : OPENROUTER PROCESSING}
+ * keep-alives, {@code event:}/{@code id:}/{@code retry:} fields and the final {@code [DONE]} marker
+ * are recognized without allocating. Not thread-safe; one framer per stream.
+ */
+public final class OpenRouterSseFramer {
+
+    private static final byte[] DATA = {'d', 'a', 't', 'a'};
+    private static final byte[] DONE = {'[', 'D', 'O', 'N', 'E', ']'};
+
+    private final OpenRouterChunkSink sink;
+
+    // Carry-over of a line that continues in the next input piece
+    private byte[] lineBuffer = new byte[1024];
+    private int lineLength;
+
+    // Data of the current event: either a slice of the current input or a copy in eventBuffer
+    private byte[] eventBuffer = new byte[4096];
+    private int eventLength;
+    private boolean hasEventData;
+    private byte[] pendingArray;
+    private int pendingOffset;
+    private int pendingLength;
+
+    private boolean done;
+    private long events;
+    private long comments;
+
+    public OpenRouterSseFramer(OpenRouterChunkSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Processes the next piece of the stream. The array may be reused by the caller afterwards.
+     */
+    public void feed(byte[] input, int offset, int length) {
+        int end = offset + length;
+        int lineStart = offset;
+        for (int i = offset; i < end && !done; i++) {
+            if (input[i] != '\n') {
+                continue;
+            }
+            if (lineLength > 0) {
+                appendToLine(input, lineStart, i - lineStart);
+                processLine(lineBuffer, 0, lineLength);
+                lineLength = 0;
+            } else {
+                processLine(input, lineStart, i - lineStart);
+            }
+            lineStart = i + 1;
+        }
+        if (done) {
+            return;
+        }
+        if (lineStart < end) {
+            appendToLine(input, lineStart, end - lineStart);
+        }
+        if (pendingArray == input) {
+            // The caller may overwrite its array, keep our own copy of the unfinished event
+            copyPendingToEventBuffer();
+        }
+    }
+
+    /**
+     * Signals the end of the stream: an event that was not terminated by an empty line is still delivered.
+     */
+    public void finish() {
+        if (done) {
+            return;
+        }
+        if (lineLength > 0) {
+            processLine(lineBuffer, 0, lineLength);
+            lineLength = 0;
+        }
+        dispatchEvent();
+    }
+
+    /**
+     * True once the {@code [DONE]} marker has been received; further input is ignored.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Number of events delivered to the sink.
+     */
+    public long events() {
+        return events;
+    }
+
+    /**
+     * Number of comment lines (keep-alives) received.
+     */
+    public long comments() {
+        return comments;
+    }
+
+    private void processLine(byte[] buf, int offset, int length) {
+        if (length > 0 && buf[offset + length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            dispatchEvent();
+        } else if (buf[offset] == ':') {
+            comments++;
+        } else if (startsWith(buf, offset, length, DATA) && (length == DATA.length || buf[offset + DATA.length] == ':')) {
+            int start = offset + Math.min(length, DATA.length + 1);
+            if (start < offset + length && buf[start] == ' ') {
+                start++;
+            }
+            addData(buf, start, offset + length - start);
+        }
+        // event:, id: and retry: fields carry nothing OpenRouter clients need
+    }
+
+    private void addData(byte[] buf, int offset, int length) {
+        if (!hasEventData && buf != lineBuffer) {
+            pendingArray = buf;
+            pendingOffset = offset;
+            pendingLength = length;
+            hasEventData = true;
+            return;
+        }
+        if (pendingArray != null) {
+            copyPendingToEventBuffer();
+        }
+        if (hasEventData) {
+            // Multiple data lines form one payload, joined by a line feed
+            ensureEventCapacity(eventLength + 1);
+            eventBuffer[eventLength++] = '\n';
+        }
+        ensureEventCapacity(eventLength + length);
+        System.arraycopy(buf, offset, eventBuffer, eventLength, length);
+        eventLength += length;
+        hasEventData = true;
+    }
+
+    private void dispatchEvent() {
+        if (!hasEventData) {
+            return;
+        }
+        byte[] data = pendingArray != null ? pendingArray : eventBuffer;
+        int offset = pendingArray != null ? pendingOffset : 0;
+        int length = pendingArray != null ? pendingLength : eventLength;
+        pendingArray = null;
+        eventLength = 0;
+        hasEventData = false;
+
+        if (length == DONE.length && startsWith(data, offset, length, DONE)) {
+            done = true;
+            return;
+        }
+        events++;
+        sink.onChunk(data, offset, length);
+    }
+
+    private void copyPendingToEventBuffer() {
+        ensureEventCapacity(pendingLength);
+        System.arraycopy(pendingArray, pendingOffset, eventBuffer, 0, pendingLength);
+        eventLength = pendingLength;
+        pendingArray = null;
+    }
+
+    private void appendToLine(byte[] buf, int offset, int length) {
+        if (lineLength + length > lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, lineLength + length));
+        }
+        System.arraycopy(buf, offset, lineBuffer, lineLength, length);
+        lineLength += length;
+    }
+
+    private void ensureEventCapacity(int capacity) {
+        if (capacity > eventBuffer.length) {
+            eventBuffer = Arrays.copyOf(eventBuffer, Math.max(eventBuffer.length * 2, capacity));
+        }
+    }
+
+    private static boolean startsWith(byte[] buf, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
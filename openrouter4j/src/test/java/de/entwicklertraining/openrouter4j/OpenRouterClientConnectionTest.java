@@ -0,0 +1,152 @@
+package de.entwicklertraining.openrouter4j;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.api.base.ApiHttpConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Runs the client against a local TLS server that records the client port of every request, so
+ * connection reuse is observed on the server side.
+ */
+class OpenRouterClientConnectionTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @TempDir
+    Path tempDir;
+
+    private HttpsServer server;
+    private SSLContext previousDefault;
+    private OpenRouterClient client;
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        KeyStore keyStore = selfSignedKeyStore();
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD);
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext tls = SSLContext.getInstance("TLS");
+        tls.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+
+        server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(tls));
+        server.createContext("/api/v1/key", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "{\"data\":{\"label\":\"local\",\"usage\":0}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        // The HTTP client of the api-base client trusts the default context
+        previousDefault = SSLContext.getDefault();
+        SSLContext.setDefault(tls);
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (client != null) {
+            client.stopKeepAlive();
+        }
+        SSLContext.setDefault(previousDefault);
+        server.stop(0);
+    }
+
+    @Test
+    void sequentialRequestsReuseOneConnection() {
+        client = client(OpenRouterConnectionSettings.builder().build());
+
+        for (int i = 0; i < 3; i++) {
+            client.key().execute();
+        }
+
+        assertThat(clientPorts).hasSize(3);
+        assertThat(clientPorts.stream().distinct()).hasSize(1);
+        OpenRouterConnectionStats stats = client.connectionStats();
+        assertThat(stats.requests()).isEqualTo(3);
+        assertThat(stats.estimatedColdRequests()).isEqualTo(1);
+        assertThat(stats.estimatedWarmRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void keepAlivePingsStartAfterTheIntervalAndKeepTheConnection() throws Exception {
+        client = client(OpenRouterConnectionSettings.builder().keepAliveInterval(Duration.ofMillis(400)).build());
+
+        // Idle time counts from construction, so there is no ping right away
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertThat(client.connectionStats().keepAlivePings()).isZero();
+        assertThat(clientPorts).isEmpty();
+
+        client.key().execute();
+        await().atMost(Duration.ofSeconds(5)).until(() -> client.connectionStats().keepAlivePings() >= 2);
+
+        assertThat(clientPorts.size()).isGreaterThanOrEqualTo(3);
+        assertThat(clientPorts.stream().distinct()).hasSize(1);
+        assertThat(client.connectionStats().warmUps()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void warmUpAlsoOpensTheConnectionOfDirectStreaming() {
+        client = client(OpenRouterConnectionSettings.builder().directStreaming(true).build());
+
+        assertThat(client.warmUp()).isTrue();
+
+        // One connection for the api-base client, one for the streaming client
+        assertThat(clientPorts).hasSize(2);
+        assertThat(clientPorts.stream().distinct()).hasSize(2);
+    }
+
+    private OpenRouterClient client(OpenRouterConnectionSettings connectionSettings) {
+        ApiHttpConfiguration httpConfig = ApiHttpConfiguration.builder()
+                .header("Authorization", "Bearer test-key")
+                .build();
+        return new OpenRouterClient(ApiClientSettings.builder().build(), httpConfig,
+                "https://127.0.0.1:" + server.getAddress().getPort() + "/api/v1", connectionSettings);
+    }
+
+    private KeyStore selfSignedKeyStore() throws Exception {
+        Path file = tempDir.resolve("server.p12");
+        Process keytool = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "server", "-keyalg", "EC", "-dname", "CN=127.0.0.1",
+                "-ext", "san=ip:127.0.0.1", "-validity", "1", "-storetype", "PKCS12",
+                "-keystore", file.toString(), "-storepass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(keytool.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(keytool.waitFor()).as(output).isZero();
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(file)) {
+            keyStore.load(in, PASSWORD);
+        }
+        return keyStore;
+    }
+}
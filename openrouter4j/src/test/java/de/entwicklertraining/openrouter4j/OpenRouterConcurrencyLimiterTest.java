@@ -0,0 +1,170 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterConcurrencyLimiterTest {
+
+    private static final String MODEL = "test/model";
+
+    @Test
+    void limitGrowsWhileItIsUsed() {
+        OpenRouterConcurrencyLimiter limiter = OpenRouterConcurrencyLimiter.builder()
+                .initialLimit(2)
+                .latencyTolerance(Double.POSITIVE_INFINITY)
+                .build();
+        OpenRouterChatCompletionRequest request = request(new OpenRouterClient());
+
+        for (int round = 0; round < 20; round++) {
+            List<OpenRouterConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.limit(MODEL); i++) {
+                permits.add(limiter.acquire(request));
+            }
+            permits.forEach(permit -> permit.complete(null));
+        }
+
+        assertThat(limiter.limit(MODEL)).isGreaterThan(4);
+        assertThat(limiter.snapshot().get(MODEL).inFlight()).isZero();
+    }
+
+    @Test
+    void rateLimitedResponsesHalveTheLimitOncePerRoundTrip() throws Exception {
+        OpenRouterConcurrencyLimiter limiter = OpenRouterConcurrencyLimiter.builder().initialLimit(16).build();
+        OpenRouterClient client = client(limiter);
+        OpenRouterConcurrencyLimiter.Permit first = limiter.acquire(request(client));
+        Thread.sleep(50);
+        first.complete(null);
+        client.setTransport(new SendOnlyTransport() {
+            @Override
+            public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+                throw new ApiClient.HTTP_429_RateLimitOrQuotaException("HTTP 429: slow down");
+            }
+        });
+
+        assertThatThrownBy(() -> client.dispatch(request(client), false))
+                .isInstanceOf(ApiClient.HTTP_429_RateLimitOrQuotaException.class);
+        assertThat(limiter.limit(MODEL)).isEqualTo(8);
+
+        // A second overload signal within one round trip belongs to the same overload
+        limiter.acquire(request(client)).complete(new ApiClient.HTTP_503_ServerUnavailableException("HTTP 503"));
+        assertThat(limiter.limit(MODEL)).isEqualTo(8);
+
+        Thread.sleep(60);
+        limiter.acquire(request(client)).complete(new ApiClient.HTTP_503_ServerUnavailableException("HTTP 503"));
+        assertThat(limiter.limit(MODEL)).isEqualTo(4);
+    }
+
+    @Test
+    void requestsOverTheLimitAreRejectedWhenTheQueueIsFull() {
+        OpenRouterConcurrencyLimiter limiter = OpenRouterConcurrencyLimiter.builder()
+                .initialLimit(1)
+                .maxQueue(0)
+                .build();
+        OpenRouterChatCompletionRequest request = request(new OpenRouterClient());
+
+        OpenRouterConcurrencyLimiter.Permit held = limiter.acquire(request);
+        assertThatThrownBy(() -> limiter.acquire(request))
+                .isInstanceOf(OpenRouterConcurrencyLimiter.LimitExceededException.class);
+        held.complete(null);
+        limiter.acquire(request).complete(null);
+
+        assertThat(limiter.snapshot().get(MODEL).rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void queuedRequestsGiveUpAfterTheQueueTimeout() throws Exception {
+        OpenRouterConcurrencyLimiter limiter = OpenRouterConcurrencyLimiter.builder()
+                .initialLimit(1)
+                .queueTimeout(Duration.ofMillis(50))
+                .build();
+        OpenRouterChatCompletionRequest request = request(new OpenRouterClient());
+        OpenRouterConcurrencyLimiter.Permit held = limiter.acquire(request);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> limiter.acquire(request))
+                .isInstanceOf(OpenRouterConcurrencyLimiter.LimitExceededException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+
+        // A slot that frees up while waiting is taken
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            held.complete(null);
+        });
+        limiter.acquire(request).complete(null);
+        assertThat(limiter.snapshot().get(MODEL).queued()).isZero();
+    }
+
+    @Test
+    void latencyIsComparedPerOutputTokenSoShortAndLongCompletionsMix() {
+        OpenRouterConcurrencyLimiter limiter = OpenRouterConcurrencyLimiter.builder()
+                .initialLimit(10)
+                .latencyTolerance(2.0)
+                .build();
+        OpenRouterChatCompletionRequest request = request(new OpenRouterClient());
+        Random random = new Random(42);
+
+        // 300ms to the first token, then 20ms per token: 5 tokens take 400ms, 1000 tokens 20.3s
+        for (int i = 0; i < 300; i++) {
+            int tokens = random.nextBoolean() ? 5 : 1000;
+            limiter.acquire(request).complete(null, tokens, millis(300 + 20L * tokens));
+        }
+        assertThat(limiter.limit(MODEL)).isEqualTo(10);
+
+        // The upstream gets three times slower
+        for (int i = 0; i < 10; i++) {
+            int tokens = random.nextBoolean() ? 5 : 1000;
+            limiter.acquire(request).complete(null, tokens, millis(3 * (300 + 20L * tokens)));
+        }
+        assertThat(limiter.limit(MODEL)).isEqualTo(9);
+        OpenRouterConcurrencyLimiter.Entry entry = limiter.snapshot().get(MODEL);
+        assertThat(entry.latency()).isGreaterThan(entry.baselineLatency().multipliedBy(2));
+    }
+
+    @Test
+    void latencyIsIgnoredByDefault() {
+        OpenRouterConcurrencyLimiter limiter = OpenRouterConcurrencyLimiter.builder().initialLimit(10).build();
+        OpenRouterChatCompletionRequest request = request(new OpenRouterClient());
+
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire(request).complete(null, 1, millis(i < 25 ? 100 : 10_000));
+        }
+
+        assertThat(limiter.limit(MODEL)).isEqualTo(10);
+    }
+
+    // --- Helpers ---
+
+    private static long millis(long millis) {
+        return Duration.ofMillis(millis).toNanos();
+    }
+
+    private static OpenRouterClient client(OpenRouterConcurrencyLimiter limiter) {
+        return new OpenRouterClient(
+                ApiClientSettings.builder().build(),
+                null,
+                "http://localhost:1",
+                OpenRouterConnectionSettings.builder().concurrencyLimiter(limiter).build()
+        );
+    }
+
+    private static OpenRouterChatCompletionRequest request(OpenRouterClient client) {
+        return OpenRouterChatCompletionRequest.builder(client)
+                .model(MODEL)
+                .addMessage("user", "Hello")
+                .build();
+    }
+}
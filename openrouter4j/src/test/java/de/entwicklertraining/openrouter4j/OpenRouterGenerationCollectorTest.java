@@ -0,0 +1,139 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import de.entwicklertraining.openrouter4j.generation.OpenRouterGenerationRequest;
+import de.entwicklertraining.openrouter4j.generation.OpenRouterGenerationStats;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterGenerationCollectorTest {
+
+    @Test
+    void idsOfCompletionsAreLookedUpInTheBackgroundUntilTheStatsAreReady() throws Exception {
+        List<OpenRouterGenerationStats> collected = new CopyOnWriteArrayList<>();
+        OpenRouterGenerationCollector collector = collector().listener(collected::add).build();
+        OpenRouterClient client = new OpenRouterClient(
+                ApiClientSettings.builder().build(),
+                null,
+                "http://localhost:1",
+                OpenRouterConnectionSettings.builder().generationCollector(collector).build()
+        );
+        GenerationTransport transport = new GenerationTransport();
+        transport.answers("gen-1", () -> {
+            throw new ApiClient.HTTP_404_NotFoundException("Generation not found");
+        }, () -> {
+            throw new ApiClient.HTTP_429_RateLimitOrQuotaException("Rate limited");
+        }, () -> stats("gen-1"));
+        client.setTransport(transport);
+
+        OpenRouterChatCompletionRequest.builder(client).model("openai/gpt-4o")
+                .addMessage("user", "Hello").execute();
+
+        assertThat(collector.flush(Duration.ofSeconds(5))).isTrue();
+        assertThat(collected).extracting(OpenRouterGenerationStats::id).containsExactly("gen-1");
+        assertThat(collected.get(0).totalCost()).isEqualTo(0.0012);
+        assertThat(collected.get(0).providerName()).isEqualTo("OpenAI");
+        OpenRouterGenerationCollector.CollectorStats stats = collector.stats();
+        assertThat(stats.collected()).isEqualTo(1);
+        assertThat(stats.rateLimited()).isEqualTo(1);
+        assertThat(stats.pending()).isZero();
+        collector.close();
+    }
+
+    @Test
+    void idsAreGivenUpAfterTheLastAttempt() throws Exception {
+        Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+        GenerationTransport transport = new GenerationTransport();
+        OpenRouterClient client = new OpenRouterClient();
+        client.setTransport(transport);
+        OpenRouterGenerationCollector collector = collector().client(client).maxAttempts(2)
+                .onFailure(failures::put).build();
+
+        assertThat(collector.submit("gen-missing")).isTrue();
+        assertThat(collector.submit(null)).isFalse();
+
+        assertThat(collector.flush(Duration.ofSeconds(5))).isTrue();
+        assertThat(failures).containsOnlyKeys("gen-missing");
+        assertThat(failures.get("gen-missing")).isInstanceOf(ApiClient.HTTP_404_NotFoundException.class);
+        assertThat(transport.lookups).isEqualTo(2);
+        assertThat(collector.stats().failed()).isEqualTo(1);
+        collector.close();
+    }
+
+    @Test
+    void idsBeyondTheQueueLimitAreDropped() {
+        OpenRouterGenerationCollector collector = OpenRouterGenerationCollector.builder()
+                .delay(Duration.ofMinutes(1)).maxQueued(2).build();
+
+        assertThat(collector.submit("a")).isTrue();
+        assertThat(collector.submit("b")).isTrue();
+        assertThat(collector.submit("c")).isFalse();
+        collector.close();
+
+        assertThat(collector.submit("d")).isFalse();
+        OpenRouterGenerationCollector.CollectorStats stats = collector.stats();
+        assertThat(stats.dropped()).isEqualTo(4);
+        assertThat(stats.pending()).isZero();
+    }
+
+    private static OpenRouterGenerationCollector.Builder collector() {
+        return OpenRouterGenerationCollector.builder()
+                .delay(Duration.ofMillis(10))
+                .retryBackoff(Duration.ofMillis(10));
+    }
+
+    private static String stats(String id) {
+        return new JSONObject().put("data", new JSONObject()
+                .put("id", id)
+                .put("model", "openai/gpt-4o")
+                .put("provider_name", "OpenAI")
+                .put("total_cost", 0.0012)
+                .put("latency", 412)
+                .put("tokens_prompt", 12)
+                .put("tokens_completion", 3)).toString();
+    }
+
+    private static final class GenerationTransport implements SendOnlyTransport {
+        private final Map<String, Deque<Supplier<String>>> answers = new ConcurrentHashMap<>();
+        volatile int lookups;
+
+        @SafeVarargs
+        final void answers(String id, Supplier<String>... suppliers) {
+            answers.put(id, new ArrayDeque<>(List.of(suppliers)));
+        }
+
+        @Override
+        public synchronized <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            if (request instanceof OpenRouterGenerationRequest generation) {
+                lookups++;
+                Deque<Supplier<String>> queue = answers.get(generation.id());
+                if (queue == null || queue.isEmpty()) {
+                    throw new ApiClient.HTTP_404_NotFoundException("Generation not found");
+                }
+                return request.createResponse(queue.poll().get());
+            }
+            return request.createResponse(new JSONObject()
+                    .put("id", "gen-1")
+                    .put("model", "openai/gpt-4o")
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("index", 0)
+                            .put("finish_reason", "stop")
+                            .put("message", new JSONObject().put("role", "assistant").put("content", "Hi"))))
+                    .toString());
+        }
+    }
+}
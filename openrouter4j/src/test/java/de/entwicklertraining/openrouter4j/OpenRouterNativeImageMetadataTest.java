@@ -0,0 +1,62 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterNativeImageMetadataTest {
+
+    private static final String METADATA = "/META-INF/native-image/de.entwicklertraining/openrouter4j/";
+
+    @Test
+    void reflectionConfigCoversTheRegisteredExceptionsAndStreamProcessors() throws Exception {
+        JSONArray config = new JSONArray(read("reflect-config.json"));
+        Set<String> types = new HashSet<>();
+        for (int i = 0; i < config.length(); i++) {
+            String name = config.getJSONObject(i).getString("name");
+            Class.forName(name, false, getClass().getClassLoader());
+            types.add(name);
+        }
+
+        Set<String> statusExceptions = Arrays.stream(ApiClient.class.getClasses())
+                .filter(type -> type.getSimpleName().startsWith("HTTP_"))
+                .map(Class::getName)
+                .collect(Collectors.toSet());
+        assertThat(statusExceptions).isNotEmpty();
+        assertThat(types).containsAll(statusExceptions)
+                .contains("de.entwicklertraining.api.base.streaming.SSEStreamProcessor");
+    }
+
+    @Test
+    void resourceConfigMatchesTheTokenizerUsedForEmbeddings() throws Exception {
+        JSONArray includes = new JSONObject(read("resource-config.json"))
+                .getJSONObject("resources").getJSONArray("includes");
+
+        String resource = "com/knuddels/jtokkit/cl100k_base.tiktoken";
+        assertThat(getClass().getClassLoader().getResource(resource)).isNotNull();
+        boolean matched = false;
+        for (int i = 0; i < includes.length(); i++) {
+            matched |= Pattern.matches(includes.getJSONObject(i).getString("pattern"), resource);
+        }
+        assertThat(matched).isTrue();
+    }
+
+    private String read(String file) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(METADATA + file)) {
+            assertThat(in).as(file).isNotNull();
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
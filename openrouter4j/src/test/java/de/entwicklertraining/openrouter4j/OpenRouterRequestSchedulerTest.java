@@ -0,0 +1,136 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterRequestSchedulerTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+    private final List<OpenRouterPriority> admitted = new CopyOnWriteArrayList<>();
+
+    @Test
+    void higherLanesAreAdmittedFirst() throws Exception {
+        OpenRouterRequestScheduler scheduler = OpenRouterRequestScheduler.builder().maxInFlight(1).build();
+        scheduler.acquire(request(OpenRouterPriority.NORMAL));
+
+        CompletableFuture<Void> batch = waitFor(scheduler, OpenRouterPriority.BATCH, 1);
+        CompletableFuture<Void> interactive = waitFor(scheduler, OpenRouterPriority.INTERACTIVE, 2);
+
+        scheduler.release();
+        interactive.get(1, TimeUnit.SECONDS);
+        scheduler.release();
+        batch.get(1, TimeUnit.SECONDS);
+
+        assertThat(admitted).containsExactly(OpenRouterPriority.INTERACTIVE, OpenRouterPriority.BATCH);
+        assertThat(scheduler.snapshot().get(OpenRouterPriority.BATCH).maxQueueTime())
+                .isGreaterThan(scheduler.snapshot().get(OpenRouterPriority.INTERACTIVE).maxQueueTime());
+    }
+
+    @Test
+    void fullQueueShedsTheLowestLaneFirst() throws Exception {
+        OpenRouterRequestScheduler scheduler = OpenRouterRequestScheduler.builder()
+                .maxInFlight(1)
+                .maxQueued(1)
+                .build();
+        scheduler.acquire(request(OpenRouterPriority.NORMAL));
+
+        CompletableFuture<Void> batch = waitFor(scheduler, OpenRouterPriority.BATCH, 1);
+        CompletableFuture<Void> interactive = waitFor(scheduler, OpenRouterPriority.INTERACTIVE, 1);
+
+        assertThatThrownBy(() -> batch.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(OpenRouterRequestScheduler.RequestShedException.class);
+        assertThatThrownBy(() -> scheduler.acquire(request(OpenRouterPriority.BATCH)))
+                .isInstanceOf(OpenRouterRequestScheduler.RequestShedException.class);
+
+        scheduler.release();
+        interactive.get(1, TimeUnit.SECONDS);
+        assertThat(scheduler.snapshot().get(OpenRouterPriority.BATCH).shed()).isEqualTo(2);
+    }
+
+    @Test
+    void requestsAreShedAfterTheirLanesQueueTime() {
+        OpenRouterRequestScheduler scheduler = OpenRouterRequestScheduler.builder()
+                .maxInFlight(1)
+                .maxQueueTime(OpenRouterPriority.BATCH, Duration.ofMillis(30))
+                .build();
+        scheduler.acquire(request(OpenRouterPriority.NORMAL));
+
+        assertThatThrownBy(() -> scheduler.acquire(request(OpenRouterPriority.BATCH)))
+                .isInstanceOf(OpenRouterRequestScheduler.RequestShedException.class);
+        assertThat(scheduler.snapshot().get(OpenRouterPriority.BATCH).queued()).isZero();
+        assertThat(scheduler.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void weightsShareTheSlotsBetweenLanes() throws Exception {
+        OpenRouterRequestScheduler scheduler = OpenRouterRequestScheduler.builder()
+                .maxInFlight(1)
+                .weight(OpenRouterPriority.INTERACTIVE, 3)
+                .weight(OpenRouterPriority.BATCH, 1)
+                .build();
+        scheduler.acquire(request(OpenRouterPriority.NORMAL));
+        for (int i = 0; i < 4; i++) {
+            waitFor(scheduler, OpenRouterPriority.BATCH, 2 * i + 1);
+            waitFor(scheduler, OpenRouterPriority.INTERACTIVE, 2 * i + 2);
+        }
+
+        for (int i = 1; i <= 4; i++) {
+            scheduler.release();
+            awaitAdmitted(i);
+        }
+
+        assertThat(admitted).filteredOn(p -> p == OpenRouterPriority.INTERACTIVE).hasSize(3);
+        assertThat(admitted).filteredOn(p -> p == OpenRouterPriority.BATCH).hasSize(1);
+    }
+
+    // --- Helpers ---
+
+    /**
+     * Starts a request of the given priority and waits until it is queued as the n-th waiting request.
+     */
+    private CompletableFuture<Void> waitFor(OpenRouterRequestScheduler scheduler, OpenRouterPriority priority, int queued)
+            throws InterruptedException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                scheduler.acquire(request(priority));
+                admitted.add(priority);
+                future.complete(null);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (totalQueued(scheduler) < queued && !future.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    private void awaitAdmitted(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (admitted.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static int totalQueued(OpenRouterRequestScheduler scheduler) {
+        return scheduler.snapshot().values().stream().mapToInt(OpenRouterRequestScheduler.LaneStats::queued).sum();
+    }
+
+    private OpenRouterChatCompletionRequest request(OpenRouterPriority priority) {
+        return OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "Hello")
+                .priority(priority)
+                .build();
+    }
+}
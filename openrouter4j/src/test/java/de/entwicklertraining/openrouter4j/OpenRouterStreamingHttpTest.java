@@ -0,0 +1,205 @@
+package de.entwicklertraining.openrouter4j;
+
+import com.sun.net.httpserver.HttpServer;
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterStreamingHttpTest {
+
+    private HttpServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void cancelSupplierClosesAStalledConnection() throws Exception {
+        CountDownLatch connectionClosed = new CountDownLatch(1);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                write(out, "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Hi\"}}]}\n\n");
+                // Stall without sending anything, so only closing the body can end the client's read;
+                // then write SSE comments until the write fails because the client went away
+                Thread.sleep(1500);
+                while (true) {
+                    Thread.sleep(20);
+                    write(out, ": waiting\n\n");
+                }
+            } catch (IOException | InterruptedException e) {
+                connectionClosed.countDown();
+            }
+        });
+        server.start();
+
+        AtomicBoolean canceled = new AtomicBoolean();
+        CountDownLatch firstChunk = new CountDownLatch(1);
+        CountDownLatch returned = new CountDownLatch(1);
+        AtomicBoolean completed = new AtomicBoolean();
+        OpenRouterClient client = new OpenRouterClient(
+                ApiClientSettings.builder().build(), null, "http://127.0.0.1:" + server.getAddress().getPort());
+        OpenRouterStreamingHttp http = new OpenRouterStreamingHttp(client);
+        OpenRouterChatCompletionRequest.Builder builder = OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "Hello")
+                .stream(true);
+        builder.setCancelSupplier(canceled::get);
+        OpenRouterChatCompletionRequest request = builder.build();
+
+        Thread.ofVirtual().start(() -> {
+            http.stream(request, new StreamingResponseHandler<>() {
+                @Override
+                public void onData(String data) {
+                    firstChunk.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    completed.set(true);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+            }, false);
+            returned.countDown();
+        });
+        assertThat(firstChunk.await(5, TimeUnit.SECONDS)).isTrue();
+
+        canceled.set(true);
+
+        assertThat(returned.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(connectionClosed.await(3, TimeUnit.SECONDS)).isTrue();
+        assertThat(completed).isFalse();
+    }
+
+    @Test
+    void stalledStreamFailsWithATimeoutAtTheMaximumExecutionTime() throws Exception {
+        CountDownLatch clientGone = new CountDownLatch(1);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try {
+                write(exchange.getResponseBody(), "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Hi\"}}]}\n\n");
+                // Headers and one chunk arrived, then nothing
+                clientGone.await(5, TimeUnit.SECONDS);
+            } catch (IOException | InterruptedException ignored) {
+                // Test is over
+            }
+            exchange.close();
+        });
+        server.start();
+        OpenRouterClient client = new OpenRouterClient(
+                ApiClientSettings.builder().build(), null, "http://127.0.0.1:" + server.getAddress().getPort());
+        OpenRouterChatCompletionRequest request = OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "Hello")
+                .maxExecutionTimeInSeconds(1)
+                .stream(true)
+                .build();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+        long start = System.nanoTime();
+        try {
+            assertThatThrownBy(() -> new OpenRouterStreamingHttp(client).stream(request, new StreamingResponseHandler<>() {
+                @Override
+                public void onData(String data) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    errors.add(throwable);
+                }
+            }, false)).isInstanceOf(ApiClient.ApiTimeoutException.class);
+        } finally {
+            clientGone.countDown();
+        }
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(3000);
+        assertThat(errors).singleElement().isInstanceOf(ApiClient.ApiTimeoutException.class);
+    }
+
+    @Test
+    void retriesAndErrorsFollowTheClientSettings() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            int call = calls.incrementAndGet();
+            byte[] body = (call <= 2 ? "{\"error\":\"busy\"}" : "data: {\"choices\":[]}\n\ndata: [DONE]\n\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(call <= 2 ? 503 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        List<String> chunks = new CopyOnWriteArrayList<>();
+        StreamingResponseHandler<String> handler = new StreamingResponseHandler<>() {
+            @Override
+            public void onData(String data) {
+                chunks.add(data);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+        };
+
+        OpenRouterClient retrying = new OpenRouterClient(
+                ApiClientSettings.builder().setMaxRetries(2).setInitialDelayMs(1).build(), null, baseUrl);
+        new OpenRouterStreamingHttp(retrying).stream(request(retrying), handler, true);
+        assertThat(calls).hasValue(3);
+        assertThat(chunks).containsExactly("{\"choices\":[]}");
+
+        calls.set(0);
+        OpenRouterClient once = new OpenRouterClient(
+                ApiClientSettings.builder().setMaxRetries(0).build(), null, baseUrl);
+        assertThatThrownBy(() -> new OpenRouterStreamingHttp(once).stream(request(once), handler, true))
+                .isInstanceOf(ApiClient.HTTP_503_ServerUnavailableException.class)
+                .hasMessageContaining("busy");
+        assertThat(calls).hasValue(1);
+    }
+
+    private static OpenRouterChatCompletionRequest request(OpenRouterClient client) {
+        return OpenRouterChatCompletionRequest.builder(client).addMessage("user", "Hello").stream(true).build();
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -0,0 +1,139 @@
+package de.entwicklertraining.openrouter4j;
+
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterTenantSchedulerTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+    private final List<String> admitted = new CopyOnWriteArrayList<>();
+
+    @Test
+    void waitingTenantsTakeTurnsWhateverTheirQueueLength() throws Exception {
+        OpenRouterTenantScheduler scheduler = OpenRouterTenantScheduler.builder().maxInFlight(1).build();
+
+        List<String> order = admissionOrder(scheduler, "noisy", 6, "quiet", 2);
+
+        assertThat(order.subList(0, 4)).containsExactly("noisy", "quiet", "noisy", "quiet");
+        assertThat(scheduler.stats("noisy").requests()).isEqualTo(6);
+    }
+
+    @Test
+    void weightsSetTheShareOfATurn() throws Exception {
+        OpenRouterTenantScheduler scheduler = OpenRouterTenantScheduler.builder()
+                .maxInFlight(1)
+                .policy("premium", new OpenRouterTenantScheduler.Policy(2, 0, 0))
+                .build();
+
+        List<String> order = admissionOrder(scheduler, "premium", 4, "basic", 4);
+
+        assertThat(order.subList(0, 6)).containsExactly("premium", "premium", "basic", "premium", "premium", "basic");
+    }
+
+    @Test
+    void quotasRejectRequestsAndTokensAreCountedFromResponses() {
+        OpenRouterTenantScheduler scheduler = OpenRouterTenantScheduler.builder()
+                .defaultPolicy(new OpenRouterTenantScheduler.Policy(1, 3, 250))
+                .build();
+        OpenRouterClient limited = new OpenRouterClient(
+                ApiClientSettings.builder().build(),
+                null,
+                "http://localhost:1",
+                OpenRouterConnectionSettings.builder().tenantScheduler(scheduler).build()
+        );
+        limited.setTransport(new UsageTransport(150));
+
+        OpenRouterChatCompletionRequest.Builder request = OpenRouterChatCompletionRequest.builder(limited)
+                .tenant("acme")
+                .addMessage("user", "Hello");
+        request.execute();
+        request.execute();
+
+        // 300 tokens in two requests: the token quota of 250 is used up before the request quota of 3
+        assertThatThrownBy(request::execute).isInstanceOf(OpenRouterTenantScheduler.QuotaExceededException.class);
+        OpenRouterTenantScheduler.TenantStats stats = scheduler.stats("acme");
+        assertThat(stats.requests()).isEqualTo(2);
+        assertThat(stats.tokens()).isEqualTo(300);
+        assertThat(stats.rejected()).isEqualTo(1);
+        assertThat(stats.inFlight()).isZero();
+        assertThat(scheduler.stats("other").requests()).isZero();
+    }
+
+    // --- Helpers ---
+
+    /**
+     * Blocks the only slot, queues the requests of both tenants and then frees the slot once per request.
+     */
+    private List<String> admissionOrder(OpenRouterTenantScheduler scheduler, String first, int firstCount,
+                                        String second, int secondCount) throws InterruptedException {
+        OpenRouterChatCompletionRequest blocker = request("blocker");
+        scheduler.acquire(blocker);
+        queue(scheduler, first, firstCount);
+        queue(scheduler, second, secondCount);
+
+        scheduler.release(blocker);
+        for (int i = 1; i <= firstCount + secondCount; i++) {
+            awaitAdmitted(i);
+            scheduler.release(request(admitted.get(i - 1)));
+        }
+        return admitted;
+    }
+
+    private void queue(OpenRouterTenantScheduler scheduler, String tenant, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            int queuedBefore = scheduler.stats(tenant).queued();
+            Thread.ofVirtual().start(() -> {
+                scheduler.acquire(request(tenant));
+                admitted.add(tenant);
+            });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (scheduler.stats(tenant).queued() == queuedBefore && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private void awaitAdmitted(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (admitted.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private OpenRouterChatCompletionRequest request(String tenant) {
+        return OpenRouterChatCompletionRequest.builder(client)
+                .tenant(tenant)
+                .addMessage("user", "Hello")
+                .build();
+    }
+
+    /**
+     * Answers every request with the given number of total tokens.
+     */
+    private record UsageTransport(int totalTokens) implements SendOnlyTransport {
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            return request.createResponse(new JSONObject()
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("index", 0)
+                            .put("finish_reason", "stop")
+                            .put("message", new JSONObject().put("role", "assistant").put("content", "Hi"))))
+                    .put("usage", new JSONObject()
+                            .put("prompt_tokens", totalTokens - 10)
+                            .put("completion_tokens", 10)
+                            .put("total_tokens", totalTokens))
+                    .toString());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package de.entwicklertraining.openrouter4j;
+
+/**
+ * Base of the test transports that answer non-streaming requests only; a streaming request fails
+ * with an {@link UnsupportedOperationException}.
+ */
+public interface SendOnlyTransport extends OpenRouterTransport {
+
+    @Override
+    default void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+        throw new UnsupportedOperationException("This test transport does not stream");
+    }
+}
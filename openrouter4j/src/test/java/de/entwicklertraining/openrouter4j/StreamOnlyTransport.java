@@ -0,0 +1,13 @@
+package de.entwicklertraining.openrouter4j;
+
+/**
+ * Base of the test transports that answer streaming requests only; a non-streaming request fails
+ * with an {@link UnsupportedOperationException}.
+ */
+public interface StreamOnlyTransport extends OpenRouterTransport {
+
+    @Override
+    default <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+        throw new UnsupportedOperationException("This test transport only streams");
+    }
+}
@@ -0,0 +1,268 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import com.sun.net.httpserver.HttpServer;
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.openrouter4j.OpenRouterCancellation;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingExchange;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.OpenRouterTransport;
+import de.entwicklertraining.openrouter4j.StreamingToolCallHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterCancellationTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+    private final BlockingTransport transport = new BlockingTransport();
+    private final RecordingHandler handler = new RecordingHandler();
+
+    OpenRouterCancellationTest() {
+        client.setTransport(transport);
+    }
+
+    @Test
+    void cancellingTheFutureReleasesABlockedStream() throws Exception {
+        transport.blockAfterFirstChunk = true;
+
+        CompletableFuture<OpenRouterChatCompletionResponse> future = new OpenRouterChatCompletionCallHandler(client)
+                .handleStreamingRequest(request().build(), handler, false);
+        assertThat(transport.firstChunkSent.await(5, TimeUnit.SECONDS)).isTrue();
+
+        future.cancel(true);
+
+        assertThat(transport.streamReleased.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(future).isCancelled();
+        assertThat(handler.completed.get()).isZero();
+        assertThat(handler.errors.get()).isZero();
+    }
+
+    @Test
+    void cancelSupplierInterruptsARunningToolAndStopsTheLoop() throws Exception {
+        AtomicBoolean canceled = new AtomicBoolean();
+        CountDownLatch toolStarted = new CountDownLatch(1);
+        CountDownLatch toolInterrupted = new CountDownLatch(1);
+        OpenRouterToolDefinition slowTool = OpenRouterToolDefinition.builder("slow")
+                .description("Takes a long time")
+                .callback(ctx -> {
+                    toolStarted.countDown();
+                    try {
+                        Thread.sleep(30_000);
+                    } catch (InterruptedException e) {
+                        toolInterrupted.countDown();
+                        Thread.currentThread().interrupt();
+                    }
+                    return OpenRouterToolResult.of(new JSONObject().put("ok", false));
+                })
+                .build();
+
+        var builder = request().addTool(slowTool);
+        builder.setCancelSupplier(canceled::get);
+        CompletableFuture<OpenRouterChatCompletionResponse> future = new OpenRouterChatCompletionCallHandler(client)
+                .handleStreamingRequest(builder.build(), handler, false);
+        assertThat(toolStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        canceled.set(true);
+
+        assertThat(toolInterrupted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> future.get(1, TimeUnit.SECONDS)).isInstanceOf(CancellationException.class);
+        Thread.sleep(100);
+        assertThat(transport.streams.get()).isEqualTo(1);
+        assertThat(handler.completed.get()).isZero();
+    }
+
+    @Test
+    void cancelSupplierInterruptsAnInFlightSynchronousRequest() throws Exception {
+        AtomicBoolean canceled = new AtomicBoolean();
+        var builder = OpenRouterChatCompletionRequest.builder(client).addMessage("user", "Work on it");
+        builder.setCancelSupplier(canceled::get);
+        CompletableFuture<OpenRouterChatCompletionResponse> call = CompletableFuture.supplyAsync(
+                () -> new OpenRouterChatCompletionCallHandler(client).handleRequest(builder.build(), false));
+        assertThat(transport.sendStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        canceled.set(true);
+
+        assertThat(transport.sendInterrupted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> call.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void cancelSupplierReleasesTheConnectionOfTheDefaultStreamingPath() throws Exception {
+        CountDownLatch connectionClosed = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                write(out, "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Hi\"}}]}\n\n");
+                // Keep the stream open until a write fails because the client closed the connection
+                for (int i = 0; i < 500; i++) {
+                    Thread.sleep(20);
+                    write(out, ": waiting\n\n");
+                }
+            } catch (IOException | InterruptedException e) {
+                connectionClosed.countDown();
+            }
+        });
+        server.start();
+        try {
+            // Without directStreaming, the stream is read by api-base
+            OpenRouterClient live = new OpenRouterClient(
+                    ApiClientSettings.builder().build(), null, "http://127.0.0.1:" + server.getAddress().getPort());
+            AtomicBoolean canceled = new AtomicBoolean();
+            CountDownLatch firstChunk = new CountDownLatch(1);
+            var builder = OpenRouterChatCompletionRequest.builder(live)
+                    .addMessage("user", "Work on it")
+                    .addTool(OpenRouterToolDefinition.builder("unused").description("Not called").build())
+                    .stream(true);
+            builder.setCancelSupplier(canceled::get);
+            CompletableFuture<OpenRouterChatCompletionResponse> future = new OpenRouterChatCompletionCallHandler(live)
+                    .handleStreamingRequest(builder.build(), new RecordingHandler() {
+                        @Override
+                        public void onData(String data) {
+                            firstChunk.countDown();
+                        }
+                    }, false);
+            assertThat(firstChunk.await(5, TimeUnit.SECONDS)).isTrue();
+
+            canceled.set(true);
+
+            assertThatThrownBy(() -> future.get(1, TimeUnit.SECONDS)).isInstanceOf(CancellationException.class);
+            assertThat(connectionClosed.await(3, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void aBlockingSupplierDoesNotDelayOtherWatches() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fired = new CountDownLatch(1);
+        try (OpenRouterCancellation.Watch blocking = OpenRouterCancellation.watch(() -> {
+                 try {
+                     release.await();
+                 } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                 }
+                 return false;
+             }, () -> { });
+             OpenRouterCancellation.Watch other = OpenRouterCancellation.watch(() -> true, fired::countDown)) {
+            assertThat(fired.await(1, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    // --- Helpers ---
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private OpenRouterChatCompletionRequest.Builder request() {
+        return OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "Work on it")
+                .stream(true);
+    }
+
+    /**
+     * Streams a tool call when tools are declared, otherwise a text delta. With
+     * {@link #blockAfterFirstChunk} it then waits for more data that never arrives, like a stalled
+     * connection; an interrupt ends the wait. A synchronous request waits the same way.
+     */
+    private static final class BlockingTransport implements OpenRouterTransport {
+        final CountDownLatch firstChunkSent = new CountDownLatch(1);
+        final CountDownLatch streamReleased = new CountDownLatch(1);
+        final CountDownLatch sendStarted = new CountDownLatch(1);
+        final CountDownLatch sendInterrupted = new CountDownLatch(1);
+        final AtomicInteger streams = new AtomicInteger();
+        volatile boolean blockAfterFirstChunk;
+
+        /**
+         * Waits for a response that never arrives until the thread is interrupted.
+         */
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            sendStarted.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                sendInterrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("No response");
+        }
+
+        @Override
+        public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+            streams.incrementAndGet();
+            JSONObject body = new JSONObject(exchange.request().getBody());
+            JSONObject delta = body.has("tools")
+                    ? new JSONObject().put("tool_calls", new JSONArray().put(new JSONObject()
+                            .put("index", 0)
+                            .put("id", "call_1")
+                            .put("type", "function")
+                            .put("function", new JSONObject().put("name", "slow").put("arguments", "{}"))))
+                    : new JSONObject().put("content", "Partial");
+            try {
+                exchange.handler().onStreamStart();
+                exchange.handler().onData(new JSONObject().put("choices", new JSONArray().put(new JSONObject()
+                        .put("index", 0)
+                        .put("delta", delta)
+                        .put("finish_reason", blockAfterFirstChunk ? JSONObject.NULL : body.has("tools")
+                                ? "tool_calls" : "stop"))).toString());
+                firstChunkSent.countDown();
+                if (blockAfterFirstChunk) {
+                    new CountDownLatch(1).await();
+                }
+                exchange.handler().onComplete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                streamReleased.countDown();
+            }
+        }
+    }
+
+    private static class RecordingHandler implements StreamingToolCallHandler {
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+
+        @Override
+        public void onData(String data) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed.incrementAndGet();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            errors.incrementAndGet();
+        }
+    }
+}
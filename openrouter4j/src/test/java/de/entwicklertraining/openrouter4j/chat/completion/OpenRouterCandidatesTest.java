@@ -0,0 +1,205 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingExchange;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.OpenRouterTransport;
+import de.entwicklertraining.openrouter4j.StreamingCandidateHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterCandidatesTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+    private final FakeTransport transport = new FakeTransport();
+
+    OpenRouterCandidatesTest() {
+        client.setTransport(transport);
+    }
+
+    @Test
+    void nativeChoicesAreReturnedFromASingleRequest() {
+        OpenRouterChatCompletionResponse response = request(3).candidateMode(OpenRouterCandidateMode.NATIVE).execute();
+
+        assertThat(transport.bodies).hasSize(1);
+        assertThat(transport.bodies.get(0).getInt("n")).isEqualTo(3);
+        assertThat(response.candidates()).containsExactly("answer 0", "answer 1", "answer 2");
+        assertThat(response.finishReason(2)).isEqualTo("stop");
+        assertThat(response.assistantMessage()).isEqualTo("answer 0");
+        assertMetadataOfTheFirstCandidate(response, "chat.completion");
+    }
+
+    @Test
+    void autoModeTopsUpCandidatesTheModelDidNotReturn() {
+        transport.maxChoices = 1;
+
+        OpenRouterChatCompletionResponse response = request(3).execute();
+
+        assertThat(transport.bodies).hasSize(3);
+        assertThat(transport.bodies.stream().filter(b -> b.has("n")).count()).isEqualTo(1);
+        assertThat(response.choiceCount()).isEqualTo(3);
+        assertThat(response.choice(2).getInt("index")).isEqualTo(2);
+        assertThat(response.totalTokens()).isEqualTo(3 * 15);
+    }
+
+    @Test
+    void fanOutWithToolsRunsOneToolLoopPerCandidate() {
+        AtomicInteger toolCalls = new AtomicInteger();
+        OpenRouterToolDefinition tool = OpenRouterToolDefinition.builder("lookup")
+                .description("Looks something up")
+                .callback(ctx -> {
+                    toolCalls.incrementAndGet();
+                    return OpenRouterToolResult.of(new JSONObject().put("ok", true));
+                })
+                .build();
+
+        OpenRouterChatCompletionResponse response = request(2)
+                .candidateMode(OpenRouterCandidateMode.FAN_OUT)
+                .addTool(tool)
+                .execute();
+
+        assertThat(toolCalls.get()).isEqualTo(2);
+        assertThat(transport.bodies).hasSize(4).noneMatch(b -> b.has("n"));
+        assertThat(response.candidates()).containsExactly("answer 0", "answer 0");
+    }
+
+    @Test
+    void streamedDeltasAreRoutedByChoiceIndex() {
+        Map<Integer, StringBuilder> received = new ConcurrentHashMap<>();
+        StreamingCandidateHandler handler = new StreamingCandidateHandler() {
+            @Override
+            public void onCandidateData(int candidate, String delta) {
+                received.computeIfAbsent(candidate, c -> new StringBuilder()).append(delta);
+            }
+
+            @Override
+            public void onData(String data) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+        };
+
+        OpenRouterChatCompletionResponse response = request(3).stream(handler).execute();
+
+        assertThat(transport.bodies).hasSize(1);
+        assertThat(received.get(0)).hasToString("answer 0");
+        assertThat(received.get(2)).hasToString("answer 2");
+        assertThat(response.candidates()).containsExactly("answer 0", "answer 1", "answer 2");
+        assertMetadataOfTheFirstCandidate(response, "chat.completion");
+    }
+
+    // --- Helpers ---
+
+    private static void assertMetadataOfTheFirstCandidate(OpenRouterChatCompletionResponse response, String object) {
+        JSONObject json = response.getJson();
+        assertThat(json.getString("id")).isEqualTo("gen-1");
+        assertThat(json.getString("object")).isEqualTo(object);
+        assertThat(json.getLong("created")).isEqualTo(1_760_000_000L);
+        assertThat(json.getString("provider")).isEqualTo("Google");
+        assertThat(json.getString("system_fingerprint")).isEqualTo("fp_1");
+    }
+
+    private OpenRouterChatCompletionRequest.Builder request(int n) {
+        return OpenRouterChatCompletionRequest.builder(client)
+                .model("google/gemini-2.5-flash")
+                .addMessage("user", "Say something")
+                .n(n);
+    }
+
+    /**
+     * Answers choice i with "answer i" (or a tool call first when tools are declared), honoring
+     * {@code n} up to {@link #maxChoices}. Streams interleave the words of all choices.
+     */
+    private static final class FakeTransport implements OpenRouterTransport {
+        final List<JSONObject> bodies = new CopyOnWriteArrayList<>();
+        volatile int maxChoices = Integer.MAX_VALUE;
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            JSONObject body = new JSONObject(request.getBody());
+            bodies.add(body);
+            JSONArray choices = new JSONArray();
+            for (int i = 0; i < choiceCount(body); i++) {
+                JSONObject message = new JSONObject().put("role", "assistant");
+                if (wantsToolCall(body)) {
+                    message.put("content", JSONObject.NULL).put("tool_calls", new JSONArray().put(new JSONObject()
+                            .put("id", "call_" + i)
+                            .put("type", "function")
+                            .put("function", new JSONObject().put("name", "lookup").put("arguments", "{}"))));
+                } else {
+                    message.put("content", "answer " + i);
+                }
+                choices.put(new JSONObject()
+                        .put("index", i)
+                        .put("finish_reason", wantsToolCall(body) ? "tool_calls" : "stop")
+                        .put("message", message));
+            }
+            return request.createResponse(metadata(new JSONObject(), "chat.completion")
+                    .put("choices", choices)
+                    .put("usage", new JSONObject()
+                            .put("prompt_tokens", 10)
+                            .put("completion_tokens", 5)
+                            .put("total_tokens", 15))
+                    .toString());
+        }
+
+        @Override
+        public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+            JSONObject body = new JSONObject(exchange.request().getBody());
+            bodies.add(body);
+            int count = choiceCount(body);
+            exchange.handler().onStreamStart();
+            for (String word : List.of("answer", " ")) {
+                for (int i = 0; i < count; i++) {
+                    exchange.handler().onData(chunk(i, new JSONObject().put("content", word), null));
+                }
+            }
+            for (int i = count - 1; i >= 0; i--) {
+                exchange.handler().onData(chunk(i, new JSONObject().put("content", String.valueOf(i)), "stop"));
+            }
+            exchange.handler().onComplete();
+        }
+
+        private int choiceCount(JSONObject body) {
+            return Math.min(maxChoices, body.optInt("n", 1));
+        }
+
+        private static boolean wantsToolCall(JSONObject body) {
+            JSONArray messages = body.getJSONArray("messages");
+            return body.has("tools") && !"tool".equals(messages.getJSONObject(messages.length() - 1).optString("role"));
+        }
+
+        private static JSONObject metadata(JSONObject json, String object) {
+            return json.put("id", "gen-1")
+                    .put("object", object)
+                    .put("created", 1_760_000_000L)
+                    .put("provider", "Google")
+                    .put("system_fingerprint", "fp_1");
+        }
+
+        private static String chunk(int index, JSONObject delta, String finishReason) {
+            return metadata(new JSONObject(), "chat.completion.chunk").put("choices", new JSONArray().put(new JSONObject()
+                    .put("index", index)
+                    .put("delta", delta)
+                    .put("finish_reason", finishReason != null ? finishReason : JSONObject.NULL))).toString();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.SendOnlyTransport;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterDeadlineTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+    private final FakeTransport transport = new FakeTransport();
+    private final List<Duration> remainingSeen = new CopyOnWriteArrayList<>();
+
+    OpenRouterDeadlineTest() {
+        client.setTransport(transport);
+    }
+
+    @Test
+    void lastTurnThatFitsTheBudgetAsksForAFinalAnswer() {
+        OpenRouterChatCompletionResponse response = request(400)
+                .deadline(Duration.ofSeconds(1))
+                .execute();
+
+        // Turn 1 ends at ~400ms (room for another), turn 2 at ~800ms (no room left)
+        assertThat(transport.bodies).hasSize(3);
+        assertThat(transport.bodies.get(1).has("tool_choice")).isFalse();
+        assertThat(transport.bodies.get(2).getString("tool_choice")).isEqualTo("none");
+        assertThat(response.assistantMessage()).isEqualTo("done");
+        assertThat(response.deadlineReached()).isFalse();
+        assertThat(remainingSeen).hasSize(2).allSatisfy(remaining ->
+                assertThat(remaining).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void expiredDeadlineWithPendingToolCallsFails() {
+        assertThatThrownBy(() -> request(300)
+                .deadline(Duration.ofMillis(200))
+                .execute())
+                .isInstanceOf(OpenRouterChatCompletionRequest.DeadlineExceededException.class)
+                .hasMessageContaining("without a final answer");
+
+        assertThat(transport.bodies).hasSize(1);
+    }
+
+    @Test
+    void onlyTimeoutsAfterTheDeadlineCountAsReachingIt() {
+        transport.slowFailure = new ApiClient.HTTP_504_ServerTimeoutException("HTTP 504");
+        assertThatThrownBy(() -> request(0).deadline(Duration.ofMillis(200)).execute())
+                .isInstanceOf(OpenRouterChatCompletionRequest.DeadlineExceededException.class)
+                .hasCause(transport.slowFailure);
+
+        transport.slowFailure = new ApiClient.HTTP_400_RequestRejectedException("HTTP 400");
+        assertThatThrownBy(() -> request(0).deadline(Duration.ofMillis(200)).execute())
+                .isSameAs(transport.slowFailure);
+    }
+
+    @Test
+    void timeoutOfTheFirstCandidateRequestAfterTheDeadlineCountsAsReachingIt() {
+        transport.slowFailure = new ApiClient.HTTP_504_ServerTimeoutException("HTTP 504");
+        transport.failFirstRequest = true;
+        assertThatThrownBy(() -> request(0).n(2).deadline(Duration.ofMillis(200)).execute())
+                .isInstanceOf(OpenRouterChatCompletionRequest.DeadlineExceededException.class)
+                .hasCause(transport.slowFailure);
+    }
+
+    @Test
+    void deadlineCapsTheRequestTimeout() {
+        OpenRouterChatCompletionRequest request = request(0)
+                .maxExecutionTimeInSeconds(600)
+                .deadline(Duration.ofMillis(4500))
+                .build();
+
+        assertThat(request.getMaxExecutionTimeInSeconds()).isEqualTo(5);
+        assertThat(request.remainingTime()).isPositive().isLessThanOrEqualTo(Duration.ofMillis(4500));
+        assertThatThrownBy(() -> request(0).deadline(Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // --- Helpers ---
+
+    private OpenRouterChatCompletionRequest.Builder request(long toolMillis) {
+        OpenRouterToolDefinition lookup = OpenRouterToolDefinition.builder("lookup")
+                .description("Looks something up")
+                .callback(ctx -> {
+                    remainingSeen.add(ctx.remainingTime());
+                    try {
+                        Thread.sleep(toolMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return OpenRouterToolResult.of(new JSONObject().put("found", true));
+                })
+                .build();
+        return OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "Find it")
+                .addTool(lookup);
+    }
+
+    /**
+     * Calls the tool on every turn unless the request forbids tool calls.
+     */
+    private static final class FakeTransport implements SendOnlyTransport {
+        final List<JSONObject> bodies = new CopyOnWriteArrayList<>();
+        volatile RuntimeException slowFailure; // thrown by follow-up requests after 300ms
+        volatile boolean failFirstRequest; // throw slowFailure on the first request as well
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            JSONObject body = new JSONObject(request.getBody());
+            bodies.add(body);
+            if (slowFailure != null && (failFirstRequest || body.getJSONArray("messages").length() > 1)) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw slowFailure;
+            }
+            boolean toolCall = !"none".equals(body.optString("tool_choice"));
+            JSONObject message = new JSONObject().put("role", "assistant");
+            if (toolCall) {
+                message.put("content", JSONObject.NULL).put("tool_calls", new JSONArray().put(new JSONObject()
+                        .put("id", "call_" + bodies.size())
+                        .put("type", "function")
+                        .put("function", new JSONObject().put("name", "lookup").put("arguments", "{}"))));
+            } else {
+                message.put("content", "done");
+            }
+            return request.createResponse(new JSONObject()
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("index", 0)
+                            .put("finish_reason", toolCall ? "tool_calls" : "stop")
+                            .put("message", message)))
+                    .toString());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterImagePreprocessorTest {
+
+    @Test
+    void largeImagesAreDownscaledToTheMaxEdge() throws IOException {
+        OpenRouterImagePreprocessor preprocessor = OpenRouterImagePreprocessor.builder().maxEdge(1000).build();
+        OpenRouterImageData source = image(new BufferedImage(3000, 1500, BufferedImage.TYPE_INT_RGB), "jpg", "image/jpeg");
+
+        OpenRouterImageData result = preprocessor.process(source, "openai/gpt-4o");
+
+        assertThat(result.mimeType()).isEqualTo("image/jpeg");
+        BufferedImage decoded = decode(result);
+        assertThat(decoded.getWidth()).isEqualTo(1000);
+        assertThat(decoded.getHeight()).isEqualTo(500);
+        // Processed images are cached and not processed again
+        assertThat(preprocessor.process(source, "openai/gpt-4o")).isSameAs(result);
+        assertThat(preprocessor.process(result, "openai/gpt-4o")).isSameAs(result);
+    }
+
+    @Test
+    void pngKeepsItsFormatAndTransparencyByDefault() throws IOException {
+        BufferedImage screenshot = new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = screenshot.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, 100, 100);
+        g.dispose();
+        OpenRouterImagePreprocessor preprocessor = OpenRouterImagePreprocessor.builder().maxEdge(100).build();
+
+        OpenRouterImageData result = preprocessor.process(image(screenshot, "png", "image/png"), "any/model");
+
+        assertThat(result.mimeType()).isEqualTo("image/png");
+        BufferedImage decoded = decode(result);
+        assertThat(decoded.getWidth()).isEqualTo(100);
+        assertThat(decoded.getColorModel().hasAlpha()).isTrue();
+        assertThat(decoded.getRGB(75, 25) >>> 24).isZero();
+        assertThat(decoded.getRGB(25, 25) & 0xFFFFFF).isEqualTo(0x0000FF);
+        assertThat(preprocessor.toString()).contains("format=source");
+    }
+
+    @Test
+    void exifOrientationIsApplied() throws IOException {
+        BufferedImage photo = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = photo.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 20, 20);
+        g.setColor(Color.BLUE);
+        g.fillRect(20, 0, 20, 20);
+        g.dispose();
+        byte[] jpeg = withExifOrientation(encode(photo, "jpg"), 6);
+        assertThat(OpenRouterImagePreprocessor.ExifOrientation.read(jpeg)).isEqualTo(6);
+
+        OpenRouterImageData result = OpenRouterImagePreprocessor.builder().build()
+                .process(OpenRouterImageData.of(ByteBuffer.wrap(jpeg), "image/jpeg"), "any/model");
+
+        // Rotated 90° clockwise: the left (red) half ends up on top
+        BufferedImage decoded = decode(result);
+        assertThat(decoded.getWidth()).isEqualTo(20);
+        assertThat(decoded.getHeight()).isEqualTo(40);
+        assertThat(new Color(decoded.getRGB(10, 5)).getRed()).isGreaterThan(200);
+        assertThat(new Color(decoded.getRGB(10, 35)).getBlue()).isGreaterThan(200);
+    }
+
+    @Test
+    void undecodableImagesArePassedThrough() {
+        OpenRouterImageData heic = OpenRouterImageData.of(
+                ByteBuffer.wrap("\0\0\0\u0018ftypheic not decodable by ImageIO".getBytes(StandardCharsets.ISO_8859_1)),
+                "image/heic");
+
+        assertThat(OpenRouterImagePreprocessor.builder().build().process(heic, "any/model")).isSameAs(heic);
+    }
+
+    @Test
+    void webpFallsBackWithoutAWriterPlugin() throws IOException {
+        assertThat(ImageIO.getImageWritersByFormatName("webp").hasNext()).isFalse();
+        OpenRouterImagePreprocessor preprocessor = OpenRouterImagePreprocessor.builder()
+                .format(OpenRouterImagePreprocessor.Format.WEBP)
+                .build();
+
+        OpenRouterImageData opaque = preprocessor.process(
+                image(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "png", "image/png"), "any/model");
+        OpenRouterImageData transparent = preprocessor.process(
+                image(new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB), "png", "image/png"), "any/model");
+
+        assertThat(opaque.mimeType()).isEqualTo("image/jpeg");
+        assertThat(decode(opaque)).isNotNull();
+        assertThat(transparent.mimeType()).isEqualTo("image/png");
+    }
+
+    @Test
+    void maxEdgeUsesTheLongestMatchingModelPrefix() {
+        OpenRouterImagePreprocessor preprocessor = OpenRouterImagePreprocessor.builder()
+                .maxEdge(1568)
+                .modelMaxEdge("openai/", 2048)
+                .modelMaxEdge("openai/gpt-4o-mini", 768)
+                .build();
+
+        assertThat(preprocessor.maxEdgeFor("openai/gpt-4o-mini-2024-07-18")).isEqualTo(768);
+        assertThat(preprocessor.maxEdgeFor("openai/gpt-4o")).isEqualTo(2048);
+        assertThat(preprocessor.maxEdgeFor("anthropic/claude-sonnet-4")).isEqualTo(1568);
+        assertThat(preprocessor.maxEdgeFor(null)).isEqualTo(1568);
+    }
+
+    private static OpenRouterImageData image(BufferedImage image, String formatName, String mimeType) throws IOException {
+        return OpenRouterImageData.of(ByteBuffer.wrap(encode(image, formatName)), mimeType);
+    }
+
+    private static byte[] encode(BufferedImage image, String formatName) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(ImageIO.write(image, formatName, out)).isTrue();
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(OpenRouterImageData image) throws IOException {
+        ByteBuffer content = image.content();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Inserts a big-endian EXIF segment with a single orientation entry right after the SOI marker.
+     */
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        byte[] tiff = {
+                'M', 'M', 0, 42, 0, 0, 0, 8,           // header, IFD at offset 8
+                0, 1,                                  // one entry
+                0x01, 0x12, 0, 3, 0, 0, 0, 1,          // orientation, SHORT, count 1
+                0, (byte) orientation, 0, 0,
+                0, 0, 0, 0                             // no next IFD
+        };
+        int length = 2 + 6 + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.writeBytes("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        out.writeBytes(tiff);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+}
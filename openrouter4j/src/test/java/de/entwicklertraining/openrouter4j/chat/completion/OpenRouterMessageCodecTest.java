@@ -0,0 +1,103 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterCacheControl;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterMessageCodecTest {
+
+    private static final List<OpenRouterMessage> CONVERSATION = List.of(
+            OpenRouterMessage.system("Answer \"briefly\".\n"),
+            OpenRouterMessage.user(
+                    new OpenRouterContentPart.Text("Compare these, ümlaut \u0001", OpenRouterCacheControl.oneHour()),
+                    new OpenRouterContentPart.ImageUrl("https://example.com/a.png", "low", null),
+                    OpenRouterContentPart.file("doc.pdf", "data:application/pdf;base64,JVBERi0=")),
+            new OpenRouterMessage.AssistantMessage(null, null, List.of(
+                    new OpenRouterToolCall("call_1", "lookup", "{\"q\":\"a\\\\b\"}"))),
+            OpenRouterMessage.tool("call_1", "{\"found\":true}"),
+            OpenRouterMessage.assistant("Done")
+    );
+
+    @Test
+    void messagesSurviveARoundTripThroughJson() {
+        for (OpenRouterMessage message : CONVERSATION) {
+            assertThat(OpenRouterMessage.fromJson(message.toJson())).isEqualTo(message);
+            // Also through the text a request body or a conversation store holds
+            assertThat(OpenRouterMessage.fromJson(new JSONObject(message.toJson().toString()))).isEqualTo(message);
+        }
+        JSONObject toolCall = CONVERSATION.get(2).toJson().getJSONArray("tool_calls").getJSONObject(0);
+        assertThat(toolCall.getString("id")).isEqualTo("call_1");
+        assertThat(toolCall.getJSONObject("function").getString("arguments")).isEqualTo("{\"q\":\"a\\\\b\"}");
+        JSONArray parts = CONVERSATION.get(1).toJson().getJSONArray("content");
+        assertThat(parts.getJSONObject(0).getJSONObject("cache_control").getString("ttl")).isEqualTo("1h");
+        assertThat(parts.getJSONObject(1).getJSONObject("image_url").getString("detail")).isEqualTo("low");
+        assertThat(parts.getJSONObject(2).getJSONObject("file").getString("filename")).isEqualTo("doc.pdf");
+    }
+
+    @Test
+    void reasoningIsKeptSoItCanBeSentBack() {
+        JSONObject json = new JSONObject("""
+                {"role": "assistant", "content": null, "reasoning": "Look it up first.",
+                 "reasoning_details": [{"type": "reasoning.encrypted", "data": "gAAA", "id": "r1", "index": 0,
+                                        "format": "openai-responses-v1", "extra": {"nested": [1, "x"]}}],
+                 "tool_calls": [{"id": "call_1", "type": "function",
+                                 "function": {"name": "lookup", "arguments": "{}"}}]}""");
+
+        OpenRouterMessage.AssistantMessage message = (OpenRouterMessage.AssistantMessage) OpenRouterMessage.fromJson(json);
+
+        assertThat(message.reasoning()).isEqualTo("Look it up first.");
+        assertThat(message.reasoningDetails()).singleElement()
+                .satisfies(detail -> assertThat(detail).containsEntry("data", "gAAA").containsEntry("index", 0));
+        assertThat(message.toJson().getJSONArray("reasoning_details").similar(json.getJSONArray("reasoning_details")))
+                .isTrue();
+        assertThat(OpenRouterMessage.fromJson(message.toJson())).isEqualTo(message);
+        assertThatThrownBy(() -> message.reasoningDetails().get(0).put("data", "changed"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void responseMessagesAreReadLeniently() {
+        OpenRouterChatCompletionRequest request = OpenRouterChatCompletionRequest.builder(new OpenRouterClient())
+                .addMessage("user", "Hi")
+                .build();
+        // No role and a tool call without id, as some providers send them
+        OpenRouterChatCompletionResponse response = request.createResponse("""
+                {"choices": [{"index": 0, "finish_reason": "tool_calls", "message": {"content": "",
+                 "tool_calls": [{"type": "function", "function": {"name": "lookup", "arguments": "{}"}}]}}]}""");
+
+        assertThat(response.toMessage().toolCalls()).containsExactly(new OpenRouterToolCall(null, "lookup", "{}"));
+        assertThatThrownBy(() -> OpenRouterMessage.fromJson(new JSONObject("{\"role\":\"narrator\",\"content\":\"x\"}")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void typedMessagesGoIntoTheRequestBody() {
+        OpenRouterImageData image = OpenRouterImageData.of(
+                ByteBuffer.wrap("not really a png".getBytes(StandardCharsets.UTF_8)), "image/png");
+        OpenRouterChatCompletionRequest request = OpenRouterChatCompletionRequest.builder(new OpenRouterClient())
+                .addMessages(CONVERSATION.subList(0, 1))
+                .addMessage(OpenRouterMessage.user(OpenRouterContentPart.text("What is this?"), OpenRouterContentPart.image(image)))
+                .build();
+
+        // Inline images stay references until the body is written, readers see the data URL
+        JSONObject imageUrl = request.messages().get(1).getJSONArray("content").getJSONObject(1)
+                .getJSONObject("image_url");
+        assertThat(OpenRouterInlineImageUrl.imageOf(imageUrl)).isSameAs(image);
+        assertThat(imageUrl.getString("url")).startsWith("data:image/png;base64,");
+        assertThat(OpenRouterMessage.fromJson(request.messages().get(1)))
+                .isEqualTo(OpenRouterMessage.user(OpenRouterContentPart.text("What is this?"), OpenRouterContentPart.image(image)));
+        JSONArray body = new JSONObject(new String(request.getBodyBytes(), StandardCharsets.UTF_8)).getJSONArray("messages");
+        assertThat(body.getJSONObject(0).getString("content")).isEqualTo("Answer \"briefly\".\n");
+        assertThat(body.getJSONObject(1).getJSONArray("content").getJSONObject(1)
+                .getJSONObject("image_url").getString("url")).startsWith("data:image/png;base64,");
+    }
+}
@@ -0,0 +1,109 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterMessageHistoryTest {
+
+    @Test
+    void appendingKeepsEveryEarlierVersionIntact() {
+        List<OpenRouterMessageHistory> versions = new ArrayList<>();
+        OpenRouterMessageHistory history = OpenRouterMessageHistory.empty();
+        // Enough messages for a trie with three levels
+        for (int i = 0; i < 33_000; i++) {
+            versions.add(history);
+            history = history.append(message(i));
+        }
+
+        assertThat(history).hasSize(33_000);
+        int expected = 0;
+        for (JSONObject msg : history) {
+            assertThat(msg.getInt("i")).isEqualTo(expected++);
+        }
+        for (int size : new int[]{0, 1, 32, 33, 1024, 1056, 1057, 32_800}) {
+            OpenRouterMessageHistory version = versions.get(size);
+            assertThat(version).hasSize(size);
+            if (size > 0) {
+                assertThat(version.get(size - 1).getInt("i")).isEqualTo(size - 1);
+            }
+        }
+        assertThatThrownBy(() -> versions.get(10).add(message(-1)))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void forksAndReplacementsDoNotAffectEachOther() {
+        OpenRouterMessageHistory base = OpenRouterMessageHistory.copyOf(List.of(message(0), message(1)));
+        OpenRouterMessageHistory left = base.append(message(2));
+        OpenRouterMessageHistory right = base.append(message(3));
+        OpenRouterMessageHistory replaced = left.with(0, message(9));
+
+        assertThat(base).extracting(m -> m.getInt("i")).containsExactly(0, 1);
+        assertThat(left).extracting(m -> m.getInt("i")).containsExactly(0, 1, 2);
+        assertThat(right).extracting(m -> m.getInt("i")).containsExactly(0, 1, 3);
+        assertThat(replaced).extracting(m -> m.getInt("i")).containsExactly(9, 1, 2);
+        assertThat(left).isEqualTo(List.of(base.get(0), base.get(1), left.get(2)));
+    }
+
+    @Test
+    void messagesOfAViewAreReadThroughItAndNotCopied() {
+        // Decodes a new object on every read, like the view of a mapped conversation store
+        List<JSONObject> view = new AbstractList<>() {
+            @Override
+            public JSONObject get(int index) {
+                return message(10 + index).put("role", index == 0 ? "user" : "assistant");
+            }
+
+            @Override
+            public int size() {
+                return 40;
+            }
+        };
+        OpenRouterMessageHistory history = OpenRouterMessageHistory.empty()
+                .append(new JSONObject().put("role", "system").put("content", "s"))
+                .appendView(view)
+                .append(message(99));
+
+        assertThat(history).hasSize(42);
+        assertThat(history.get(1)).isNotSameAs(history.get(1));
+        assertThat(history.get(40).getInt("i")).isEqualTo(49);
+        assertThat(history.textLength()).isEqualTo(1 + 40 * 3 + 3);
+
+        OpenRouterMessageHistory withoutSystem = history.without("system");
+        assertThat(withoutSystem).extracting(m -> m.getInt("i")).startsWith(10, 11).endsWith(49, 99).hasSize(41);
+        assertThat(withoutSystem.get(0)).isNotSameAs(withoutSystem.get(0));
+
+        OpenRouterMessageHistory replaced = history.with(0, new JSONObject().put("role", "system").put("content", "t"));
+        assertThat(replaced.get(0).getString("content")).isEqualTo("t");
+        assertThat(replaced.get(1)).isNotSameAs(replaced.get(1));
+        assertThat(OpenRouterMessageHistory.empty().append(message(0)).appendAll(history)).hasSize(43);
+    }
+
+    @Test
+    void derivedRequestsShareTheHistory() {
+        OpenRouterClient client = new OpenRouterClient();
+        OpenRouterChatCompletionRequest request = OpenRouterChatCompletionRequest.builder(client)
+                .systemInstruction("Be brief")
+                .addMessage("user", "Hello")
+                .build();
+        OpenRouterMessageHistory next = request.messages().append(message(1));
+
+        OpenRouterChatCompletionRequest derived =
+                new OpenRouterChatCompletionCallHandler(client).copyOf(request, next).build();
+
+        assertThat(derived.messages()).isSameAs(next);
+        assertThat(request.messages()).hasSize(2);
+    }
+
+    private static JSONObject message(int i) {
+        return new JSONObject().put("role", "user").put("content", "m" + i).put("i", i);
+    }
+}
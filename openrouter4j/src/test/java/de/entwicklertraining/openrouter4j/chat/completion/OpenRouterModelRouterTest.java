@@ -0,0 +1,200 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingExchange;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.OpenRouterTransport;
+import de.entwicklertraining.openrouter4j.StreamingToolCallHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterModelRouterTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+    private final FakeTransport transport = new FakeTransport();
+
+    OpenRouterModelRouterTest() {
+        client.setTransport(transport);
+    }
+
+    @Test
+    void fallbackListIsSentAsModelsArray() {
+        OpenRouterChatCompletionResponse response = OpenRouterChatCompletionRequest.builder(client)
+                .models("openai/gpt-4o", "anthropic/claude-sonnet-4")
+                .addMessage("user", "Hello")
+                .execute();
+
+        JSONObject body = transport.bodies.get(0);
+        assertThat(body.getString("model")).isEqualTo("openai/gpt-4o");
+        assertThat(body.getJSONArray("models").toList()).containsExactly("openai/gpt-4o", "anthropic/claude-sonnet-4");
+        assertThat(response.fallbackIndex()).isZero();
+        assertThat(response.usedFallback()).isFalse();
+    }
+
+    @Test
+    void fasterModelsMoveToTheFrontOnceTheyHaveEnoughSamples() {
+        OpenRouterModelRouter router = OpenRouterModelRouter.builder().minSamples(2).exploration(0).build();
+        for (int i = 0; i < 2; i++) {
+            router.recordSuccess("slow", Duration.ofMillis(900));
+            router.recordSuccess("fast", Duration.ofMillis(200));
+            router.recordSuccess("flaky", Duration.ofMillis(100));
+            router.recordFailure("flaky");
+        }
+        router.recordSuccess("new", Duration.ofMillis(10));
+
+        assertThat(router.order(List.of("slow", "new", "flaky", "fast")))
+                .containsExactly("fast", "new", "slow", "flaky");
+        assertThat(router.snapshot().get("flaky").failureRate()).isBetween(0.3, 0.7);
+    }
+
+    @Test
+    void explorationGivesModelsBehindAHealthyFirstModelSamples() {
+        OpenRouterModelRouter router = OpenRouterModelRouter.builder().minSamples(2).exploration(1.0).build();
+        List<String> models = List.of("primary", "backup", "spare");
+        for (int i = 0; i < 4; i++) {
+            router.recordSuccess("primary", Duration.ofMillis(100));
+        }
+
+        List<String> first = router.order(models);
+        assertThat(first).containsExactly("backup", "primary", "spare");
+        router.recordSuccess(first.get(0), Duration.ofMillis(300));
+        assertThat(router.order(models).get(0)).isEqualTo("spare");
+
+        OpenRouterModelRouter exploiting = OpenRouterModelRouter.builder().exploration(0).build();
+        assertThat(exploiting.order(models)).isEqualTo(models);
+    }
+
+    @Test
+    void orderingWhileStatsChangeConcurrentlyIsSafe() throws Exception {
+        OpenRouterModelRouter router = OpenRouterModelRouter.builder().minSamples(1).smoothing(1.0).exploration(0).build();
+        List<String> models = IntStream.range(0, 40).mapToObj(i -> "model-" + i).toList();
+        models.forEach(m -> router.recordSuccess(m, Duration.ofMillis(1)));
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (long n = 0; !done.get(); n++) {
+                router.recordSuccess(models.get((int) (n % models.size())), Duration.ofNanos(n * 7919 % 1_000_000));
+            }
+        });
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                assertThat(router.order(models)).hasSameSizeAs(models);
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+
+    @Test
+    void servedModelIsAttributedAndSkippedModelsCountAsFailures() {
+        transport.servedModel = "anthropic/claude-sonnet-4-20250514";
+        OpenRouterModelRouter router = OpenRouterModelRouter.builder().minSamples(1).exploration(0).build();
+
+        OpenRouterChatCompletionResponse response = OpenRouterChatCompletionRequest.builder(client)
+                .models("openai/gpt-4o", "anthropic/claude-sonnet-4", "google/gemini-2.5-flash")
+                .modelRouter(router)
+                .addMessage("user", "Hello")
+                .execute();
+
+        assertThat(response.fallbackIndex()).isEqualTo(1);
+        assertThat(response.usedFallback()).isTrue();
+        assertThat(router.snapshot().get("openai/gpt-4o").failureRate()).isEqualTo(1.0);
+        assertThat(router.snapshot().get("anthropic/claude-sonnet-4").failureRate()).isZero();
+        assertThat(router.snapshot()).doesNotContainKey("google/gemini-2.5-flash");
+
+        // The next request asks the model that answered first
+        OpenRouterChatCompletionRequest.builder(client)
+                .models("openai/gpt-4o", "anthropic/claude-sonnet-4", "google/gemini-2.5-flash")
+                .modelRouter(router)
+                .addMessage("user", "Hello again")
+                .execute();
+        assertThat(transport.bodies.get(1).getString("model")).isEqualTo("anthropic/claude-sonnet-4");
+    }
+
+    @Test
+    void streamedResponsesReportTheServedModel() {
+        transport.servedModel = "google/gemini-2.5-flash";
+        OpenRouterModelRouter router = OpenRouterModelRouter.builder().exploration(0).build();
+
+        OpenRouterChatCompletionResponse response = OpenRouterChatCompletionRequest.builder(client)
+                .models("openai/gpt-4o", "google/gemini-2.5-flash")
+                .modelRouter(router)
+                .addMessage("user", "Hello")
+                .addTool(OpenRouterToolDefinition.builder("noop")
+                        .callback(ctx -> OpenRouterToolResult.of(new JSONObject()))
+                        .build())
+                .stream(new StreamingToolCallHandler() {
+                    @Override
+                    public void onData(String data) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+                })
+                .execute();
+
+        assertThat(response.model()).isEqualTo("google/gemini-2.5-flash");
+        assertThat(response.fallbackIndex()).isEqualTo(1);
+        assertThat(router.snapshot().get("google/gemini-2.5-flash").samples()).isEqualTo(1);
+    }
+
+    // --- Helpers ---
+
+    /**
+     * Answers every request with a plain text message from {@link #servedModel}, or from the
+     * requested model if it is null.
+     */
+    private static final class FakeTransport implements OpenRouterTransport {
+        final List<JSONObject> bodies = new CopyOnWriteArrayList<>();
+        volatile String servedModel;
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            JSONObject body = new JSONObject(request.getBody());
+            bodies.add(body);
+            return request.createResponse(new JSONObject()
+                    .put("model", served(body))
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("index", 0)
+                            .put("finish_reason", "stop")
+                            .put("message", new JSONObject().put("role", "assistant").put("content", "Hi"))))
+                    .toString());
+        }
+
+        @Override
+        public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+            JSONObject body = new JSONObject(exchange.request().getBody());
+            bodies.add(body);
+            exchange.handler().onStreamStart();
+            exchange.handler().onData(new JSONObject()
+                    .put("model", served(body))
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("index", 0)
+                            .put("delta", new JSONObject().put("content", "Hi"))
+                            .put("finish_reason", "stop")))
+                    .toString());
+            exchange.handler().onComplete();
+        }
+
+        private String served(JSONObject body) {
+            return servedModel != null ? servedModel : body.getString("model");
+        }
+    }
+}
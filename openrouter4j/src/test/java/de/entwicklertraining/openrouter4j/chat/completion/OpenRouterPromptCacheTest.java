@@ -0,0 +1,117 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterCacheControl;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterPromptCacheTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+
+    @Test
+    void explicitBreakpointsAreSentOnMessagesAndTools() {
+        OpenRouterChatCompletionRequest request = OpenRouterChatCompletionRequest.builder(client)
+                .systemInstruction("You are helpful.", OpenRouterCacheControl.oneHour())
+                .addMessage("user", "A long document ...", OpenRouterCacheControl.ephemeral())
+                .addMessage("user", "Summarize it")
+                .addTool(tool("search", OpenRouterCacheControl.ephemeral()))
+                .build();
+
+        JSONObject body = new JSONObject(request.getBody());
+        JSONArray messages = body.getJSONArray("messages");
+        assertThat(cacheControl(messages.getJSONObject(0))).isEqualTo("{\"type\":\"ephemeral\",\"ttl\":\"1h\"}");
+        assertThat(cacheControl(messages.getJSONObject(1))).isEqualTo("{\"type\":\"ephemeral\"}");
+        assertThat(messages.getJSONObject(1).getJSONArray("content").getJSONObject(0).getString("text"))
+                .isEqualTo("A long document ...");
+        assertThat(messages.getJSONObject(2).get("content")).isEqualTo("Summarize it");
+        assertThat(body.getJSONArray("tools").getJSONObject(0).has("cache_control")).isTrue();
+    }
+
+    @Test
+    void automaticModeMarksSystemToolsAndLastMessage() {
+        List<JSONObject> conversation = List.of(
+                new JSONObject().put("role", "system").put("content", "You are helpful."),
+                new JSONObject().put("role", "user").put("content", "Weather in Berlin?"),
+                new JSONObject().put("role", "assistant").put("content", JSONObject.NULL)
+                        .put("tool_calls", new JSONArray()),
+                new JSONObject().put("role", "tool").put("tool_call_id", "call_1").put("content", "{\"temp\":21}"),
+                new JSONObject().put("role", "assistant").put("content", JSONObject.NULL)
+                        .put("tool_calls", new JSONArray()));
+
+        OpenRouterChatCompletionRequest request = OpenRouterChatCompletionRequest.builder(client)
+                .addAllMessages(conversation)
+                .addTool(tool("weather", null))
+                .addTool(tool("search", null))
+                .automaticCaching(OpenRouterCacheControl.ephemeral())
+                .build();
+
+        JSONObject body = new JSONObject(request.getBody());
+        JSONArray messages = body.getJSONArray("messages");
+        assertThat(cacheControl(messages.getJSONObject(0))).isNotNull();
+        assertThat(cacheControl(messages.getJSONObject(1))).isNull();
+        assertThat(cacheControl(messages.getJSONObject(3))).isNotNull();
+        assertThat(body.getJSONArray("tools").getJSONObject(0).has("cache_control")).isFalse();
+        assertThat(body.getJSONArray("tools").getJSONObject(1).has("cache_control")).isTrue();
+        // The shared message objects stay untouched
+        assertThat(conversation.get(3).get("content")).isEqualTo("{\"temp\":21}");
+    }
+
+    @Test
+    void automaticModeRespectsTheBreakpointLimit() {
+        OpenRouterChatCompletionRequest.Builder builder = OpenRouterChatCompletionRequest.builder(client)
+                .systemInstruction("System")
+                .automaticCaching(OpenRouterCacheControl.ephemeral());
+        for (int i = 0; i < 3; i++) {
+            builder.addMessage("user", "Part " + i, OpenRouterCacheControl.ephemeral());
+        }
+        builder.addMessage("user", "Question");
+
+        JSONArray messages = new JSONObject(builder.build().getBody()).getJSONArray("messages");
+
+        assertThat(cacheControl(messages.getJSONObject(0))).isNotNull();
+        assertThat(cacheControl(messages.getJSONObject(4))).isNull();
+    }
+
+    @Test
+    void cachedTokensAreReadAndSummed() {
+        OpenRouterChatCompletionRequest request = OpenRouterChatCompletionRequest.builder(client).build();
+        JSONObject usage = new JSONObject()
+                .put("prompt_tokens", 1200)
+                .put("completion_tokens", 10)
+                .put("total_tokens", 1210)
+                .put("prompt_tokens_details", new JSONObject().put("cached_tokens", 1024));
+
+        OpenRouterChatCompletionResponse combined = OpenRouterChatCompletionResponse.combine(
+                request, null, null, List.of(), List.of(OpenRouterUsage.fromJson(usage), OpenRouterUsage.fromJson(usage)));
+
+        assertThat(new OpenRouterChatCompletionResponse(new JSONObject().put("usage", usage), request).cachedTokens())
+                .isEqualTo(1024);
+        assertThat(combined.cachedTokens()).isEqualTo(2048);
+        assertThat(combined.promptTokens()).isEqualTo(2400);
+    }
+
+    // --- Helpers ---
+
+    private static OpenRouterToolDefinition tool(String name, OpenRouterCacheControl cacheControl) {
+        return OpenRouterToolDefinition.builder(name)
+                .description("Tool " + name)
+                .cacheControl(cacheControl)
+                .build();
+    }
+
+    private static String cacheControl(JSONObject message) {
+        JSONArray parts = message.optJSONArray("content");
+        if (parts == null) {
+            return null;
+        }
+        JSONObject control = parts.getJSONObject(parts.length() - 1).optJSONObject("cache_control");
+        return control != null ? control.toString() : null;
+    }
+}
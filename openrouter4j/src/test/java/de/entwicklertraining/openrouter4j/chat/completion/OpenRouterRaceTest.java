@@ -0,0 +1,131 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterJsonSchema;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.SendOnlyTransport;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterRaceTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+    private final FakeTransport transport = new FakeTransport();
+
+    OpenRouterRaceTest() {
+        client.setTransport(transport);
+    }
+
+    @Test
+    void firstValidResponseWinsAndSlowerContendersAreCancelled() {
+        OpenRouterRace race = OpenRouterRace.builder(client)
+                .addContender("refuses/instant")
+                .addContender("answers/slow")
+                .addContender("answers/fast")
+                .build();
+
+        long start = System.nanoTime();
+        OpenRouterChatCompletionResponse response = race.run(request().build());
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(response.assistantMessage()).isEqualTo("answer from answers/fast");
+        assertThat(race.stats().wins("answers/fast")).isEqualTo(1);
+        assertThat(race.stats().snapshot().get("refuses/instant").rejected()).isEqualTo(1);
+        assertThat(race.stats().snapshot().get("answers/slow").cancelled()).isEqualTo(1);
+    }
+
+    @Test
+    void hedgedPolicyOnlyStartsTheNextContenderWhenTheFirstIsSlow() {
+        OpenRouterRace race = OpenRouterRace.builder(client)
+                .addContender("answers/fast")
+                .addContender("answers/fast", "other-provider")
+                .policy(OpenRouterRacePolicy.hedged(Duration.ofSeconds(5)))
+                .build();
+
+        race.run(request().build());
+
+        assertThat(transport.models).containsExactly("answers/fast");
+        assertThat(race.stats().snapshot()).containsOnlyKeys("answers/fast");
+    }
+
+    @Test
+    void responseSchemaOfTheRequestIsEnforced() {
+        OpenRouterJsonSchema schema = OpenRouterJsonSchema.objectSchema()
+                .property("city", OpenRouterJsonSchema.stringSchema("City"), true);
+        OpenRouterRace race = OpenRouterRace.builder(client)
+                .addContender("answers/fast")
+                .addContender("json/medium")
+                .build();
+
+        OpenRouterChatCompletionResponse response = race.run(request().responseSchema(schema).build());
+
+        assertThat(response.parsed().getString("city")).isEqualTo("Berlin");
+        assertThat(race.stats().snapshot().get("answers/fast").rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void raceWithoutValidResponseFails() {
+        OpenRouterRace race = OpenRouterRace.builder(client)
+                .addContender("refuses/fast")
+                .addContender("fails/fast")
+                .build();
+
+        assertThatThrownBy(() -> race.run(request().build()))
+                .isInstanceOf(ApiClient.ApiResponseUnusableException.class)
+                .hasMessageContaining("None of the 2 contenders");
+        assertThat(race.stats().undecidedRaces()).isEqualTo(1);
+    }
+
+    // --- Helpers ---
+
+    private OpenRouterChatCompletionRequest.Builder request() {
+        return OpenRouterChatCompletionRequest.builder(client)
+                .model("ignored/model")
+                .addMessage("user", "Where is the Brandenburg Gate?");
+    }
+
+    /**
+     * Behaves according to the model name: "refuses/…" refuses, "fails/…" throws, "json/…"
+     * answers with JSON, everything else with text. "…/slow" takes 3 seconds, "…/medium" 100 ms, "…/fast" 50 ms, "…/instant" no time.
+     */
+    private static final class FakeTransport implements SendOnlyTransport {
+        final List<String> models = new CopyOnWriteArrayList<>();
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            String model = new JSONObject(request.getBody()).getString("model");
+            models.add(model);
+            try {
+                Thread.sleep(model.endsWith("/slow") ? 3000 : model.endsWith("/medium") ? 100 : model.endsWith("/fast") ? 50 : 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ApiClient.ApiClientException("cancelled");
+            }
+            if (model.startsWith("fails/")) {
+                throw new ApiClient.HTTP_500_ServerErrorException("boom");
+            }
+            JSONObject message = new JSONObject().put("role", "assistant");
+            if (model.startsWith("refuses/")) {
+                message.put("content", JSONObject.NULL).put("refusal", "No.");
+            } else if (model.startsWith("json/")) {
+                message.put("content", new JSONObject().put("city", "Berlin").toString());
+            } else {
+                message.put("content", "answer from " + model);
+            }
+            return request.createResponse(new JSONObject().put("choices", new JSONArray().put(new JSONObject()
+                    .put("index", 0)
+                    .put("finish_reason", "stop")
+                    .put("message", message))).toString());
+        }
+    }
+}
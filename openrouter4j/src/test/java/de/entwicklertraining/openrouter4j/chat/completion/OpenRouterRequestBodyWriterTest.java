@@ -0,0 +1,138 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterRequestBodyWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void plainBodyMatchesJsonObjectSerialization() {
+        JSONObject root = new JSONObject()
+                .put("model", "google/gemini-2.5-flash")
+                .put("temperature", 0.7)
+                .put("stream", true)
+                .put("messages", new JSONArray()
+                        .put(new JSONObject().put("role", "user").put("content", "Grüße \"quoted\"\n")))
+                .put("tool_choice", JSONObject.NULL);
+
+        byte[] body = OpenRouterRequestBodyWriter.write(root);
+
+        assertThat(new JSONObject(new String(body, StandardCharsets.UTF_8)).similar(root)).isTrue();
+        assertThat(OpenRouterRequestBodyWriter.containsImageData(root)).isFalse();
+    }
+
+    @Test
+    void inlineImagesAreEncodedIntoTheBody() throws IOException {
+        byte[] small = randomBytes(1000, 1);
+        byte[] large = randomBytes(OpenRouterImageData.MAPPED_READ_THRESHOLD + 7, 2);
+        Path largeFile = tempDir.resolve("large.png");
+        Files.write(largeFile, large);
+
+        OpenRouterImageData smallImage = OpenRouterImageData.of(ByteBuffer.wrap(small), "image/jpeg");
+        OpenRouterImageData largeImage = OpenRouterImageData.of(largeFile, "image/png");
+        JSONObject root = new JSONObject().put("messages", new JSONArray()
+                .put(imageMessage(smallImage))
+                .put(imageMessage(largeImage))
+                .put(imageMessage(smallImage)));
+
+        assertThat(OpenRouterRequestBodyWriter.containsImageData(root)).isTrue();
+
+        JSONArray messages = new JSONObject(new String(OpenRouterRequestBodyWriter.write(root), StandardCharsets.UTF_8))
+                .getJSONArray("messages");
+        assertThat(urlOf(messages, 0)).isEqualTo("data:image/jpeg;base64," + Base64.getEncoder().encodeToString(small));
+        assertThat(urlOf(messages, 1)).isEqualTo("data:image/png;base64," + Base64.getEncoder().encodeToString(large));
+        assertThat(urlOf(messages, 2)).isEqualTo(urlOf(messages, 0));
+    }
+
+    @Test
+    void toStringFallbackProducesTheSameDataUrl() {
+        byte[] bytes = randomBytes(301, 3);
+        OpenRouterImageData image = OpenRouterImageData.of(ByteBuffer.wrap(bytes), "image/webp");
+        JSONObject message = imageMessage(image);
+
+        JSONObject reparsed = new JSONObject(message.toString());
+
+        assertThat(urlOf(new JSONArray().put(reparsed), 0))
+                .isEqualTo("data:image/webp;base64," + Base64.getEncoder().encodeToString(bytes));
+    }
+
+    @Test
+    void requestMessagesExposeTheDataUrlAsString() {
+        byte[] bytes = randomBytes(512, 5);
+        OpenRouterImagePreprocessor preprocessor = OpenRouterImagePreprocessor.builder().build();
+        OpenRouterClient client = new OpenRouterClient();
+        OpenRouterChatCompletionRequest request = OpenRouterChatCompletionRequest.builder(client)
+                .model("google/gemini-2.5-flash")
+                .addImageByBase64(ByteBuffer.wrap(bytes), "image/jpeg")
+                .imagePreprocessor(preprocessor)
+                .build();
+
+        String expected = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(bytes);
+        JSONObject imageUrl = request.messages().get(0).getJSONArray("content").getJSONObject(0).getJSONObject("image_url");
+        assertThat(imageUrl.getString("url")).isEqualTo(expected);
+        assertThat(imageUrl.optString("url")).isEqualTo(expected);
+        assertThat(urlOf(new JSONObject(new String(request.getBodyBytes(), StandardCharsets.UTF_8))
+                .getJSONArray("messages"), 0)).isEqualTo(expected);
+
+        OpenRouterChatCompletionRequest followUp = new OpenRouterChatCompletionCallHandler(client)
+                .copyOf(request, request.messages())
+                .build();
+        assertThat(followUp.imagePreprocessor()).isSameAs(preprocessor);
+        // Images of the earlier request are processed already, the follow-up takes them over as they are
+        assertThat(followUp.messages()).isSameAs(request.messages());
+    }
+
+    @Test
+    void identicalContentIsDeduplicated() throws IOException {
+        byte[] bytes = randomBytes(4096, 4);
+        Path first = tempDir.resolve("a.jpg");
+        Path second = tempDir.resolve("b.jpg");
+        Files.write(first, bytes);
+        Files.write(second, bytes);
+
+        OpenRouterImageData fromFirst = OpenRouterImageData.of(first, "image/jpeg");
+        OpenRouterImageData fromSecond = OpenRouterImageData.of(second, "image/jpeg");
+        OpenRouterImageData fromBuffer = OpenRouterImageData.of(ByteBuffer.wrap(bytes), "image/jpeg");
+
+        assertThat(fromSecond).isSameAs(fromFirst);
+        assertThat(fromBuffer).isSameAs(fromFirst);
+        assertThat(fromFirst.size()).isEqualTo(4096);
+    }
+
+    // --- Helpers ---
+
+    private static JSONObject imageMessage(OpenRouterImageData image) {
+        return new JSONObject()
+                .put("role", "user")
+                .put("content", new JSONArray().put(new JSONObject()
+                        .put("type", "image_url")
+                        .put("image_url", OpenRouterInlineImageUrl.of(image))));
+    }
+
+    private static String urlOf(JSONArray messages, int index) {
+        return messages.getJSONObject(index).getJSONArray("content").getJSONObject(0)
+                .getJSONObject("image_url").getString("url");
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,212 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterJsonSchema;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingExchange;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingSchemaValidator;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.StreamOnlyTransport;
+import de.entwicklertraining.openrouter4j.StreamingToolCallHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterSchemaViolationTest {
+
+    private static final OpenRouterJsonSchema RECIPE = OpenRouterJsonSchema.objectSchema()
+            .property("name", OpenRouterJsonSchema.stringSchema("Name"), true)
+            .property("servings", OpenRouterJsonSchema.integerSchema("Servings"), true)
+            .property("course", OpenRouterJsonSchema.enumSchema("Course", "starter", "main", "dessert"), false)
+            .property("steps", OpenRouterJsonSchema.arraySchema(OpenRouterJsonSchema.stringSchema("Step")).maxItems(3), false)
+            .property("note", OpenRouterJsonSchema.anyOf(
+                    OpenRouterJsonSchema.stringSchema("Text"),
+                    OpenRouterJsonSchema.numberSchema("Rating")), false)
+            .additionalProperties(false);
+
+    private static final String VALID =
+            "{\"name\": \"Soup \\u00e0 la \\\"maison\\\"\", \"servings\": 4, \"course\": \"main\", "
+                    + "\"steps\": [\"chop\", \"boil\"], \"note\": 4.5}";
+
+    @Test
+    void validatorReportsTheFirstDefinitiveViolation() {
+        assertThat(validateCharByChar(VALID)).isNull();
+        assertThat(validateCharByChar("  " + VALID + " \n")).isNull();
+        assertThat(RECIPE.matches(new JSONObject(VALID))).isTrue();
+
+        assertThat(validateCharByChar("Here is the recipe: {")).startsWith("$: text before the JSON value (at character 1)");
+        assertThat(validateCharByChar("{\"name\": \"Soup\", \"servings\": \"4")).startsWith("$.servings: expected integer but got string");
+        assertThat(validateCharByChar("{\"servings\": 2.5,")).startsWith("$.servings: expected integer but got 2.5");
+        assertThat(validateCharByChar("{\"course\": \"mains")).startsWith("$.course: \"mains\" is not one of");
+        assertThat(validateCharByChar("{\"cal")).startsWith("$: property \"ca\" is not allowed");
+        assertThat(validateCharByChar("{\"steps\": [\"a\", \"b\", \"c\", \"d\"")).startsWith("$.steps: more than 3 items");
+        assertThat(validateCharByChar("{\"note\": true")).startsWith("$.note: expected string or number but got boolean");
+        assertThat(validateCharByChar("{\"name\": \"Soup\"}")).startsWith("$: missing required property \"servings\"");
+        assertThat(validateCharByChar(VALID + " Enjoy!")).startsWith("$: text after the JSON value");
+
+        // Incomplete, but no continuation is ruled out yet
+        assertThat(validateCharByChar("{\"name\": \"Soup\", \"servings\": 4, \"course\": \"ma")).isNull();
+        assertThat(RECIPE.toJson().getJSONObject("properties").getJSONObject("steps").getInt("maxItems")).isEqualTo(3);
+    }
+
+    @Test
+    void offSchemaStreamIsAbortedAndRetriedWithACorrection() {
+        OpenRouterClient client = new OpenRouterClient();
+        ChunkedTransport transport = new ChunkedTransport(List.of(
+                List.of("{\"name\": \"Soup\", ", "\"servings\": \"four", "\", \"course\": ", "\"main\"}"),
+                List.of("{\"name\": \"Soup\", ", "\"servings\": 4}")));
+        client.setTransport(transport);
+        RecordingHandler handler = new RecordingHandler();
+
+        OpenRouterChatCompletionResponse response = OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "A soup recipe")
+                .responseSchema(RECIPE)
+                .abortOnSchemaViolation(1)
+                .stream(handler)
+                .execute();
+
+        assertThat(transport.chunksSent).containsExactly(2, 2);
+        assertThat(handler.violations).containsExactly("$.servings: expected integer but got string (at character 30) / 1");
+        assertThat(handler.data).containsExactly("{\"name\": \"Soup\", ", "{\"name\": \"Soup\", ", "\"servings\": 4}");
+        assertThat(response.parsed().getInt("servings")).isEqualTo(4);
+
+        JSONArray retried = transport.bodies.get(1).getJSONArray("messages");
+        assertThat(retried.length()).isEqualTo(3);
+        assertThat(retried.getJSONObject(1).getString("content")).isEqualTo("{\"name\": \"Soup\", ");
+        assertThat(retried.getJSONObject(2).getString("content")).contains("$.servings: expected integer");
+    }
+
+    @Test
+    void exhaustedRetriesFailTheCall() {
+        OpenRouterClient client = new OpenRouterClient();
+        ChunkedTransport transport = new ChunkedTransport(List.of(
+                List.of("Sure! ", "{\"name\": \"Soup\", \"servings\": 4}")));
+        client.setTransport(transport);
+        RecordingHandler handler = new RecordingHandler();
+
+        assertThatThrownBy(() -> OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "A soup recipe")
+                .responseSchema(RECIPE)
+                .abortOnSchemaViolation(0)
+                .stream(handler)
+                .execute())
+                .isInstanceOf(CompletionException.class)
+                .cause()
+                .isInstanceOf(ApiClient.ApiResponseUnusableException.class)
+                .hasMessageContaining("text before the JSON value");
+        assertThat(transport.chunksSent).containsExactly(1);
+        assertThat(handler.violations).hasSize(1).allMatch(violation -> violation.endsWith(" / 0"));
+        assertThat(handler.data).isEmpty();
+    }
+
+    @Test
+    void toolCallTurnsWithAPreambleAreNotValidated() {
+        OpenRouterClient client = new OpenRouterClient();
+        JSONObject toolCall = new JSONObject().put("tool_calls", new JSONArray().put(new JSONObject()
+                .put("index", 0)
+                .put("id", "call_1")
+                .put("type", "function")
+                .put("function", new JSONObject().put("name", "lookup").put("arguments", "{}"))));
+        ChunkedTransport transport = new ChunkedTransport(List.of(
+                List.of("Let me look that up. ", toolCall),
+                List.of("Here it is: ", "{\"name\": \"Soup\", \"servings\": 4}"),
+                List.of("{\"name\": \"Soup\", \"servings\": 4}")));
+        client.setTransport(transport);
+        RecordingHandler handler = new RecordingHandler();
+
+        OpenRouterChatCompletionResponse response = OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "A soup recipe")
+                .addTool(OpenRouterToolDefinition.builder("lookup")
+                        .description("Looks up a recipe")
+                        .callback(context -> OpenRouterToolResult.of(new JSONObject().put("found", true)))
+                        .build())
+                .responseSchema(RECIPE)
+                .abortOnSchemaViolation(1)
+                .stream(handler)
+                .execute();
+
+        // The preamble of the tool call passes, prose before the final answer is only rejected at its end
+        assertThat(transport.chunksSent).containsExactly(2, 2, 1);
+        assertThat(handler.violations).containsExactly("$: text before the JSON value (at character 1) / 1");
+        assertThat(response.parsed().getInt("servings")).isEqualTo(4);
+        JSONArray retried = transport.bodies.get(2).getJSONArray("messages");
+        assertThat(retried.getJSONObject(1).getJSONArray("tool_calls").getJSONObject(0).getString("id")).isEqualTo("call_1");
+        assertThat(retried.getJSONObject(2).getString("role")).isEqualTo("tool");
+    }
+
+    private static String validateCharByChar(String json) {
+        OpenRouterStreamingSchemaValidator validator = new OpenRouterStreamingSchemaValidator(RECIPE);
+        for (int i = 0; i < json.length(); i++) {
+            if (validator.accept(json.substring(i, i + 1)) != null) {
+                return validator.violation();
+            }
+        }
+        assertThat(validator.isComplete()).isEqualTo(json.trim().endsWith("}"));
+        return null;
+    }
+
+    /**
+     * Streams the n-th list of deltas on the n-th request (the last one after that) and stops as
+     * soon as the handler asks to cancel. Strings are content deltas, objects whole deltas such as
+     * tool calls, which make the turn end with {@code tool_calls}.
+     */
+    private static final class ChunkedTransport implements StreamOnlyTransport {
+        final List<JSONObject> bodies = new CopyOnWriteArrayList<>();
+        final List<Integer> chunksSent = new CopyOnWriteArrayList<>();
+        private final List<List<?>> attempts;
+
+        ChunkedTransport(List<List<?>> attempts) {
+            this.attempts = attempts;
+        }
+
+        @Override
+        public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+            bodies.add(new JSONObject(exchange.request().getBody()));
+            List<?> deltas = attempts.get(Math.min(bodies.size(), attempts.size()) - 1);
+            String finishReason = deltas.stream().anyMatch(JSONObject.class::isInstance) ? "tool_calls" : "stop";
+            exchange.handler().onStreamStart();
+            int sent = 0;
+            for (int i = 0; i < deltas.size() && !exchange.handler().shouldCancel(); i++) {
+                Object delta = deltas.get(i);
+                exchange.handler().onData(new JSONObject().put("choices", new JSONArray().put(new JSONObject()
+                        .put("index", 0)
+                        .put("delta", delta instanceof JSONObject json ? json : new JSONObject().put("content", delta))
+                        .put("finish_reason", i == deltas.size() - 1 ? finishReason : JSONObject.NULL))).toString());
+                sent++;
+            }
+            chunksSent.add(sent);
+            exchange.handler().onComplete();
+        }
+    }
+
+    private static final class RecordingHandler implements StreamingToolCallHandler {
+        final List<String> data = new CopyOnWriteArrayList<>();
+        final List<String> violations = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onData(String chunk) {
+            data.add(chunk);
+        }
+
+        @Override
+        public void onSchemaViolation(String violation, int retriesLeft) {
+            violations.add(violation + " / " + retriesLeft);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+    }
+}
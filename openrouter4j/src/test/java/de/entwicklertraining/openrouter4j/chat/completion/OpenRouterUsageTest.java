@@ -0,0 +1,164 @@
+package de.entwicklertraining.openrouter4j.chat.completion;
+
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingExchange;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.OpenRouterTransport;
+import de.entwicklertraining.openrouter4j.StreamingToolCallHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterUsageTest {
+
+    private final OpenRouterClient client = new OpenRouterClient();
+    private final FakeTransport transport = new FakeTransport();
+
+    OpenRouterUsageTest() {
+        client.setTransport(transport);
+    }
+
+    @Test
+    void toolLoopUsageIsSummedOverAllTurns() {
+        OpenRouterChatCompletionResponse response = request().execute();
+
+        assertThat(transport.bodies).hasSize(2);
+        assertThat(response.turnUsage()).containsExactly(
+                new OpenRouterUsage(100, 20, 120, 5, 0, 0.001),
+                new OpenRouterUsage(150, 30, 180, 5, 100, 0.001));
+        assertThat(response.promptTokens()).isEqualTo(250);
+        assertThat(response.totalTokens()).isEqualTo(300);
+        assertThat(response.reasoningTokens()).isEqualTo(10);
+        assertThat(response.cachedTokens()).isEqualTo(100);
+        assertThat(response.cost()).isEqualTo(0.002);
+        assertThat(response.assistantMessage()).isEqualTo("done");
+    }
+
+    @Test
+    void streamedToolLoopRequestsAndAggregatesTheUsageChunk() {
+        OpenRouterChatCompletionResponse response = request()
+                .stream(new StreamingToolCallHandler() {
+                    @Override
+                    public void onData(String data) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+                })
+                .execute();
+
+        assertThat(transport.bodies).allSatisfy(body ->
+                assertThat(body.getJSONObject("stream_options").getBoolean("include_usage")).isTrue());
+        assertThat(response.turnUsage()).hasSize(2);
+        assertThat(response.usageSummary().totalTokens()).isEqualTo(300);
+        assertThat(response.cost()).isEqualTo(0.002);
+    }
+
+    @Test
+    void singleRequestReportsItsOwnUsage() {
+        OpenRouterChatCompletionResponse response = OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "Hello")
+                .usageAccounting(true)
+                .execute();
+
+        assertThat(transport.bodies.get(0).getJSONObject("usage").getBoolean("include")).isTrue();
+        assertThat(response.turnUsage()).containsExactly(new OpenRouterUsage(150, 30, 180, 5, 100, 0.001));
+        assertThat(response.usage().getInt("total_tokens")).isEqualTo(180);
+    }
+
+    // --- Helpers ---
+
+    private OpenRouterChatCompletionRequest.Builder request() {
+        return OpenRouterChatCompletionRequest.builder(client)
+                .addMessage("user", "Look it up")
+                .addTool(OpenRouterToolDefinition.builder("lookup")
+                        .description("Looks something up")
+                        .callback(ctx -> OpenRouterToolResult.of(new JSONObject().put("ok", true)))
+                        .build());
+    }
+
+    /**
+     * Answers with a tool call while the last message is not a tool result, then with "done".
+     * The second turn reports cached tokens.
+     */
+    private static final class FakeTransport implements OpenRouterTransport {
+        final List<JSONObject> bodies = new CopyOnWriteArrayList<>();
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            JSONObject body = new JSONObject(request.getBody());
+            bodies.add(body);
+            JSONObject message = new JSONObject().put("role", "assistant");
+            if (wantsToolCall(body)) {
+                message.put("content", JSONObject.NULL).put("tool_calls", new JSONArray().put(toolCall()));
+            } else {
+                message.put("content", "done");
+            }
+            return request.createResponse(new JSONObject()
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("index", 0)
+                            .put("finish_reason", wantsToolCall(body) ? "tool_calls" : "stop")
+                            .put("message", message)))
+                    .put("usage", usage(body))
+                    .toString());
+        }
+
+        @Override
+        public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+            JSONObject body = new JSONObject(exchange.request().getBody());
+            bodies.add(body);
+            JSONObject delta = wantsToolCall(body)
+                    ? new JSONObject().put("tool_calls", new JSONArray().put(toolCall().put("index", 0)))
+                    : new JSONObject().put("content", "done");
+            exchange.handler().onStreamStart();
+            exchange.handler().onData(new JSONObject().put("choices", new JSONArray().put(new JSONObject()
+                    .put("index", 0)
+                    .put("delta", delta)
+                    .put("finish_reason", wantsToolCall(body) ? "tool_calls" : "stop"))).toString());
+            exchange.handler().onData(new JSONObject()
+                    .put("choices", new JSONArray())
+                    .put("usage", usage(body))
+                    .toString());
+            exchange.handler().onComplete();
+        }
+
+        private static JSONObject toolCall() {
+            return new JSONObject()
+                    .put("id", "call_1")
+                    .put("type", "function")
+                    .put("function", new JSONObject().put("name", "lookup").put("arguments", "{}"));
+        }
+
+        private static JSONObject usage(JSONObject body) {
+            boolean first = wantsToolCall(body);
+            JSONObject usage = new JSONObject()
+                    .put("prompt_tokens", first ? 100 : 150)
+                    .put("completion_tokens", first ? 20 : 30)
+                    .put("total_tokens", first ? 120 : 180)
+                    .put("completion_tokens_details", new JSONObject().put("reasoning_tokens", 5))
+                    .put("cost", 0.001);
+            if (!first) {
+                usage.put("prompt_tokens_details", new JSONObject().put("cached_tokens", 100));
+            }
+            return usage;
+        }
+
+        private static boolean wantsToolCall(JSONObject body) {
+            JSONArray messages = body.getJSONArray("messages");
+            return body.has("tools") && !"tool".equals(messages.getJSONObject(messages.length() - 1).optString("role"));
+        }
+    }
+}
@@ -106,9 +106,14 @@ class StreamingToolCallAccumulatorTest {
         accumulator.onData(finishChunk("tool_calls"));
         assertThat(accumulator.hasToolCalls()).isTrue();
 
+        accumulator.cancelWhen(() -> true);
+        assertThat(accumulator.shouldCancel()).isTrue();
+
         accumulator.reset();
         assertThat(accumulator.hasToolCalls()).isFalse();
         assertThat(accumulator.getFinishReason()).isNull();
+        assertThat(accumulator.shouldCancel()).isFalse();
+        assertThat(accumulator.getSchemaViolation()).isNull();
     }
 
     @Test
@@ -130,6 +135,37 @@ class StreamingToolCallAccumulatorTest {
         assertThat(accumulator.getFinishReason()).isNull();
     }
 
+    @Test
+    void escapedAndNonAsciiContentIsDecoded() {
+        accumulator.onData(contentChunk("Grüße \"aus\" Köln\n\t\u00e9 😀"));
+
+        assertThat(receivedContent).containsExactly("Grüße \"aus\" Köln\n\t\u00e9 😀");
+    }
+
+    @Test
+    void fieldOrderDoesNotMatter() {
+        accumulator.onData("{\"choices\":[{\"delta\":{\"tool_calls\":[{\"function\":{\"arguments\":\"{}\","
+                + "\"name\":\"fn\"},\"id\":\"call_1\",\"index\":0}]},\"finish_reason\":\"tool_calls\",\"index\":0}],"
+                + "\"usage\":null,\"extra\":[1,{\"x\":\"]}\"}]}");
+
+        assertThat(accumulator.hasToolCalls()).isTrue();
+        JSONObject tc = accumulator.getAccumulatedToolCalls().getJSONObject(0);
+        assertThat(tc.getString("id")).isEqualTo("call_1");
+        assertThat(tc.getJSONObject("function").getString("name")).isEqualTo("fn");
+    }
+
+    @Test
+    void byteSlicesAreParsedInPlace() {
+        byte[] chunk = contentChunk("sliced").getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        byte[] buffer = new byte[chunk.length + 20];
+        java.util.Arrays.fill(buffer, (byte) '}');
+        System.arraycopy(chunk, 0, buffer, 10, chunk.length);
+
+        accumulator.onChunk(buffer, 10, chunk.length);
+
+        assertThat(receivedContent).containsExactly("sliced");
+    }
+
     // --- Helpers ---
 
     private String contentChunk(String text) {
@@ -0,0 +1,181 @@
+package de.entwicklertraining.openrouter4j.conversation;
+
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.OpenRouterToolResult;
+import de.entwicklertraining.openrouter4j.SendOnlyTransport;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterMappedConversationStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void onlyCommittedTurnsSurviveAReopen() throws IOException {
+        try (OpenRouterMappedConversationStore store = OpenRouterMappedConversationStore.open(tempDir)) {
+            store.append("s1", message("user", "Hello"));
+            store.append("s1", message("assistant", "Hi"));
+            store.commit("s1");
+            store.append("s1", message("user", "Interrupted"));
+            assertThat(store.size("s1")).isEqualTo(2);
+        }
+        // A record torn by a crash
+        Path log = Files.list(tempDir).findFirst().orElseThrow();
+        Files.write(log, new byte[]{0, 0, 1, 0, 1, 7}, StandardOpenOption.APPEND);
+
+        try (OpenRouterMappedConversationStore store = OpenRouterMappedConversationStore.open(tempDir)) {
+            List<JSONObject> messages = store.messages("s1");
+            assertThat(messages).hasSize(2);
+            assertThat(messages.get(0).getString("content")).isEqualTo("Hello");
+            assertThat(messages.get(1).getString("content")).isEqualTo("Hi");
+
+            store.append("s1", message("user", "Next"));
+            store.commit("s1");
+            assertThat(store.messages("s1")).extracting(m -> m.getString("content"))
+                    .containsExactly("Hello", "Hi", "Next");
+            // Earlier snapshots keep their size
+            assertThat(messages).hasSize(2);
+        }
+    }
+
+    @Test
+    void sessionsAreListedAndDeleted() {
+        try (OpenRouterMappedConversationStore store = OpenRouterMappedConversationStore.open(tempDir)) {
+            store.append("user/42 ä", message("user", "a"));
+            store.commit("user/42 ä");
+            store.append("other", message("user", "b"));
+            store.commit("other");
+
+            assertThat(store.sessions()).containsExactly("other", "user/42 ä");
+            store.delete("other");
+            assertThat(store.sessions()).containsExactly("user/42 ä");
+            assertThat(store.messages("other")).isEmpty();
+            assertThat(store.messages("missing")).isEmpty();
+        }
+    }
+
+    @Test
+    void longSessionIdsGetAHashedFileName() throws IOException {
+        String longId = "tenant-ü/".repeat(40);
+        try (OpenRouterMappedConversationStore store = OpenRouterMappedConversationStore.open(tempDir)) {
+            store.append(longId, message("user", "a"));
+            store.commit(longId);
+        }
+
+        assertThat(Files.list(tempDir)).singleElement()
+                .satisfies(file -> assertThat(file.getFileName().toString()).startsWith("sha256-").hasSize(7 + 64 + 4));
+        try (OpenRouterMappedConversationStore store = OpenRouterMappedConversationStore.open(tempDir)) {
+            assertThat(store.sessions()).containsExactly(longId);
+            assertThat(store.messages(longId)).extracting(m -> m.getString("content")).containsExactly("a");
+        }
+    }
+
+    @Test
+    void toolLoopResumesFromTheLastCompletedTurn() {
+        OpenRouterClient client = new OpenRouterClient();
+        FailingSecondTurnTransport transport = new FailingSecondTurnTransport();
+        client.setTransport(transport);
+        OpenRouterToolDefinition lookup = OpenRouterToolDefinition.builder("lookup")
+                .description("Looks something up")
+                .callback(ctx -> OpenRouterToolResult.of(new JSONObject().put("found", true)))
+                .build();
+
+        try (OpenRouterMappedConversationStore store = OpenRouterMappedConversationStore.open(tempDir)) {
+            assertThatThrownBy(() -> OpenRouterChatCompletionRequest.builder(client)
+                    .systemInstruction("Be brief")
+                    .conversation(store, "agent-1")
+                    .addMessage("user", "Find it")
+                    .addTool(lookup)
+                    .execute())
+                    .isInstanceOf(IllegalStateException.class);
+            assertThat(store.messages("agent-1")).extracting(m -> m.getString("role"))
+                    .containsExactly("user", "assistant", "tool");
+        }
+
+        try (OpenRouterMappedConversationStore store = OpenRouterMappedConversationStore.open(tempDir)) {
+            // The system instruction is not part of the persisted conversation, wherever it is set
+            OpenRouterChatCompletionResponse response = OpenRouterChatCompletionRequest.builder(client)
+                    .conversation(store, "agent-1")
+                    .systemInstruction("Be brief")
+                    .addTool(lookup)
+                    .execute();
+
+            assertThat(response.assistantMessage()).isEqualTo("done");
+            assertThat(transport.bodies.get(transport.bodies.size() - 1).getJSONArray("messages").length()).isEqualTo(4);
+            assertThat(store.messages("agent-1")).extracting(m -> m.getString("role"))
+                    .containsExactly("user", "assistant", "tool", "assistant");
+        }
+    }
+
+    @Test
+    void candidatesCannotBePersisted() {
+        try (OpenRouterMappedConversationStore store = OpenRouterMappedConversationStore.open(tempDir)) {
+            assertThatThrownBy(() -> OpenRouterChatCompletionRequest.builder(new OpenRouterClient())
+                    .conversation(store, "s")
+                    .addMessage("user", "Hello")
+                    .n(3)
+                    .build())
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    // --- Helpers ---
+
+    private static JSONObject message(String role, String content) {
+        return new JSONObject().put("role", role).put("content", content);
+    }
+
+    /**
+     * Calls the tool on the first turn and fails the first follow-up request, like a crash in the
+     * middle of the loop. Requests that end with a tool result are answered afterwards.
+     */
+    private static final class FailingSecondTurnTransport implements SendOnlyTransport {
+        final List<JSONObject> bodies = new CopyOnWriteArrayList<>();
+        private boolean failed;
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            JSONObject body = new JSONObject(request.getBody());
+            bodies.add(body);
+            JSONArray messages = body.getJSONArray("messages");
+            boolean afterTool = "tool".equals(messages.getJSONObject(messages.length() - 1).getString("role"));
+            if (afterTool && !failed) {
+                failed = true;
+                throw new IllegalStateException("Process killed");
+            }
+            JSONObject message = new JSONObject().put("role", "assistant");
+            if (afterTool) {
+                message.put("content", "done");
+            } else {
+                message.put("content", JSONObject.NULL).put("tool_calls", new JSONArray().put(new JSONObject()
+                        .put("id", "call_1")
+                        .put("type", "function")
+                        .put("function", new JSONObject().put("name", "lookup").put("arguments", "{}"))));
+            }
+            return request.createResponse(new JSONObject()
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("index", 0)
+                            .put("finish_reason", afterTool ? "stop" : "tool_calls")
+                            .put("message", message)))
+                    .toString());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package de.entwicklertraining.openrouter4j.embeddings;
+
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.SendOnlyTransport;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterEmbeddingsTest {
+
+    private static final List<String> INPUTS = List.of("a", "bb", "ccc", "dddd", "eeeee");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void inputsAreSentInBatchesAndReassembledInOrder() {
+        OpenRouterClient client = new OpenRouterClient();
+        EmbeddingsTransport transport = new EmbeddingsTransport(false);
+        client.setTransport(transport);
+
+        OpenRouterEmbeddingsResponse response = client.embeddings()
+                .model("openai/text-embedding-3-small")
+                .addInputs(INPUTS)
+                .maxBatchInputs(2)
+                .parallelism(2)
+                .execute();
+
+        assertThat(transport.batchSizes).containsExactlyInAnyOrder(2, 2, 1);
+        assertThat(transport.maxInFlight.get()).isLessThanOrEqualTo(2);
+        OpenRouterEmbeddings embeddings = response.embeddings();
+        assertThat(embeddings.count()).isEqualTo(5);
+        assertThat(embeddings.dimensions()).isEqualTo(2);
+        for (int i = 0; i < INPUTS.size(); i++) {
+            assertThat(embeddings.vector(i)).containsExactly(INPUTS.get(i).length(), INPUTS.get(i).charAt(0));
+        }
+        assertThat(response.promptTokens()).isEqualTo(15);
+        assertThat(response.cacheHits()).isZero();
+    }
+
+    @Test
+    void batchesAreBoundedByTokens() {
+        List<String> inputs = List.of("one two three", "four five six", "seven", "eight nine ten eleven");
+        int[] all = {0, 1, 2, 3};
+
+        List<int[]> batches = OpenRouterEmbeddingsCallHandler.split(inputs, all, 100, 6);
+
+        assertThat(batches).hasSizeGreaterThan(1);
+        assertThat(batches.stream().mapToInt(batch -> batch.length).sum()).isEqualTo(4);
+        assertThat(OpenRouterEmbeddingsCallHandler.split(inputs, all, 100, 1)).hasSize(4);
+        assertThat(OpenRouterEmbeddingsCallHandler.split(inputs, all, 100, 1000)).hasSize(1);
+    }
+
+    @Test
+    void cachedInputsAreNotSentAgain() {
+        OpenRouterClient client = new OpenRouterClient();
+        EmbeddingsTransport transport = new EmbeddingsTransport(true);
+        client.setTransport(transport);
+        OpenRouterEmbeddingCache cache = new OpenRouterFileEmbeddingCache(tempDir);
+
+        client.embeddings().model("openai/text-embedding-3-small").addInputs(INPUTS.subList(0, 3))
+                .base64Encoding(true).cache(cache).execute();
+        OpenRouterEmbeddingsResponse second = client.embeddings().model("openai/text-embedding-3-small")
+                .addInputs(INPUTS).base64Encoding(true).cache(cache).execute();
+
+        assertThat(transport.batchSizes).containsExactly(3, 2);
+        assertThat(second.cacheHits()).isEqualTo(3);
+        assertThat(second.embeddings().vector(1)).containsExactly(2, 'b');
+        assertThat(second.embeddings().vector(4)).containsExactly(5, 'e');
+
+        OpenRouterEmbeddingCache memory = OpenRouterEmbeddingCache.inMemory(1);
+        memory.put("m", "h1", new float[]{1});
+        memory.put("m", "h2", new float[]{2});
+        assertThat(memory.get("m", "h1")).isNull();
+        assertThat(memory.get("m", "h2")).containsExactly(2);
+    }
+
+    @Test
+    void failingCacheWritesAndOversizedResultsAreHandled() {
+        OpenRouterClient client = new OpenRouterClient();
+        client.setTransport(new EmbeddingsTransport(false));
+        OpenRouterEmbeddingCache readOnly = new OpenRouterEmbeddingCache() {
+            @Override
+            public float[] get(String model, String contentHash) {
+                return null;
+            }
+
+            @Override
+            public void put(String model, String contentHash, float[] embedding) {
+                throw new UncheckedIOException(new IOException("read-only file system"));
+            }
+        };
+
+        OpenRouterEmbeddingsResponse response = client.embeddings().model("openai/text-embedding-3-small")
+                .addInputs(INPUTS).cache(readOnly).execute();
+
+        assertThat(response.embeddings().count()).isEqualTo(5);
+        assertThat(response.embeddings().vector(2)).containsExactly(3, 'c');
+
+        // 70,000 references to one vector, more values than fit into one array
+        float[][] vectors = new float[70_000][];
+        Arrays.fill(vectors, new float[40_000]);
+        assertThatThrownBy(() -> OpenRouterEmbeddings.of(vectors))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("70000 embeddings");
+    }
+
+    private static final class EmbeddingsTransport implements SendOnlyTransport {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        private final boolean base64;
+
+        EmbeddingsTransport(boolean base64) {
+            this.base64 = base64;
+        }
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                JSONObject body = new JSONObject(request.getBody());
+                assertThat(body.has("encoding_format")).isEqualTo(base64);
+                JSONArray input = body.getJSONArray("input");
+                batchSizes.add(input.length());
+                JSONArray data = new JSONArray();
+                int tokens = 0;
+                // Reversed, as the order of the entries is given by their index
+                for (int i = input.length() - 1; i >= 0; i--) {
+                    String text = input.getString(i);
+                    tokens += text.length();
+                    float[] vector = {text.length(), text.charAt(0)};
+                    data.put(new JSONObject().put("index", i).put("embedding", base64 ? encode(vector) : new JSONArray(vector)));
+                }
+                return request.createResponse(new JSONObject()
+                        .put("model", body.getString("model"))
+                        .put("data", data)
+                        .put("usage", new JSONObject().put("prompt_tokens", tokens))
+                        .toString());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private static String encode(float[] vector) {
+            ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asFloatBuffer().put(vector);
+            return Base64.getEncoder().encodeToString(bytes.array());
+        }
+    }
+}
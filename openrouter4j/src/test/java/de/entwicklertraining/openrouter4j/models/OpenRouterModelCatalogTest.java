@@ -0,0 +1,130 @@
+package de.entwicklertraining.openrouter4j.models;
+
+import de.entwicklertraining.api.base.ApiClientSettings;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterConnectionSettings;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterToolDefinition;
+import de.entwicklertraining.openrouter4j.SendOnlyTransport;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class OpenRouterModelCatalogTest {
+
+    private static final JSONObject MODELS = new JSONObject().put("data", new JSONArray()
+            .put(new JSONObject()
+                    .put("id", "openai/gpt-4o")
+                    .put("name", "OpenAI: GPT-4o")
+                    .put("context_length", 128000)
+                    .put("pricing", new JSONObject().put("prompt", "0.0000025").put("completion", "0.00001"))
+                    .put("top_provider", new JSONObject().put("max_completion_tokens", 16384))
+                    .put("supported_parameters", new JSONArray()
+                            .put("tools").put("tool_choice").put("max_tokens").put("temperature")))
+            .put(new JSONObject()
+                    .put("id", "tiny/model")
+                    .put("context_length", 1000)
+                    .put("pricing", new JSONObject().put("prompt", "-1").put("completion", "-1"))
+                    .put("supported_parameters", new JSONArray().put("max_tokens"))));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void catalogIsFetchedOnceAndLoadedFromTheCacheFile() throws Exception {
+        Path file = tempDir.resolve("models.json");
+        OpenRouterClient first = client(file);
+        ModelsTransport transport = new ModelsTransport();
+        first.setTransport(transport);
+        first.models().refresh();
+
+        OpenRouterModelInfo gpt = first.models().get("openai/gpt-4o:online");
+        assertThat(gpt.contextLength()).isEqualTo(128000);
+        assertThat(gpt.maxCompletionTokens()).isEqualTo(16384);
+        assertThat(gpt.cost(1000, 100)).isCloseTo(0.0035, offset(1e-12));
+        assertThat(first.models().get("tiny/model").promptPrice()).isNull();
+        assertThat(Files.exists(file)).isTrue();
+
+        OpenRouterClient second = client(file);
+        ModelsTransport unused = new ModelsTransport();
+        second.setTransport(unused);
+        assertThat(second.models().isLoaded()).isTrue();
+        assertThat(second.models().list()).extracting(OpenRouterModelInfo::id)
+                .containsExactly("openai/gpt-4o", "tiny/model");
+        assertThat(unused.requests.get()).isZero();
+    }
+
+    @Test
+    void loadedCatalogRejectsRequestsTheModelCannotServe() {
+        OpenRouterClient client = new OpenRouterClient();
+        client.setTransport(new ModelsTransport());
+        client.models().list();
+        OpenRouterToolDefinition tool = OpenRouterToolDefinition.builder("lookup").description("Looks up").build();
+
+        OpenRouterChatCompletionRequest.builder(client).model("openai/gpt-4o").addTool(tool).maxOutputTokens(1000)
+                .addMessage("user", "Hello").build();
+        assertThatThrownBy(() -> OpenRouterChatCompletionRequest.builder(client).model("openai/gtp-4o")
+                .addMessage("user", "Hello").build())
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unknown model");
+        assertThatThrownBy(() -> OpenRouterChatCompletionRequest.builder(client).model("tiny/model").addTool(tool)
+                .addMessage("user", "Hello").build())
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("tools");
+        // Fallback models are checked as well, they may end up serving the request
+        assertThatThrownBy(() -> OpenRouterChatCompletionRequest.builder(client).models("openai/gpt-4o", "tiny/model")
+                .addTool(tool).addMessage("user", "Hello").build())
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("tiny/model");
+        // Sampling parameters the model does not support are only logged
+        OpenRouterChatCompletionRequest.builder(client).model("tiny/model").temperature(0.2)
+                .addMessage("user", "Hello").build();
+        assertThatThrownBy(() -> OpenRouterChatCompletionRequest.builder(client).model("openai/gpt-4o")
+                .maxOutputTokens(20000).addMessage("user", "Hello").build())
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("max_tokens");
+        assertThatThrownBy(() -> OpenRouterChatCompletionRequest.builder(client).model("tiny/model")
+                .addMessage("user", "x".repeat(10_000)).build())
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("context length");
+    }
+
+    @Test
+    void catalogThatIsNotLoadedAcceptsEverythingWithoutFetching() {
+        OpenRouterClient client = new OpenRouterClient();
+        ModelsTransport transport = new ModelsTransport();
+        client.setTransport(transport);
+
+        OpenRouterChatCompletionRequest.builder(client).model("any/model").addMessage("user", "Hello").build();
+
+        assertThat(client.models().isLoaded()).isFalse();
+        assertThat(transport.requests.get()).isZero();
+    }
+
+    private static OpenRouterClient client(Path catalogFile) {
+        return new OpenRouterClient(
+                ApiClientSettings.builder().build(),
+                null,
+                "http://localhost:1",
+                OpenRouterConnectionSettings.builder().modelCatalog(catalogFile, Duration.ofHours(1)).build()
+        );
+    }
+
+    private static final class ModelsTransport implements SendOnlyTransport {
+        final AtomicInteger requests = new AtomicInteger();
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            requests.incrementAndGet();
+            assertThat(request).isInstanceOf(OpenRouterModelsRequest.class);
+            return request.createResponse(MODELS.toString());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package de.entwicklertraining.openrouter4j.recording;
+
+import de.entwicklertraining.api.base.ApiClient;
+import de.entwicklertraining.api.base.streaming.StreamingResponseHandler;
+import de.entwicklertraining.openrouter4j.OpenRouterClient;
+import de.entwicklertraining.openrouter4j.OpenRouterRequest;
+import de.entwicklertraining.openrouter4j.OpenRouterResponse;
+import de.entwicklertraining.openrouter4j.OpenRouterStreamingExchange;
+import de.entwicklertraining.openrouter4j.OpenRouterTransport;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionRequest;
+import de.entwicklertraining.openrouter4j.chat.completion.OpenRouterChatCompletionResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenRouterRecordingReplayTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final OpenRouterClient client = new OpenRouterClient();
+
+    @Test
+    void recordedResponsesAreReplayedWithoutTheOriginalTransport() {
+        try (OpenRouterRecordingStore store = OpenRouterRecordingStore.open(tempDir)) {
+            client.setTransport(new OpenRouterRecordingTransport(new FakeTransport(), store));
+            client.dispatch(request("Hello"), false);
+            client.dispatchStreaming(streamingExchange("Stream please", new ArrayList<>()), false);
+        }
+
+        try (OpenRouterRecordingStore store = OpenRouterRecordingStore.open(tempDir)) {
+            assertThat(store.size()).isEqualTo(2);
+            client.setTransport(new OpenRouterReplayTransport(store, OpenRouterReplayTransport.Pacing.FAST));
+
+            OpenRouterChatCompletionResponse response = client.dispatch(request("Hello"), false);
+            assertThat(response.assistantMessage()).isEqualTo("echo: Hello");
+
+            List<String> chunks = new ArrayList<>();
+            client.dispatchStreaming(streamingExchange("Stream please", chunks), false);
+            assertThat(chunks).containsExactly(chunk("Str"), chunk("eam"));
+
+            assertThatThrownBy(() -> client.dispatch(request("Never recorded"), false))
+                    .isInstanceOf(ApiClient.ApiClientException.class);
+        }
+    }
+
+    @Test
+    void keyIgnoresObjectKeyOrder() {
+        String a = "{\"model\":\"m\",\"messages\":[{\"role\":\"user\",\"content\":\"x\"}]}";
+        String b = "{ \"messages\": [ {\"content\":\"x\", \"role\":\"user\"} ], \"model\": \"m\" }";
+
+        assertThat(OpenRouterRecordingStore.canonicalize(a)).isEqualTo(OpenRouterRecordingStore.canonicalize(b));
+    }
+
+    @Test
+    void indexIsRebuiltFromTheLog() throws Exception {
+        try (OpenRouterRecordingStore store = OpenRouterRecordingStore.open(tempDir)) {
+            store.append(new OpenRouterRecording("k1", "POST", "/chat/completions", "{}", "{\"a\":1}", 5, List.of()));
+            store.append(new OpenRouterRecording("k1", "POST", "/chat/completions", "{}", "{\"a\":2}", 5, List.of()));
+        }
+        Files.writeString(tempDir.resolve("recordings.idx"), "");
+        Files.writeString(tempDir.resolve("recordings.log"), "{\"key\":\"trunc", StandardOpenOption.APPEND);
+
+        try (OpenRouterRecordingStore store = OpenRouterRecordingStore.open(tempDir)) {
+            assertThat(store.next("k1").orElseThrow().responseBody()).isEqualTo("{\"a\":1}");
+            assertThat(store.next("k1").orElseThrow().responseBody()).isEqualTo("{\"a\":2}");
+            assertThat(store.next("k1").orElseThrow().responseBody()).isEqualTo("{\"a\":1}");
+            store.append(new OpenRouterRecording("k2", "GET", "/key", null, "{}", 1, List.of()));
+        }
+        try (OpenRouterRecordingStore store = OpenRouterRecordingStore.open(tempDir)) {
+            assertThat(store.find("k1")).hasSize(2);
+            assertThat(store.find("k2")).hasSize(1);
+        }
+    }
+
+    // --- Helpers ---
+
+    private OpenRouterChatCompletionRequest request(String text) {
+        return OpenRouterChatCompletionRequest.builder(client)
+                .model("google/gemini-2.5-flash")
+                .addMessage("user", text)
+                .build();
+    }
+
+    private OpenRouterStreamingExchange streamingExchange(String text, List<String> received) {
+        return new OpenRouterStreamingExchange(
+                handler -> OpenRouterChatCompletionRequest.builder(client)
+                        .model("google/gemini-2.5-flash")
+                        .addMessage("user", text)
+                        .stream(handler)
+                        .build(),
+                new StreamingResponseHandler<>() {
+                    @Override
+                    public void onData(String data) {
+                        received.add(data);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+                }
+        );
+    }
+
+    private static String chunk(String content) {
+        return new JSONObject().put("choices", new JSONArray().put(new JSONObject()
+                .put("index", 0)
+                .put("delta", new JSONObject().put("content", content)))).toString();
+    }
+
+    /**
+     * Stands in for the live transport: echoes the last user message.
+     */
+    private static final class FakeTransport implements OpenRouterTransport {
+
+        @Override
+        public <T extends OpenRouterResponse<?>> T send(OpenRouterRequest<T> request, boolean useExponentialBackoff) {
+            JSONArray messages = new JSONObject(request.getBody()).getJSONArray("messages");
+            String text = messages.getJSONObject(messages.length() - 1).getString("content");
+            return request.createResponse(new JSONObject().put("choices", new JSONArray().put(new JSONObject()
+                    .put("index", 0)
+                    .put("finish_reason", "stop")
+                    .put("message", new JSONObject().put("role", "assistant").put("content", "echo: " + text))))
+                    .toString());
+        }
+
+        @Override
+        public void stream(OpenRouterStreamingExchange exchange, boolean useRetry) {
+            exchange.handler().onStreamStart();
+            exchange.handler().onData(chunk("Str"));
+            exchange.handler().onData(chunk("eam"));
+            exchange.handler().onComplete();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package de.entwicklertraining.openrouter4j.streaming;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRouterSseFramerTest {
+
+    private static final String STREAM = """
+            : OPENROUTER PROCESSING
+
+            data: {"choices":[{"delta":{"content":"Grüße"}}]}
+
+            : OPENROUTER PROCESSING
+            event: message
+            id: 7
+            data: {"choices":[{"delta":{"content":" aus Köln"}}]}
+
+            data: first line
+            data: second line
+
+            data: [DONE]
+
+            data: {"ignored":true}
+
+            """;
+
+    private final List<String> chunks = new ArrayList<>();
+    private final OpenRouterSseFramer framer = new OpenRouterSseFramer(
+            (data, offset, length) -> chunks.add(new String(data, offset, length, StandardCharsets.UTF_8)));
+
+    @Test
+    void framesEventsFromASingleBuffer() {
+        byte[] bytes = STREAM.getBytes(StandardCharsets.UTF_8);
+        framer.feed(bytes, 0, bytes.length);
+
+        assertExpectedChunks();
+        assertThat(framer.isDone()).isTrue();
+        assertThat(framer.comments()).isEqualTo(2);
+    }
+
+    @Test
+    void framesEventsSplitAtEveryPossiblePosition() {
+        byte[] bytes = STREAM.getBytes(StandardCharsets.UTF_8);
+        for (int split = 1; split < bytes.length; split++) {
+            chunks.clear();
+            OpenRouterSseFramer splitFramer = new OpenRouterSseFramer(
+                    (data, offset, length) -> chunks.add(new String(data, offset, length, StandardCharsets.UTF_8)));
+
+            // The caller reuses its read buffer, so copy each piece into the same scratch array
+            byte[] scratch = new byte[bytes.length];
+            System.arraycopy(bytes, 0, scratch, 0, split);
+            splitFramer.feed(scratch, 0, split);
+            java.util.Arrays.fill(scratch, (byte) 'x');
+            System.arraycopy(bytes, split, scratch, 0, bytes.length - split);
+            splitFramer.feed(scratch, 0, bytes.length - split);
+
+            assertExpectedChunks();
+        }
+    }
+
+    @Test
+    void framesEventsFedByteByByteWithCrLf() {
+        byte[] bytes = STREAM.replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] single = new byte[1];
+        for (byte b : bytes) {
+            single[0] = b;
+            framer.feed(single, 0, 1);
+        }
+
+        assertExpectedChunks();
+    }
+
+    @Test
+    void deliversAnUnterminatedEventOnFinish() {
+        byte[] bytes = "data: {\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        framer.feed(bytes, 0, bytes.length);
+        assertThat(chunks).isEmpty();
+
+        framer.finish();
+        assertThat(chunks).containsExactly("{\"a\":1}");
+        assertThat(framer.isDone()).isFalse();
+    }
+
+    private void assertExpectedChunks() {
+        assertThat(chunks).containsExactly(
+                "{\"choices\":[{\"delta\":{\"content\":\"Grüße\"}}]}",
+                "{\"choices\":[{\"delta\":{\"content\":\" aus Köln\"}}]}",
+                "first line\nsecond line");
+    }
+}